@@ -18,11 +18,20 @@
  */
 package org.netbeans.modules.jackpot30.cmdline.ant;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
 import org.apache.tools.ant.taskdefs.Execute;
+import org.apache.tools.ant.taskdefs.LogOutputStream;
 import org.apache.tools.ant.taskdefs.LogStreamHandler;
 import org.apache.tools.ant.types.CommandlineJava;
 import org.apache.tools.ant.types.Path;
@@ -73,6 +82,12 @@ public class JackpotTask extends Task {
         this.configFile = file;
     }
 
+    private boolean daemon = true;
+
+    public void setDaemon(boolean daemon) {
+        this.daemon = daemon;
+    }
+
     @Override
     public void execute() throws BuildException {
         try {
@@ -99,9 +114,13 @@ public class JackpotTask extends Task {
             addArguments(cmdLine, "-sourcepath", srcPath.toString());
             addArguments(cmdLine, "-classpath", getClasspath().toString());
             if (sourcelevel != null) addArguments(cmdLine, "--source", sourcelevel);
-            if (configFile != null) addArguments(cmdLine, "--config-file", configFile);
+            if (configFile != null) addArguments(cmdLine, "--config-file", new File(configFile).getAbsolutePath());
             addArguments(cmdLine, srcPath.list());
 
+            if (daemon && runInDaemon(new File(jackpotHome, "jackpot.jar"), cmdLine.getJavaCommand().getArguments())) {
+                return ;
+            }
+
             Execute exec = new Execute(new LogStreamHandler(this, Project.MSG_INFO, Project.MSG_WARN));
             exec.setCommandline(cmdLine.getCommandline());
             exec.execute();
@@ -110,6 +129,41 @@ public class JackpotTask extends Task {
         }
     }
 
+    private boolean runInDaemon(File jackpotJar, String[] args) {
+        List<String> javaLauncher = Arrays.asList(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath(),
+                                                  "-XX:+IgnoreUnrecognizedVMOptions",
+                                                  "--add-opens=java.base/java.net=ALL-UNNAMED",
+                                                  "--add-opens=java.desktop/sun.awt=ALL-UNNAMED");
+        OutputStream out = new LogOutputStream(this, Project.MSG_INFO);
+        OutputStream err = new LogOutputStream(this, Project.MSG_WARN);
+        URLClassLoader loader = null;
+
+        try {
+            //the client is loaded from jackpot.jar, so that it always matches the daemon:
+            loader = new URLClassLoader(new URL[] {jackpotJar.toURI().toURL()});
+            Method run = loader.loadClass("org.netbeans.modules.jackpot30.cmdline.DaemonClient")
+                               .getMethod("run", List.class, File.class, String[].class, OutputStream.class, OutputStream.class);
+
+            run.invoke(null, javaLauncher, jackpotJar, args, out, err);
+
+            return true;
+        } catch (InvocationTargetException ex) {
+            log("Cannot use the jackpot daemon, running in a separate process: " + ex.getCause().getMessage(), Project.MSG_WARN);
+        } catch (ReflectiveOperationException | IOException ex) {
+            log("Cannot use the jackpot daemon, running in a separate process: " + ex.getMessage(), Project.MSG_WARN);
+        } finally {
+            try {
+                out.close();
+                err.close();
+                if (loader != null) loader.close();
+            } catch (IOException ex) {
+                log(ex, Project.MSG_VERBOSE);
+            }
+        }
+
+        return false;
+    }
+
     private static void addArguments(CommandlineJava cmdLine, String... args) {
         for (String arg : args) {
             cmdLine.createArgument().setValue(arg);
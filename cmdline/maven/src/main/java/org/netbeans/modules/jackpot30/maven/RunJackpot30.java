@@ -35,6 +35,7 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.netbeans.modules.jackpot30.cmdline.DaemonClient;
 import org.netbeans.modules.jackpot30.cmdline.Main;
 
 public abstract class RunJackpot30 extends AbstractMojo {
@@ -68,7 +69,7 @@ public abstract class RunJackpot30 extends AbstractMojo {
 
             if (configurationFile != null) {
                 cmdLine.add("--config-file");
-                cmdLine.add(configurationFile);
+                cmdLine.add(new File(configurationFile).getAbsolutePath());
             }
 
             if (failOnWarnings) {
@@ -95,12 +96,26 @@ public abstract class RunJackpot30 extends AbstractMojo {
             if (!Files.exists(launcher)) {
                 launcher = bin.resolve("java.exe");
             }
-            cmdLine.addAll(0, Arrays.asList(launcher.toAbsolutePath().toString(),
-                                            "-classpath", Main.class.getProtectionDomain().getCodeSource().getLocation().getPath(),
-                                            "-XX:+IgnoreUnrecognizedVMOptions",
-                                            "--add-opens=java.base/java.net=ALL-UNNAMED",
-                                            "--add-opens=java.desktop/sun.awt=ALL-UNNAMED",
-                                            Main.class.getCanonicalName()));
+            List<String> javaLauncher = Arrays.asList(launcher.toAbsolutePath().toString(),
+                                                      "-XX:+IgnoreUnrecognizedVMOptions",
+                                                      "--add-opens=java.base/java.net=ALL-UNNAMED",
+                                                      "--add-opens=java.desktop/sun.awt=ALL-UNNAMED");
+            String toolJar = Main.class.getProtectionDomain().getCodeSource().getLocation().getPath();
+
+            if (Utils.getJackpotUseDaemon(project)) {
+                try {
+                    if (DaemonClient.run(javaLauncher, new File(toolJar), cmdLine.toArray(new String[0]), System.out, System.err) != 0) {
+                        throw new MojoExecutionException("jackpo30 failed.");
+                    }
+                    return ;
+                } catch (IOException ex) {
+                    getLog().warn("jackpot30: cannot use the daemon, running in a separate process: " + ex.getMessage());
+                }
+            }
+
+            cmdLine.addAll(0, javaLauncher);
+            cmdLine.addAll(javaLauncher.size(), Arrays.asList("-classpath", toolJar,
+                                                              Main.class.getCanonicalName()));
             if (new ProcessBuilder(cmdLine).inheritIO().start().waitFor() != 0) {
                 throw new MojoExecutionException("jackpo30 failed.");
             }
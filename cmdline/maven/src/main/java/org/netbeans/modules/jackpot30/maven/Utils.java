@@ -74,6 +74,26 @@ public class Utils {
         return true;
     }
 
+    public static boolean getJackpotUseDaemon(MavenProject project) {
+        String property = System.getProperty("jackpot30.daemon");
+
+        if (property != null) {
+            return "true".equalsIgnoreCase(property);
+        }
+
+        Xpp3Dom configuration = getJackpotPluginConfiguration(project);
+
+        if (configuration != null) {
+            Xpp3Dom daemonElement = configuration.getChild("daemon");
+
+            if (daemonElement != null) {
+                return "true".equalsIgnoreCase(daemonElement.getValue());
+            }
+        }
+
+        return true;
+    }
+
     private static Xpp3Dom getJackpotPluginConfiguration(MavenProject project) {
         return getPluginConfiguration(project, "org.apache.netbeans.modules.jackpot30", "jackpot30-maven-plugin");
     }
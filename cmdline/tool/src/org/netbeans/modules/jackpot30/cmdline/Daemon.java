@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.cmdline;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Properties;
+
+/**A long-lived process that runs {@link Main#compile(java.lang.String...)} for {@link DaemonClient}s.
+ * The module system and the indexing cache are kept between the invocations, so only the
+ * changed files need to be re-indexed. Requests are processed one at a time, relative paths
+ * are resolved against the working directory of the client.
+ *
+ * @author lahvac
+ */
+public class Daemon {
+
+    private static final int IDLE_TIMEOUT = Integer.getInteger("jackpot.daemon.timeout", 60 * 60 * 1000);
+
+    public static void main(String... args) throws IOException {
+        File stateDir = new File(args[0]);
+
+        Main.setDaemonCacheDir(new File(stateDir, "cache"));
+
+        new Daemon(stateDir, IDLE_TIMEOUT).run();
+
+        System.exit(0);
+    }
+
+    private final File stateFile;
+    private final ServerSocket server;
+    private final String token;
+
+    /**Opens the daemon's socket, and publishes its port and token in the state file in {@code stateDir}.
+     * The state file is only readable by the current user.
+     */
+    Daemon(File stateDir, int idleTimeout) throws IOException {
+        DaemonClient.ensurePrivateDirectory(stateDir);
+
+        this.stateFile = new File(stateDir, DaemonClient.STATE_FILE);
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.token = new BigInteger(130, new SecureRandom()).toString(32);
+
+        server.setSoTimeout(idleTimeout);
+
+        Properties state = new Properties();
+
+        state.setProperty(DaemonClient.STATE_PORT, String.valueOf(server.getLocalPort()));
+        state.setProperty(DaemonClient.STATE_TOKEN, token);
+
+        Path newStateFile = new File(stateDir, DaemonClient.STATE_FILE + ".new").toPath();
+
+        Files.deleteIfExists(newStateFile);
+
+        //restrict the access before the token is written:
+        if (DaemonClient.POSIX) {
+            Files.createFile(newStateFile, PosixFilePermissions.asFileAttribute(DaemonClient.OWNER_ONLY_FILE));
+        } else {
+            Files.createFile(newStateFile);
+        }
+
+        OutputStream stateOut = Files.newOutputStream(newStateFile, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            state.store(stateOut, null);
+        } finally {
+            stateOut.close();
+        }
+
+        Files.move(newStateFile, stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**Processes requests until no request comes within the idle timeout.
+     */
+    void run() throws IOException {
+        try {
+            while (true) {
+                Socket socket;
+
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException ex) {
+                    break;
+                }
+
+                try {
+                    handle(socket, token);
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            stateFile.delete();
+            server.close();
+        }
+    }
+
+    private static void handle(Socket socket, String token) throws IOException {
+        DataInputStream request = new DataInputStream(socket.getInputStream());
+
+        if (!token.equals(DaemonClient.readString(request, DaemonClient.MAX_TOKEN_LENGTH))) {
+            return;
+        }
+
+        File workingDir = new File(DaemonClient.readString(request, DaemonClient.MAX_ARG_LENGTH));
+        int argCount = request.readInt();
+
+        if (argCount < 0 || argCount > DaemonClient.MAX_ARGS) {
+            throw new IOException("Invalid argument count: " + argCount);
+        }
+
+        String[] args = new String[argCount];
+        long requestLength = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            args[i] = DaemonClient.readString(request, DaemonClient.MAX_ARG_LENGTH);
+            requestLength += args[i].length();
+
+            if (requestLength > DaemonClient.MAX_REQUEST_LENGTH) {
+                throw new IOException("Request too long");
+            }
+        }
+
+        if (!workingDir.isAbsolute()) {
+            throw new IOException("Working directory not absolute: " + workingDir);
+        }
+
+        DataOutputStream response = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        PrintStream origOut = System.out;
+        PrintStream origErr = System.err;
+        PrintStream out = new PrintStream(new FrameOutputStream(response, DaemonClient.FRAME_OUT), true);
+        PrintStream err = new PrintStream(new FrameOutputStream(response, DaemonClient.FRAME_ERR), true);
+        int exitCode;
+
+        System.setOut(out);
+        System.setErr(err);
+
+        try {
+            exitCode = Main.compile(workingDir, args);
+        } catch (Throwable t) {
+            t.printStackTrace();
+            exitCode = 1;
+        } finally {
+            out.flush();
+            err.flush();
+            System.setOut(origOut);
+            System.setErr(origErr);
+        }
+
+        synchronized (response) {
+            response.writeByte(DaemonClient.FRAME_EXIT);
+            response.writeInt(exitCode);
+            response.flush();
+        }
+    }
+
+    private static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream response;
+        private final int kind;
+
+        public FrameOutputStream(DataOutputStream response, int kind) {
+            this.response = response;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (response) {
+                response.writeByte(kind);
+                response.writeInt(len);
+                response.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (response) {
+                response.flush();
+            }
+        }
+
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.cmdline;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**Runs the tool inside a long-lived {@link Daemon}, starting the daemon if needed.
+ *
+ * @author lahvac
+ */
+public class DaemonClient {
+
+    static final String STATE_FILE = "daemon";
+    static final String STATE_PORT = "port";
+    static final String STATE_TOKEN = "token";
+
+    static final int FRAME_EXIT = 0;
+    static final int FRAME_OUT = 1;
+    static final int FRAME_ERR = 2;
+
+    //limits of a request, checked by the daemon before anything is allocated:
+    static final int MAX_TOKEN_LENGTH = 256;
+    static final int MAX_ARGS = 64 * 1024;
+    static final int MAX_ARG_LENGTH = 1024 * 1024;
+    static final int MAX_REQUEST_LENGTH = 64 * 1024 * 1024;
+
+    private static final int START_TIMEOUT = Integer.getInteger("jackpot.daemon.start.timeout", 120000);
+
+    /**Runs the tool with the given arguments in a daemon for the given jackpot.jar, and copies the daemon's
+     * output to {@code out} and {@code err}. The daemon is started using {@code javaLauncher} (the java
+     * executable and JVM options), if it is not running yet. Relative paths in {@code args} are resolved
+     * against the working directory of this process.
+     *
+     * @return the exit code of the tool
+     * @throws IOException if the daemon cannot be started or contacted
+     */
+    public static int run(List<String> javaLauncher, File toolJar, String[] args, OutputStream out, OutputStream err) throws IOException {
+        return run(javaLauncher, toolJar, stateDir(toolJar), args, out, err);
+    }
+
+    static int run(List<String> javaLauncher, File toolJar, File stateDir, String[] args, OutputStream out, OutputStream err) throws IOException {
+        ensurePrivateDirectory(stateDir);
+
+        Socket socket = connect(stateDir);
+
+        if (socket == null) {
+            RandomAccessFile lockFile = new RandomAccessFile(new File(stateDir, "lock"), "rw");
+
+            try {
+                FileLock lock = lockFile.getChannel().lock();
+
+                try {
+                    socket = connect(stateDir);
+
+                    if (socket == null) {
+                        socket = start(javaLauncher, toolJar, stateDir);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                lockFile.close();
+            }
+        }
+
+        try {
+            DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+
+            writeString(request, readState(stateDir).getProperty(STATE_TOKEN));
+            writeString(request, new File("").getAbsolutePath());
+            request.writeInt(args.length);
+
+            for (String arg : args) {
+                writeString(request, arg);
+            }
+
+            request.flush();
+
+            DataInputStream response = new DataInputStream(socket.getInputStream());
+
+            while (true) {
+                int kind = response.readByte();
+
+                if (kind == FRAME_EXIT) {
+                    out.flush();
+                    err.flush();
+                    return response.readInt();
+                }
+
+                byte[] data = new byte[response.readInt()];
+
+                response.readFully(data);
+
+                (kind == FRAME_OUT ? out : err).write(data);
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    static File stateDir(File toolJar) throws IOException {
+        //one daemon per user and tool build:
+        File userDir = new File(System.getProperty("user.home"), ".jackpot30");
+        String key = toolJar.getAbsolutePath() + ":" + toolJar.length() + ":" + toolJar.lastModified();
+
+        ensurePrivateDirectory(userDir);
+
+        return new File(userDir, "daemon-" + Integer.toHexString(key.hashCode()));
+    }
+
+    static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    static final Set<PosixFilePermission> OWNER_ONLY_DIR = PosixFilePermissions.fromString("rwx------");
+    static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+    /**Creates the given directory accessible only by the current user, if it does not exist yet.
+     *
+     * @throws IOException if the directory cannot be created, or is accessible by other users
+     */
+    static void ensurePrivateDirectory(File dir) throws IOException {
+        Path path = dir.toPath();
+
+        if (!POSIX) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir.getAbsolutePath());
+            }
+            return ;
+        }
+
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                Files.createDirectory(path, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIR));
+            } catch (FileAlreadyExistsException ex) {
+                //created concurrently, verified below
+            }
+        }
+
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException(dir.getAbsolutePath() + " is not a directory");
+        }
+
+        verifyPrivate(path);
+    }
+
+    private static void verifyPrivate(Path path) throws IOException {
+        UserPrincipal currentUser = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+
+        if (!currentUser.equals(Files.getOwner(path, LinkOption.NOFOLLOW_LINKS))) {
+            throw new IOException(path + " is not owned by the current user");
+        }
+
+        for (PosixFilePermission permission : Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (!permission.name().startsWith("OWNER_")) {
+                throw new IOException(path + " is accessible by other users");
+            }
+        }
+    }
+
+    static Properties readState(File stateDir) throws IOException {
+        Properties state = new Properties();
+        File stateFile = new File(stateDir, STATE_FILE);
+
+        if (stateFile.canRead()) {
+            if (POSIX) {
+                verifyPrivate(stateFile.toPath());
+            }
+
+            InputStream in = new FileInputStream(stateFile);
+
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        return state;
+    }
+
+    static Socket connect(File stateDir) throws IOException {
+        String port = readState(stateDir).getProperty(STATE_PORT);
+
+        if (port == null) return null;
+
+        try {
+            return new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(port));
+        } catch (IOException ex) {
+            //stale state file, the daemon is not running anymore
+            return null;
+        }
+    }
+
+    private static Socket start(List<String> javaLauncher, File toolJar, File stateDir) throws IOException {
+        new File(stateDir, STATE_FILE).delete();
+
+        List<String> cmdLine = new ArrayList<String>(javaLauncher);
+
+        cmdLine.add("-classpath");
+        cmdLine.add(toolJar.getAbsolutePath());
+        cmdLine.add(Daemon.class.getName());
+        cmdLine.add(stateDir.getAbsolutePath());
+
+        File log = new File(stateDir, "daemon.log");
+        Process daemon = new ProcessBuilder(cmdLine).redirectErrorStream(true).redirectOutput(log).start();
+        long deadline = System.currentTimeMillis() + START_TIMEOUT;
+
+        while (System.currentTimeMillis() < deadline) {
+            Socket socket = connect(stateDir);
+
+            if (socket != null) return socket;
+
+            try {
+                daemon.exitValue();
+                throw new IOException("jackpot daemon failed to start, see " + log.getAbsolutePath());
+            } catch (IllegalThreadStateException ex) {
+                //still running
+            }
+
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        daemon.destroy();
+
+        throw new IOException("jackpot daemon did not start in time, see " + log.getAbsolutePath());
+    }
+
+    static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] data = str.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /**Reads a string written by {@link #writeString(java.io.DataOutputStream, java.lang.String)}.
+     *
+     * @throws IOException if the string is longer than {@code maxLength} bytes
+     */
+    static String readString(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Invalid string length: " + length);
+        }
+
+        byte[] data = new byte[length];
+
+        in.readFully(data);
+
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+}
@@ -192,7 +192,7 @@ public class Main {
         List<Folder> rootFolders = new ArrayList<Folder>();
 
         for (String sr : parsed.nonOptionArguments()) {
-            File r = new File(sr);
+            File r = resolve(new File(sr));
             FileObject root = FileUtil.toFileObject(r);
 
             if (root != null) {
@@ -215,7 +215,7 @@ public class Main {
 
         if (parsed.has("show-gui")) {
             if (parsed.has(configFile)) {
-                final File settingsFile = parsed.valueOf(configFile);
+                final File settingsFile = resolve(parsed.valueOf(configFile));
                 try {
                     SwingUtilities.invokeAndWait(new Runnable() {
                         @Override public void run() {
@@ -242,7 +242,12 @@ public class Main {
             }
         }
 
-        File cacheDir = parsed.valueOf(cache);
+        if (daemonCacheDir != null && parsed.has(cache)) {
+            System.err.println("--cache cannot be used with the daemon, which keeps its own cache");
+            return 1;
+        }
+
+        File cacheDir = daemonCacheDir != null ? daemonCacheDir : resolve(parsed.valueOf(cache));
         boolean deleteCacheDir = false;
 
         try {
@@ -269,10 +274,17 @@ public class Main {
 
             cacheDir.mkdirs();
 
-            CacheFolder.setCacheFolder(FileUtil.toFileObject(FileUtil.normalizeFile(cacheDir)));
+            if (!daemonStarted) {
+                CacheFolder.setCacheFolder(FileUtil.toFileObject(FileUtil.normalizeFile(cacheDir)));
 
-            org.netbeans.api.project.ui.OpenProjects.getDefault().getOpenProjects();
-            RepositoryUpdater.getDefault().start(false);
+                org.netbeans.api.project.ui.OpenProjects.getDefault().getOpenProjects();
+                RepositoryUpdater.getDefault().start(false);
+
+                daemonStarted = daemonCacheDir != null;
+            } else {
+                //the sources may have changed since the previous run of the daemon:
+                FileUtil.refreshAll();
+            }
 
             if (parsed.has("list")) {
                 Pair<ClassPath, ClassPath> sourceAndBinaryCP = jointSourceAndBinaryCP(groups);
@@ -296,7 +308,7 @@ public class Main {
             boolean useDefaultEnabledSetting;
 
             if (parsed.has(configFile)) {
-                ToolPreferences toolPrefs = ToolPreferences.from(parsed.valueOf(configFile).toURI());
+                ToolPreferences toolPrefs = ToolPreferences.from(resolve(parsed.valueOf(configFile)).toURI());
                 hintSettingsPreferences = toolPrefs.getPreferences("hints", "text/x-java");
                 Preferences toolSettings = toolPrefs.getPreferences("standalone", "text/x-java");
                 apply = toolSettings.getBoolean("apply", false);
@@ -331,8 +343,8 @@ public class Main {
 
             GroupResult result = GroupResult.NOTHING_TO_DO;
 
-            try (Writer outS = parsed.has(out) ? new BufferedWriter(new OutputStreamWriter(new FileOutputStream(parsed.valueOf(out)))) : null) {
-                GlobalConfiguration globalConfig = new GlobalConfiguration(hintSettingsPreferences, apply, runDeclarative, runDeclarativeTests, useDefaultEnabledSetting, parsed.valueOf(hint), parsed.valueOf(hintFile), parsed.valueOf(patchFile), outS, parsed.has(OPTION_FAIL_ON_WARNINGS));
+            try (Writer outS = parsed.has(out) ? new BufferedWriter(new OutputStreamWriter(new FileOutputStream(resolve(parsed.valueOf(out))))) : null) {
+                GlobalConfiguration globalConfig = new GlobalConfiguration(hintSettingsPreferences, apply, runDeclarative, runDeclarativeTests, useDefaultEnabledSetting, parsed.valueOf(hint), resolve(parsed.valueOf(hintFile)), resolve(parsed.valueOf(patchFile)), outS, parsed.has(OPTION_FAIL_ON_WARNINGS));
 
                 for (RootConfiguration groupConfig : groups) {
                     result = result.join(handleGroup(groupConfig, progress, globalConfig, parsed.valuesOf(config)));
@@ -367,12 +379,43 @@ public class Main {
         }
     }
 
+    private static File daemonCacheDir;
+    private static boolean daemonStarted;
+
+    /**When running inside {@link Daemon}, all invocations share the given cache directory,
+     * and the indexing infrastructure is only started once.
+     */
+    static void setDaemonCacheDir(File cacheDir) {
+        daemonCacheDir = cacheDir;
+    }
+
+    private static File workingDir;
+
+    /**Runs the tool as {@link #compile(java.lang.String...)}, but resolves relative paths in {@code args}
+     * against {@code workingDir} rather than against the working directory of this process.
+     */
+    static int compile(File workingDir, String... args) throws IOException, ClassNotFoundException {
+        Main.workingDir = workingDir;
+
+        try {
+            return compile(args);
+        } finally {
+            Main.workingDir = null;
+        }
+    }
+
+    private static File resolve(File file) {
+        if (file == null || file.isAbsolute() || workingDir == null) return file;
+
+        return new File(workingDir, file.getPath());
+    }
+
     private static String[] inlineParameterFiles(String... args) {
         List<String> inlinedArgs = new ArrayList<>();
 
         for (String arg : args) {
             if (arg.startsWith("@")) {
-                try (BufferedReader r = new BufferedReader(new FileReader(arg.substring(1)))) {
+                try (BufferedReader r = new BufferedReader(new FileReader(resolve(new File(arg.substring(1)))))) {
                     String line;
 
                     while ((line = r.readLine()) != null) {
@@ -914,7 +957,7 @@ public class Main {
         List<URL> rootURLs = new ArrayList<URL>();
 
         for (File r : roots) {
-            rootURLs.add(FileUtil.urlForArchiveOrDir(r));
+            rootURLs.add(FileUtil.urlForArchiveOrDir(resolve(r)));
         }
 
         return ClassPathSupport.createClassPath(rootURLs.toArray(new URL[0]));
@@ -1003,7 +1046,7 @@ public class Main {
             List<FileObject> roots = new ArrayList<>();
 
             for (String sr : parsed.nonOptionArguments()) {
-                File r = new File(sr);
+                File r = resolve(new File(sr));
                 FileObject root = FileUtil.toFileObject(r);
 
                 if (root != null) {
@@ -0,0 +1,267 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.cmdline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.netbeans.junit.NbTestCase;
+
+/**
+ *
+ * @author lahvac
+ */
+public class DaemonTest extends NbTestCase {
+
+    //a launcher that cannot start a new daemon, so the tests fail if the running daemon is not used:
+    private static final List<String> NO_LAUNCHER = Arrays.asList("/nonexistent/java");
+
+    public DaemonTest(String name) {
+        super(name);
+    }
+
+    private File stateDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clearWorkDir();
+        stateDir = new File(getWorkDir(), "state");
+    }
+
+    public void testHandshake() throws Exception {
+        Thread daemon = startDaemon();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        assertEquals(0, DaemonClient.run(NO_LAUNCHER, null, stateDir, new String[] {"--help"}, out, err));
+        assertTrue(out.toString("UTF-8"), out.toString("UTF-8").contains("--hint"));
+
+        //a request with a wrong token is refused:
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(DaemonClient.readState(stateDir).getProperty(DaemonClient.STATE_PORT)));
+
+        try {
+            DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+
+            DaemonClient.writeString(request, "wrong");
+            DaemonClient.writeString(request, getWorkDirPath());
+            request.writeInt(1);
+            DaemonClient.writeString(request, "--help");
+            request.flush();
+
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+
+        //the daemon is still usable:
+        assertEquals(0, DaemonClient.run(NO_LAUNCHER, null, stateDir, new String[] {"--help"}, new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+
+        daemon.join(60000);
+        assertFalse(daemon.isAlive());
+        assertFalse(new File(stateDir, DaemonClient.STATE_FILE).exists());
+    }
+
+    public void testOversizedRequestRefused() throws Exception {
+        Thread daemon = startDaemon();
+        String token = DaemonClient.readState(stateDir).getProperty(DaemonClient.STATE_TOKEN);
+
+        assertEquals(-1, request(Integer.MAX_VALUE, null, null, null));
+        assertEquals(-1, request(-1, null, null, null));
+        assertEquals(-1, request(token.length(), token, getWorkDirPath(), Integer.MAX_VALUE));
+        assertEquals(-1, request(token.length(), token, getWorkDirPath(), -1));
+        assertEquals(-1, request(token.length(), token, "relative", 1, "--help"));
+
+        //the daemon is still usable:
+        assertEquals(0, DaemonClient.run(NO_LAUNCHER, null, stateDir, new String[] {"--help"}, new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+
+        daemon.join(60000);
+        assertFalse(daemon.isAlive());
+    }
+
+    public void testPathsRelativeToClient() throws Exception {
+        Thread daemon = startDaemon();
+        String token = DaemonClient.readState(stateDir).getProperty(DaemonClient.STATE_TOKEN);
+        File clientDir = new File(getWorkDir(), "client");
+
+        clientDir.mkdirs();
+
+        OutputStream params = new FileOutputStream(new File(clientDir, "params"));
+
+        try {
+            params.write("--help\n".getBytes("UTF-8"));
+        } finally {
+            params.close();
+        }
+
+        assertEquals(0, request(token.length(), token, clientDir.getAbsolutePath(), 1, "@params"));
+
+        //the daemon keeps its own cache:
+        Main.setDaemonCacheDir(new File(stateDir, "cache"));
+
+        try {
+            assertEquals(1, request(token.length(), token, clientDir.getAbsolutePath(), 2, "--cache", "cache"));
+            assertFalse(new File(clientDir, "cache").exists());
+        } finally {
+            Main.setDaemonCacheDir(null);
+        }
+
+        daemon.join(60000);
+        assertFalse(daemon.isAlive());
+    }
+
+    public void testStaleStateFile() throws Exception {
+        ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Properties state = new Properties();
+
+        state.setProperty(DaemonClient.STATE_PORT, String.valueOf(closed.getLocalPort()));
+        state.setProperty(DaemonClient.STATE_TOKEN, "stale");
+        closed.close();
+
+        DaemonClient.ensurePrivateDirectory(stateDir);
+        writeStateFile(state);
+
+        assertNull(DaemonClient.connect(stateDir));
+
+        try {
+            DaemonClient.run(NO_LAUNCHER, new File(getWorkDir(), "jackpot.jar"), stateDir, new String[] {"--help"}, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+            fail("should not be able to start a daemon");
+        } catch (IOException ex) {
+            //expected
+        }
+
+        //the stale state file is replaced by a newly started daemon:
+        Thread daemon = startDaemon();
+
+        assertEquals(0, DaemonClient.run(NO_LAUNCHER, null, stateDir, new String[] {"--help"}, new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+
+        daemon.join(60000);
+        assertFalse(daemon.isAlive());
+    }
+
+    public void testPrivateState() throws Exception {
+        if (!DaemonClient.POSIX) return ;
+
+        Thread daemon = startDaemon();
+
+        assertEquals(DaemonClient.OWNER_ONLY_DIR, Files.getPosixFilePermissions(stateDir.toPath()));
+        assertEquals(DaemonClient.OWNER_ONLY_FILE, Files.getPosixFilePermissions(new File(stateDir, DaemonClient.STATE_FILE).toPath()));
+
+        Files.setPosixFilePermissions(new File(stateDir, DaemonClient.STATE_FILE).toPath(), PosixFilePermissions.fromString("rw-r--r--"));
+
+        try {
+            DaemonClient.run(NO_LAUNCHER, null, stateDir, new String[] {"--help"}, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+            fail("a state file readable by other users must not be used");
+        } catch (IOException ex) {
+            //expected
+        }
+
+        Files.setPosixFilePermissions(stateDir.toPath(), PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        try {
+            DaemonClient.ensurePrivateDirectory(stateDir);
+            fail("a state directory accessible by other users must not be used");
+        } catch (IOException ex) {
+            //expected
+        }
+
+        daemon.join(60000);
+    }
+
+    /**Sends a raw request to the running daemon, {@code null} values are not sent.
+     *
+     * @return the exit code, or -1 if the daemon closed the connection without one
+     */
+    private int request(Integer tokenLength, String token, String workingDir, Integer argCount, String... args) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(DaemonClient.readState(stateDir).getProperty(DaemonClient.STATE_PORT)));
+
+        try {
+            DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+
+            request.writeInt(tokenLength);
+            if (token != null) request.write(token.getBytes("UTF-8"));
+            if (workingDir != null) DaemonClient.writeString(request, workingDir);
+            if (argCount != null) request.writeInt(argCount);
+            for (String arg : args) {
+                DaemonClient.writeString(request, arg);
+            }
+            request.flush();
+
+            DataInputStream response = new DataInputStream(socket.getInputStream());
+
+            while (true) {
+                int kind = response.read();
+
+                if (kind == (-1)) return -1;
+                if (kind == DaemonClient.FRAME_EXIT) return response.readInt();
+
+                response.readFully(new byte[response.readInt()]);
+            }
+        } catch (SocketException ex) {
+            //connection reset by the daemon
+            return -1;
+        } finally {
+            socket.close();
+        }
+    }
+
+    private Thread startDaemon() throws IOException {
+        final Daemon daemon = new Daemon(stateDir, 5000);
+        Thread t = new Thread() {
+            @Override public void run() {
+                try {
+                    daemon.run();
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        };
+
+        t.start();
+
+        return t;
+    }
+
+    private void writeStateFile(Properties state) throws IOException {
+        OutputStream out = new FileOutputStream(new File(stateDir, DaemonClient.STATE_FILE));
+
+        try {
+            state.store(out, null);
+        } finally {
+            out.close();
+        }
+
+        if (DaemonClient.POSIX) {
+            Files.setPosixFilePermissions(new File(stateDir, DaemonClient.STATE_FILE).toPath(), DaemonClient.OWNER_ONLY_FILE);
+        }
+    }
+}
@@ -24,19 +24,11 @@ import com.sun.source.tree.NewClassTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.SourcePositions;
-import com.sun.source.util.TreePath;
 import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.Trees;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
 import java.net.URL;
-import java.security.DigestOutputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
@@ -335,52 +327,15 @@ public class ComputeDuplicates {
         final SourcePositions sp = trees.getSourcePositions();
         final Map<String, Collection<Long>> positions = new HashMap<String, Collection<Long>>();
 
-        new TreePathScanner<Void, Void>() {
+        new GeneralizedHasher(trees) {
             @Override
-            public Void scan(Tree tree, Void p) {
-                if (tree == null) return null;
-                if (getCurrentPath() != null) {
-                    DigestOutputStream baos = null;
-                    PrintWriter out = null;
-                    try {
-                        baos = new DigestOutputStream(new ByteArrayOutputStream(), MessageDigest.getInstance("MD5"));
-                        out = new PrintWriter(new OutputStreamWriter(baos, "UTF-8"));
-                        GeneralizePattern gen = new GeneralizePattern(out, trees);
-                        gen.scan(new TreePath(getCurrentPath(), tree), null);
-                        out.close();
-                        if (gen.value >= MINIMAL_VALUE) {
-                            StringBuilder text = new StringBuilder();
-                            byte[] bytes = baos.getMessageDigest().digest();
-                            for (int cntr = 0; cntr < 4; cntr++) {
-                                text.append(String.format("%02X", bytes[cntr]));
-                            }
-                            text.append(':').append(gen.value);
-                            String enc = text.toString();
-                            Collection<Long> spanSpecs = positions.get(enc);
-                            if (spanSpecs == null) {
-                                positions.put(enc, spanSpecs = new LinkedList<Long>());
-//                            } else {
-//                                spanSpecs.append(";");
-                            }
-                            long start = sp.getStartPosition(cut, tree);
-//                            spanSpecs.append(start).append(":").append(sp.getEndPosition(cut, tree) - start);
-                            spanSpecs.add(start);
-                            spanSpecs.add(sp.getEndPosition(cut, tree));
-                        }
-                    } catch (UnsupportedEncodingException ex) {
-                        Exceptions.printStackTrace(ex);
-                    } catch (NoSuchAlgorithmException ex) {
-                        Exceptions.printStackTrace(ex);
-                    } finally {
-                        try {
-                            baos.close();
-                        } catch (IOException ex) {
-                            Exceptions.printStackTrace(ex);
-                        }
-                        out.close();
-                    }
+            protected void subtree(Tree tree, String enc) {
+                Collection<Long> spanSpecs = positions.get(enc);
+                if (spanSpecs == null) {
+                    positions.put(enc, spanSpecs = new LinkedList<Long>());
                 }
-                return super.scan(tree, p);
+                spanSpecs.add(sp.getStartPosition(cut, tree));
+                spanSpecs.add(sp.getEndPosition(cut, tree));
             }
         }.scan(cut, null);
 
@@ -400,29 +355,64 @@ public class ComputeDuplicates {
         return result;
     }
 
-    private static final class GeneralizePattern extends TreePathScanner<Void, Void> {
+    /**Hashes the generalized form of all subtrees of a tree in a single pass.
+     *
+     * The generalized form of a subtree is a contiguous range of a token stream
+     * (the tree kinds and names in the scanning order), so its hash is computed
+     * from the prefix hashes of the stream, rather than by re-serializing the subtree.
+     * An occurrence of a generalized variable is encoded as the distance to its previous
+     * occurrence, or as a "first occurrence" token when the previous occurrence lies outside
+     * of the subtree - which is the same equivalence as numbering the variables in the order
+     * of their first use inside the subtree. Only the first occurrences need to be corrected
+     * for each subtree, so the cost is proportional to the number of nodes times the number
+     * of distinct generalized variables.
+     *
+     * The content of a new class tree is not part of the generalized form of the enclosing
+     * trees, so the new class subtrees are hashed using a separate stream.
+     */
+    private static abstract class GeneralizedHasher extends TreePathScanner<Void, Void> {
 
-        public final Map<Tree, Tree> tree2Variable = new HashMap<Tree, Tree>();
-        private final Map<Element, String> element2Variable = new HashMap<Element, String>();
-        private final PrintWriter to;
         private final Trees javacTrees;
+        private TokenStream stream = new TokenStream();
+        private IntList firstOccurrences = new IntList();
         private long value;
 
-        private int currentVariableIndex = 0;
-
-        public GeneralizePattern(PrintWriter to, Trees javacTrees) {
-            this.to = to;
+        public GeneralizedHasher(Trees javacTrees) {
             this.javacTrees = javacTrees;
         }
 
-        private @NonNull String getVariable(@NonNull Element el) {
-            String var = element2Variable.get(el);
+        protected abstract void subtree(Tree tree, String enc);
+
+        @Override
+        public Void scan(Tree tree, Void p) {
+            if (tree == null) return null;
+
+            TokenStream currentStream = stream;
+            IntList parentFirstOccurrences = firstOccurrences;
+            long parentValue = value;
+            int start = currentStream.add(token(KIND_TOKEN, tree.getKind().ordinal()), -1);
 
-            if (var == null) {
-                element2Variable.put(el, var = "$" + currentVariableIndex++);
+            firstOccurrences = new IntList();
+            value = 1;
+
+            super.scan(tree, p);
+
+            //the kind of the subtree's root is not part of its generalized form:
+            int from = start + 1;
+            int to = currentStream.length;
+            IntList firsts = firstOccurrences.firstOccurrencesFrom(currentStream, from);
+            long subtreeValue = value;
+
+            if (tree.getKind() != Tree.Kind.COMPILATION_UNIT && subtreeValue - 1 >= MINIMAL_VALUE) {
+                long hash = mix(currentStream.hash(from, to, firsts) ^ (to - from));
+                subtree(tree, String.format("%016X", hash) + ':' + (subtreeValue - 1));
             }
 
-            return var;
+            parentFirstOccurrences.addAll(firsts);
+            firstOccurrences = parentFirstOccurrences;
+            value = parentValue + subtreeValue;
+
+            return null;
         }
 
         private boolean shouldBeGeneralized(@NonNull Element el) {
@@ -440,13 +430,18 @@ public class ComputeDuplicates {
             return false;
         }
 
-        @Override
-        public Void scan(Tree tree, Void p) {
-            if (tree != null) {
-                to.append(tree.getKind().name());
-                value++;
+        private void variable(@NonNull Element el) {
+            Integer previous = stream.lastOccurrence.put(el, stream.length);
+
+            if (previous == null) {
+                stream.add(FIRST_OCCURRENCE, -1);
+            } else {
+                firstOccurrences.add(stream.add(token(VARIABLE_TOKEN, stream.length - previous), previous));
             }
-            return super.scan(tree, p);
+        }
+
+        private void name(CharSequence name) {
+            stream.add(token(NAME_TOKEN, name.toString().hashCode()), -1);
         }
 
         @Override
@@ -454,11 +449,11 @@ public class ComputeDuplicates {
             Element e = javacTrees.getElement(getCurrentPath());
 
             if (e != null && shouldBeGeneralized(e)) {
-                to.append(getVariable(e));
+                variable(e);
                 value--;
                 return null;
             } else {
-                to.append(node.getName());
+                name(node.getName());
             }
 
             return super.visitIdentifier(node, p);
@@ -469,9 +464,9 @@ public class ComputeDuplicates {
             Element e = javacTrees.getElement(getCurrentPath());
 
             if (e != null && shouldBeGeneralized(e)) {
-                to.append(getVariable(e));
+                variable(e);
             } else {
-                to.append(node.getName());
+                name(node.getName());
             }
 
             return super.visitVariable(node, p);
@@ -479,11 +474,112 @@ public class ComputeDuplicates {
 
         @Override
         public Void visitNewClass(NewClassTree node, Void p) {
+            TokenStream parentStream = stream;
+            IntList parentFirstOccurrences = firstOccurrences;
+            long parentValue = value;
+
+            stream = new TokenStream();
+            firstOccurrences = new IntList();
+            value = 0;
+
+            super.visitNewClass(node, p);
+
+            stream = parentStream;
+            firstOccurrences = parentFirstOccurrences;
+            value = parentValue;
+
             return null;
         }
 
     }
 
+    private static final long KIND_TOKEN = 1;
+    private static final long NAME_TOKEN = 2;
+    private static final long VARIABLE_TOKEN = 3;
+    private static final long FIRST_OCCURRENCE = token(VARIABLE_TOKEN, 0);
+    private static final long BASE = 0x100000001B3L;
+
+    private static long token(long kind, long value) {
+        return mix(kind * 0x9E3779B97F4A7C15L + value);
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private static final class TokenStream {
+        private final Map<Element, Integer> lastOccurrence = new HashMap<Element, Integer>();
+        private long[] tokens = new long[64];
+        private int[] previous = new int[64];
+        private long[] prefixHash = new long[65];
+        private long[] powers = new long[65];
+        private int length;
+
+        public TokenStream() {
+            powers[0] = 1;
+        }
+
+        public int add(long token, int previousOccurrence) {
+            if (length == tokens.length) {
+                tokens = Arrays.copyOf(tokens, 2 * length);
+                previous = Arrays.copyOf(previous, 2 * length);
+                prefixHash = Arrays.copyOf(prefixHash, 2 * length + 1);
+                powers = Arrays.copyOf(powers, 2 * length + 1);
+            }
+
+            tokens[length] = token;
+            previous[length] = previousOccurrence;
+            prefixHash[length + 1] = prefixHash[length] * BASE + token;
+            powers[length + 1] = powers[length] * BASE;
+
+            return length++;
+        }
+
+        public long hash(int from, int to, IntList firstOccurrences) {
+            long hash = prefixHash[to] - prefixHash[from] * powers[to - from];
+
+            for (int i = 0; i < firstOccurrences.size; i++) {
+                int pos = firstOccurrences.data[i];
+
+                hash += (FIRST_OCCURRENCE - tokens[pos]) * powers[to - 1 - pos];
+            }
+
+            return hash;
+        }
+    }
+
+    private static final class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        public void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, 2 * size);
+            }
+
+            data[size++] = value;
+        }
+
+        public void addAll(IntList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.data[i]);
+            }
+        }
+
+        public IntList firstOccurrencesFrom(TokenStream stream, int from) {
+            IntList result = new IntList();
+
+            for (int i = 0; i < size; i++) {
+                if (stream.previous[data[i]] < from) {
+                    result.add(data[i]);
+                }
+            }
+
+            return result;
+        }
+    }
     private static final int MINIMAL_VALUE = 10;
 
     public static final class DuplicateDescription {
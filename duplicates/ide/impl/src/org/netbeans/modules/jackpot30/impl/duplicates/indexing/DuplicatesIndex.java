@@ -95,5 +95,5 @@ public class DuplicatesIndex {
     }
 
     public static final String NAME = "duplicates"; //NOI18N
-    public static final int    VERSION = 1; //NOI18N
+    public static final int    VERSION = 2; //NOI18N
 }
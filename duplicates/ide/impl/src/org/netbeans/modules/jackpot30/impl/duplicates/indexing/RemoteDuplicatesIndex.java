@@ -24,10 +24,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -45,16 +45,13 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Index;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.FieldSelectorResult;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.Collector;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.Searcher;
-import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.index.TermDocs;
 import org.codeviation.pojson.Pojson;
-import org.netbeans.modules.jackpot30.common.api.LuceneHelpers.BitSetCollector;
 import org.netbeans.modules.jackpot30.impl.duplicates.ComputeDuplicates.DuplicateDescription;
 import org.netbeans.modules.jackpot30.impl.duplicates.ComputeDuplicates.Span;
 import org.netbeans.modules.jackpot30.remoting.api.LocalCache;
@@ -302,31 +299,45 @@ public class RemoteDuplicatesIndex {
     }
 
     private static Map<String, Collection<? extends String>> containsHash(IndexReader reader, Iterable<? extends String> hashes, AtomicBoolean cancel) throws IOException {
-        Map<String, Collection<? extends String>> result = new LinkedHashMap<String, Collection<? extends String>>();
+        //all the hashes are looked up using a single TermDocs, the documents are then read in the index order:
+        Map<Integer, String> doc2Hash = new TreeMap<Integer, String>();
+        TermDocs termDocs = reader.termDocs();
 
-        for (String hash : hashes) {
-            if (cancel.get()) return Collections.emptyMap();
+        try {
+            for (String hash : hashes) {
+                if (cancel.get()) return Collections.emptyMap();
 
-            Collection<String> found = new LinkedList<String>();
-            Query query = new TermQuery(new Term("hash", hash));
-            Searcher s = new IndexSearcher(reader);
-            BitSet matchingDocuments = new BitSet(reader.maxDoc());
-            Collector c = new BitSetCollector(matchingDocuments);
+                termDocs.seek(new Term("hash", hash));
 
-            s.search(query, c);
+                while (termDocs.next()) {
+                    doc2Hash.put(termDocs.doc(), hash);
+                }
+            }
+        } finally {
+            termDocs.close();
+        }
 
-            boolean wasFound = false;
+        Map<String, Collection<String>> hash2Paths = new HashMap<String, Collection<String>>();
 
-            for (int docNum = matchingDocuments.nextSetBit(0); docNum >= 0; docNum = matchingDocuments.nextSetBit(docNum + 1)) {
-                if (cancel.get()) return Collections.emptyMap();
+        for (Entry<Integer, String> e : doc2Hash.entrySet()) {
+            if (cancel.get()) return Collections.emptyMap();
 
-                final Document doc = reader.document(docNum);
+            Document doc = reader.document(e.getKey(), PATH_SELECTOR);
+            Collection<String> found = hash2Paths.get(e.getValue());
 
-                found.addAll(Arrays.asList(doc.getValues("path")));
-                wasFound = true;
+            if (found == null) {
+                hash2Paths.put(e.getValue(), found = new LinkedList<String>());
             }
 
-            if (wasFound) {
+            found.addAll(Arrays.asList(doc.getValues("path")));
+        }
+
+        Map<String, Collection<? extends String>> result = new LinkedHashMap<String, Collection<? extends String>>();
+
+        for (String hash : hashes) {
+            Collection<String> found = hash2Paths.get(hash);
+
+            if (found != null) {
                 result.put(hash, found);
             }
         }
@@ -334,4 +345,10 @@ public class RemoteDuplicatesIndex {
         return result;
     }
 
+    private static final FieldSelector PATH_SELECTOR = new FieldSelector() {
+        @Override public FieldSelectorResult accept(String fieldName) {
+            return "path".equals(fieldName) ? FieldSelectorResult.LOAD : FieldSelectorResult.NO_LOAD;
+        }
+    };
+
 }
@@ -74,6 +74,18 @@ public class ComputeDuplicatesTest extends IndexTestBase {
                          "private void test() { java.io.File f = null; f.isDirectory(); }");
     }
 
+    public void testGeneralizedVariables() throws Exception {
+        writeFilesAndWaitForScan(src,
+                                 new File("test/Test1.java", "package test; public class Test1 { private void test(java.io.File i) { java.io.File f = i; f.isDirectory(); i.isDirectory(); } }"),
+                                 new File("test/Test2.java", "package test; public class Test2 { private int a; private void test(java.io.File j) { java.io.File g = j; g.isDirectory(); j.isDirectory(); } }"),
+                                 new File("test/Test3.java", "package test; public class Test3 { private void test(java.io.File i) { java.io.File f = i; f.isDirectory(); f.isDirectory(); } }"));
+
+        verifyDuplicates("test/Test1.java",
+                         "private void test(java.io.File i) { java.io.File f = i; f.isDirectory(); i.isDirectory(); }",
+                         "test/Test2.java",
+                         "private void test(java.io.File j) { java.io.File g = j; g.isDirectory(); j.isDirectory(); }");
+    }
+
     private void verifyDuplicates(String... fileAndDuplicateCode) throws Exception {
         Map<String, String> duplicatesGolden = new HashMap<String, String>();
 
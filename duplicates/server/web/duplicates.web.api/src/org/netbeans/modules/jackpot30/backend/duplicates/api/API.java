@@ -20,6 +20,10 @@
 package org.netbeans.modules.jackpot30.backend.duplicates.api;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -27,19 +31,33 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.document.FieldSelectorResult;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.OpenBitSet;
 import org.codeviation.pojson.Pojson;
 import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.Metrics;
 import org.netbeans.modules.parsing.lucene.support.Convertor;
 import org.netbeans.modules.parsing.lucene.support.Index;
 
@@ -81,6 +99,7 @@ public class API {
                         return "duplicatesPath".equals(fieldName) ? FieldSelectorResult.LOAD : FieldSelectorResult.NO_LOAD;
                     }
                 }, new AtomicBoolean(), query);
+                Metrics.luceneQuery(key, files.size());
                 Map<String, Collection<? extends String>> segment2Contains = hash2Segment2Contains.get(hash);
                 if (segment2Contains == null) {
                     hash2Segment2Contains.put(hash, segment2Contains = new HashMap<String, Collection<? extends String>>());
@@ -92,4 +111,122 @@ public class API {
         return Pojson.save(hash2Segment2Contains);
     }
 
+    /**Streaming variant of {@link #findDuplicates(java.lang.String, java.lang.String)}.
+     * The hashes are read from the request, one per line. For each occurrence,
+     * a line with the hash, segment and relative path (separated by tabs) is
+     * written, at most {@code limit} lines per hash. The occurrences are written
+     * segment by segment, once the segment's index has been queried.
+     */
+    @POST
+    @Path("/findDuplicatesStream")
+    @Consumes("text/plain")
+    @Produces("text/plain")
+    public StreamingOutput findDuplicatesStream(@QueryParam("path") String segment, @QueryParam("limit") @DefaultValue("-1") final int limit, String hashes) {
+        final Collection<String> segments = new LinkedList<String>();
+
+        if (segment != null) segments.add(segment);
+        else {
+            for (CategoryStorage cat : CategoryStorage.listCategories()) {
+                segments.add(cat.getId());
+            }
+        }
+
+        final SortedSet<String> sortedHashes = new TreeSet<String>();
+
+        for (String hash : hashes.split("\n")) {
+            hash = hash.trim();
+
+            if (!hash.isEmpty()) {
+                sortedHashes.add(hash);
+            }
+        }
+
+        return new StreamingOutput() {
+            @Override public void write(OutputStream output) throws IOException, WebApplicationException {
+                final Writer out = new OutputStreamWriter(output, "UTF-8");
+                final Map<String, int[]> hash2Count = new HashMap<String, int[]>();
+
+                for (final String key : segments) {
+                    if (sortedHashes.isEmpty()) break;
+
+                    //the index is locked while it is queried, so the matches are written only after the query:
+                    final List<String> matches = new ArrayList<String>();
+
+                    try {
+                        CategoryStorage.forId(key).getIndex().query(new ArrayList<Object>(), new Convertor<Document, Object>() {
+                            @Override public Object convert(Document p) {
+                                String path = p.get("duplicatesPath");
+
+                                for (String hash : p.getValues("duplicatesGeneralized")) {
+                                    if (!sortedHashes.contains(hash)) continue;
+
+                                    int[] count = hash2Count.get(hash);
+
+                                    if (count == null) {
+                                        hash2Count.put(hash, count = new int[1]);
+                                    }
+
+                                    if (limit >= 0 && count[0] >= limit) continue;
+
+                                    count[0]++;
+                                    matches.add(hash + '\t' + key + '\t' + path + '\n');
+                                }
+
+                                return null;
+                            }
+                        }, new FieldSelector() {
+                            @Override public FieldSelectorResult accept(String fieldName) {
+                                return "duplicatesPath".equals(fieldName) || "duplicatesGeneralized".equals(fieldName) ? FieldSelectorResult.LOAD : FieldSelectorResult.NO_LOAD;
+                            }
+                        }, new AtomicBoolean(), new ConstantScoreQuery(new HashesFilter(sortedHashes)));
+                    } catch (InterruptedException ex) {
+                        throw new InterruptedIOException(ex.getMessage());
+                    }
+
+                    Metrics.luceneQuery(key, matches.size());
+
+                    for (String match : matches) {
+                        out.write(match);
+                    }
+
+                    out.flush();
+                }
+
+                out.flush();
+            }
+        };
+    }
+
+    /**Matches documents containing any of the given hashes. The (sorted) hashes
+     * are looked up using a single {@link TermDocs}, which then advances through
+     * the term dictionary sequentially, instead of one query per hash.
+     */
+    private static final class HashesFilter extends Filter {
+        private final SortedSet<String> sortedHashes;
+
+        public HashesFilter(SortedSet<String> sortedHashes) {
+            this.sortedHashes = sortedHashes;
+        }
+
+        @Override
+        public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+            OpenBitSet result = new OpenBitSet(reader.maxDoc());
+            TermDocs termDocs = reader.termDocs();
+
+            try {
+                for (String hash : sortedHashes) {
+                    termDocs.seek(new Term("duplicatesGeneralized", hash));
+
+                    while (termDocs.next()) {
+                        result.set(termDocs.doc());
+                    }
+                }
+            } finally {
+                termDocs.close();
+            }
+
+            return result;
+        }
+    }
+
 }
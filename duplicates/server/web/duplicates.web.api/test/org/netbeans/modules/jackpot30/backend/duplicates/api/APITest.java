@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.duplicates.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+
+/**
+ *
+ * @author lahvac
+ */
+public class APITest extends TestCase {
+
+    public APITest(String name) {
+        super(name);
+    }
+
+    private File cacheRoot;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cacheRoot = File.createTempFile("duplicates", "cache");
+        cacheRoot.delete();
+
+        IndexWriter w = new IndexWriter(FSDirectory.open(new File(new File(cacheRoot, "test"), "index")), new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+
+        try {
+            w.addDocument(document("src/A.java", "h1", "h2"));
+            w.addDocument(document("src/B.java", "h1"));
+            w.addDocument(document("src/C.java", "h1", "h3"));
+        } finally {
+            w.close();
+        }
+
+        CategoryStorage.setCacheRoot(cacheRoot);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(cacheRoot);
+        super.tearDown();
+    }
+
+    public void testStream() throws Exception {
+        assertEquals(Arrays.asList("h1\ttest\tsrc/A.java",
+                                   "h1\ttest\tsrc/B.java",
+                                   "h1\ttest\tsrc/C.java",
+                                   "h2\ttest\tsrc/A.java"),
+                     stream(-1, "h2\nh1\n\nunknown\n"));
+        assertEquals(Collections.emptyList(), stream(-1, "unknown\n"));
+    }
+
+    public void testLimit() throws Exception {
+        assertEquals(Arrays.asList("h1\ttest\tsrc/A.java",
+                                   "h1\ttest\tsrc/B.java",
+                                   "h2\ttest\tsrc/A.java"),
+                     stream(2, "h1\nh2\n"));
+        assertEquals(Collections.emptyList(), stream(0, "h1\nh2\n"));
+    }
+
+    private static List<String> stream(int limit, String hashes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new API().findDuplicatesStream("test", limit, hashes).write(out);
+
+        String content = new String(out.toByteArray(), "UTF-8");
+
+        if (content.isEmpty()) return Collections.emptyList();
+
+        assertTrue(content, content.endsWith("\n"));
+
+        List<String> lines = Arrays.asList(content.substring(0, content.length() - 1).split("\n"));
+
+        Collections.sort(lines);
+
+        return lines;
+    }
+
+    private static Document document(String path, String... hashes) {
+        Document doc = new Document();
+
+        doc.add(new Field("duplicatesPath", path, Store.YES, Index.NO));
+
+        for (String hash : hashes) {
+            doc.add(new Field("duplicatesGeneralized", hash, Store.YES, Index.NOT_ANALYZED));
+        }
+
+        return doc;
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+
+        file.delete();
+    }
+}
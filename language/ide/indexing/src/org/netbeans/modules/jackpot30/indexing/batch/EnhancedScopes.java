@@ -26,6 +26,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -37,6 +38,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +59,9 @@ import org.netbeans.api.java.source.Task;
 import org.netbeans.modules.jackpot30.indexing.index.IndexQuery;
 import org.netbeans.modules.jackpot30.indexing.index.Indexer;
 import org.netbeans.modules.jackpot30.remoting.api.RemoteIndex;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest.LineHandler;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest.ResponseCodeException;
 import org.netbeans.modules.jackpot30.remoting.api.WebUtilities;
 import static org.netbeans.modules.jackpot30.remoting.api.WebUtilities.escapeForQuery;
 import org.netbeans.modules.java.hints.providers.spi.HintDescription;
@@ -288,20 +294,77 @@ public class EnhancedScopes {
         
     }
 
-    private static boolean isAttributedIndexWithSpans(RemoteIndex remoteIndex) {
-        try {
-            URI capabilitiesURI = new URI(remoteIndex.remote.toExternalForm() + "/capabilities");
-            String capabilitiesString = WebUtilities.requestStringResponse(capabilitiesURI);
+    private static final long CAPABILITIES_CACHE_TIME = Long.getLong("jackpot.remote.capabilities.cacheTime", 5 * 60 * 1000);
+    private static final String SEARCH = "language/search";
+    private static final String SEARCH_SPANS = "language/searchSpans";
+    private static final String SEARCH_SPANS_BATCH = "language/searchSpansBatch";
+    private static final int SPANS_BATCH_SIZE = 256;
+    private static final Map<String, CachedCapabilities> CAPABILITIES = new HashMap<String, CachedCapabilities>();
+
+    static boolean isAttributedIndexWithSpans(RemoteIndex remoteIndex) {
+        CachedCapabilities capabilities = capabilities(remoteIndex);
+
+        return capabilities.capabilities.get("attributed") == Boolean.TRUE && capabilities.supports(SEARCH) && capabilities.supports(SEARCH_SPANS);
+    }
 
-            if (capabilitiesURI == null) return false;
+    private static CachedCapabilities capabilities(RemoteIndex remoteIndex) {
+        String key = remoteIndex.remote.toExternalForm();
 
-            @SuppressWarnings("unchecked")
-            Map<String, Object> capabilities = Pojson.load(HashMap.class, capabilitiesString);
+        synchronized (CAPABILITIES) {
+            CachedCapabilities cached = CAPABILITIES.get(key);
 
-            return capabilities.get("attributed") == Boolean.TRUE; //TODO: should also check "methods contains findWithSpans"
+            if (cached != null && System.currentTimeMillis() - cached.timeStamp < CAPABILITIES_CACHE_TIME) {
+                return cached;
+            }
+        }
+
+        Map<String, Object> capabilities = Collections.emptyMap();
+
+        try {
+            URI capabilitiesURI = new URI(key + "/capabilities");
+            String capabilitiesString = WebUtilities.requestStringResponse(capabilitiesURI);
+
+            if (capabilitiesString != null) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> loaded = Pojson.load(HashMap.class, capabilitiesString);
+                capabilities = loaded;
+            }
         } catch (URISyntaxException ex) {
             LOG.log(Level.FINE, null, ex);
-            return false;
+        }
+
+        //also failures are cached, so that an unresponsive server is not asked over and over again:
+        CachedCapabilities result = new CachedCapabilities(capabilities);
+
+        synchronized (CAPABILITIES) {
+            CAPABILITIES.put(key, result);
+        }
+
+        return result;
+    }
+
+    /**For tests: the next query asks the remote indices for their capabilities again.
+     */
+    static void clearCapabilities() {
+        synchronized (CAPABILITIES) {
+            CAPABILITIES.clear();
+        }
+    }
+
+    private static final class CachedCapabilities {
+        private final long timeStamp = System.currentTimeMillis();
+        private final Map<String, Object> capabilities;
+        private volatile boolean spansBatchUnsupported;
+
+        public CachedCapabilities(Map<String, Object> capabilities) {
+            this.capabilities = capabilities;
+            this.spansBatchUnsupported = !supports(SEARCH_SPANS_BATCH);
+        }
+
+        public boolean supports(String method) {
+            Object methods = capabilities.get("methods");
+
+            return methods instanceof Collection && ((Collection<?>) methods).contains(method);
         }
     }
 
@@ -368,7 +431,7 @@ public class EnhancedScopes {
 
     }
 
-    private static final class RemoteFullyAttributedIndexEnquirer extends IndexEnquirer {
+    static final class RemoteFullyAttributedIndexEnquirer extends IndexEnquirer {
         private final RemoteIndex remoteIndex;
         private final String textualHintRepresentation;
         public RemoteFullyAttributedIndexEnquirer(FileObject src, RemoteIndex remoteIndex, String textualHintRepresentation) {
@@ -383,9 +446,17 @@ public class EnhancedScopes {
             progress.startNextPart(1);
 
             try {
-                URI u = new URI(remoteIndex.remote.toExternalForm() + "/find?path=" + escapeForQuery(remoteIndex.remoteSegment) + "&pattern=" + escapeForQuery(textualHintRepresentation));
+                URI u = new URI(remoteIndex.remote.toExternalForm() + "/" + SEARCH + "?path=" + escapeForQuery(remoteIndex.remoteSegment) + "&pattern=" + escapeForQuery(textualHintRepresentation));
+                Collection<? extends String> occurrences = WebUtilities.requestStringArrayResponse(u);
+
+                if (occurrences == null) {
+                    LOG.log(Level.INFO, "Cannot search {0}", remoteIndex.remote);
+                    return result;
+                }
+
+                for (String occurrence : occurrences) {
+                    if (occurrence.isEmpty()) continue;
 
-                for (String occurrence : new ArrayList<String>(WebUtilities.requestStringArrayResponse(u))) {
                     try {
                         BulkPattern bp = bulkPattern.call();
                         result.add(new Resource(this, occurrence, hints, bp, settingsProvider));
@@ -404,28 +475,121 @@ public class EnhancedScopes {
 
         @Override
         public void validateResource(Collection<? extends Resource> resources, ProgressHandleWrapper progress, VerifiedSpansCallBack callback, boolean doNotRegisterClassPath, Collection<? super MessageImpl> problems, AtomicBoolean cancel) {
+            Map<String, Resource> toVerify = new LinkedHashMap<String, Resource>();
+
             for (Resource r : resources) {
-                try {
-                    URI spanURI = new URI(remoteIndex.remote.toExternalForm() + "/findSpans?path=" + escapeForQuery(remoteIndex.remoteSegment) + "&relativePath=" + escapeForQuery(r.getRelativePath()) + "&pattern=" + escapeForQuery(textualHintRepresentation));
-                    FileObject fo = r.getResolvedFile();
+                if (r.getResolvedFile() == null) {
+                    callback.cannotVerifySpan(r);
+                } else {
+                    toVerify.put(r.getRelativePath(), r);
+                }
+            }
 
-                    if (fo == null) {
-                        callback.cannotVerifySpan(r);
-                    } else {
-                        List<ErrorDescription> result = new ArrayList<ErrorDescription>();
+            List<String> relativePaths = new ArrayList<String>(toVerify.keySet());
+
+            for (int start = 0; start < relativePaths.size() && !cancel.get(); start += SPANS_BATCH_SIZE) {
+                List<String> batch = relativePaths.subList(start, Math.min(relativePaths.size(), start + SPANS_BATCH_SIZE));
 
-                        for (int[] span : parseSpans(WebUtilities.requestStringResponse(spanURI))) {
-                            result.add(ErrorDescriptionFactory.createErrorDescription(Severity.WARNING, "Occurrence", fo, span[0], span[1]));
+                if (!validateBatch(batch, toVerify, callback, cancel)) {
+                    validateOneByOne(batch, toVerify, callback);
+                }
+            }
+        }
+
+        /**Verifies spans of all the given files using a single request.
+         *
+         * @return false if the remote index does not support batch span verification
+         */
+        private boolean validateBatch(List<String> relativePaths, final Map<String, Resource> toVerify, final VerifiedSpansCallBack callback, AtomicBoolean cancel) {
+            CachedCapabilities capabilities = capabilities(remoteIndex);
+
+            if (capabilities.spansBatchUnsupported) return false;
+
+            final Set<String> unverified = new LinkedHashSet<String>(relativePaths);
+            StringBuilder content = new StringBuilder();
+
+            for (String relativePath : relativePaths) {
+                content.append(relativePath).append('\n');
+            }
+
+            try {
+                URI spansURI = new URI(remoteIndex.remote.toExternalForm() + "/" + SEARCH_SPANS_BATCH + "?path=" + escapeForQuery(remoteIndex.remoteSegment) + "&pattern=" + escapeForQuery(textualHintRepresentation));
+
+                RemoteRequest.post(spansURI, content.toString()).timeout(WebUtilities.REMOTE_INDEX_TIMEOUT).cancel(cancel).execute(new LineHandler() {
+                    @Override public void line(String line) {
+                        int tab = line.indexOf('\t');
+
+                        if (tab == (-1)) return;
+
+                        String relativePath = line.substring(0, tab);
+
+                        if (!unverified.remove(relativePath)) return;
+
+                        try {
+                            spansVerified(toVerify.get(relativePath), line.substring(tab + 1), callback);
+                        } catch (Exception ex) {
+                            Exceptions.printStackTrace(ex);
                         }
+                    }
+                });
+            } catch (URISyntaxException ex) {
+                Exceptions.printStackTrace(ex);
+            } catch (ResponseCodeException ex) {
+                if (ex.getResponseCode() == 404 || ex.getResponseCode() == 405) {
+                    LOG.log(Level.FINE, "Batch span verification not supported by: {0}", remoteIndex.remote);
+                    capabilities.spansBatchUnsupported = true;
+                } else {
+                    //possibly transient, the batch endpoint is tried again for the next request:
+                    LOG.log(Level.INFO, remoteIndex.remote.toExternalForm(), ex);
+                }
+                validateOneByOne(new ArrayList<String>(unverified), toVerify, callback);
+                return true;
+            } catch (InterruptedIOException ex) {
+                LOG.log(Level.FINE, null, ex);
+            } catch (IOException ex) {
+                LOG.log(Level.INFO, remoteIndex.remote.toExternalForm(), ex);
+            }
+
+            if (!cancel.get()) {
+                for (String relativePath : unverified) {
+                    callback.cannotVerifySpan(toVerify.get(relativePath));
+                }
+            }
+
+            return true;
+        }
+
+        private void validateOneByOne(List<String> relativePaths, Map<String, Resource> toVerify, VerifiedSpansCallBack callback) {
+            for (String relativePath : relativePaths) {
+                Resource r = toVerify.get(relativePath);
 
-                        callback.spansVerified(null, r, result);
+                try {
+                    URI spanURI = new URI(remoteIndex.remote.toExternalForm() + "/" + SEARCH_SPANS + "?path=" + escapeForQuery(remoteIndex.remoteSegment) + "&relativePath=" + escapeForQuery(r.getRelativePath()) + "&pattern=" + escapeForQuery(textualHintRepresentation));
+                    String spans = WebUtilities.requestStringResponse(spanURI);
+
+                    if (spans == null) {
+                        callback.cannotVerifySpan(r);
+                        continue;
                     }
+
+                    spansVerified(r, spans, callback);
                 } catch (Exception ex) {
                     Exceptions.printStackTrace(ex);
                 }
             }
         }
 
+        private void spansVerified(Resource r, String spans, VerifiedSpansCallBack callback) throws Exception {
+            FileObject fo = r.getResolvedFile();
+            List<ErrorDescription> result = new ArrayList<ErrorDescription>();
+
+            for (int[] span : parseSpans(spans.trim())) {
+                result.add(ErrorDescriptionFactory.createErrorDescription(Severity.WARNING, "Occurrence", fo, span[0], span[1]));
+            }
+
+            callback.spansVerified(null, r, result);
+        }
+
     }
 
     private static Iterable<int[]> parseSpans(String from) {
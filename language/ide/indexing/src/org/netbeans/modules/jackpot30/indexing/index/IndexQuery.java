@@ -33,7 +33,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.DataFormatException;
-import org.apache.lucene.analysis.KeywordAnalyzer;
 import org.apache.lucene.document.CompressionTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldSelector;
@@ -50,11 +49,11 @@ import org.netbeans.modules.jackpot30.remoting.api.RemoteIndex;
 import org.netbeans.modules.jackpot30.remoting.api.WebUtilities;
 import org.netbeans.modules.java.hints.providers.spi.HintDescription.AdditionalQueryConstraints;
 import org.netbeans.modules.java.hints.spiimpl.pm.BulkSearch;
+import org.netbeans.modules.jackpot30.indexing.index.SharedIndexes.SharedIndex;
 import org.netbeans.modules.java.hints.spiimpl.pm.BulkSearch.BulkPattern;
 import org.netbeans.modules.parsing.lucene.support.Convertor;
 import org.netbeans.modules.parsing.lucene.support.Index;
 import org.netbeans.modules.parsing.lucene.support.Index.Status;
-import org.netbeans.modules.parsing.lucene.support.IndexManager;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.util.Exceptions;
@@ -171,20 +170,24 @@ public abstract class IndexQuery {
         }
 
         private Map<String, Map<String, Integer>> findCandidates(BulkPattern pattern, boolean withFrequencies) throws IOException {
-            Index index = IndexManager.createIndex(cacheDir, new KeywordAnalyzer());
-
-            if (index.getStatus(true) != Status.VALID) {
-                 return Collections.emptyMap();
+            if (cacheDir == null) {
+                return Collections.emptyMap();
             }
 
+            SharedIndex index = SharedIndexes.acquire(cacheDir);
+
             try {
-                return performLocalQuery(index, pattern, withFrequencies);
+                if (index.index.getStatus(true) != Status.VALID) {
+                     return Collections.emptyMap();
+                }
+
+                return performLocalQuery(index.index, pattern, withFrequencies);
             } catch (InterruptedException ex) {
                 throw new IOException(ex);
             } catch (ParseException ex) {
                 throw new IOException(ex);
             } finally {
-                index.close();
+                SharedIndexes.release(index);
             }
         }
 
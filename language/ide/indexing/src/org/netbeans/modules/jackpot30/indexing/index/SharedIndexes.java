@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.indexing.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.index.SegmentInfos;
+import org.netbeans.modules.parsing.lucene.support.Index;
+import org.netbeans.modules.parsing.lucene.support.IndexManager;
+
+/**Reference counted {@link Index}es, shared between all the local queries
+ * (including concurrent ones). An index is reopened only when the indexer
+ * committed new data into it, and closed when it is no longer used, or when
+ * too many unused indices are open.
+ *
+ * @author lahvac
+ */
+final class SharedIndexes {
+
+    private static final int MAX_IDLE = Integer.getInteger("jackpot.index.maxIdle", 64);
+
+    private static final Map<File, SharedIndex> CURRENT = new HashMap<File, SharedIndex>();
+    private static final Map<File, SharedIndex> IDLE = new LinkedHashMap<File, SharedIndex>(16, 0.75f, true);
+
+    private SharedIndexes() {}
+
+    static SharedIndex acquire(File cacheDir) throws IOException {
+        long generation = commitGeneration(cacheDir);
+        List<SharedIndex> toClose = new ArrayList<SharedIndex>();
+        SharedIndex result;
+
+        synchronized (CURRENT) {
+            result = CURRENT.get(cacheDir);
+
+            if (result != null && result.generation != generation) {
+                //new data committed by the indexer:
+                CURRENT.remove(cacheDir);
+                result.stale = true;
+
+                if (IDLE.remove(cacheDir) != null) {
+                    toClose.add(result);
+                }
+
+                result = null;
+            }
+
+            if (result == null) {
+                result = new SharedIndex(cacheDir, generation, IndexManager.createIndex(cacheDir, new KeywordAnalyzer()));
+                CURRENT.put(cacheDir, result);
+            }
+
+            IDLE.remove(cacheDir);
+            result.refCount++;
+        }
+
+        close(toClose);
+
+        return result;
+    }
+
+    static void release(SharedIndex index) throws IOException {
+        List<SharedIndex> toClose = new ArrayList<SharedIndex>();
+
+        synchronized (CURRENT) {
+            if (--index.refCount > 0) return;
+
+            if (index.stale) {
+                toClose.add(index);
+            } else {
+                IDLE.put(index.cacheDir, index);
+
+                for (Iterator<SharedIndex> it = IDLE.values().iterator(); it.hasNext() && IDLE.size() > MAX_IDLE; ) {
+                    SharedIndex eldest = it.next();
+
+                    it.remove();
+                    CURRENT.remove(eldest.cacheDir);
+                    toClose.add(eldest);
+                }
+            }
+        }
+
+        close(toClose);
+    }
+
+    private static void close(List<SharedIndex> toClose) throws IOException {
+        for (SharedIndex index : toClose) {
+            index.index.close();
+        }
+    }
+
+    private static long commitGeneration(File cacheDir) {
+        String[] files = cacheDir.list();
+
+        return files != null ? SegmentInfos.getLastCommitGeneration(files) : -1;
+    }
+
+    static final class SharedIndex {
+        private final File cacheDir;
+        private final long generation;
+        final Index index;
+        private int refCount;
+        private boolean stale;
+
+        private SharedIndex(File cacheDir, long generation, Index index) {
+            this.cacheDir = cacheDir;
+            this.generation = generation;
+            this.index = index;
+        }
+    }
+}
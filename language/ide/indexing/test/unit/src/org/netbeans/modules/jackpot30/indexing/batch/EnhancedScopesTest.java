@@ -0,0 +1,244 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.indexing.batch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.netbeans.api.java.source.CompilationController;
+import org.netbeans.junit.NbTestCase;
+import org.netbeans.modules.jackpot30.indexing.batch.EnhancedScopes.RemoteFullyAttributedIndexEnquirer;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteIndex;
+import org.netbeans.modules.java.hints.providers.spi.HintDescription;
+import org.netbeans.modules.java.hints.spiimpl.MessageImpl;
+import org.netbeans.modules.java.hints.spiimpl.batch.BatchSearch.Resource;
+import org.netbeans.modules.java.hints.spiimpl.batch.BatchSearch.VerifiedSpansCallBack;
+import org.netbeans.spi.editor.hints.ErrorDescription;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ * @author lahvac
+ */
+public class EnhancedScopesTest extends NbTestCase {
+
+    public EnhancedScopesTest(String name) {
+        super(name);
+    }
+
+    private HttpServer server;
+    private RemoteIndex index;
+    private FileObject src;
+    private volatile int batchResponseCode;
+    private volatile String capabilities;
+    private final AtomicInteger capabilitiesRequests = new AtomicInteger();
+    private final AtomicInteger batchRequests = new AtomicInteger();
+    private final AtomicInteger singleRequests = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clearWorkDir();
+        src = FileUtil.toFileObject(FileUtil.normalizeFile(getWorkDir()));
+        FileUtil.createData(src, "test/A.java");
+        FileUtil.createData(src, "test/B.java");
+        batchResponseCode = 200;
+        capabilities = "{\"attributed\": true, \"methods\": [\"language/search\", \"language/searchSpans\", \"language/searchSpansBatch\"]}";
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/index/capabilities", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                capabilitiesRequests.incrementAndGet();
+                respond(exchange, 200, capabilities);
+            }
+        });
+        server.createContext("/index/language/searchSpansBatch", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                batchRequests.incrementAndGet();
+
+                if (batchResponseCode != 200) {
+                    respond(exchange, batchResponseCode, "");
+                    return ;
+                }
+
+                StringBuilder response = new StringBuilder();
+
+                for (String relativePath : read(exchange.getRequestBody()).split("\n")) {
+                    if (!relativePath.isEmpty()) {
+                        response.append(relativePath).append("\t\n");
+                    }
+                }
+
+                respond(exchange, 200, response.toString());
+            }
+        });
+        server.createContext("/index/language/searchSpans", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                singleRequests.incrementAndGet();
+                //B.java cannot be verified by the server:
+                respond(exchange, exchange.getRequestURI().getQuery().contains("B.java") ? 500 : 200, "");
+            }
+        });
+        server.start();
+        index = RemoteIndex.create(null, new URL("http://localhost:" + server.getAddress().getPort() + "/index"), "test");
+        EnhancedScopes.clearCapabilities();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop(0);
+        super.tearDown();
+    }
+
+    public void testBatch() throws Exception {
+        Result result = validate();
+
+        assertEquals(Arrays.asList("test/A.java", "test/B.java"), result.verified);
+        assertEquals(Collections.emptyList(), result.cannotVerify);
+        assertEquals(1, batchRequests.get());
+        assertEquals(0, singleRequests.get());
+    }
+
+    public void testFallbackWhenUnsupported() throws Exception {
+        batchResponseCode = 404;
+
+        Result result = validate();
+
+        assertEquals(Arrays.asList("test/A.java"), result.verified);
+        assertEquals(Arrays.asList("test/B.java"), result.cannotVerify);
+        assertEquals(1, batchRequests.get());
+        assertEquals(2, singleRequests.get());
+
+        //the batch endpoint is not tried again:
+        validate();
+        assertEquals(1, batchRequests.get());
+        assertEquals(4, singleRequests.get());
+    }
+
+    public void testFallbackOnServerError() throws Exception {
+        batchResponseCode = 503;
+
+        Result result = validate();
+
+        assertEquals(Arrays.asList("test/A.java"), result.verified);
+        assertEquals(Arrays.asList("test/B.java"), result.cannotVerify);
+        assertEquals(1, batchRequests.get());
+        assertEquals(2, singleRequests.get());
+
+        //a transient error, the batch endpoint is used again:
+        batchResponseCode = 200;
+
+        result = validate();
+
+        assertEquals(Arrays.asList("test/A.java", "test/B.java"), result.verified);
+        assertEquals(2, batchRequests.get());
+        assertEquals(2, singleRequests.get());
+    }
+
+    public void testBatchNotAdvertised() throws Exception {
+        capabilities = "{\"attributed\": true, \"methods\": [\"language/search\", \"language/searchSpans\"]}";
+
+        Result result = validate();
+
+        assertEquals(Arrays.asList("test/A.java"), result.verified);
+        assertEquals(Arrays.asList("test/B.java"), result.cannotVerify);
+        assertEquals(0, batchRequests.get());
+        assertEquals(2, singleRequests.get());
+    }
+
+    public void testNotAttributedWithoutSpans() throws Exception {
+        capabilities = "{\"attributed\": true}";
+
+        assertFalse(EnhancedScopes.isAttributedIndexWithSpans(index));
+    }
+
+    public void testCapabilitiesCached() throws Exception {
+        assertTrue(EnhancedScopes.isAttributedIndexWithSpans(index));
+        assertTrue(EnhancedScopes.isAttributedIndexWithSpans(index));
+        validate();
+        assertEquals(1, capabilitiesRequests.get());
+
+        EnhancedScopes.clearCapabilities();
+
+        assertTrue(EnhancedScopes.isAttributedIndexWithSpans(index));
+        assertEquals(2, capabilitiesRequests.get());
+    }
+
+    private Result validate() throws Exception {
+        RemoteFullyAttributedIndexEnquirer enquirer = new RemoteFullyAttributedIndexEnquirer(src, index, "$1.isDirectory();;\n");
+        List<Resource> resources = new ArrayList<Resource>();
+
+        for (String relativePath : new String[] {"test/A.java", "test/B.java"}) {
+            resources.add(new Resource(enquirer, relativePath, Collections.<HintDescription>emptyList(), null, null));
+        }
+
+        final Result result = new Result();
+
+        enquirer.validateResource(resources, null, new VerifiedSpansCallBack() {
+            @Override public void groupStarted() {}
+            @Override public boolean spansVerified(CompilationController wc, Resource r, Collection<? extends ErrorDescription> hints) throws Exception {
+                result.verified.add(r.getRelativePath());
+                return true;
+            }
+            @Override public void groupFinished() {}
+            @Override public void cannotVerifySpan(Resource r) {
+                result.cannotVerify.add(r.getRelativePath());
+            }
+        }, true, new ArrayList<MessageImpl>(), new AtomicBoolean());
+
+        return result;
+    }
+
+    private static final class Result {
+        private final List<String> verified = new ArrayList<String>();
+        private final List<String> cannotVerify = new ArrayList<String>();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+
+        while ((read = in.read(buffer)) != (-1)) {
+            out.write(buffer, 0, read);
+        }
+
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    private static void respond(HttpExchange exchange, int code, String content) throws IOException {
+        byte[] data = content.getBytes("UTF-8");
+
+        exchange.sendResponseHeaders(code, data.length);
+        exchange.getResponseBody().write(data);
+        exchange.close();
+    }
+}
@@ -36,6 +36,7 @@ import org.netbeans.api.java.source.SourceUtilsTestUtil;
 import org.netbeans.api.java.source.Task;
 import org.netbeans.api.java.source.TestUtilities;
 import org.netbeans.modules.jackpot30.common.test.IndexTestBase;
+import org.netbeans.modules.jackpot30.indexing.index.SharedIndexes.SharedIndex;
 import org.netbeans.modules.java.hints.providers.spi.HintDescription.AdditionalQueryConstraints;
 import org.netbeans.modules.java.hints.spiimpl.Utilities;
 import org.netbeans.modules.java.hints.spiimpl.pm.BulkSearch;
@@ -115,6 +116,32 @@ public class IndexerTest extends IndexTestBase {
 //        assertEquals(2, FileBasedIndex.get(src.getURL()).getIndexInfo().totalFiles);
     }
 
+    public void testIndexSharedUntilCommit() throws Exception {
+        writeFilesAndWaitForScan(src,
+                                 new File("test/Test1.java", "package test; public class Test1 { private void test() { java.io.File f = null; f.isDirectory(); } }"));
+
+        java.io.File cacheDir = FileUtil.toFile(Indexer.resolveCacheFolder(src.toURL()).getFileObject(Indexer.INDEX_NAME));
+        SharedIndex first = SharedIndexes.acquire(cacheDir);
+        SharedIndex second = SharedIndexes.acquire(cacheDir);
+
+        assertSame(first, second);
+
+        SharedIndexes.release(first);
+        SharedIndexes.release(second);
+
+        writeFilesAndWaitForScan(src,
+                                 new File("test/Test1.java", "package test; public class Test1 { private void test() { java.io.File f = null; f.isDirectory(); } }"),
+                                 new File("test/Test2.java", "package test; public class Test2 { private void test() { new javax.swing.ImageIcon(null); } }"));
+
+        SharedIndex third = SharedIndexes.acquire(cacheDir);
+
+        assertNotSame(first, third);
+
+        SharedIndexes.release(third);
+
+        verifyIndex(new String[] {"new ImageIcon($1)"}, "test/Test2.java");
+    }
+
     public void testPartiallyAttributed1() throws Exception {
         writeFilesAndWaitForScan(src,
                    new File("test/Test1.java", "package test; public class Test1 { private void test() { java.io.File f = null; f.isDirectory(); } }"),
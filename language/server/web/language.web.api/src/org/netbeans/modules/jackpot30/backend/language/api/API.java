@@ -22,6 +22,10 @@ package org.netbeans.modules.jackpot30.backend.language.api;
 import com.sun.source.tree.Tree;
 import com.sun.tools.javac.api.JavacTaskImpl;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,22 +34,29 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.tools.Diagnostic;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.SimpleJavaFileObject;
 import javax.tools.ToolProvider;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.lucene.queryParser.ParseException;
 import org.netbeans.api.java.source.CompilationInfoHack;
 import org.netbeans.lib.nbjavac.services.NBParserFactory;
 import org.netbeans.lib.nbjavac.services.NBTreeMaker;
 import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.Metrics;
 import org.netbeans.modules.jackpot30.indexing.index.IndexQuery;
 import org.netbeans.modules.jackpot30.resolve.api.CompilationInfo;
 import org.netbeans.modules.jackpot30.resolve.api.ResolveService;
@@ -81,6 +92,7 @@ public class API {
         BulkPattern bulkPattern = preparePattern(hints, null);
         StringBuilder sb = new StringBuilder();
         List<String> candidates = new ArrayList<String>(IndexQuery.performLocalQuery(category.getIndex(), bulkPattern, false).keySet());
+        Metrics.luceneQuery(segment, candidates.size());
         Collections.sort(candidates);
 
         for (String candidate : candidates) {
@@ -103,10 +115,55 @@ public class API {
     @Path("/searchSpans")
     @Produces("text/plain")
     public String findSpans(@QueryParam("path") String segment, @QueryParam("relativePath") String relativePath, @QueryParam("pattern") String pattern) throws IOException, InterruptedException {
+        return findSpans(segment, relativePath, PatternConvertor.create(pattern));
+    }
+
+    /**Finds spans in all the files listed (one relative path per line) in the request.
+     * For each file, one line with the relative path, tab and the spans is
+     * written as soon as the file is processed.
+     */
+    @POST
+    @Path("/searchSpansBatch")
+    @Consumes("text/plain")
+    @Produces("text/plain")
+    public StreamingOutput findSpansBatch(@QueryParam("path") final String segment, @QueryParam("pattern") String pattern, final String relativePaths) {
+        final Iterable<? extends HintDescription> hints = PatternConvertor.create(pattern);
+
+        return new StreamingOutput() {
+            @Override public void write(OutputStream output) throws IOException, WebApplicationException {
+                Writer out = new OutputStreamWriter(output, "UTF-8");
+
+                for (String relativePath : relativePaths.split("\n")) {
+                    relativePath = relativePath.trim();
+
+                    if (relativePath.isEmpty()) continue;
+
+                    String spans;
+
+                    try {
+                        spans = findSpans(segment, relativePath, hints);
+                    } catch (InterruptedException ex) {
+                        throw new InterruptedIOException(ex.getMessage());
+                    } catch (IOException ex) {
+                        //the file is skipped, the client will treat it as not verifiable:
+                        Logger.getLogger(API.class.getName()).log(Level.FINE, relativePath, ex);
+                        continue;
+                    }
+
+                    out.write(relativePath);
+                    out.write('\t');
+                    out.write(spans);
+                    out.write('\n');
+                    out.flush();
+                }
+            }
+        };
+    }
+
+    private static String findSpans(String segment, String relativePath, Iterable<? extends HintDescription> hints) throws IOException, InterruptedException {
         StringBuilder sb = new StringBuilder();
         CompilationInfo resolvedInfo = ResolveService.parse(segment, relativePath);
         CompilationInfoHack info = new CompilationInfoHack(resolvedInfo);
-        Iterable<? extends HintDescription> hints = PatternConvertor.create(pattern);
 
         List<ErrorDescription> computedHints = new HintsInvoker(HintsSettings.getGlobalSettings(), new AtomicBoolean()).computeHints(info, hints);
 
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.language.api;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import org.codeviation.pojson.Pojson;
+
+/**Describes what the remote index supports, so that the IDE can use the attributed
+ * search and span verification of {@link API}. The methods are relative to the index root.
+ *
+ * @author lahvac
+ */
+@Path("/index/capabilities")
+public class Capabilities {
+
+    static final String SEARCH = "language/search";
+    static final String SEARCH_SPANS = "language/searchSpans";
+    static final String SEARCH_SPANS_BATCH = "language/searchSpansBatch";
+
+    @GET
+    @Produces("text/plain")
+    public String capabilities() {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+
+        result.put("attributed", true);
+        result.put("methods", Arrays.asList(SEARCH, SEARCH_SPANS, SEARCH_SPANS_BATCH));
+
+        return Pojson.save(result);
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.language.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.Path;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.CompressionTools;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.codeviation.pojson.Pojson;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+
+/**
+ *
+ * @author lahvac
+ */
+public class APITest extends TestCase {
+
+    private static final String CODE_A = "package test; public class A { boolean t(java.io.File f) { return f.isDirectory(); } }";
+    private static final String CODE_B = "package test; public class B { }";
+    private static final String PATTERN = "$1.isDirectory();;\n";
+
+    public APITest(String name) {
+        super(name);
+    }
+
+    private File cacheRoot;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cacheRoot = File.createTempFile("language", "cache");
+        cacheRoot.delete();
+
+        File category = new File(cacheRoot, "test");
+
+        category.mkdirs();
+        write(new File(category, "segments"), "s0=rel:/src/\n");
+        write(new File(category, "classpath"), "");
+
+        IndexWriter w = new IndexWriter(FSDirectory.open(new File(category, "index")), new KeywordAnalyzer(), IndexWriter.MaxFieldLength.UNLIMITED);
+
+        try {
+            w.addDocument(document("src/test/A.java", CODE_A));
+            w.addDocument(document("src/test/B.java", CODE_B));
+        } finally {
+            w.close();
+        }
+
+        CategoryStorage.setCacheRoot(cacheRoot);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(cacheRoot);
+        super.tearDown();
+    }
+
+    public void testCapabilitiesMatchAPI() throws Exception {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> capabilities = Pojson.load(HashMap.class, new Capabilities().capabilities());
+
+        assertEquals(Boolean.TRUE, capabilities.get("attributed"));
+        assertEquals(Arrays.asList(Capabilities.SEARCH, Capabilities.SEARCH_SPANS, Capabilities.SEARCH_SPANS_BATCH), new ArrayList<Object>((List<?>) capabilities.get("methods")));
+
+        //the methods are relative to the index root, which is the parent of the capabilities resource:
+        String indexRoot = Capabilities.class.getAnnotation(Path.class).value().replaceAll("/capabilities$", "");
+        List<String> paths = new ArrayList<String>();
+
+        for (Method m : API.class.getMethods()) {
+            Path path = m.getAnnotation(Path.class);
+
+            if (path != null) {
+                paths.add(API.class.getAnnotation(Path.class).value() + path.value());
+            }
+        }
+
+        for (Object method : (List<?>) capabilities.get("methods")) {
+            assertTrue(paths.toString(), paths.contains(indexRoot + "/" + method));
+        }
+    }
+
+    public void testSpans() throws Exception {
+        String spans = new API().findSpans("test", "src/test/A.java", PATTERN);
+        int start = CODE_A.indexOf("f.isDirectory()");
+
+        assertEquals(start + ":" + (start + "f.isDirectory()".length()), spans);
+        assertEquals("", new API().findSpans("test", "src/test/B.java", PATTERN));
+
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+
+        new API().findSpansBatch("test", PATTERN, "src/test/A.java\n\nsrc/test/B.java\n").write(batch);
+
+        assertEquals("src/test/A.java\t" + spans + "\nsrc/test/B.java\t\n", new String(batch.toByteArray(), "UTF-8"));
+    }
+
+    private static Document document(String relativePath, String code) {
+        Document doc = new Document();
+
+        doc.add(new Field("relativePath", relativePath, Store.YES, Index.NOT_ANALYZED));
+        doc.add(new Field("content", CompressionTools.compressString(code), Store.YES));
+
+        return doc;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot.prs.handler.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**Keeps one working copy per repository. The working copy is updated by fetching
+ * and resetting, rather than by cloning the repository again.
+ *
+ * @author lahvac
+ */
+public class CheckoutCache {
+
+    private final File cacheRoot;
+
+    public CheckoutCache(File cacheRoot) {
+        this.cacheRoot = cacheRoot;
+    }
+
+    /**Fetches {@code ref} from {@code cloneURL} into the cached working copy of the given repository,
+     * and checks out {@code sha}. Untracked files are removed, but ignored files (like downloaded
+     * dependencies) are kept.
+     */
+    public File checkout(String repositoryName, String cloneURL, String ref, String sha) throws IOException, InterruptedException {
+        File workdir = new File(repositoryDir(repositoryName), "workdir");
+
+        if (!new File(workdir, ".git").isDirectory()) {
+            workdir.mkdirs();
+            git(workdir, "init", "-q");
+        }
+
+        git(workdir, "fetch", "-q", "--force", cloneURL, ref);
+        git(workdir, "checkout", "-q", "--force", "--detach", sha);
+        git(workdir, "reset", "-q", "--hard", sha);
+        git(workdir, "clean", "-q", "-f", "-d");
+
+        return workdir;
+    }
+
+    /**Runs {@code download} in the given working copy, unless it already succeeded for the same content
+     * of all files named {@code keyFileName} in the checked out revision.
+     *
+     * @return true if the download was run
+     */
+    public boolean downloadDependencies(File workdir, String kind, String keyFileName, ProcessBuilder download) throws IOException, InterruptedException {
+        String key = dependencyKey(workdir, keyFileName);
+        File marker = new File(workdir.getParentFile(), kind.replaceAll("[^A-Za-z0-9.-]", "_") + ".deps");
+
+        if (marker.canRead() && key.equals(new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8))) {
+            return false;
+        }
+
+        if (download.inheritIO().start().waitFor() == 0) {
+            Files.write(marker.toPath(), key.getBytes(StandardCharsets.UTF_8));
+        } else {
+            Files.deleteIfExists(marker.toPath());
+        }
+
+        return true;
+    }
+
+    private String dependencyKey(File workdir, String keyFileName) throws IOException, InterruptedException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+            for (String line : git(workdir, "ls-tree", "-r", "HEAD").split("\n")) {
+                //<mode> <type> <object>\t<path>
+                int tab = line.indexOf('\t');
+
+                if (tab == (-1)) continue;
+
+                String path = line.substring(tab + 1);
+
+                if (path.equals(keyFileName) || path.endsWith("/" + keyFileName)) {
+                    digest.update(line.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            StringBuilder result = new StringBuilder();
+
+            for (byte b : digest.digest()) {
+                result.append(String.format("%02x", b));
+            }
+
+            return result.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private File repositoryDir(String repositoryName) {
+        return new File(cacheRoot, repositoryName.replace('/', '_'));
+    }
+
+    private static String git(File workdir, String... args) throws IOException, InterruptedException {
+        List<String> cmdLine = new ArrayList<>();
+
+        cmdLine.add("git");
+        cmdLine.addAll(Arrays.asList(args));
+
+        Process git = new ProcessBuilder(cmdLine).directory(workdir).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (InputStream in = git.getInputStream()) {
+            in.transferTo(out);
+        }
+
+        if (git.waitFor() != 0) {
+            throw new IOException("failed: " + cmdLine);
+        }
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -94,11 +94,9 @@ public class HandlePullRequest extends OptionProcessor {
     }
 
     public static void processPullRequest(String inputData, String oauthToken, String oauthAppToken) throws Exception {
-        File tempDir = Places.getCacheSubdirectory("checkout");
+        CheckoutCache checkoutCache = new CheckoutCache(Places.getCacheSubdirectory("checkout"));
+        //only the actions handled by the webapp are queued:
         Map<String, Object> inputParsed = new ObjectMapper().readValue(inputData, Map.class);
-        Object action = inputParsed.get("action");
-        if (!"opened".equals(action))
-            return ;
         Map<String, Object> pullRequest = (Map<String, Object>) inputParsed.get("pull_request");
         if (pullRequest == null) {
             return ;
@@ -115,9 +113,8 @@ public class HandlePullRequest extends OptionProcessor {
         statusGithub.createCommitStatusPending(fullRepoName, sha, "Running Jackpot verification");
 
         String cloneURL = (String) headRepo.get("clone_url");
-        new ProcessBuilder("git", "clone", cloneURL, "workdir").directory(tempDir).inheritIO().start().waitFor();
-        FileObject workdir = FileUtil.toFileObject(new File(tempDir, "workdir"));
-        new ProcessBuilder("git", "checkout", sha).directory(FileUtil.toFile(workdir)).inheritIO().start().waitFor();
+        File workdirFile = checkoutCache.checkout(fullRepoName, cloneURL, (String) head.get("ref"), sha);
+        FileObject workdir = FileUtil.toFileObject(workdirFile);
         FileObject jlObject = workdir.getFileObject("src/java.base/share/classes/java/lang/Object.java");
         if (jlObject != null) {
             Project prj = FileOwnerQuery.getOwner(jlObject); //ensure external roots (tests) are registered
@@ -176,15 +173,16 @@ public class HandlePullRequest extends OptionProcessor {
         for (Project project : projects) {
             switch (project.getClass().getName()) {//XXX: ensure that the environment variables are dropped here!
                 case "org.netbeans.modules.maven.NbMavenProjectImpl":
-                    new ProcessBuilder("mvn", "dependency:go-offline").directory(FileUtil.toFile(project.getProjectDirectory())).inheritIO().start().waitFor();
+                    String projectPath = FileUtil.getRelativePath(workdir, project.getProjectDirectory());
+                    checkoutCache.downloadDependencies(workdirFile, "maven-" + projectPath, "pom.xml", new ProcessBuilder("mvn", "dependency:go-offline").directory(FileUtil.toFile(project.getProjectDirectory())));
                     break;
                 case "org.netbeans.modules.apisupport.project.NbModuleProject":
                     FileObject nbbuild = project.getProjectDirectory().getFileObject("../../nbbuild");
                     if (nbbuild == null) {
                         nbbuild = project.getProjectDirectory().getFileObject("../nbbuild");
                     }
-                    if (nbbuild != null) { //TODO: only once
-                        new ProcessBuilder("ant", "-autoproxy", "download-all-extbins").directory(FileUtil.toFile(nbbuild)).inheritIO().start().waitFor();
+                    if (nbbuild != null) {
+                        checkoutCache.downloadDependencies(workdirFile, "extbins", "binaries-list", new ProcessBuilder("ant", "-autoproxy", "download-all-extbins").directory(FileUtil.toFile(nbbuild)));
                     }
                     //TODO: download extbins!
                     break;
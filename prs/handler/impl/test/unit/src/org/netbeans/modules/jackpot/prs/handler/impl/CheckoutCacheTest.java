@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot.prs.handler.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author lahvac
+ */
+public class CheckoutCacheTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testFetchAndReset() throws Exception {
+        File origin = temp.newFolder("origin");
+        File bare = new File(temp.getRoot(), "bare.git");
+
+        git(origin, "init", "-q");
+        write(origin, ".gitignore", "deps/\n");
+        write(origin, "Test.java", "v1");
+        git(origin, "add", ".");
+        git(origin, "commit", "-q", "-m", "v1");
+        git(temp.getRoot(), "clone", "-q", "--bare", origin.getAbsolutePath(), bare.getAbsolutePath());
+        git(origin, "push", "-q", bare.getAbsolutePath(), "HEAD:refs/heads/pr");
+
+        CheckoutCache cache = new CheckoutCache(temp.newFolder("cache"));
+        File workdir = cache.checkout("test/repo", bare.getAbsolutePath(), "pr", git(origin, "rev-parse", "HEAD").trim());
+
+        assertEquals("v1", read(workdir, "Test.java"));
+
+        write(workdir, "deps/lib.jar", "lib");
+        write(workdir, "Untracked.java", "untracked");
+        write(workdir, "Test.java", "modified");
+
+        write(origin, "Test.java", "v2");
+        git(origin, "commit", "-q", "-a", "-m", "v2");
+        git(origin, "push", "-q", bare.getAbsolutePath(), "HEAD:refs/heads/pr");
+
+        assertEquals(workdir, cache.checkout("test/repo", bare.getAbsolutePath(), "pr", git(origin, "rev-parse", "HEAD").trim()));
+        assertEquals("v2", read(workdir, "Test.java"));
+        assertFalse(new File(workdir, "Untracked.java").exists());
+        assertEquals("lib", read(workdir, "deps/lib.jar"));
+    }
+
+    @Test
+    public void testDownloadDependencies() throws Exception {
+        File origin = temp.newFolder("origin");
+
+        git(origin, "init", "-q");
+        write(origin, "pom.xml", "v1");
+        write(origin, "sub/pom.xml", "v1");
+        write(origin, "Test.java", "v1");
+        git(origin, "add", ".");
+        git(origin, "commit", "-q", "-m", "v1");
+
+        CheckoutCache cache = new CheckoutCache(temp.newFolder("cache"));
+        File workdir = cache.checkout("test/repo", origin.getAbsolutePath(), "HEAD", git(origin, "rev-parse", "HEAD").trim());
+
+        assertTrue(cache.downloadDependencies(workdir, "maven", "pom.xml", new ProcessBuilder("true")));
+        assertFalse(cache.downloadDependencies(workdir, "maven", "pom.xml", new ProcessBuilder("true")));
+
+        write(origin, "Test.java", "v2");
+        git(origin, "commit", "-q", "-a", "-m", "v2");
+        workdir = cache.checkout("test/repo", origin.getAbsolutePath(), "HEAD", git(origin, "rev-parse", "HEAD").trim());
+
+        assertFalse(cache.downloadDependencies(workdir, "maven", "pom.xml", new ProcessBuilder("true")));
+
+        write(origin, "sub/pom.xml", "v2");
+        git(origin, "commit", "-q", "-a", "-m", "v3");
+        workdir = cache.checkout("test/repo", origin.getAbsolutePath(), "HEAD", git(origin, "rev-parse", "HEAD").trim());
+
+        assertTrue(cache.downloadDependencies(workdir, "maven", "pom.xml", new ProcessBuilder("false")));
+        assertTrue(cache.downloadDependencies(workdir, "maven", "pom.xml", new ProcessBuilder("true")));
+        assertFalse(cache.downloadDependencies(workdir, "maven", "pom.xml", new ProcessBuilder("true")));
+    }
+
+    private static void write(File dir, String path, String content) throws IOException {
+        File file = new File(dir, path);
+
+        file.getParentFile().mkdirs();
+
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File dir, String path) throws IOException {
+        return new String(Files.readAllBytes(new File(dir, path).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String git(File workdir, String... args) throws IOException, InterruptedException {
+        List<String> cmdLine = new ArrayList<>(Arrays.asList("git", "-c", "user.name=test", "-c", "user.email=test@example.com"));
+
+        cmdLine.addAll(Arrays.asList(args));
+
+        Process git = new ProcessBuilder(cmdLine).directory(workdir).redirectErrorStream(true).start();
+        String output = new String(git.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        assertEquals(output, 0, git.waitFor());
+
+        return output;
+    }
+}
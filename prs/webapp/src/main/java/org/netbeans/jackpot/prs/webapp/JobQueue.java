@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.jackpot.prs.webapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.prefs.Preferences;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**Runs the pull request handlers, at most "handler/maxConcurrentJobs" at a time. The content of a queued job
+ * is kept in the "queued" file in the pull request's run directory, so a newer push to the same pull request
+ * replaces the pending one, and the queue survives restarts. Jobs for the same repository never run concurrently,
+ * as they share the handler's checkout of the repository.
+ *
+ * @author lahvac
+ */
+public class JobQueue {
+
+    private static final JobQueue INSTANCE = new JobQueue();
+
+    public static JobQueue getDefault() {
+        return INSTANCE;
+    }
+
+    private final ExecutorService worker = Executors.newCachedThreadPool();
+    private final Map<Path, Job> pending = new LinkedHashMap<>();
+    private final Set<String> runningRepositories = new HashSet<>();
+    private int running;
+
+    public void schedule(String repositoryName, int prNumber, String data) throws IOException {
+        Path thisRunDir = runDir(repositoryName, prNumber);
+        Files.createDirectories(thisRunDir);
+        Path queued = thisRunDir.resolve("queued");
+        //concurrent deliveries for the same pull request must not share the temporary file:
+        Path newQueued = Files.createTempFile(thisRunDir, "queued", ".new");
+        try {
+            Files.write(newQueued, data.getBytes(StandardCharsets.UTF_8));
+            synchronized (this) {
+                Files.move(newQueued, queued, StandardCopyOption.REPLACE_EXISTING);
+                pending.putIfAbsent(thisRunDir, new Job(repositoryName, thisRunDir));
+            }
+        } finally {
+            Files.deleteIfExists(newQueued);
+        }
+        dispatch();
+    }
+
+    /**Re-schedules jobs that were queued when the application was stopped.
+     */
+    public void restore() throws IOException {
+        Path githubDir = Config.getDefault().getRunDir().resolve("github");
+        if (!Files.isDirectory(githubDir)) {
+            return ;
+        }
+        try (Stream<Path> queued = Files.find(githubDir, 4, (p, attrs) -> "queued".equals(p.getFileName().toString()))) {
+            synchronized (this) {
+                queued.forEach(q -> {
+                    Path thisRunDir = q.getParent();
+                    Path repository = githubDir.relativize(thisRunDir.getParent());
+                    pending.putIfAbsent(thisRunDir, new Job(repository.toString().replace('\\', '/'), thisRunDir));
+                });
+            }
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        int maxConcurrentJobs = Math.max(1, Config.getDefault().getPreferences().node("handler").getInt("maxConcurrentJobs", 2));
+        synchronized (this) {
+            for (Iterator<Job> it = pending.values().iterator(); it.hasNext() && running < maxConcurrentJobs; ) {
+                Job job = it.next();
+                if (!runningRepositories.add(job.repositoryName)) {
+                    continue;
+                }
+                it.remove();
+                running++;
+                worker.execute(() -> {
+                    try {
+                        run(job);
+                    } catch (Throwable t) {
+                        WebApp.LOG.log(Level.SEVERE, null, t);
+                    } finally {
+                        synchronized (JobQueue.this) {
+                            running--;
+                            runningRepositories.remove(job.repositoryName);
+                        }
+                        dispatch();
+                    }
+                });
+            }
+        }
+    }
+
+    private void run(Job job) throws IOException {
+        Path thisRunDir = job.runDir;
+        String data;
+        synchronized (this) {
+            Path queued = thisRunDir.resolve("queued");
+            if (!Files.exists(queued)) {
+                return ;
+            }
+            data = new String(Files.readAllBytes(queued), StandardCharsets.UTF_8);
+            Files.delete(queued);
+        }
+        String[] userAndRepo = job.repositoryName.split("/");
+        Preferences handlerPrefs = Config.getDefault().getPreferences().node("handler");
+        String handler = handlerPrefs.get("handler", "handler.local");
+        String remoteHost = handlerPrefs.get("remoteHost", null);
+        String remotePath = handlerPrefs.get("remotePath", null);
+        ProcessBuilder builder;
+        if (remoteHost != null && remotePath != null) {
+            builder = new ProcessBuilder(System.getProperty("install.dir") + "/handler/bin/handler.remote", remoteHost, remotePath, handler);
+        } else {
+            builder = new ProcessBuilder(System.getProperty("install.dir") + "/handler/bin/" + handler);
+        }
+        builder.environment().put("PR_CONTENT", data);
+        //XXX: how to handle the access tokens?
+        builder.environment().put("OAUTH_TOKEN", Config.getDefault().getPreferences().node("users").node(userAndRepo[0]).get("access_token", ""));
+        builder.environment().put("OAUTH_APP_TOKEN", Config.getDefault().getPreferences().node("app").get("access_token", ""));
+        Files.deleteIfExists(thisRunDir.resolve("finished"));
+        Files.newOutputStream(thisRunDir.resolve("preparing")).close();
+        Path stdout = thisRunDir.resolve("stdout");
+        builder.redirectOutput(stdout.toFile());
+        Path stderr = thisRunDir.resolve("stderr");
+        builder.redirectError(stderr.toFile());
+        Process process = builder.start();
+        Files.newOutputStream(thisRunDir.resolve("running")).close();
+        Files.delete(thisRunDir.resolve("preparing"));
+        while (true) {
+            try {
+                process.waitFor();
+                break;
+            } catch (InterruptedException ex) {
+                //ignore...
+            }
+        }
+        try {
+            Files.newOutputStream(thisRunDir.resolve("finished")).close();
+        } catch (IOException ex) {
+            WebApp.LOG.log(Level.SEVERE, null, ex);
+        }
+        try {
+            Files.delete(thisRunDir.resolve("running"));
+        } catch (IOException ex) {
+            WebApp.LOG.log(Level.SEVERE, null, ex);
+        }
+        pack(stdout);
+        pack(stderr);
+    }
+
+    private static Path runDir(String repositoryName, int prNumber) {
+        return Config.getDefault().getRunDir().resolve("github").resolve(repositoryName).resolve(String.valueOf(prNumber));
+    }
+
+    private static void pack(Path log) {
+        Path logGZ = log.getParent().resolve(log.getFileName() + ".gz");
+        try (InputStream in = Files.newInputStream(log);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(logGZ))) {
+            int r;
+
+            while ((r = in.read()) != (-1)) {
+                out.write(r);
+            }
+
+            Files.delete(log);
+        } catch (IOException ex) {
+            WebApp.LOG.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private static final class Job {
+        private final String repositoryName;
+        private final Path runDir;
+
+        public Job(String repositoryName, Path runDir) {
+            this.repositoryName = repositoryName;
+            this.runDir = runDir;
+        }
+
+    }
+}
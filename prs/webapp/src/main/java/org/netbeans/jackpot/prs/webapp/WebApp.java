@@ -78,6 +78,8 @@ public class WebApp {
         // let Grizzly run
         gws.start();
 
+        JobQueue.getDefault().restore();
+
         if (port == 0) {
             System.out.println("Running on port: " + gws.getSelectorThread().getPortLowLevel());
         }
@@ -66,6 +66,9 @@ public class WebAppRepoPullRequests {
                     page.append("<li>");
                     page.append(pr);
                     page.append("&nbsp;");
+                    if (Files.exists(p.resolve("queued"))) {
+                        page.append("queued");
+                    }
                     if (Files.exists(p.resolve("preparing"))) {
                         page.append("preparing");
                     }
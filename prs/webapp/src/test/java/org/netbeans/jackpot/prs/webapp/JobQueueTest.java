@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.jackpot.prs.webapp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.prefs.Preferences;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author lahvac
+ */
+public class JobQueueTest extends TestCase {
+
+    private static final Path CONFIG_DIR;
+
+    static {
+        try {
+            //must be set before the preferences are first used:
+            CONFIG_DIR = Files.createTempDirectory("jobqueue-config");
+            Config.getDefault().setConfigDir(CONFIG_DIR);
+        } catch (IOException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    public JobQueueTest(String name) {
+        super(name);
+    }
+
+    private Path workDir;
+    private Path runDir;
+    private Path gate;
+    private Path started;
+    private Path finished;
+    private String origInstallDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        workDir = Files.createTempDirectory("jobqueue");
+        runDir = workDir.resolve("run");
+        gate = workDir.resolve("gate");
+        started = workDir.resolve("started");
+        finished = workDir.resolve("finished");
+
+        Path handler = workDir.resolve("install/handler/bin/handler.local");
+
+        Files.createDirectories(handler.getParent());
+        Files.write(handler, Arrays.asList(
+                "#!/bin/sh",
+                "echo \"$PR_CONTENT\" >> '" + started + "'",
+                "while [ -e '" + gate + "' ] ; do sleep 0.05 ; done",
+                "echo \"$PR_CONTENT\"",
+                "echo \"$PR_CONTENT\" >> '" + finished + "'"
+        ));
+        handler.toFile().setExecutable(true);
+
+        origInstallDir = System.setProperty("install.dir", workDir.resolve("install").toString());
+
+        Preferences prefs = Config.getDefault().getPreferences();
+
+        prefs.node("app").put("run_dir", runDir.toString());
+        prefs.node("handler").putInt("maxConcurrentJobs", 2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (origInstallDir != null) {
+            System.setProperty("install.dir", origInstallDir);
+        } else {
+            System.clearProperty("install.dir");
+        }
+        Files.deleteIfExists(gate);
+        super.tearDown();
+    }
+
+    public void testQueueing() throws Exception {
+        new JobQueue().schedule("owner/repo", 1, "content");
+
+        waitFor(() -> lines(finished).size() == 1);
+
+        Path prRunDir = runDir.resolve("github/owner/repo/1");
+
+        assertEquals(Collections.singletonList("content"), lines(finished));
+        waitFor(() -> Files.exists(prRunDir.resolve("stdout.gz")));
+        assertTrue(Files.exists(prRunDir.resolve("finished")));
+        assertFalse(Files.exists(prRunDir.resolve("queued")));
+        assertFalse(Files.exists(prRunDir.resolve("running")));
+    }
+
+    public void testNewerPushReplacesPending() throws Exception {
+        JobQueue queue = new JobQueue();
+
+        Files.createFile(gate);
+        queue.schedule("owner/repo", 1, "first");
+        waitFor(() -> lines(started).size() == 1);
+
+        //the repository is busy, so these stay queued, and the second replaces the first:
+        queue.schedule("owner/repo", 2, "outdated");
+        queue.schedule("owner/repo", 2, "newest");
+
+        Thread.sleep(500);
+        assertEquals(Collections.singletonList("first"), lines(started));
+
+        Files.delete(gate);
+        waitFor(() -> lines(finished).size() == 2);
+        Thread.sleep(500);
+
+        assertEquals(Arrays.asList("first", "newest"), lines(finished));
+    }
+
+    public void testConcurrentDeliveriesForSamePullRequest() throws Exception {
+        JobQueue queue = new JobQueue();
+
+        Files.createFile(gate);
+        queue.schedule("owner/repo", 1, "first");
+        waitFor(() -> lines(started).size() == 1);
+
+        List<Thread> deliveries = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        for (int i = 0; i < 8; i++) {
+            String content = String.join("", Collections.nCopies(10000, String.valueOf(i)));
+            Thread delivery = new Thread(() -> {
+                try {
+                    queue.schedule("owner/repo", 2, content);
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            });
+            delivery.start();
+            deliveries.add(delivery);
+        }
+
+        for (Thread delivery : deliveries) {
+            delivery.join();
+        }
+
+        assertEquals(Collections.emptyList(), failures);
+
+        Path prRunDir = runDir.resolve("github/owner/repo/2");
+        String queued = new String(Files.readAllBytes(prRunDir.resolve("queued")), StandardCharsets.UTF_8);
+
+        //one complete delivery, not a mix of several:
+        assertEquals(10000, queued.length());
+        assertEquals(String.join("", Collections.nCopies(10000, queued.substring(0, 1))), queued);
+
+        try (Stream<Path> files = Files.list(prRunDir)) {
+            assertEquals(Collections.singletonList("queued"), files.map(f -> f.getFileName().toString()).collect(Collectors.toList()));
+        }
+
+        Files.delete(gate);
+        waitFor(() -> lines(finished).size() == 2);
+    }
+
+    public void testConcurrencyLimit() throws Exception {
+        JobQueue queue = new JobQueue();
+
+        Files.createFile(gate);
+        queue.schedule("owner/repo1", 1, "repo1");
+        queue.schedule("owner/repo2", 1, "repo2");
+        queue.schedule("owner/repo3", 1, "repo3");
+
+        waitFor(() -> lines(started).size() == 2);
+        Thread.sleep(500);
+        assertEquals(2, lines(started).size());
+
+        Files.delete(gate);
+        waitFor(() -> lines(finished).size() == 3);
+        assertEquals(3, lines(started).size());
+    }
+
+    public void testRestoreOnRestart() throws Exception {
+        Path prRunDir = runDir.resolve("github/owner/repo/5");
+
+        Files.createDirectories(prRunDir);
+        Files.write(prRunDir.resolve("queued"), "restored".getBytes(StandardCharsets.UTF_8));
+
+        new JobQueue().restore();
+
+        waitFor(() -> lines(finished).size() == 1);
+        assertEquals(Collections.singletonList("restored"), lines(finished));
+        assertFalse(Files.exists(prRunDir.resolve("queued")));
+    }
+
+    private static List<String> lines(Path file) {
+        try {
+            return Files.exists(file) ? Files.readAllLines(file) : Collections.emptyList();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+
+        while (!condition.getAsBoolean()) {
+            assertTrue("timeout", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+}
@@ -49,7 +49,7 @@ import org.openide.filesystems.FileUtil;
  */
 public class LocalCache {
 
-    private static final Map<URI, IndexReader> readerCache = new HashMap<URI, IndexReader>();
+    private static final Map<File, IndexReader> readerCache = new HashMap<File, IndexReader>();
 
     private static File findLocalCacheDir(RemoteIndex ri) throws IOException {
         return new File(FileUtil.toFile(FileUtil.createFolder(CacheFolder.getDataFolder(ri.remote), "remote-duplicates")), ri.remoteSegment);
@@ -88,7 +88,7 @@ public class LocalCache {
                     LOG.log(Level.FINE, "Deleting local cache");
                     delete(new File(dir, "index"));
 
-                    IndexReader reader = readerCache.remove(uri);
+                    IndexReader reader = readerCache.remove(new File(dir, "index"));
                     if (reader != null)
                         reader.close();
 
@@ -98,13 +98,12 @@ public class LocalCache {
             lastVersionCheck.put(versionCheckKey, System.currentTimeMillis());
         }
 
-        IndexReader reader = readerCache.get(uri);
+        File indexDir = new File(findLocalCacheDir(ri), "index");
+        IndexReader reader = readerCache.get(indexDir);
 
         if (reader == null && !cancel.get()) {
-            File dir = new File(findLocalCacheDir(ri), "index");
-
-            if (dir.listFiles() != null && dir.listFiles().length > 0) {
-                readerCache.put(uri, reader = IndexReader.open(FSDirectory.open(dir), true));
+            if (indexDir.listFiles() != null && indexDir.listFiles().length > 0) {
+                readerCache.put(indexDir, reader = IndexReader.open(FSDirectory.open(indexDir), true));
             }
         }
 
@@ -115,19 +114,25 @@ public class LocalCache {
         return task.run(reader, cancel);
     }
 
+    /**Runs the given task with a writer for the local cache. Everything written by
+     * the task is committed at once when the task finishes.
+     */
     public static synchronized void saveToLocalCache(RemoteIndex ri, Task<IndexWriter, Void> save) throws IOException, URISyntaxException {
-        IndexReader r = readerCache.remove(ri.remote.toURI());
+        File indexDir = new File(findLocalCacheDir(ri), "index");
+        IndexReader r = readerCache.remove(indexDir);
 
         if (r != null) {
             r.close();
         }
 
-        IndexWriter w = new IndexWriter(FSDirectory.open(new File(findLocalCacheDir(ri), "index")), new NoAnalyzer(), MaxFieldLength.UNLIMITED);
-
-        save.run(w, new AtomicBoolean());
+        IndexWriter w = new IndexWriter(FSDirectory.open(indexDir), new NoAnalyzer(), MaxFieldLength.UNLIMITED);
 
-        w.optimize();
-        w.close();
+        try {
+            save.run(w, new AtomicBoolean());
+        } finally {
+            //not optimizing, that would rewrite the whole cache on every save, the merge policy keeps the number of segments low:
+            w.close();
+        }
     }
 
     private static final Logger LOG = Logger.getLogger(LocalCache.class.getName());
@@ -0,0 +1,309 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.remoting.api;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.codeviation.pojson.Pojson;
+import org.openide.modules.Places;
+
+/**A persistent cache of responses of a remote index. The cached responses of a category
+ * are dropped when the version of the remote index of the category changes, and the least
+ * recently used responses are dropped when the cache grows over its size limit. When the
+ * remote index is not reachable, the cached responses are used. Servers that do not report
+ * the version of their index are not cached.
+ *
+ * @author lahvac
+ */
+public class RemoteCache {
+
+    private static final Logger LOG = Logger.getLogger(RemoteCache.class.getName());
+    private static final long MAX_SIZE = Long.getLong("jackpot.remote.cache.maxSize", 64 * 1024 * 1024);
+    private static final long VERSION_CHECK_PERIOD = 60 * 1000;
+    private static final String VERSION_FILE = "version";
+
+    private static final Map<Entry<URI, String>, Long> lastVersionCheck = new HashMap<Entry<URI, String>, Long>();
+    private static final Map<Entry<URI, String>, String> versions = new HashMap<Entry<URI, String>, String>();
+    private static long totalSize = -1;
+
+    /**Returns the response of the given remote index to the given request, from the cache
+     * if possible.
+     *
+     * @param request the request, relative to the remote index URL, e.g. {@code /source/cat?path=...}
+     */
+    public static String request(RemoteIndex ri, String request) throws IOException, URISyntaxException {
+        File dir = categoryDir(ri);
+        String version = checkVersion(ri, dir);
+
+        if (version == null) {
+            return RemoteRequest.get(new URI(ri.remote.toExternalForm() + request)).execute();
+        }
+
+        File entry = new File(dir, digest(version + "\n" + request));
+        String cached = read(entry);
+
+        if (cached != null) return cached;
+
+        String content = RemoteRequest.get(new URI(ri.remote.toExternalForm() + request)).execute();
+
+        store(entry, content);
+
+        return content;
+    }
+
+    private static File cacheRoot() {
+        return Places.getCacheSubdirectory("jackpot30/remote-responses");
+    }
+
+    private static File categoryDir(RemoteIndex ri) {
+        return new File(cacheRoot(), digest(ri.remote.toExternalForm() + "\n" + ri.remoteSegment));
+    }
+
+    private static String checkVersion(RemoteIndex ri, File dir) throws IOException, URISyntaxException {
+        SimpleEntry<URI, String> key = new SimpleEntry<URI, String>(ri.remote.toURI(), ri.remoteSegment);
+
+        synchronized (RemoteCache.class) {
+            Long lastCheck = lastVersionCheck.get(key);
+
+            if (lastCheck != null && (System.currentTimeMillis() - lastCheck) <= VERSION_CHECK_PERIOD) {
+                return versions.get(key);
+            }
+        }
+
+        URI infoURI = new URI(ri.remote.toExternalForm() + "/info?path=" + WebUtilities.escapeForQuery(ri.remoteSegment));
+        String info = WebUtilities.requestStringResponse(infoURI);
+
+        synchronized (RemoteCache.class) {
+            File versionFile = new File(dir, VERSION_FILE);
+            String previousVersion = versionFile.canRead() ? readFile(versionFile) : null;
+            String version;
+
+            if (info != null) {
+                version = indexVersion(info);
+
+                if (version == null) {
+                    //no way to tell when the cached responses get stale:
+                    LOG.log(Level.FINE, "Remote index does not report its version, not caching: {0}", ri.remoteSegment);
+                    delete(dir);
+                } else if (!version.equals(previousVersion)) {
+                    LOG.log(Level.FINE, "Remote index changed, deleting cached responses: {0}", ri.remoteSegment);
+                    delete(dir);
+                    writeFile(versionFile, version);
+                }
+            } else {
+                //remote index not reachable, use the cached responses, if any:
+                version = previousVersion;
+            }
+
+            versions.put(key, version);
+            lastVersionCheck.put(key, System.currentTimeMillis());
+
+            return version;
+        }
+    }
+
+    private static String indexVersion(String info) {
+        if (info.trim().isEmpty()) return null;
+
+        try {
+            Object version = Pojson.load(LinkedHashMap.class, info).get("indexVersion");
+
+            return version != null ? version.toString() : null;
+        } catch (RuntimeException ex) {
+            LOG.log(Level.FINE, null, ex);
+            return null;
+        }
+    }
+
+    private static synchronized String read(File entry) throws IOException {
+        if (!entry.canRead()) return null;
+
+        String result = readFile(entry);
+
+        //for the LRU eviction:
+        entry.setLastModified(System.currentTimeMillis());
+
+        return result;
+    }
+
+    private static synchronized void store(File entry, String content) throws IOException {
+        if (!writeFile(entry, content)) return;
+
+        if (totalSize == (-1)) {
+            totalSize = 0;
+
+            for (File f : entries()) {
+                totalSize += f.length();
+            }
+        } else {
+            totalSize += entry.length();
+        }
+
+        if (totalSize > MAX_SIZE) {
+            evict();
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+
+        try {
+            int read = 0;
+
+            while (read < data.length) {
+                int r = in.read(data, read, data.length - read);
+
+                if (r == (-1)) break;
+
+                read += r;
+            }
+        } finally {
+            in.close();
+        }
+
+        return new String(data, "UTF-8");
+    }
+
+    private static boolean writeFile(File file, String content) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".new");
+
+        file.getParentFile().mkdirs();
+
+        OutputStream out = new FileOutputStream(temp);
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        file.delete();
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return false;
+        }
+
+        return true;
+    }
+
+    private static void evict() {
+        List<File> entries = entries();
+
+        Collections.sort(entries, new Comparator<File>() {
+            @Override public int compare(File o1, File o2) {
+                long m1 = o1.lastModified();
+                long m2 = o2.lastModified();
+                return m1 < m2 ? -1 : m1 == m2 ? 0 : 1;
+            }
+        });
+
+        totalSize = 0;
+
+        for (File f : entries) {
+            totalSize += f.length();
+        }
+
+        for (File f : entries) {
+            if (totalSize <= MAX_SIZE * 3 / 4) break;
+
+            long size = f.length();
+
+            if (f.delete()) {
+                totalSize -= size;
+            }
+        }
+    }
+
+    private static List<File> entries() {
+        List<File> result = new ArrayList<File>();
+        File[] categories = cacheRoot().listFiles();
+
+        if (categories == null) return result;
+
+        for (File category : categories) {
+            File[] entries = category.listFiles();
+
+            if (entries == null) continue;
+
+            for (File entry : entries) {
+                if (!VERSION_FILE.equals(entry.getName())) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static void delete(File file) {
+        File[] c = file.listFiles();
+
+        if (c != null) {
+            for (File cc : c) {
+                if (totalSize != (-1) && cc.isFile() && !VERSION_FILE.equals(cc.getName())) {
+                    totalSize -= cc.length();
+                }
+                delete(cc);
+            }
+        }
+
+        file.delete();
+    }
+
+    private static String digest(String content) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+
+            return new BigInteger(1, md.digest(content.getBytes("UTF-8"))).toString(16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**For tests: the next request checks the version of the remote index.
+     */
+    static synchronized void clearVersionChecks() {
+        lastVersionCheck.clear();
+    }
+
+}
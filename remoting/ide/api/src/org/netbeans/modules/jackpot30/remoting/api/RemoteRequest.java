@@ -0,0 +1,334 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.remoting.api;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import org.openide.util.RequestProcessor;
+
+/**A request to a remote index. The request is performed either in the calling
+ * thread ({@link #execute()}), or asynchronously ({@link #submit()}).
+ *
+ * <p>Connections are kept alive and reused by the JDK's HTTP implementation
+ * (see the {@code http.keepAlive} and {@code http.maxConnections} system properties),
+ * provided the responses are read fully, which this class ensures. Gzip encoded
+ * responses are accepted, and the response is decoded using the charset
+ * of the response, UTF-8 by default.
+ *
+ * <p>There are no threads waiting for the running requests: a single watchdog
+ * aborts requests that are canceled or whose deadline passed.
+ *
+ * @author lahvac
+ */
+public final class RemoteRequest {
+
+    private static final Logger LOG = Logger.getLogger(RemoteRequest.class.getName());
+    private static final RequestProcessor ASYNC = new RequestProcessor(RemoteRequest.class.getName(), 8, true, false);
+    private static final RequestProcessor WATCHDOG = new RequestProcessor(RemoteRequest.class.getName() + ".watchdog", 1, false, false);
+    private static final int WATCHDOG_PERIOD = 100;
+    private static final Set<RemoteRequest> RUNNING = new HashSet<RemoteRequest>();
+    private static final RequestProcessor.Task WATCHDOG_TASK = WATCHDOG.create(new Runnable() {
+        @Override public void run() {
+            List<RemoteRequest> toAbort = new ArrayList<RemoteRequest>();
+
+            synchronized (RUNNING) {
+                for (RemoteRequest r : RUNNING) {
+                    if (r.cancel.get() || System.currentTimeMillis() > r.deadline) {
+                        toAbort.add(r);
+                    }
+                }
+
+                if (!RUNNING.isEmpty()) {
+                    WATCHDOG_TASK.schedule(WATCHDOG_PERIOD);
+                }
+            }
+
+            for (RemoteRequest r : toAbort) {
+                r.abort();
+            }
+        }
+    });
+
+    private final URI uri;
+    private final String postContent;
+    private int timeout = -1;
+    private AtomicBoolean cancel = new AtomicBoolean();
+    private volatile long deadline = Long.MAX_VALUE;
+    private volatile URLConnection connection;
+    private volatile boolean aborted;
+
+    private RemoteRequest(URI uri, String postContent) {
+        this.uri = uri;
+        this.postContent = postContent;
+    }
+
+    public static RemoteRequest get(URI uri) {
+        return new RemoteRequest(uri, null);
+    }
+
+    /**A POST request, sending the given content as UTF-8 encoded {@code text/plain}.
+     */
+    public static RemoteRequest post(URI uri, String content) {
+        return new RemoteRequest(uri, content);
+    }
+
+    /**The maximal time for the whole request, in milliseconds, or -1 for no limit.
+     */
+    public RemoteRequest timeout(int timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**The request is aborted as soon as the given flag is set.
+     */
+    public RemoteRequest cancel(AtomicBoolean cancel) {
+        this.cancel = cancel;
+        return this;
+    }
+
+    /**Performs the request in the current thread.
+     *
+     * @return the content of the response
+     * @throws InterruptedIOException if the request was canceled or timed out
+     * @throws ResponseCodeException if the server responded with a non-2xx code
+     * @throws IOException if the request failed
+     */
+    public String execute() throws IOException {
+        final StringBuilder result = new StringBuilder();
+
+        execute(new ResponseHandler() {
+            @Override public void handle(Reader content) throws IOException {
+                char[] buf = new char[4096];
+                int read;
+
+                while ((read = content.read(buf)) != (-1)) {
+                    result.append(buf, 0, read);
+                }
+            }
+        });
+
+        return result.toString();
+    }
+
+    /**Performs the request in the current thread, passing the lines of the response
+     * to the given handler as soon as they arrive.
+     */
+    public void execute(final LineHandler handler) throws IOException {
+        execute(new ResponseHandler() {
+            @Override public void handle(Reader content) throws IOException {
+                BufferedReader lines = new BufferedReader(content);
+                String line;
+
+                while ((line = lines.readLine()) != null) {
+                    handler.line(line);
+                }
+            }
+        });
+    }
+
+    /**Performs the request asynchronously. Canceling the returned {@link Future}
+     * aborts the request.
+     */
+    public Future<String> submit() {
+        FutureTask<String> result = new FutureTask<String>(new Callable<String>() {
+            @Override public String call() throws Exception {
+                return execute();
+            }
+        }) {
+            @Override public boolean cancel(boolean mayInterruptIfRunning) {
+                RemoteRequest.this.cancel.set(true);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        ASYNC.post(result);
+
+        return result;
+    }
+
+    private void execute(ResponseHandler handler) throws IOException {
+        if (timeout >= 0) {
+            deadline = System.currentTimeMillis() + timeout;
+        }
+
+        synchronized (RUNNING) {
+            if (RUNNING.isEmpty()) {
+                WATCHDOG_TASK.schedule(WATCHDOG_PERIOD);
+            }
+
+            RUNNING.add(this);
+        }
+
+        try {
+            checkAborted();
+
+            URLConnection c = connection = uri.toURL().openConnection();
+
+            c.setRequestProperty("Accept-Encoding", "gzip");
+
+            if (timeout >= 0) {
+                c.setConnectTimeout(Math.max(1, timeout));
+                c.setReadTimeout(Math.max(1, timeout));
+            }
+
+            if (postContent != null) {
+                c.setDoOutput(true);
+                if (c instanceof HttpURLConnection) {
+                    ((HttpURLConnection) c).setRequestMethod("POST");
+                }
+                c.setRequestProperty("Content-Type", "text/plain; charset=UTF-8");
+
+                OutputStream out = c.getOutputStream();
+
+                try {
+                    out.write(postContent.getBytes("UTF-8"));
+                } finally {
+                    out.close();
+                }
+            }
+
+            if (c instanceof HttpURLConnection) {
+                int code = ((HttpURLConnection) c).getResponseCode();
+
+                if (code / 100 != 2) {
+                    //read the whole error response, so that the connection can be reused:
+                    InputStream err = ((HttpURLConnection) c).getErrorStream();
+
+                    if (err != null) {
+                        try {
+                            byte[] buf = new byte[1024];
+
+                            while (err.read(buf) != (-1))
+                                ;
+                        } finally {
+                            err.close();
+                        }
+                    }
+
+                    throw new ResponseCodeException(code, uri);
+                }
+            }
+
+            InputStream in = c.getInputStream();
+
+            try {
+                if ("gzip".equalsIgnoreCase(c.getContentEncoding())) {
+                    in = new GZIPInputStream(in);
+                }
+
+                handler.handle(new InputStreamReader(in, charset(c.getContentType())));
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            checkAborted();
+            throw ex;
+        } finally {
+            synchronized (RUNNING) {
+                RUNNING.remove(this);
+            }
+            connection = null;
+        }
+    }
+
+    private void checkAborted() throws InterruptedIOException {
+        if (aborted || cancel.get()) {
+            throw new InterruptedIOException("Request canceled: " + uri.toASCIIString());
+        }
+        if (System.currentTimeMillis() > deadline) {
+            throw new InterruptedIOException("Request timed out: " + uri.toASCIIString());
+        }
+    }
+
+    private void abort() {
+        aborted = true;
+
+        URLConnection c = connection;
+
+        if (c instanceof HttpURLConnection) {
+            //closes the socket, the reading thread gets an exception:
+            ((HttpURLConnection) c).disconnect();
+        }
+
+        LOG.log(Level.FINE, "Aborted: {0}", uri.toASCIIString());
+    }
+
+    private static final Pattern CHARSET = Pattern.compile("charset=\"?([^\\s;\"]+)", Pattern.CASE_INSENSITIVE);
+
+    static Charset charset(String contentType) {
+        if (contentType != null) {
+            Matcher m = CHARSET.matcher(contentType);
+
+            if (m.find()) {
+                try {
+                    return Charset.forName(m.group(1));
+                } catch (IllegalArgumentException ex) {
+                    LOG.log(Level.FINE, null, ex);
+                }
+            }
+        }
+
+        return Charset.forName("UTF-8");
+    }
+
+    /**The server responded with a non-2xx code.
+     */
+    public static final class ResponseCodeException extends IOException {
+        private final int responseCode;
+
+        ResponseCodeException(int responseCode, URI uri) {
+            super("HTTP " + responseCode + ": " + uri.toASCIIString());
+            this.responseCode = responseCode;
+        }
+
+        public int getResponseCode() {
+            return responseCode;
+        }
+    }
+
+    public interface LineHandler {
+        public void line(String line) throws IOException;
+    }
+
+    private interface ResponseHandler {
+        public void handle(Reader content) throws IOException;
+    }
+}
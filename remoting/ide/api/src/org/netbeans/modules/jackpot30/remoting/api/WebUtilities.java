@@ -19,14 +19,10 @@
 
 package org.netbeans.modules.jackpot30.remoting.api;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -35,8 +31,7 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.netbeans.api.annotations.common.CheckForNull;
-import org.openide.util.RequestProcessor;
-import org.openide.util.RequestProcessor.Task;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest.LineHandler;
 
 /**
  *
@@ -46,62 +41,40 @@ public class WebUtilities {
     private WebUtilities() {
     }
 
-    private static final RequestProcessor LOADER = new RequestProcessor(WebUtilities.class.getName(), 100, true, false);
+    /**Default time (in milliseconds) to wait for a response of a single remote index.
+     */
+    public static final int REMOTE_INDEX_TIMEOUT = Integer.getInteger("jackpot.remote.timeout", 30000);
 
     public static @CheckForNull String requestStringResponse (final URI uri) {
         return requestStringResponse(uri, new AtomicBoolean());
     }
 
     public static @CheckForNull String requestStringResponse (final URI uri, AtomicBoolean cancel) {
-        final String[] result = new String[1];
-        final RuntimeException[] re = new RuntimeException[1];
-        final Error[] err = new Error[1];
-        Task task = LOADER.create(new Runnable() {
-            @Override
-            public void run() {
-        final StringBuffer sb = new StringBuffer ();
-        final URL url;
+        return requestStringResponse(uri, cancel, -1);
+    }
+
+    /**Request the content of the given URI. The request is abandoned when it is
+     * canceled or when the timeout expires.
+     *
+     * @param timeout maximal time to wait for the response in milliseconds, or -1 to wait until canceled
+     * @return the response, or null if the request failed, was canceled or timed-out
+     */
+    public static @CheckForNull String requestStringResponse (final URI uri, AtomicBoolean cancel, final int timeout) {
+        final StringBuilder sb = new StringBuilder();
+
         try {
-            url = uri.toURL();
-            final URLConnection urlConnection = url.openConnection ();
-            urlConnection.connect ();
-            final Object content = urlConnection.getContent ();
-            final InputStream inputStream = (InputStream) content;
-            final BufferedReader reader = new BufferedReader (new InputStreamReader (inputStream, "ASCII"));
-            try {
-                for (;;) {
-                    String line = reader.readLine ();
-                    if (line == null)
-                        break;
-                    sb.append (line).append ('\n');
+            RemoteRequest.get(uri).cancel(cancel).timeout(timeout).execute(new LineHandler() {
+                @Override public void line(String line) {
+                    sb.append(line).append('\n');
                 }
-            } finally {
-                reader.close ();
-            }
-            result[0] = sb.toString();
+            });
+            return sb.toString();
+        } catch (InterruptedIOException ex) {
+            Logger.getLogger(WebUtilities.class.getName()).log(Level.FINE, null, ex);
         } catch (IOException e) {
             Logger.getLogger(WebUtilities.class.getName()).log(Level.INFO, uri.toASCIIString(), e);
-        } catch (RuntimeException ex) {
-            re[0] = ex;
-        } catch (Error ex) {
-            err[0] = ex;
         }
-            }
-        });
 
-        task.schedule(0);
-        
-        while (!cancel.get()) {
-            try {
-                if (task.waitFinished(1000)) {
-                    if (re[0] != null) throw re[0];
-                    else if (err[0] != null) throw err[0];
-                    else return result[0];
-                }
-            } catch (InterruptedException ex) {
-                Logger.getLogger(WebUtilities.class.getName()).log(Level.FINE, null, ex);
-            }
-        }
         return null;
     }
 
@@ -110,7 +83,11 @@ public class WebUtilities {
     }
 
     public static Collection<? extends String> requestStringArrayResponse (URI uri, AtomicBoolean cancel) {
-        String content = requestStringResponse(uri, cancel);
+        return requestStringArrayResponse(uri, cancel, -1);
+    }
+
+    public static Collection<? extends String> requestStringArrayResponse (URI uri, AtomicBoolean cancel, int timeout) {
+        String content = requestStringResponse(uri, cancel, timeout);
         
         if (content == null) return null;
         
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.remoting.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.netbeans.junit.NbTestCase;
+
+/**
+ *
+ * @author lahvac
+ */
+public class RemoteCacheTest extends NbTestCase {
+
+    public RemoteCacheTest(String name) {
+        super(name);
+    }
+
+    private HttpServer server;
+    private RemoteIndex index;
+    private volatile String info;
+    private volatile String content;
+    private final AtomicInteger contentRequests = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clearWorkDir();
+        System.setProperty("netbeans.user", getWorkDirPath());
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/index/info", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, info);
+            }
+        });
+        server.createContext("/index/source/cat", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                contentRequests.incrementAndGet();
+                respond(exchange, content);
+            }
+        });
+        server.start();
+        index = RemoteIndex.create(null, new URL("http://localhost:" + server.getAddress().getPort() + "/index"), "test");
+        RemoteCache.clearVersionChecks();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop(0);
+        super.tearDown();
+    }
+
+    public void testCachedUntilIndexChanges() throws Exception {
+        info = "{\"BUILD_ID\": \"1\", \"indexVersion\": \"v1\"}";
+        content = "class Test {}";
+
+        assertEquals("class Test {}", RemoteCache.request(index, "/source/cat?path=test&relative=Test.java"));
+        assertEquals(1, contentRequests.get());
+
+        content = "class Test2 {}";
+
+        RemoteCache.clearVersionChecks();
+        assertEquals("class Test {}", RemoteCache.request(index, "/source/cat?path=test&relative=Test.java"));
+        assertEquals(1, contentRequests.get());
+
+        //same --info and statistics, but re-indexed:
+        info = "{\"BUILD_ID\": \"1\", \"indexVersion\": \"v2\"}";
+
+        assertEquals("class Test {}", RemoteCache.request(index, "/source/cat?path=test&relative=Test.java"));
+
+        RemoteCache.clearVersionChecks();
+        assertEquals("class Test2 {}", RemoteCache.request(index, "/source/cat?path=test&relative=Test.java"));
+        assertEquals(2, contentRequests.get());
+    }
+
+    public void testCachedWhenUnreachable() throws Exception {
+        info = "{\"BUILD_ID\": \"1\", \"indexVersion\": \"v1\"}";
+        content = "class Test {}";
+
+        assertEquals("class Test {}", RemoteCache.request(index, "/source/cat?path=test&relative=Test.java"));
+
+        server.stop(0);
+        RemoteCache.clearVersionChecks();
+
+        assertEquals("class Test {}", RemoteCache.request(index, "/source/cat?path=test&relative=Test.java"));
+    }
+
+    public void testNotCachedWithoutIndexVersion() throws Exception {
+        info = "{\"BUILD_ID\": \"1\"}";
+        content = "class Test {}";
+
+        assertEquals("class Test {}", RemoteCache.request(index, "/source/cat?path=test&relative=Test.java"));
+
+        content = "class Test2 {}";
+
+        assertEquals("class Test2 {}", RemoteCache.request(index, "/source/cat?path=test&relative=Test.java"));
+        assertEquals(2, contentRequests.get());
+    }
+
+    private static void respond(HttpExchange exchange, String content) throws IOException {
+        byte[] data = content.getBytes("UTF-8");
+
+        exchange.sendResponseHeaders(200, data.length);
+        exchange.getResponseBody().write(data);
+        exchange.close();
+    }
+}
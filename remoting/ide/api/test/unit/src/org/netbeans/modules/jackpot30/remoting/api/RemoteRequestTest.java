@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.remoting.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+import org.netbeans.junit.NbTestCase;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest.LineHandler;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest.ResponseCodeException;
+
+/**
+ *
+ * @author lahvac
+ */
+public class RemoteRequestTest extends NbTestCase {
+
+    public RemoteRequestTest(String name) {
+        super(name);
+    }
+
+    private HttpServer server;
+    private String base;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/text", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                respond(exchange, 200, "čau\nsvět".getBytes("UTF-8"));
+            }
+        });
+        server.createContext("/gzip", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                GZIPOutputStream out = new GZIPOutputStream(data);
+                out.write(exchange.getRequestHeaders().getFirst("Accept-Encoding").getBytes("UTF-8"));
+                out.close();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                respond(exchange, 200, data.toByteArray());
+            }
+        });
+        server.createContext("/echo", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                InputStream in = exchange.getRequestBody();
+                int read;
+                while ((read = in.read()) != (-1)) {
+                    data.write(read);
+                }
+                respond(exchange, 200, (exchange.getRequestMethod() + ":" + data.toString("UTF-8")).getBytes("UTF-8"));
+            }
+        });
+        server.createContext("/slow", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException ex) {
+                    //ignore
+                }
+                respond(exchange, 200, new byte[0]);
+            }
+        });
+        server.createContext("/missing", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, 404, "missing".getBytes("UTF-8"));
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        base = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop(0);
+        super.tearDown();
+    }
+
+    public void testDecodesUTF8() throws Exception {
+        assertEquals("čau\nsvět", RemoteRequest.get(new URI(base + "/text")).execute());
+    }
+
+    public void testLines() throws Exception {
+        final List<String> lines = new ArrayList<String>();
+
+        RemoteRequest.get(new URI(base + "/text")).execute(new LineHandler() {
+            @Override public void line(String line) {
+                lines.add(line);
+            }
+        });
+
+        assertEquals(Arrays.asList("čau", "svět"), lines);
+    }
+
+    public void testGZip() throws Exception {
+        assertEquals("gzip", RemoteRequest.get(new URI(base + "/gzip")).execute());
+    }
+
+    public void testPost() throws Exception {
+        assertEquals("POST:žluť", RemoteRequest.post(new URI(base + "/echo"), "žluť").execute());
+    }
+
+    public void testSubmit() throws Exception {
+        assertEquals("čau\nsvět", RemoteRequest.get(new URI(base + "/text")).submit().get());
+    }
+
+    public void testResponseCode() throws Exception {
+        try {
+            RemoteRequest.get(new URI(base + "/missing")).execute();
+            fail("Expected an exception");
+        } catch (ResponseCodeException ex) {
+            assertEquals(404, ex.getResponseCode());
+        }
+
+        assertNull(WebUtilities.requestStringResponse(new URI(base + "/missing")));
+    }
+
+    public void testTimeout() throws Exception {
+        long start = System.currentTimeMillis();
+
+        try {
+            RemoteRequest.get(new URI(base + "/slow")).timeout(300).execute();
+            fail("Expected an exception");
+        } catch (InterruptedIOException ex) {
+            //expected
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    public void testCancel() throws Exception {
+        final AtomicBoolean cancel = new AtomicBoolean();
+        long start = System.currentTimeMillis();
+
+        new Thread() {
+            @Override public void run() {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException ex) {
+                    //ignore
+                }
+                cancel.set(true);
+            }
+        }.start();
+
+        assertNull(WebUtilities.requestStringResponse(new URI(base + "/slow"), cancel));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    private static void respond(HttpExchange exchange, int code, byte[] content) throws IOException {
+        exchange.sendResponseHeaders(code, content.length);
+        exchange.getResponseBody().write(content);
+        exchange.close();
+    }
+}
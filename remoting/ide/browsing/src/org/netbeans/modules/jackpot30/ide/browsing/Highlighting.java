@@ -22,7 +22,6 @@ import org.netbeans.modules.jackpot30.remoting.api.Utilities;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.HashMap;
@@ -38,6 +37,8 @@ import org.netbeans.api.editor.EditorRegistry;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
 import org.netbeans.modules.jackpot30.remoting.api.Utilities.RemoteSourceDescription;
 import org.netbeans.modules.jackpot30.remoting.api.RemoteIndex;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteCache;
 import org.netbeans.modules.jackpot30.remoting.api.WebUtilities;
 import org.netbeans.spi.editor.highlighting.HighlightsLayer;
 import org.netbeans.spi.editor.highlighting.HighlightsLayerFactory;
@@ -81,8 +82,7 @@ public class Highlighting {
         OffsetsBag target = new OffsetsBag(doc);
 
         try {
-            URI sourceURI = new URI(idx.remote.toExternalForm() + "/ui/highlightData?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(relativePath));
-            HighlightData highlightData = Pojson.load(HighlightData.class, sourceURI.toURL().openStream());
+            HighlightData highlightData = Pojson.load(HighlightData.class, RemoteCache.request(idx, "/ui/highlightData?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(relativePath)));
             int o = 0;
             Iterator<String> categoriesIt = highlightData.categories.iterator();
             Iterator<Long> spansIt = highlightData.spans.iterator();
@@ -92,8 +92,6 @@ public class Highlighting {
                 target.addHighlight(o, (int) (o + span), ColoringManager.getColoringImpl(categoriesIt.next()));
                 o += span;
             }
-        } catch (MalformedURLException ex) {
-            Exceptions.printStackTrace(ex);
         } catch (URISyntaxException ex) {
             Exceptions.printStackTrace(ex);
         } catch (IOException ex) {
@@ -166,13 +164,11 @@ public class Highlighting {
                             WORKER.post(new Runnable() {
                                 @Override public void run() {
                                     try {
-                                        URI sourceURI = new URI(rsd.idx.remote.toExternalForm() + "/ui/target?path=" + WebUtilities.escapeForQuery(rsd.idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(rsd.relative) + "&position=" + caret);
-                                        Map<Object, Object> targetData = Pojson.load(HashMap.class, sourceURI.toURL().openStream());
+                                        Map<Object, Object> targetData = Pojson.load(HashMap.class, RemoteRequest.get(new URI(rsd.idx.remote.toExternalForm() + "/ui/target?path=" + WebUtilities.escapeForQuery(rsd.idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(rsd.relative) + "&position=" + caret)).execute());
                                         Object signature = targetData.get("signature");
 
                                         if (signature instanceof String) {
-                                            URI localUsagesURI = new URI(rsd.idx.remote.toExternalForm() + "/ui/localUsages?path=" + WebUtilities.escapeForQuery(rsd.idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(rsd.relative) + "&signature=" + WebUtilities.escapeForQuery(String.valueOf(signature)) + "&usages=true");
-                                            long[][] spans = Pojson.load(long[][].class, localUsagesURI.toURL().openStream());
+                                            long[][] spans = Pojson.load(long[][].class, RemoteCache.request(rsd.idx, "/ui/localUsages?path=" + WebUtilities.escapeForQuery(rsd.idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(rsd.relative) + "&signature=" + WebUtilities.escapeForQuery(String.valueOf(signature)) + "&usages=true"));
                                             OffsetsBag bag = new OffsetsBag(doc);
 
                                             for (long[] span : spans) {
@@ -42,6 +42,8 @@ import org.netbeans.lib.editor.hyperlink.spi.HyperlinkType;
 import org.netbeans.modules.editor.NbEditorUtilities;
 import org.netbeans.modules.jackpot30.remoting.api.Utilities.RemoteSourceDescription;
 import org.netbeans.modules.jackpot30.remoting.api.RemoteIndex;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteCache;
 import org.netbeans.modules.jackpot30.remoting.api.WebUtilities;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
@@ -95,8 +97,7 @@ public class HyperlinkProviderImpl implements HyperlinkProviderExt {
 
         if (rsd != null && file != null) {
             try {
-                URI sourceURI = new URI(rsd.idx.remote.toExternalForm() + "/ui/target?path=" + WebUtilities.escapeForQuery(rsd.idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(rsd.relative) + "&position=" + offset);
-                Map<Object, Object> targetData = Pojson.load(HashMap.class, sourceURI.toURL().openStream());
+                Map<Object, Object> targetData = Pojson.load(HashMap.class, RemoteRequest.get(new URI(rsd.idx.remote.toExternalForm() + "/ui/target?path=" + WebUtilities.escapeForQuery(rsd.idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(rsd.relative) + "&position=" + offset)).execute());
 
                 if (targetData.containsKey("position")) {
                     open(file, Integer.parseInt(String.valueOf(targetData.get("position"))));
@@ -112,8 +113,7 @@ public class HyperlinkProviderImpl implements HyperlinkProviderExt {
                         //TODO
                     } else {
                         String relativePath = (String) targetData.get("source");
-                        URI declarationSpanURI = new URI(targetIDX.remote.toExternalForm() + "/ui/declarationSpan?path=" + WebUtilities.escapeForQuery(targetIDX.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(relativePath) + "&signature=" + WebUtilities.escapeForQuery(String.valueOf(targetData.get("signature"))));
-                        List<Long> span = Pojson.update(new ArrayList<Long>(), declarationSpanURI.toURL().openStream());
+                        List<Long> span = Pojson.update(new ArrayList<Long>(), RemoteCache.request(targetIDX, "/ui/declarationSpan?path=" + WebUtilities.escapeForQuery(targetIDX.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(relativePath) + "&signature=" + WebUtilities.escapeForQuery(String.valueOf(targetData.get("signature")))));
                         //TODO: if the target is on disk, should use standard way to open:
                         open(targetIDX.getFile(relativePath), (int) (long) span.get(2));
                     }
@@ -20,9 +20,8 @@ package org.netbeans.modules.jackpot30.ide.browsing;
 
 import org.netbeans.modules.jackpot30.remoting.api.Utilities;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.net.URI;
+import java.io.StringReader;
 import java.net.URISyntaxException;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
@@ -30,6 +29,7 @@ import javax.swing.text.EditorKit;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
 import org.netbeans.editor.GuardedDocument;
 import org.netbeans.modules.editor.NbEditorKit;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteCache;
 import org.netbeans.modules.jackpot30.remoting.api.Utilities.RemoteSourceDescription;
 import org.netbeans.modules.jackpot30.remoting.api.WebUtilities;
 
@@ -49,11 +49,8 @@ public class RemoteEditorKit extends NbEditorKit {
     public void read(Reader in, Document doc, int pos) throws IOException, BadLocationException {
         RemoteSourceDescription rsd = Utilities.remoteSource(doc);
         if (rsd != null) {
-            //TODO: cache the content?
             try {
-                URI sourceURI = new URI(rsd.idx.remote.toExternalForm() + "/source/cat?path=" + WebUtilities.escapeForQuery(rsd.idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(rsd.relative));
-
-                in = new InputStreamReader(sourceURI.toURL().openStream(), "UTF-8");
+                in = new StringReader(RemoteCache.request(rsd.idx, "/source/cat?path=" + WebUtilities.escapeForQuery(rsd.idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(rsd.relative)));
             } catch (URISyntaxException ex) {
                 throw new IOException(ex);
             }
@@ -55,6 +55,7 @@ import org.openide.util.RequestProcessor.Task;
 public abstract class RemoteQuery<R extends SimpleNameable, P> {
 
     private static final RequestProcessor WORKER = new RequestProcessor(RemoteGoToType.class.getName(), 1, true, false);
+    private static final RequestProcessor INDEX_WORKER = new RequestProcessor(RemoteQuery.class.getName() + ".index", 16, true, false);
 
     private final boolean synchronous;
 
@@ -118,50 +119,76 @@ public abstract class RemoteQuery<R extends SimpleNameable, P> {
     protected abstract URI computeURL(RemoteIndex idx, String text, SearchType searchType);
     protected abstract R decode(RemoteIndex idx, String root, P data);
 
-    private void compute(String text, SearchType searchType, AtomicBoolean cancel) {
-        Set<FileObject> sources = GlobalPathRegistry.getDefault().getSourceRoots();
-        
-        for (RemoteIndex ri : RemoteIndex.loadIndices()) {
-            URL localFolder = ri.getLocalFolder();
-            FileObject originFolder = localFolder != null ? URLMapper.findFileObject(localFolder) : null;
-            URI url = computeURL(ri, text, searchType);
+    private void compute(final String text, final SearchType searchType, final AtomicBoolean cancel) {
+        final Set<FileObject> sources = GlobalPathRegistry.getDefault().getSourceRoots();
+        List<Task> pending = new ArrayList<Task>();
 
-            if (url == null) continue;
-            
-            String response = WebUtilities.requestStringResponse(url, cancel);
+        //query all indices concurrently, the results of each index are available as soon as it answers:
+        for (final RemoteIndex ri : RemoteIndex.loadIndices()) {
+            pending.add(INDEX_WORKER.post(new Runnable() {
+                @Override public void run() {
+                    compute(ri, text, searchType, sources, cancel);
+                }
+            }));
+        }
 
-            if (cancel.get()) return;
-            if (response == null) continue;
+        try {
+            for (Task t : pending) {
+                while (!t.waitFinished(100)) {
+                    if (cancel.get()) return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(RemoteGoToType.class.getName()).log(Level.FINE, null, ex);
+        } finally {
+            if (cancel.get()) {
+                for (Task t : pending) {
+                    t.cancel();
+                }
+            }
+        }
+    }
 
-            Reader r = new StringReader(response);
-            Collection<R> decoded = new ArrayList<R>();
+    private void compute(RemoteIndex ri, String text, SearchType searchType, Set<FileObject> sources, AtomicBoolean cancel) {
+        URL localFolder = ri.getLocalFolder();
+        FileObject originFolder = localFolder != null ? URLMapper.findFileObject(localFolder) : null;
+        URI url = computeURL(ri, text, searchType);
 
-            try {
-                @SuppressWarnings("unchecked") //XXX: should not trust something got from the network!
-                Map<String, Collection<P>> objectized = Pojson.load(LinkedHashMap.class, r);
+        if (url == null) return;
 
-                for (Entry<String, Collection<P>> e : objectized.entrySet()) {
-                    if (originFolder != null && sources.contains(originFolder.getFileObject(e.getKey()))) continue;
+        String response = WebUtilities.requestStringResponse(url, cancel, WebUtilities.REMOTE_INDEX_TIMEOUT);
 
-                    for (P data : e.getValue()) {
-                        decoded.add(decode(ri, e.getKey(), data));
-                    }
+        if (cancel.get()) return;
+        if (response == null) return;
+
+        Reader r = new StringReader(response);
+        Collection<R> decoded = new ArrayList<R>();
+
+        try {
+            @SuppressWarnings("unchecked") //XXX: should not trust something got from the network!
+            Map<String, Collection<P>> objectized = Pojson.load(LinkedHashMap.class, r);
+
+            for (Entry<String, Collection<P>> e : objectized.entrySet()) {
+                if (originFolder != null && sources.contains(originFolder.getFileObject(e.getKey()))) continue;
+
+                for (P data : e.getValue()) {
+                    decoded.add(decode(ri, e.getKey(), data));
                 }
+            }
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+            return;
+        } finally {
+            try {
+                r.close();
             } catch (IOException ex) {
                 Exceptions.printStackTrace(ex);
-                continue;
-            } finally {
-                try {
-                    r.close();
-                } catch (IOException ex) {
-                    Exceptions.printStackTrace(ex);
-                }
             }
+        }
 
-            synchronized (this) {
-                if (cancel.get()) return;
-                results.addAll(decoded);
-            }
+        synchronized (this) {
+            if (cancel.get()) return;
+            results.addAll(decoded);
         }
     }
 
@@ -21,14 +21,19 @@ package org.netbeans.modules.jackpot30.remoting.local;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
 import java.util.jar.JarInputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -95,6 +100,10 @@ public class LocalServerImpl implements LocalServer {
     }
 
     private static final int TOTAL_WORK = 1000;
+    private static final String CHECKSUMS_ENTRY = ".checksums";
+    private static final String CHECKSUMS_SUFFIX = ".checksums";
+    private static final String BLOBS_PREFIX = "blobs/";
+    private static final String SHARED_BLOBS = ".blobs";
 
     @Override
     public boolean downloadIndex(RemoteIndex idx, ProgressContributor progress) throws IOException {
@@ -103,59 +112,53 @@ public class LocalServerImpl implements LocalServer {
         } catch (URISyntaxException ex) {
             Exceptions.printStackTrace(ex);
         }
-        
-        URL url = new URL(idx.remote.toExternalForm() + "/downloadable/index?path=" + idx.remoteSegment);
-        URLConnection c = url.openConnection();
-        String totalUnpackedSizeString = c.getHeaderField("NB-Total-Unpacked-Size");
-        long totalUnpackedSize = -1;
-        try {
-            totalUnpackedSize = Long.parseLong(totalUnpackedSizeString);
-        } catch (NumberFormatException ex) {
-            Logger.getLogger(LocalServerImpl.class.getName()).log(Level.FINE, null, ex);
-        }
-        InputStream in = url.openStream();
-        JarInputStream jis = new JarInputStream(in);
+
         File cacheDir = Places.getCacheSubdirectory(CACHE_PATH);
+        File target = new File(cacheDir, idx.remoteSegment);
         File newTarget = new File(cacheDir, idx.remoteSegment + ".new");
-        final byte[] BUFFER = new byte[4096];
-        long written = 0;
+        File checksumsFile = new File(cacheDir, idx.remoteSegment + CHECKSUMS_SUFFIX);
 
         progress.start(TOTAL_WORK);
 
         try {
-        ZipEntry ze;
+        delete(newTarget);
 
-        while ((ze = jis.getNextEntry()) != null) {
-            if (ze.isDirectory()) continue;
-
-            File targetFile = new File(newTarget, ze.getName());
+        Properties knownChecksums = new Properties();
 
-            targetFile.getParentFile().mkdirs();
-
-            OutputStream out = new BufferedOutputStream(new FileOutputStream(targetFile));
+        if (target.isDirectory() && checksumsFile.canRead()) {
+            InputStream in = new FileInputStream(checksumsFile);
 
-            int read;
-
-            while ((read = jis.read(BUFFER)) != (-1)) {
-                out.write(BUFFER, 0, read);
-                written += read;
-                if (totalUnpackedSize > 0) {
-                    progress.progress(Math.min(TOTAL_WORK, (int) (((double) written / totalUnpackedSize) * TOTAL_WORK)));
-                }
+            try {
+                knownChecksums.load(in);
+            } finally {
+                in.close();
             }
+        }
 
-            out.close();
+        Properties checksums = downloadDelta(idx, target, newTarget, knownChecksums, progress);
+
+        if (checksums == null) {
+            delete(newTarget);
+            downloadFull(idx, newTarget, progress);
         }
 
-        File target = new File(cacheDir, idx.remoteSegment);
         File old = new File(cacheDir, idx.remoteSegment + ".old");
 
+        checksumsFile.delete();
         target.renameTo(old);
         newTarget.renameTo(target);
 
-        FileObject oldFO = FileUtil.toFileObject(old);
+        delete(old);
 
-        if (oldFO != null) oldFO.delete();
+        if (checksums != null) {
+            OutputStream out = new FileOutputStream(checksumsFile);
+
+            try {
+                checksums.store(out, null);
+            } finally {
+                out.close();
+            }
+        }
 
         if (serverPort > 0) {
             new URL("http://localhost:" + serverPort + "/index/internal/indexUpdated").openStream().close();
@@ -168,4 +171,144 @@ public class LocalServerImpl implements LocalServer {
         return true;
     }
 
+    private static void downloadFull(RemoteIndex idx, File newTarget, ProgressContributor progress) throws IOException {
+        URL url = new URL(idx.remote.toExternalForm() + "/downloadable/index?path=" + idx.remoteSegment);
+        URLConnection c = url.openConnection();
+        JarInputStream jis = new JarInputStream(c.getInputStream());
+
+        try {
+            unpack(jis, null, newTarget, totalUnpackedSize(c), progress, new HashSet<String>());
+        } finally {
+            jis.close();
+        }
+    }
+
+    /**Downloads only the files that differ from {@code knownChecksums}, and copies the rest from the current local copy.
+     * Returns the checksums of the new index, or {@code null} if the delta could not be applied.
+     */
+    private static Properties downloadDelta(RemoteIndex idx, File target, File newTarget, Properties knownChecksums, ProgressContributor progress) throws IOException {
+        URL url = new URL(idx.remote.toExternalForm() + "/downloadable/delta?path=" + idx.remoteSegment);
+        HttpURLConnection c = (HttpURLConnection) url.openConnection();
+
+        c.setDoOutput(true);
+        c.setRequestMethod("POST");
+        c.setRequestProperty("Content-Type", "text/plain");
+
+        OutputStream request = c.getOutputStream();
+
+        try {
+            knownChecksums.store(request, null);
+        } finally {
+            request.close();
+        }
+
+        if (c.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            Logger.getLogger(LocalServerImpl.class.getName()).log(Level.FINE, "delta download not supported by {0}, response code: {1}", new Object[] {idx.remote, c.getResponseCode()});
+            return null;
+        }
+
+        JarInputStream jis = new JarInputStream(c.getInputStream());
+        Properties checksums = new Properties();
+        Set<String> downloaded = new HashSet<String>();
+
+        try {
+            unpack(jis, checksums, newTarget, totalUnpackedSize(c), progress, downloaded);
+        } finally {
+            jis.close();
+        }
+
+        if (checksums.isEmpty()) return null;
+
+        for (String name : checksums.stringPropertyNames()) {
+            if (downloaded.contains(name)) continue;
+
+            File source = new File(target, name);
+
+            if (!source.isFile() && name.startsWith(BLOBS_PREFIX)) {
+                //the local server moves the file contents to a folder shared by all indexes:
+                source = new File(new File(target.getParentFile(), SHARED_BLOBS), name.substring(BLOBS_PREFIX.length()));
+            }
+
+            if (!source.isFile()) {
+                Logger.getLogger(LocalServerImpl.class.getName()).log(Level.FINE, "{0} missing in the local copy of the index, downloading the full index", source);
+                return null;
+            }
+
+            File targetFile = new File(newTarget, name);
+
+            targetFile.getParentFile().mkdirs();
+
+            InputStream in = new FileInputStream(source);
+
+            try {
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(targetFile));
+
+                try {
+                    FileUtil.copy(in, out);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        return checksums;
+    }
+
+    private static long totalUnpackedSize(URLConnection c) {
+        String totalUnpackedSizeString = c.getHeaderField("NB-Total-Unpacked-Size");
+        try {
+            return Long.parseLong(totalUnpackedSizeString);
+        } catch (NumberFormatException ex) {
+            Logger.getLogger(LocalServerImpl.class.getName()).log(Level.FINE, null, ex);
+            return -1;
+        }
+    }
+
+    private static void unpack(JarInputStream jis, Properties checksums, File newTarget, long totalUnpackedSize, ProgressContributor progress, Set<String> unpacked) throws IOException {
+        final byte[] BUFFER = new byte[4096];
+        long written = 0;
+        ZipEntry ze;
+
+        while ((ze = jis.getNextEntry()) != null) {
+            if (ze.isDirectory()) continue;
+
+            if (checksums != null && CHECKSUMS_ENTRY.equals(ze.getName())) {
+                checksums.load(jis);
+                continue;
+            }
+
+            File targetFile = new File(newTarget, ze.getName());
+
+            targetFile.getParentFile().mkdirs();
+
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(targetFile));
+
+            try {
+                int read;
+
+                while ((read = jis.read(BUFFER)) != (-1)) {
+                    out.write(BUFFER, 0, read);
+                    written += read;
+                    if (totalUnpackedSize > 0) {
+                        progress.progress(Math.min(TOTAL_WORK, (int) (((double) written / totalUnpackedSize) * TOTAL_WORK)));
+                    }
+                }
+            } finally {
+                out.close();
+            }
+
+            unpacked.add(ze.getName());
+        }
+    }
+
+    private static void delete(File file) throws IOException {
+        if (!file.exists()) return;
+
+        FileObject fo = FileUtil.toFileObject(FileUtil.normalizeFile(file));
+
+        if (fo != null) fo.delete();
+    }
+
 }
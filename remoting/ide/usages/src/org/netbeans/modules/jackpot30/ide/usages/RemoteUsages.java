@@ -69,6 +69,7 @@ import org.netbeans.api.java.source.ui.ScanDialog;
 import org.netbeans.modules.editor.NbEditorUtilities;
 import org.netbeans.modules.jackpot30.common.api.JavaUtils;
 import org.netbeans.modules.jackpot30.remoting.api.RemoteIndex;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest;
 import org.netbeans.modules.jackpot30.remoting.api.Utilities;
 import org.netbeans.modules.jackpot30.remoting.api.Utilities.RemoteSourceDescription;
 import org.netbeans.modules.jackpot30.remoting.api.WebUtilities;
@@ -99,6 +100,7 @@ id = "org.netbeans.modules.jackpot30.ide.usages.RemoteUsages")
 public final class RemoteUsages implements ActionListener {
 
     private final RequestProcessor WORKER = new RequestProcessor(RemoteUsages.class.getName(), 1, false, false);
+    private static final RequestProcessor INDEX_WORKER = new RequestProcessor(RemoteUsages.class.getName() + ".index", 16, true, false);
     
     public void actionPerformed(ActionEvent e) {
         JTextComponent comp = EditorRegistry.lastFocusedComponent(); //XXX
@@ -185,7 +187,7 @@ public final class RemoteUsages implements ActionListener {
             if (rsd != null) {
                 try {
                     URI sourceURI = new URI(rsd.idx.remote.toExternalForm() + "/ui/target?path=" + WebUtilities.escapeForQuery(rsd.idx.remoteSegment) + "&relative=" + WebUtilities.escapeForQuery(rsd.relative) + "&position=" + pos);
-                    Map<Object, Object> targetData = Pojson.load(HashMap.class, sourceURI.toURL().openStream());
+                    Map<Object, Object> targetData = Pojson.load(HashMap.class, RemoteRequest.get(sourceURI).execute());
 
                     String signature = (String) targetData.get("signature");
 
@@ -355,77 +357,96 @@ public final class RemoteUsages implements ActionListener {
         @Override public void run() {
             try {
                 final String serialized = JavaUtils.serialize(toSearch);
-
-                Set<FileObject> resultSet = new HashSet<FileObject>();
-                List<FileObject> result = new ArrayList<FileObject>();
-                Map<RemoteIndex, List<String>> unmappable = new HashMap<RemoteIndex, List<String>>();
+                List<RemoteIndex> indices = new ArrayList<RemoteIndex>();
 
                 for (RemoteIndex idx : RemoteIndex.loadIndices()) {
-                    URL localFolderURL = idx.getLocalFolder();
-                    FileObject localFolder = localFolderURL != null ? URLMapper.findFileObject(localFolderURL) : null;
-
-                    if (options.contains(SearchOptions.USAGES)) {
-                        URI resolved = new URI(idx.remote.toExternalForm() + "/usages/search?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&signatures=" + WebUtilities.escapeForQuery(serialized));
-                        Collection<? extends String> response = WebUtilities.requestStringArrayResponse(resolved, cancel);
+                    indices.add(idx);
+                }
 
-                        if (cancel.get()) return;
-                        if (response == null) continue;
+                //query all indices concurrently, each of the searches with its own timeout:
+                final List<List<String>> usages = new ArrayList<List<String>>(Collections.<List<String>>nCopies(indices.size(), null));
+                final List<List<String>> subs = new ArrayList<List<String>>(Collections.<List<String>>nCopies(indices.size(), null));
+                List<RequestProcessor.Task> pending = new ArrayList<RequestProcessor.Task>();
 
-                        for (String path : response) {
-                            if (path.trim().isEmpty()) continue;
-                            FileObject file = localFolder != null ? localFolder.getFileObject(path) : null;
+                for (int i = 0; i < indices.size(); i++) {
+                    final int index = i;
+                    final RemoteIndex idx = indices.get(i);
 
-                            if (file != null) {
-                                if (resultSet.add(file)) {
-                                    result.add(file);
+                    if (options.contains(SearchOptions.USAGES)) {
+                        pending.add(INDEX_WORKER.post(new Runnable() {
+                            @Override public void run() {
+                                List<String> found = findUsages(idx, serialized);
+                                synchronized (usages) {
+                                    usages.set(index, found);
                                 }
-                            } else {
-                                List<String> um = unmappable.get(idx);
+                            }
+                        }));
+                    }
 
-                                if (um == null) {
-                                    unmappable.put(idx, um = new ArrayList<String>());
+                    if (options.contains(SearchOptions.SUB)) {
+                        pending.add(INDEX_WORKER.post(new Runnable() {
+                            @Override public void run() {
+                                List<String> found = findSubs(idx, serialized);
+                                synchronized (subs) {
+                                    subs.set(index, found);
                                 }
-
-                                um.add(path);
                             }
-                        }
+                        }));
                     }
+                }
 
-                    if (options.contains(SearchOptions.SUB)) {
-                        URI resolved;
-                        if (toSearch.getKind() == ElementKind.METHOD) {
-                            resolved = new URI(idx.remote.toExternalForm() + "/implements/search?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&method=" + WebUtilities.escapeForQuery(serialized));
-                        } else {
-                            resolved = new URI(idx.remote.toExternalForm() + "/implements/search?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&type=" + WebUtilities.escapeForQuery(toSearch.getBinaryName()));
+                try {
+                    for (RequestProcessor.Task t : pending) {
+                        while (!t.waitFinished(100)) {
+                            if (cancel.get()) return;
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Exceptions.printStackTrace(ex);
+                    return;
+                } finally {
+                    if (cancel.get()) {
+                        for (RequestProcessor.Task t : pending) {
+                            t.cancel();
                         }
+                    }
+                }
 
-                        String response = WebUtilities.requestStringResponse(resolved, cancel);
+                if (cancel.get()) return;
 
-                        if (cancel.get()) return;
-                        if (response == null) continue;
+                Set<FileObject> resultSet = new HashSet<FileObject>();
+                List<FileObject> result = new ArrayList<FileObject>();
+                Map<RemoteIndex, List<String>> unmappable = new HashMap<RemoteIndex, List<String>>();
 
-                        //XXX:
-                        Map<String, List<Map<String, String>>> formattedResponse = Pojson.load(LinkedHashMap.class, response);
+                for (int i = 0; i < indices.size(); i++) {
+                    RemoteIndex idx = indices.get(i);
+                    URL localFolderURL = idx.getLocalFolder();
+                    FileObject localFolder = localFolderURL != null ? URLMapper.findFileObject(localFolderURL) : null;
+                    List<String> paths = new ArrayList<String>();
 
-                        for (Entry<String, List<Map<String, String>>> e : formattedResponse.entrySet()) {
-                            for (Map<String, String> p : e.getValue()) {
-                                String path = p.get("file");
-                                FileObject file = localFolder != null ? localFolder.getFileObject(path) : null;
+                    synchronized (usages) {
+                        if (usages.get(i) != null) paths.addAll(usages.get(i));
+                    }
 
-                                if (file != null) {
-                                    if (resultSet.add(file)) {
-                                        result.add(file);
-                                    }
-                                } else {
-                                    List<String> um = unmappable.get(idx);
+                    synchronized (subs) {
+                        if (subs.get(i) != null) paths.addAll(subs.get(i));
+                    }
 
-                                    if (um == null) {
-                                        unmappable.put(idx, um = new ArrayList<String>());
-                                    }
+                    for (String path : paths) {
+                        FileObject file = localFolder != null ? localFolder.getFileObject(path) : null;
 
-                                    um.add(path);
-                                }
+                        if (file != null) {
+                            if (resultSet.add(file)) {
+                                result.add(file);
                             }
+                        } else {
+                            List<String> um = unmappable.get(idx);
+
+                            if (um == null) {
+                                unmappable.put(idx, um = new ArrayList<String>());
+                            }
+
+                            um.add(path);
                         }
                     }
                 }
@@ -439,8 +460,6 @@ public final class RemoteUsages implements ActionListener {
                         }
                     });
                 }
-            } catch (URISyntaxException ex) {
-                Exceptions.printStackTrace(ex);
             } finally {
                 cancel.set(true);
                 SwingUtilities.invokeLater(new Runnable() {
@@ -451,6 +470,57 @@ public final class RemoteUsages implements ActionListener {
             }
         }
 
+        private List<String> findUsages(RemoteIndex idx, String serialized) {
+            try {
+                URI resolved = new URI(idx.remote.toExternalForm() + "/usages/search?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&signatures=" + WebUtilities.escapeForQuery(serialized));
+                Collection<? extends String> response = WebUtilities.requestStringArrayResponse(resolved, cancel, WebUtilities.REMOTE_INDEX_TIMEOUT);
+
+                if (cancel.get() || response == null) return null;
+
+                List<String> result = new ArrayList<String>();
+
+                for (String path : response) {
+                    if (path.trim().isEmpty()) continue;
+                    result.add(path);
+                }
+
+                return result;
+            } catch (URISyntaxException ex) {
+                Exceptions.printStackTrace(ex);
+                return null;
+            }
+        }
+
+        private List<String> findSubs(RemoteIndex idx, String serialized) {
+            try {
+                URI resolved;
+                if (toSearch.getKind() == ElementKind.METHOD) {
+                    resolved = new URI(idx.remote.toExternalForm() + "/implements/search?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&method=" + WebUtilities.escapeForQuery(serialized));
+                } else {
+                    resolved = new URI(idx.remote.toExternalForm() + "/implements/search?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&type=" + WebUtilities.escapeForQuery(toSearch.getBinaryName()));
+                }
+
+                String response = WebUtilities.requestStringResponse(resolved, cancel, WebUtilities.REMOTE_INDEX_TIMEOUT);
+
+                if (cancel.get() || response == null) return null;
+
+                //XXX:
+                Map<String, List<Map<String, String>>> formattedResponse = Pojson.load(LinkedHashMap.class, response);
+                List<String> result = new ArrayList<String>();
+
+                for (Entry<String, List<Map<String, String>>> e : formattedResponse.entrySet()) {
+                    for (Map<String, String> p : e.getValue()) {
+                        result.add(p.get("file"));
+                    }
+                }
+
+                return result;
+            } catch (URISyntaxException ex) {
+                Exceptions.printStackTrace(ex);
+                return null;
+            }
+        }
+
         @Override public boolean cancel() {
             cancel.set(true);
             return true;
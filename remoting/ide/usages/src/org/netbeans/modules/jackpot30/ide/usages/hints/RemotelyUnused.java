@@ -19,12 +19,26 @@
 
 package org.netbeans.modules.jackpot30.ide.usages.hints;
 
+import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree.Kind;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePathScanner;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
@@ -40,12 +54,16 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Searcher;
 import org.apache.lucene.search.TermQuery;
+import org.codeviation.pojson.Pojson;
+import org.netbeans.api.java.source.CompilationInfo;
 import org.netbeans.api.java.source.ElementHandle;
 import org.netbeans.modules.jackpot30.common.api.JavaUtils;
 import org.netbeans.modules.jackpot30.common.api.LuceneHelpers.BitSetCollector;
 import org.netbeans.modules.jackpot30.remoting.api.LocalCache;
 import org.netbeans.modules.jackpot30.remoting.api.LocalCache.Task;
 import org.netbeans.modules.jackpot30.remoting.api.RemoteIndex;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest;
+import org.netbeans.modules.jackpot30.remoting.api.RemoteRequest.ResponseCodeException;
 import org.netbeans.modules.jackpot30.remoting.api.WebUtilities;
 import org.netbeans.spi.editor.hints.ErrorDescription;
 import org.netbeans.spi.java.hints.ErrorDescriptionFactory;
@@ -72,58 +90,180 @@ public class RemotelyUnused {
     public static ErrorDescription hint(HintContext ctx) throws URISyntaxException, IOException {
         Element toSearch = ctx.getInfo().getTrees().getElement(ctx.getPath());
 
-        if (toSearch == null) return null;
-        if (!toSearch.getKind().isField() && toSearch.getKind() != ElementKind.METHOD && toSearch.getKind() != ElementKind.CONSTRUCTOR) return null;
-        if (toSearch.getKind() == ElementKind.METHOD && ctx.getInfo().getElementUtilities().overridesMethod((ExecutableElement) toSearch)) return null;
+        if (!isChecked(ctx.getInfo(), toSearch)) return null;
 
         final String serialized = JavaUtils.serialize(ElementHandle.create(toSearch));
 
         for (RemoteIndex idx : RemoteIndex.loadIndices()) {
-            String result = LocalCache.runOverLocalCache(idx, new Task<IndexReader, String>() {
-                @Override
-                public String run(IndexReader reader, AtomicBoolean cancel) throws IOException {
-                    Query query = new TermQuery(new Term("usagesSignature", serialized));
-                    Searcher s = new IndexSearcher(reader);
+            String result = readFromLocalCache(idx, Collections.singleton(serialized)).get(serialized);
+
+            if (result == null) {
+                //the other members of the file are likely to be checked next, look them up together:
+                Set<String> toLookup = new LinkedHashSet<String>();
+
+                toLookup.add(serialized);
+                toLookup.addAll(fileMembers(ctx.getInfo()));
+                toLookup.removeAll(readFromLocalCache(idx, toLookup).keySet());
+
+                Map<String, String> found = searchRemote(idx, serialized, toLookup);
+
+                result = found.get(serialized);
+                saveToLocalCache(idx, found);
+            }
+            if (!VAL_UNUSED.equals(result)) return null;
+        }
+
+        return ErrorDescriptionFactory.forName(ctx, ctx.getPath(), Bundle.ERR_NoUsages());
+    }
+
+    private static boolean isChecked(CompilationInfo info, Element el) {
+        if (el == null) return false;
+        if (!el.getKind().isField() && el.getKind() != ElementKind.METHOD && el.getKind() != ElementKind.CONSTRUCTOR) return false;
+        if (el.getKind() == ElementKind.METHOD && info.getElementUtilities().overridesMethod((ExecutableElement) el)) return false;
+
+        return true;
+    }
+
+    private static final int MAX_BULK_SIGNATURES = 256;
+
+    private static Collection<String> fileMembers(final CompilationInfo info) {
+        final Set<String> result = new LinkedHashSet<String>();
+
+        new TreePathScanner<Void, Void>() {
+            @Override public Void visitVariable(VariableTree node, Void p) {
+                addMember();
+                return null;
+            }
+            @Override public Void visitMethod(MethodTree node, Void p) {
+                addMember();
+                return null;
+            }
+            private void addMember() {
+                Element el = info.getTrees().getElement(getCurrentPath());
+
+                if (result.size() < MAX_BULK_SIGNATURES && isChecked(info, el)) {
+                    result.add(JavaUtils.serialize(ElementHandle.create(el)));
+                }
+            }
+        }.scan(info.getCompilationUnit(), null);
+
+        return result;
+    }
+
+    private static Map<String, String> readFromLocalCache(RemoteIndex idx, final Collection<String> signatures) throws IOException, URISyntaxException {
+        Map<String, String> result = LocalCache.runOverLocalCache(idx, new Task<IndexReader, Map<String, String>>() {
+            @Override
+            public Map<String, String> run(IndexReader reader, AtomicBoolean cancel) throws IOException {
+                Map<String, String> result = new HashMap<String, String>();
+                Searcher s = new IndexSearcher(reader);
+
+                for (String signature : signatures) {
+                    if (cancel.get()) break;
+
+                    Query query = new TermQuery(new Term("usagesSignature", signature));
                     BitSet matchingDocuments = new BitSet(reader.maxDoc());
                     Collector c = new BitSetCollector(matchingDocuments);
 
                     s.search(query, c);
 
-                    for (int docNum = matchingDocuments.nextSetBit(0); docNum >= 0; docNum = matchingDocuments.nextSetBit(docNum + 1)) {
-                        if (cancel.get()) return VAL_UNKNOWN;
+                    int docNum = matchingDocuments.nextSetBit(0);
 
-                        final Document doc = reader.document(docNum);
-
-                        return doc.get("usagesUsages");
+                    if (docNum >= 0) {
+                        result.put(signature, reader.document(docNum).get("usagesUsages"));
                     }
+                }
 
-                    return VAL_UNKNOWN;
+                return result;
+            }
+        }, null, new AtomicBoolean()/*XXX*/);
+
+        return result != null ? result : Collections.<String, String>emptyMap();
+    }
+
+    private static void saveToLocalCache(RemoteIndex idx, final Map<String, String> found) throws IOException, URISyntaxException {
+        LocalCache.saveToLocalCache(idx, new Task<IndexWriter, Void>() {
+            @Override public Void run(IndexWriter p, AtomicBoolean cancel) throws IOException {
+                for (Entry<String, String> e : found.entrySet()) {
+                    Document doc = new Document();
+                    doc.add(new Field("usagesSignature", e.getKey(), Store.NO, Index.NOT_ANALYZED));
+                    doc.add(new Field("usagesUsages", e.getValue(), Store.YES, Index.NO));
+                    p.addDocument(doc);
                 }
-            }, null, new AtomicBoolean()/*XXX*/);
+                return null;
+            }
+        });
+    }
 
-            if (result == null) {
-                URI resolved = new URI(idx.remote.toExternalForm() + "/usages/search?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&signatures=" + WebUtilities.escapeForQuery(serialized));
-                String response = WebUtilities.requestStringResponse(resolved, new AtomicBoolean());
+    private static final long BULK_RETRY_TIME = 5 * 60 * 1000;
+    private static final Map<String, Long> BULK_UNSUPPORTED = new HashMap<String, Long>();
+
+    /**Looks up whether the given signatures are used in the remote index. The bulk search is used
+     * when more than one signature is to be found, and the server supports it. Otherwise only
+     * {@code toSearch} is looked up.
+     *
+     * @return map from the signatures to {@link #VAL_USED}, {@link #VAL_UNUSED} or {@link #VAL_UNKNOWN}
+     */
+    private static Map<String, String> searchRemote(RemoteIndex idx, String toSearch, Collection<String> signatures) throws URISyntaxException {
+        String key = idx.remote.toExternalForm();
+
+        if (signatures.size() > 1 && !isBulkUnsupported(key)) {
+            StringBuilder content = new StringBuilder();
 
-                if (response != null) {
-                    result = response.trim().isEmpty() ? VAL_UNUSED : VAL_USED;
-                } else {
-                    result = VAL_UNKNOWN;
+            for (String signature : signatures) {
+                content.append(signature).append('\n');
+            }
+
+            URI resolved = new URI(key + "/usages/searchBulk?path=" + WebUtilities.escapeForQuery(idx.remoteSegment));
+
+            try {
+                Map<String, List<String>> signature2Files = Pojson.load(LinkedHashMap.class, RemoteRequest.post(resolved, content.toString()).timeout(WebUtilities.REMOTE_INDEX_TIMEOUT).execute());
+                Map<String, String> result = new HashMap<String, String>();
+
+                for (String signature : signatures) {
+                    List<String> files = signature2Files.get(signature);
+
+                    result.put(signature, files == null ? VAL_UNKNOWN : files.isEmpty() ? VAL_UNUSED : VAL_USED);
                 }
-                final String resultFin = result;
-                LocalCache.saveToLocalCache(idx, new Task<IndexWriter, Void>() {
-                    @Override public Void run(IndexWriter p, AtomicBoolean cancel) throws IOException {
-                        Document doc = new Document();
-                        doc.add(new Field("usagesSignature", serialized, Store.NO, Index.NOT_ANALYZED));
-                        doc.add(new Field("usagesUsages", resultFin, Store.YES, Index.NO));
-                        p.addDocument(doc);
-                        return null;
-                    }
-                });
+
+                return result;
+            } catch (ResponseCodeException ex) {
+                if (ex.getResponseCode() != 404 && ex.getResponseCode() != 405) {
+                    LOG.log(Level.INFO, key, ex);
+                    return Collections.singletonMap(toSearch, VAL_UNKNOWN);
+                }
+
+                //an older server, without the bulk search:
+                LOG.log(Level.FINE, "Bulk usages search not supported by: {0}", key);
+
+                synchronized (BULK_UNSUPPORTED) {
+                    BULK_UNSUPPORTED.put(key, System.currentTimeMillis());
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.INFO, key, ex);
+                return Collections.singletonMap(toSearch, VAL_UNKNOWN);
             }
-            if (!VAL_UNUSED.equals(result)) return null;
         }
 
-        return ErrorDescriptionFactory.forName(ctx, ctx.getPath(), Bundle.ERR_NoUsages());
+        URI resolved = new URI(key + "/usages/search?path=" + WebUtilities.escapeForQuery(idx.remoteSegment) + "&signatures=" + WebUtilities.escapeForQuery(toSearch));
+        String response = WebUtilities.requestStringResponse(resolved, new AtomicBoolean());
+        String result;
+
+        if (response != null) {
+            result = response.trim().isEmpty() ? VAL_UNUSED : VAL_USED;
+        } else {
+            result = VAL_UNKNOWN;
+        }
+
+        return Collections.singletonMap(toSearch, result);
     }
+
+    private static boolean isBulkUnsupported(String key) {
+        synchronized (BULK_UNSUPPORTED) {
+            Long since = BULK_UNSUPPORTED.get(key);
+
+            return since != null && System.currentTimeMillis() - since < BULK_RETRY_TIME;
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger(RemotelyUnused.class.getName());
 }
@@ -0,0 +1,417 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.netbeans.modules.jackpot30.backend.impl.spi.IndexStatistics;
+import org.netbeans.modules.java.source.indexing.JavaIndex;
+import org.openide.filesystems.FileUtil;
+
+/**Removes documents of files that no longer exist from a category cache. These documents are left in the index
+ * when a whole source root disappears between incremental runs, as the indexers are not notified about deleted
+ * files in roots that are no longer indexed. The segments and the per-root caches of such roots are removed as well,
+ * together with the entries of deleted files in the per-root caches of the remaining roots.
+ *
+ * @author lahvac
+ */
+class IndexCompactor {
+
+    private static final String REL_PREFIX = "rel:/";
+    private static final String JAR_REL_PREFIX = "jar:rel:/";
+    private static final String TIMESTAMPS = "timestamps.properties";
+    private static final Set<String> URL_PROPERTIES = new HashSet<String>(Arrays.asList(
+            "java/" + JavaIndex.VERSION + "/checksums.properties",
+            "java/" + JavaIndex.VERSION + "/fqn2files.properties"
+    ));
+
+    private final String categoryId;
+    private final URI rootURI;
+
+    public IndexCompactor(String categoryId, File rootDir) {
+        this.categoryId = categoryId;
+        this.rootURI = rootDir.toURI();
+    }
+
+    public void compact(File cache, String categoryName, String info, PrintStream report) throws IOException {
+        File work = File.createTempFile("jackpot30-compact", "");
+
+        work.delete();
+        work.mkdirs();
+
+        try {
+            File index = new File(work, "index");
+            String indexPrefix = categoryId + "/index/";
+
+            extract(cache, indexPrefix, index);
+
+            long indexSizeBefore = size(index);
+            IndexStatistics statistics = OptionProcessorImpl.readStatistics(cache, categoryId);
+            Directory dir = FSDirectory.open(index);
+            IndexReader r = IndexReader.open(dir, false);
+            Set<String> removedFiles = new HashSet<String>();
+            int removedDocuments = 0;
+
+            try {
+                for (String field : ShardMerger.PATH_FIELDS) {
+                    TermEnum terms = r.terms(new Term(field, ""));
+
+                    try {
+                        do {
+                            Term t = terms.term();
+
+                            if (t == null || !field.equals(t.field())) break;
+
+                            String path = t.text();
+
+                            if (exists(path)) continue;
+
+                            TermDocs docs = r.termDocs(t);
+
+                            try {
+                                while (docs.next()) {
+                                    r.deleteDocument(docs.doc());
+                                    removedDocuments++;
+                                }
+                            } finally {
+                                docs.close();
+                            }
+
+                            removedFiles.add(path);
+
+                            if (statistics != null) statistics.documentsDeleted(field, path);
+                        } while (terms.next());
+                    } finally {
+                        terms.close();
+                    }
+                }
+            } finally {
+                r.close();
+            }
+
+            Properties segments = readSegments(cache);
+            Set<String> removedSegments = new HashSet<String>();
+
+            for (String segment : segments.stringPropertyNames()) {
+                if (!rootExists(segments.getProperty(segment))) {
+                    removedSegments.add(segment);
+                }
+            }
+
+            if (removedDocuments == 0 && removedSegments.isEmpty()) {
+                report.println("No stale documents found in: " + cache);
+                return ;
+            }
+
+            IndexWriter w = new IndexWriter(dir, new KeywordAnalyzer(), false, IndexWriter.MaxFieldLength.UNLIMITED);
+
+            try {
+                w.optimize(true);
+            } finally {
+                w.close(true);
+            }
+
+            long indexSizeAfter = size(index);
+            long cacheSizeBefore = cache.length();
+            File newCache = new File(cache.getParentFile(), cache.getName() + ".compact");
+
+            write(cache, newCache, indexPrefix, index, OptionProcessorImpl.referencedBlobs(index), segments, removedSegments, statistics, categoryName, info);
+
+            if (!newCache.renameTo(cache)) {
+                cache.delete();
+
+                if (!newCache.renameTo(cache)) {
+                    throw new IOException("Cannot replace: " + cache);
+                }
+            }
+
+            report.println("Removed " + removedDocuments + " documents of " + removedFiles.size() + " deleted files from: " + cache);
+            report.println("Removed " + removedSegments.size() + " deleted source roots");
+            report.println("Index size: " + indexSizeBefore + " -> " + indexSizeAfter + " bytes, reclaimed " + (indexSizeBefore - indexSizeAfter) + " bytes");
+            report.println("Cache size: " + cacheSizeBefore + " -> " + cache.length() + " bytes, reclaimed " + (cacheSizeBefore - cache.length()) + " bytes");
+        } finally {
+            ShardMerger.delete(work);
+        }
+    }
+
+    private boolean exists(String path) {
+        try {
+            //the paths are relativized URIs, or absolute URLs for files outside of the root, see IndexAccessor.getPath:
+            URI file = rootURI.resolve(path);
+
+            if (!"file".equals(file.getScheme())) return true;
+
+            return new File(file).exists();
+        } catch (IllegalArgumentException ex) {
+            return true;
+        }
+    }
+
+    private boolean rootExists(String root) {
+        if (root.startsWith(REL_PREFIX)) {
+            return exists(root.substring(REL_PREFIX.length()));
+        }
+
+        if (root.startsWith(JAR_REL_PREFIX)) {
+            String jar = root.substring(JAR_REL_PREFIX.length());
+            int separator = jar.indexOf("!/");
+
+            return exists(separator != (-1) ? jar.substring(0, separator) : jar);
+        }
+
+        return exists(root);
+    }
+
+    private void write(File cache, File target, String indexPrefix, File index, Set<String> referencedBlobs, Properties segments, Set<String> removedSegments, IndexStatistics statistics, String categoryName, String info) throws IOException {
+        String blobsPrefix = categoryId + "/" + OptionProcessorImpl.BLOBS + "/";
+
+        ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(cache)));
+
+        try {
+            JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(target)));
+
+            try {
+                out.putNextEntry(new ZipEntry(indexPrefix));
+
+                for (File f : index.listFiles()) {
+                    out.putNextEntry(new ZipEntry(indexPrefix + f.getName()));
+
+                    InputStream fileIn = new FileInputStream(f);
+
+                    try {
+                        FileUtil.copy(fileIn, out);
+                    } finally {
+                        fileIn.close();
+                    }
+                }
+
+                ZipEntry e;
+
+                while ((e = in.getNextEntry()) != null) {
+                    String name = e.getName();
+
+                    if (name.startsWith(indexPrefix)) continue;
+                    if (name.startsWith(blobsPrefix) && !referencedBlobs.contains(name.substring(name.lastIndexOf('/') + 1))) continue;
+
+                    String segment = name.startsWith(categoryId + "/") ? name.substring(categoryId.length() + 1) : name;
+
+                    if (removedSegments.contains(segment)) continue;
+
+                    out.putNextEntry(new ZipEntry(name));
+
+                    if ((categoryId + "/segments").equals(name)) {
+                        Properties outSegments = new Properties();
+
+                        for (String s : segments.stringPropertyNames()) {
+                            if (!removedSegments.contains(s)) outSegments.setProperty(s, segments.getProperty(s));
+                        }
+
+                        outSegments.store(out, "");
+                    } else if ((categoryId + "/classpath").equals(name)) {
+                        writeClasspath(in, out, removedSegments);
+                    } else if (segments.containsKey(segment)) {
+                        writeSegment(in, out, segments.getProperty(segment));
+                    } else if (statistics != null && (categoryId + "/statistics").equals(name)) {
+                        statistics.store(out);
+                    } else if (statistics != null && categoryName != null && (categoryId + "/info").equals(name)) {
+                        OptionProcessorImpl.writeInfo(out, categoryName, info, statistics.getTotals());
+                    } else {
+                        FileUtil.copy(in, out);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void writeClasspath(InputStream in, OutputStream out, Set<String> removedSegments) throws IOException {
+        BufferedReader r = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        StringBuilder result = new StringBuilder();
+        String line;
+
+        while ((line = r.readLine()) != null) {
+            int eqSign = line.indexOf('=');
+
+            if (eqSign == (-1) || removedSegments.contains(line.substring(0, eqSign))) continue;
+
+            StringBuilder cp = new StringBuilder();
+
+            for (String element : line.substring(eqSign + 1).split(":")) {
+                if (element.isEmpty() || removedSegments.contains(element)) continue;
+                if (cp.length() > 0) cp.append(":");
+                cp.append(element);
+            }
+
+            result.append(line.substring(0, eqSign)).append("=").append(cp).append("\n");
+        }
+
+        out.write(result.toString().getBytes("UTF-8"));
+    }
+
+    /**Copies the per-root cache of a source root, without the entries of files that no longer exist.
+     */
+    private void writeSegment(InputStream in, OutputStream out, String root) throws IOException {
+        ZipInputStream segmentIn = new ZipInputStream(new FilterInputStream(in) {
+            @Override public void close() throws IOException {
+                //the outer stream is closed separately
+            }
+        });
+        JarOutputStream segmentOut = new JarOutputStream(out);
+        ZipEntry e;
+
+        while ((e = segmentIn.getNextEntry()) != null) {
+            segmentOut.putNextEntry(new ZipEntry(e.getName()));
+
+            if (TIMESTAMPS.equals(e.getName()) && root.startsWith(REL_PREFIX)) {
+                //the keys are paths relative to the source root:
+                File rootDir = new File(rootURI.resolve(root.substring(REL_PREFIX.length())));
+                Properties timestamps = new Properties();
+                Properties result = new Properties();
+
+                timestamps.load(segmentIn);
+
+                for (String file : timestamps.stringPropertyNames()) {
+                    if (new File(rootDir, file).exists()) result.setProperty(file, timestamps.getProperty(file));
+                }
+
+                result.store(segmentOut, "");
+            } else if (URL_PROPERTIES.contains(e.getName())) {
+                //the keys or values are URLs of the files, relative to the category root directory:
+                Properties urls = new Properties();
+                Properties result = new Properties();
+
+                urls.load(segmentIn);
+
+                for (String key : urls.stringPropertyNames()) {
+                    String value = urls.getProperty(key);
+
+                    if (key.startsWith(REL_PREFIX) && !exists(key.substring(REL_PREFIX.length()))) continue;
+                    if (value.startsWith(REL_PREFIX) && !exists(value.substring(REL_PREFIX.length()))) continue;
+
+                    result.setProperty(key, value);
+                }
+
+                result.store(segmentOut, "");
+            } else {
+                FileUtil.copy(segmentIn, segmentOut);
+            }
+        }
+
+        segmentOut.finish();
+    }
+
+    private Properties readSegments(File cache) throws IOException {
+        Properties segments = new Properties();
+        ZipFile zip = new ZipFile(cache);
+
+        try {
+            ZipEntry segmentsEntry = zip.getEntry(categoryId + "/segments");
+
+            if (segmentsEntry != null) {
+                InputStream in = zip.getInputStream(segmentsEntry);
+
+                try {
+                    segments.load(in);
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            zip.close();
+        }
+
+        return segments;
+    }
+
+    private void extract(File cache, String prefix, File targetDir) throws IOException {
+        ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(cache)));
+
+        try {
+            ZipEntry e;
+
+            while ((e = in.getNextEntry()) != null) {
+                if (e.isDirectory() || !e.getName().startsWith(prefix)) continue;
+
+                File target = new File(targetDir, e.getName().substring(prefix.length()));
+
+                target.getParentFile().mkdirs();
+
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+
+                try {
+                    FileUtil.copy(in, out);
+                } finally {
+                    out.close();
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        if (!targetDir.isDirectory()) {
+            throw new IOException("No index of category " + categoryId + " in: " + cache);
+        }
+    }
+
+    private static long size(File file) {
+        File[] children = file.listFiles();
+
+        if (children == null) return file.length();
+
+        long result = 0;
+
+        for (File c : children) {
+            result += size(c);
+        }
+
+        return result;
+    }
+
+}
@@ -19,28 +19,40 @@
 
 package org.netbeans.modules.jackpot30.backend.impl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.jar.JarOutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import org.apache.lucene.analysis.KeywordAnalyzer;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.store.FSDirectory;
 import org.netbeans.api.java.classpath.ClassPath;
 import org.netbeans.api.java.classpath.GlobalPathRegistry;
@@ -53,8 +65,9 @@ import org.netbeans.api.project.ProjectUtils;
 import org.netbeans.api.project.SourceGroup;
 import org.netbeans.api.project.ui.OpenProjects;
 import org.netbeans.api.sendopts.CommandException;
+import org.netbeans.modules.jackpot30.backend.impl.spi.BlobStore;
 import org.netbeans.modules.jackpot30.backend.impl.spi.IndexAccessor;
-import org.netbeans.modules.jackpot30.backend.impl.spi.StatisticsGenerator;
+import org.netbeans.modules.jackpot30.backend.impl.spi.IndexStatistics;
 import org.netbeans.modules.java.source.indexing.JavaIndex;
 import org.netbeans.modules.parsing.impl.indexing.CacheFolder;
 import org.netbeans.spi.java.classpath.support.ClassPathSupport;
@@ -82,8 +95,12 @@ public class OptionProcessorImpl extends OptionProcessor {
     private final Option CATEGORY_ROOT_DIR = Option.requiredArgument(Option.NO_SHORT_NAME, "category-root-dir");
     private final Option CACHE_TARGET = Option.requiredArgument(Option.NO_SHORT_NAME, "cache-target");
     private final Option INFO = Option.requiredArgument(Option.NO_SHORT_NAME, "info");
-    private final Set<Option> OPTIONS = new HashSet<Option>(Arrays.asList(CATEGORY_ID, CATEGORY_NAME, CATEGORY_PROJECTS, CATEGORY_ROOT_DIR, CACHE_TARGET, INFO));
+    private final Option INCREMENTAL = Option.withoutArgument(Option.NO_SHORT_NAME, "incremental");
+    private final Option MERGE_SHARDS = Option.requiredArgument(Option.NO_SHORT_NAME, "merge-shards");
+    private final Option COMPACT = Option.withoutArgument(Option.NO_SHORT_NAME, "compact");
+    private final Set<Option> OPTIONS = new HashSet<Option>(Arrays.asList(CATEGORY_ID, CATEGORY_NAME, CATEGORY_PROJECTS, CATEGORY_ROOT_DIR, CACHE_TARGET, INFO, INCREMENTAL, MERGE_SHARDS, COMPACT));
     private final boolean STORE_CLASSPATH = true;
+    static final String BLOBS = "blobs";
     
     @Override
     protected Set<Option> getOptions() {
@@ -125,22 +142,83 @@ public class OptionProcessorImpl extends OptionProcessor {
             return;
         }
 
+        String info = optionValues.containsKey(INFO) ? optionValues.get(INFO)[0] : null;
+
+        if (optionValues.containsKey(COMPACT) && !optionValues.containsKey(CATEGORY_ROOT_DIR)) {
+            env.getErrorStream().println("Error: --compact requires --category-root-dir, to find out which files no longer exist!");
+            return;
+        }
+
+        if (optionValues.containsKey(MERGE_SHARDS)) {
+            List<File> shards = new ArrayList<File>();
+
+            for (String shard : optionValues.get(MERGE_SHARDS)[0].split(Pattern.quote(File.pathSeparator))) {
+                if (!shard.isEmpty()) shards.add(FileUtil.normalizeFile(new File(shard)));
+            }
+
+            try {
+                new ShardMerger(categoryId, shards).merge(cache, categoryName, info);
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, null, ex);
+                throw (CommandException) new CommandException(0).initCause(ex);
+            }
+
+            if (optionValues.containsKey(COMPACT)) {
+                compact(env, cache, categoryId, categoryName, info, new File(optionValues.get(CATEGORY_ROOT_DIR)[0]));
+            }
+
+            LifecycleManager.getDefault().exit();
+            return;
+        }
+
         File baseDirFile = new File(optionValues.get(CATEGORY_ROOT_DIR)[0]);
+
+        if (optionValues.containsKey(COMPACT) && !optionValues.containsKey(CATEGORY_PROJECTS)) {
+            compact(env, cache, categoryId, categoryName, info, baseDirFile);
+            LifecycleManager.getDefault().exit();
+            return;
+        }
+
         FileObject baseDir = FileUtil.toFileObject(baseDirFile);
         IndexWriter w = null;
 
         FileObject cacheFolder = CacheFolder.getCacheFolder();
         FileObject cacheTemp = cacheFolder.getFileObject("index");
+        File blobsDir = new File(FileUtil.toFile(cacheFolder), BLOBS);
         Map<String, String> classpath;
         Map<FileObject, String> extraJars = new HashMap<FileObject, String>();
+        IndexStatistics statistics = null;
 
         try {
+            boolean incremental = optionValues.containsKey(INCREMENTAL) && cache.canRead();
+
+            if (incremental && (statistics = readStatistics(cache, categoryId)) == null) {
+                LOG.log(Level.INFO, "No statistics in {0}, indexing from scratch", cache);
+                incremental = false;
+            }
+
+            if (statistics == null) statistics = new IndexStatistics();
+
             if (cacheTemp != null) cacheTemp.delete();
+            ShardMerger.delete(blobsDir);
+
+            if (incremental) {
+                //restore the state of the previous run, so that only changed files are re-indexed,
+                //and documents of deleted files are removed by the indexers:
+                restorePreviousIndex(cache, categoryId, FileUtil.toFile(cacheFolder), baseDirFile.toURI().toString(), baseDir.toURI().toString());
+                cacheFolder.refresh();
+                cacheTemp = cacheFolder.getFileObject("index");
+            }
+
+            if (cacheTemp == null) {
+                cacheTemp = cacheFolder.createFolder("index");
+            }
+
+            FSDirectory indexDir = FSDirectory.open(FileUtil.toFile(cacheTemp));
 
-            cacheTemp = cacheFolder.createFolder("index");
-            w = new IndexWriter(FSDirectory.open(FileUtil.toFile(cacheTemp)), new KeywordAnalyzer(), IndexWriter.MaxFieldLength.UNLIMITED);
+            w = new IndexWriter(indexDir, new KeywordAnalyzer(), !IndexReader.indexExists(indexDir), IndexWriter.MaxFieldLength.UNLIMITED);
 
-            IndexAccessor.current = new IndexAccessor(w, baseDir);
+            IndexAccessor.current = new IndexAccessor(w, baseDir, statistics, new BlobStore(blobsDir));
             Set<FileObject> roots = getRoots(optionValues.get(CATEGORY_PROJECTS), env);
 
             classpath = indexProjects(roots, extraJars, env);
@@ -163,27 +241,6 @@ public class OptionProcessorImpl extends OptionProcessor {
             }
         }
 
-        Map<String, Long> statistics = Collections.emptyMap();
-        IndexReader r = null;
-
-        try {
-            r = IndexReader.open(FSDirectory.open(FileUtil.toFile(cacheTemp)), true);
-
-            statistics = StatisticsGenerator.generateStatistics(r);
-        } catch (CorruptIndexException ex) {
-            Exceptions.printStackTrace(ex);
-        } catch (IOException ex) {
-            Exceptions.printStackTrace(ex);
-        } finally {
-            if (r != null) {
-                try {
-                    r.close();
-                } catch (IOException ex) {
-                    Exceptions.printStackTrace(ex);
-                }
-            }
-        }
-
         cacheTemp.refresh();
 
         JarOutputStream out = null;
@@ -191,7 +248,7 @@ public class OptionProcessorImpl extends OptionProcessor {
 
         try {
             out = new JarOutputStream(new FileOutputStream(cache));
-            pack(out, cacheTemp, null, "index", new StringBuilder(categoryId));
+            packIndex(out, categoryId, FileUtil.toFile(cacheFolder));
 
             segments = cacheFolder.getFileObject("segments").getInputStream();
             Properties in = new Properties();
@@ -221,27 +278,11 @@ public class OptionProcessorImpl extends OptionProcessor {
 
             out.putNextEntry(new ZipEntry(categoryId + "/info"));
 
-            out.write("{\n".getBytes("UTF-8"));
-            out.write(("\"displayName\": \"" + categoryName + "\"").getBytes("UTF-8"));
-            if (optionValues.containsKey(INFO)) {
-                for (String infoValue : optionValues.get(INFO)[0].split(";")) {
-                    int eqSign = infoValue.indexOf('=');
-                    if (eqSign == (-1)) {
-                        LOG.log(Level.INFO, "No ''='' sign in: {0}", infoValue);
-                        continue;
-                    }
-                    out.write((",\n\"" + infoValue.substring(0, eqSign) + "\": \"" + infoValue.substring(eqSign + 1) + "\"").getBytes("UTF-8"));
-                }
-            }
-            out.write(",\n \"statistics\" : {\n".getBytes("UTF-8"));
-            boolean wasEntry = false;
-            for (Entry<String, Long> e : statistics.entrySet()) {
-                if (wasEntry) out.write(", \n".getBytes("UTF-8"));
-                out.write(("\"" + e.getKey() + "\" : " + e.getValue()).getBytes("UTF-8"));
-                wasEntry = true;
-            }
-            out.write("\n}\n".getBytes("UTF-8"));
-            out.write("\n}\n".getBytes("UTF-8"));
+            writeInfo(out, categoryName, info, statistics.getTotals());
+
+            out.putNextEntry(new ZipEntry(categoryId + "/statistics"));
+
+            statistics.store(out);
 
             if (STORE_CLASSPATH) {
                 out.putNextEntry(new ZipEntry(categoryId + "/classpath"));
@@ -299,10 +340,47 @@ public class OptionProcessorImpl extends OptionProcessor {
                 }
             }
         }
-        
+
+        if (optionValues.containsKey(COMPACT)) {
+            compact(env, cache, categoryId, categoryName, info, baseDirFile);
+        }
+
         LifecycleManager.getDefault().exit();
     }
 
+    private void compact(Env env, File cache, String categoryId, String categoryName, String info, File baseDir) throws CommandException {
+        try {
+            new IndexCompactor(categoryId, baseDir).compact(cache, categoryName, info, env.getOutputStream());
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+            throw (CommandException) new CommandException(0).initCause(ex);
+        }
+    }
+
+    static void writeInfo(OutputStream out, String categoryName, String info, Map<String, Long> statistics) throws IOException {
+        out.write("{\n".getBytes("UTF-8"));
+        out.write(("\"displayName\": \"" + categoryName + "\"").getBytes("UTF-8"));
+        if (info != null) {
+            for (String infoValue : info.split(";")) {
+                int eqSign = infoValue.indexOf('=');
+                if (eqSign == (-1)) {
+                    LOG.log(Level.INFO, "No ''='' sign in: {0}", infoValue);
+                    continue;
+                }
+                out.write((",\n\"" + infoValue.substring(0, eqSign) + "\": \"" + infoValue.substring(eqSign + 1) + "\"").getBytes("UTF-8"));
+            }
+        }
+        out.write(",\n \"statistics\" : {\n".getBytes("UTF-8"));
+        boolean wasEntry = false;
+        for (Entry<String, Long> e : statistics.entrySet()) {
+            if (wasEntry) out.write(", \n".getBytes("UTF-8"));
+            out.write(("\"" + e.getKey() + "\" : " + e.getValue()).getBytes("UTF-8"));
+            wasEntry = true;
+        }
+        out.write("\n}\n".getBytes("UTF-8"));
+        out.write("\n}\n".getBytes("UTF-8"));
+    }
+
     private Set<FileObject> getRoots(String[] projects, Env env) {
         Set<FileObject> sourceRoots = new HashSet<FileObject>(projects.length * 4 / 3 + 1);
 
@@ -427,7 +505,50 @@ public class OptionProcessorImpl extends OptionProcessor {
         }
     }
 
-    private void pack(JarOutputStream target, FileObject index, String baseURL, String name, StringBuilder relPath) throws IOException {
+    /**Packs the Lucene index from the cache folder, together with the contents of the files
+     * that are still referenced from the index.
+     */
+    static void packIndex(JarOutputStream out, String categoryId, File cacheFolder) throws IOException {
+        File index = new File(cacheFolder, "index");
+        String indexPrefix = categoryId + "/index/";
+
+        out.putNextEntry(new ZipEntry(indexPrefix));
+
+        for (File f : index.listFiles()) {
+            out.putNextEntry(new ZipEntry(indexPrefix + f.getName()));
+
+            InputStream in = new FileInputStream(f);
+
+            try {
+                FileUtil.copy(in, out);
+            } finally {
+                in.close();
+            }
+        }
+
+        //only the contents of files that are still in the index:
+        for (String hash : referencedBlobs(index)) {
+            String blobPath = BLOBS + "/" + BlobStore.path(hash);
+            File blob = new File(cacheFolder, blobPath);
+
+            if (!blob.canRead()) {
+                LOG.log(Level.WARNING, "Missing content: {0}", hash);
+                continue;
+            }
+
+            out.putNextEntry(new ZipEntry(categoryId + "/" + blobPath));
+
+            InputStream blobIn = new FileInputStream(blob);
+
+            try {
+                FileUtil.copy(blobIn, out);
+            } finally {
+                blobIn.close();
+            }
+        }
+    }
+
+    private static void pack(JarOutputStream target, FileObject index, String baseURL, String name, StringBuilder relPath) throws IOException {
         int len = relPath.length();
         boolean first = relPath.length() == 0;
 
@@ -462,7 +583,138 @@ public class OptionProcessorImpl extends OptionProcessor {
         relPath.delete(len, relPath.length());
     }
 
-    private void fixAbsolutePath(InputStream original, OutputStream target, String origPrefix, String targetPrefix) throws IOException {
+    static Set<String> referencedBlobs(File indexDir) throws IOException {
+        Set<String> result = new TreeSet<String>();
+        IndexReader r = IndexReader.open(FSDirectory.open(indexDir), true);
+
+        try {
+            TermEnum terms = r.terms(new Term(BlobStore.KEY_CONTENT_HASH, ""));
+
+            try {
+                do {
+                    Term t = terms.term();
+
+                    if (t == null || !BlobStore.KEY_CONTENT_HASH.equals(t.field())) break;
+
+                    result.add(t.text());
+                } while (terms.next());
+            } finally {
+                terms.close();
+            }
+        } finally {
+            r.close();
+        }
+
+        return result;
+    }
+
+    static IndexStatistics readStatistics(File cache, String categoryId) throws IOException {
+        ZipFile zip = new ZipFile(cache);
+
+        try {
+            ZipEntry e = zip.getEntry(categoryId + "/statistics");
+
+            if (e == null) return null;
+
+            InputStream in = new BufferedInputStream(zip.getInputStream(e));
+
+            try {
+                return IndexStatistics.load(in);
+            } catch (IOException ex) {
+                LOG.log(Level.INFO, null, ex);
+                return null;
+            } finally {
+                in.close();
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**Inverse of the packing performed at the end of {@link #process(org.netbeans.spi.sendopts.Env, java.util.Map)}:
+     * unpacks the Lucene index, the file contents, the segments mapping and the per-root caches
+     * (including {@code checksums.properties}) of a previous run into the cache folder.
+     */
+    static void restorePreviousIndex(File previousCache, String categoryId, File cacheFolderFile, String baseDirPath, String baseURL) throws IOException {
+        String prefix = categoryId + "/";
+        ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(previousCache)));
+
+        try {
+            ZipEntry e;
+
+            while ((e = in.getNextEntry()) != null) {
+                if (e.isDirectory() || !e.getName().startsWith(prefix)) continue;
+
+                String name = e.getName().substring(prefix.length());
+
+                if (name.startsWith("index/") || name.startsWith(BLOBS + "/")) {
+                    copy(in, new File(cacheFolderFile, name), null);
+                } else if ("segments".equals(name)) {
+                    Properties inSegments = new Properties();
+
+                    inSegments.load(in);
+
+                    Properties outSegments = new Properties();
+
+                    for (String segment : inSegments.stringPropertyNames()) {
+                        String rel = inSegments.getProperty(segment);
+                        String url;
+
+                        if (rel.startsWith("rel:/")) url = baseDirPath + rel.substring("rel:/".length());
+                        else if (rel.startsWith("jar:rel:/")) url = "jar:" + baseDirPath + rel.substring("jar:rel:/".length());
+                        else url = rel;
+
+                        outSegments.setProperty(segment, url);
+                    }
+
+                    OutputStream out = new FileOutputStream(new File(cacheFolderFile, "segments"));
+
+                    try {
+                        outSegments.store(out, "");
+                    } finally {
+                        out.close();
+                    }
+                } else if (name.startsWith("s") && name.indexOf('/') == (-1)) {
+                    ZipInputStream segmentIn = new ZipInputStream(new FilterInputStream(in) {
+                        @Override public void close() throws IOException {
+                            //the outer stream is closed separately
+                        }
+                    });
+                    File segmentFolder = new File(cacheFolderFile, name);
+                    ZipEntry se;
+
+                    while ((se = segmentIn.getNextEntry()) != null) {
+                        if (se.isDirectory()) continue;
+
+                        String relPath = se.getName();
+                        boolean fixPaths = ("java/" + JavaIndex.VERSION + "/checksums.properties").equals(relPath) || ("java/" + JavaIndex.VERSION + "/fqn2files.properties").equals(relPath);
+
+                        copy(segmentIn, new File(segmentFolder, relPath), fixPaths ? baseURL : null);
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void copy(InputStream in, File target, String baseURL) throws IOException {
+        target.getParentFile().mkdirs();
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+
+        try {
+            if (baseURL != null) {
+                fixAbsolutePath(in, out, "rel:/", baseURL);
+            } else {
+                FileUtil.copy(in, out);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void fixAbsolutePath(InputStream original, OutputStream target, String origPrefix, String targetPrefix) throws IOException {
         Properties inProps = new Properties();
 
         inProps.load(original);
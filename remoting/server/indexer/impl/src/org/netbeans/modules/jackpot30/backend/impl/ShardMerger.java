@@ -0,0 +1,464 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.netbeans.modules.jackpot30.backend.impl.spi.BlobStore;
+import org.netbeans.modules.jackpot30.backend.impl.spi.IndexStatistics;
+import org.openide.filesystems.FileUtil;
+
+/**Merges category caches that were built from disjoint groups of projects (by separate
+ * indexer processes) into a single category cache, as if all the projects were indexed at once.
+ *
+ * A shard may contain documents for source roots of other shards (indexed as dependencies),
+ * so only documents that belong to the shard's own source roots (the keys of its {@code classpath})
+ * are kept.
+ *
+ * @author lahvac
+ */
+class ShardMerger {
+
+    private static final Logger LOG = Logger.getLogger(ShardMerger.class.getName());
+    static final String[] PATH_FIELDS = {"file", "relativePath", "languagePath", "duplicatesPath"};
+    private static final String REL_PREFIX = "rel:/";
+
+    private final String categoryId;
+    private final List<File> shardFiles;
+
+    public ShardMerger(String categoryId, List<File> shardFiles) {
+        this.categoryId = categoryId;
+        this.shardFiles = shardFiles;
+    }
+
+    public void merge(File target, String categoryName, String info) throws IOException {
+        File work = File.createTempFile("jackpot30-shards", "");
+
+        work.delete();
+        work.mkdirs();
+
+        List<Shard> shards = new ArrayList<Shard>();
+
+        try {
+            for (File shardFile : shardFiles) {
+                IndexStatistics statistics = OptionProcessorImpl.readStatistics(shardFile, categoryId);
+
+                if (statistics == null) {
+                    throw new IOException("No statistics in: " + shardFile);
+                }
+
+                shards.add(new Shard(new ZipFile(shardFile), statistics));
+            }
+
+            Map<String, Shard> root2Owner = new HashMap<String, Shard>();
+
+            for (Shard shard : shards) {
+                for (String segment : shard.classpath.keySet()) {
+                    String rel = shard.segments.getProperty(segment);
+
+                    if (rel == null || !rel.startsWith(REL_PREFIX)) continue;
+
+                    String root = rel.substring(REL_PREFIX.length());
+
+                    if (!root2Owner.containsKey(root)) root2Owner.put(root, shard);
+                }
+            }
+
+            Map<String, String> url2Segment = new HashMap<String, String>();
+            Map<String, Entry<Shard, String>> segmentSource = new LinkedHashMap<String, Entry<Shard, String>>();
+            int segmentCounter = 1;
+
+            //the owner's data of a source root is preferred over the data of the same root created as a dependency:
+            for (Shard shard : shards) {
+                for (String segment : shard.classpath.keySet()) {
+                    segmentCounter = renameSegment(shard, segment, url2Segment, segmentSource, segmentCounter);
+                }
+            }
+
+            for (Shard shard : shards) {
+                for (String segment : new TreeSet<String>(shard.segments.stringPropertyNames())) {
+                    segmentCounter = renameSegment(shard, segment, url2Segment, segmentSource, segmentCounter);
+                }
+            }
+
+            int extraJarCounter = 0;
+
+            for (Shard shard : shards) {
+                for (String cp : shard.classpath.values()) {
+                    for (String element : cp.split(":")) {
+                        if (element.startsWith("ej") && !shard.jarRename.containsKey(element)) {
+                            shard.jarRename.put(element, "ej" + extraJarCounter++ + ".jar");
+                        }
+                    }
+                }
+            }
+
+            List<Directory> indexes = new ArrayList<Directory>();
+            Set<String> unownedPaths = new HashSet<String>();
+            int i = 0;
+
+            for (Shard shard : shards) {
+                File shardIndex = new File(work, "shard" + i++);
+
+                if (!extractIndex(shard, shardIndex)) continue;
+
+                Directory dir = FSDirectory.open(shardIndex);
+
+                removeForeignDocuments(shard, dir, root2Owner, unownedPaths);
+                indexes.add(dir);
+            }
+
+            File mergedIndex = new File(work, "index");
+            IndexWriter w = new IndexWriter(FSDirectory.open(mergedIndex), new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+
+            try {
+                w.addIndexes(indexes.toArray(new Directory[0]));
+                w.optimize(true);
+            } finally {
+                w.close(true);
+            }
+
+            IndexStatistics statistics = new IndexStatistics();
+
+            for (Shard shard : shards) {
+                statistics.merge(shard.statistics);
+            }
+
+            JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(target)));
+
+            try {
+                out.putNextEntry(new ZipEntry(categoryId + "/index/"));
+
+                for (File f : mergedIndex.listFiles()) {
+                    out.putNextEntry(new ZipEntry(categoryId + "/index/" + f.getName()));
+
+                    InputStream in = new FileInputStream(f);
+
+                    try {
+                        FileUtil.copy(in, out);
+                    } finally {
+                        in.close();
+                    }
+                }
+
+                Properties outSegments = new Properties();
+
+                for (Entry<String, String> e : url2Segment.entrySet()) {
+                    outSegments.setProperty(e.getValue(), e.getKey());
+                }
+
+                out.putNextEntry(new ZipEntry(categoryId + "/segments"));
+                outSegments.store(out, "");
+
+                out.putNextEntry(new ZipEntry(categoryId + "/info"));
+                OptionProcessorImpl.writeInfo(out, categoryName, info, statistics.getTotals());
+
+                out.putNextEntry(new ZipEntry(categoryId + "/statistics"));
+                statistics.store(out);
+
+                out.putNextEntry(new ZipEntry(categoryId + "/classpath"));
+
+                for (Shard shard : shards) {
+                    for (Entry<String, String> e : shard.classpath.entrySet()) {
+                        String segment = shard.segmentRename.get(e.getKey());
+
+                        if (segment == null || segmentSource.get(segment).getKey() != shard) continue;
+
+                        StringBuilder cp = new StringBuilder();
+
+                        for (String element : e.getValue().split(":")) {
+                            if (element.isEmpty()) continue;
+
+                            String renamed = element.startsWith("ej") ? shard.jarRename.get(element) : shard.segmentRename.get(element);
+
+                            if (renamed == null) {
+                                LOG.log(Level.INFO, "Unknown classpath element: {0}", element);
+                                continue;
+                            }
+
+                            if (cp.length() > 0) cp.append(":");
+                            cp.append(renamed);
+                        }
+
+                        out.write((segment + "=" + cp + "\n").getBytes("UTF-8"));
+                    }
+                }
+
+                for (Shard shard : shards) {
+                    for (Entry<String, String> e : shard.jarRename.entrySet()) {
+                        copyEntry(shard, e.getKey(), e.getValue(), out);
+                    }
+                }
+
+                for (Entry<String, Entry<Shard, String>> e : segmentSource.entrySet()) {
+                    copyEntry(e.getValue().getKey(), e.getValue().getValue(), e.getKey(), out);
+                }
+
+                for (String hash : OptionProcessorImpl.referencedBlobs(mergedIndex)) {
+                    String blobPath = OptionProcessorImpl.BLOBS + "/" + BlobStore.path(hash);
+                    boolean found = false;
+
+                    for (Shard shard : shards) {
+                        if (found = copyEntry(shard, blobPath, blobPath, out)) break;
+                    }
+
+                    if (!found) {
+                        LOG.log(Level.WARNING, "Missing content: {0}", hash);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            for (Shard shard : shards) {
+                shard.zip.close();
+            }
+
+            delete(work);
+        }
+    }
+
+    private int renameSegment(Shard shard, String segment, Map<String, String> url2Segment, Map<String, Entry<Shard, String>> segmentSource, int segmentCounter) {
+        if (shard.segmentRename.containsKey(segment)) return segmentCounter;
+
+        String url = shard.segments.getProperty(segment);
+
+        if (url == null) return segmentCounter;
+
+        String newSegment = url2Segment.get(url);
+
+        if (newSegment == null) {
+            url2Segment.put(url, newSegment = "s" + segmentCounter++);
+            segmentSource.put(newSegment, new SimpleEntry<Shard, String>(shard, segment));
+        }
+
+        shard.segmentRename.put(segment, newSegment);
+
+        return segmentCounter;
+    }
+
+    private boolean extractIndex(Shard shard, File targetDir) throws IOException {
+        String prefix = categoryId + "/index/";
+        boolean found = false;
+
+        for (Enumeration<? extends ZipEntry> en = shard.zip.entries(); en.hasMoreElements(); ) {
+            ZipEntry e = en.nextElement();
+
+            if (e.isDirectory() || !e.getName().startsWith(prefix)) continue;
+
+            File target = new File(targetDir, e.getName().substring(prefix.length()));
+
+            target.getParentFile().mkdirs();
+
+            InputStream in = shard.zip.getInputStream(e);
+
+            try {
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+
+                try {
+                    FileUtil.copy(in, out);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+
+            found = true;
+        }
+
+        return found;
+    }
+
+    private void removeForeignDocuments(Shard shard, Directory dir, Map<String, Shard> root2Owner, Set<String> unownedPaths) throws IOException {
+        IndexReader r = IndexReader.open(dir, false);
+        Set<String> claimedUnownedPaths = new HashSet<String>();
+        int removed = 0;
+
+        try {
+            for (String field : PATH_FIELDS) {
+                TermEnum terms = r.terms(new Term(field, ""));
+
+                try {
+                    do {
+                        Term t = terms.term();
+
+                        if (t == null || !field.equals(t.field())) break;
+
+                        String path = t.text();
+                        Shard owner = findOwner(path, root2Owner);
+                        boolean keep;
+
+                        if (owner != null) {
+                            keep = owner == shard;
+                        } else {
+                            //not below any source root of the category, the first shard that has the file wins:
+                            keep = claimedUnownedPaths.contains(path) || unownedPaths.add(path);
+                            if (keep) claimedUnownedPaths.add(path);
+                        }
+
+                        if (keep) continue;
+
+                        shard.statistics.documentsDeleted(field, path);
+
+                        TermDocs docs = r.termDocs(t);
+
+                        try {
+                            while (docs.next()) {
+                                r.deleteDocument(docs.doc());
+                                removed++;
+                            }
+                        } finally {
+                            docs.close();
+                        }
+                    } while (terms.next());
+                } finally {
+                    terms.close();
+                }
+            }
+        } finally {
+            r.close();
+        }
+
+        LOG.log(Level.FINE, "Removed {0} documents indexed as dependencies from {1}", new Object[] {removed, shard.zip.getName()});
+    }
+
+    private static Shard findOwner(String path, Map<String, Shard> root2Owner) {
+        int slash = path.length();
+
+        while ((slash = path.lastIndexOf('/', slash - 1)) != (-1)) {
+            Shard owner = root2Owner.get(path.substring(0, slash + 1));
+
+            if (owner != null) return owner;
+        }
+
+        return root2Owner.get("");
+    }
+
+    private boolean copyEntry(Shard shard, String name, String newName, JarOutputStream out) throws IOException {
+        ZipEntry e = shard.zip.getEntry(categoryId + "/" + name);
+
+        if (e == null) return false;
+
+        out.putNextEntry(new ZipEntry(categoryId + "/" + newName));
+
+        InputStream in = shard.zip.getInputStream(e);
+
+        try {
+            FileUtil.copy(in, out);
+        } finally {
+            in.close();
+        }
+
+        return true;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+
+        file.delete();
+    }
+
+    private final class Shard {
+        private final ZipFile zip;
+        private final IndexStatistics statistics;
+        private final Properties segments = new Properties();
+        private final Map<String, String> classpath = new LinkedHashMap<String, String>();
+        private final Map<String, String> segmentRename = new HashMap<String, String>();
+        private final Map<String, String> jarRename = new LinkedHashMap<String, String>();
+
+        public Shard(ZipFile zip, IndexStatistics statistics) throws IOException {
+            this.zip = zip;
+            this.statistics = statistics;
+
+            ZipEntry segmentsEntry = zip.getEntry(categoryId + "/segments");
+
+            if (segmentsEntry == null) {
+                throw new IOException("Not a cache of category " + categoryId + ": " + zip.getName());
+            }
+
+            InputStream in = zip.getInputStream(segmentsEntry);
+
+            try {
+                segments.load(in);
+            } finally {
+                in.close();
+            }
+
+            ZipEntry classpathEntry = zip.getEntry(categoryId + "/classpath");
+
+            if (classpathEntry != null) {
+                BufferedReader r = new BufferedReader(new InputStreamReader(zip.getInputStream(classpathEntry), "UTF-8"));
+
+                try {
+                    String line;
+
+                    while ((line = r.readLine()) != null) {
+                        int eqSign = line.indexOf('=');
+
+                        if (eqSign == (-1)) continue;
+
+                        classpath.put(line.substring(0, eqSign), line.substring(eqSign + 1));
+                    }
+                } finally {
+                    r.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl.spi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.openide.filesystems.FileUtil;
+
+/**Content-addressed storage of file contents. Identical contents are stored only once,
+ * in a (gzipped, UTF-8) file named by the {@link FileContent#getChecksum() checksum} of the content.
+ *
+ * @author lahvac
+ */
+public final class BlobStore {
+
+    /**The field of a document that holds the {@link #store(FileContent) hash} of its content.
+     */
+    public static final String KEY_CONTENT_HASH = "contentHash";
+
+    private final File root;
+
+    public BlobStore(File root) {
+        this.root = root;
+    }
+
+    /**Stores the content, unless already present.
+     *
+     * @return the hash under which the content is stored, the same as {@link FileContent#getChecksum()}
+     */
+    public String store(FileContent content) throws IOException {
+        String hash = content.getChecksum();
+        File blob = new File(root, path(hash));
+
+        if (blob.exists()) return hash;
+
+        blob.getParentFile().mkdirs();
+
+        File temp = new File(blob.getParentFile(), blob.getName() + ".tmp");
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(temp));
+
+        try {
+            out.write(content.getContent().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(blob)) {
+            temp.delete();
+            if (!blob.exists()) throw new IOException("Cannot write: " + blob);
+        }
+
+        return hash;
+    }
+
+    /**Reads the content stored under the given hash.
+     *
+     * @return the content, or {@code null} if there is no such content in the store
+     */
+    public String read(String hash) throws IOException {
+        File blob = new File(root, path(hash));
+
+        if (!blob.canRead()) return null;
+
+        InputStream in = new GZIPInputStream(new FileInputStream(blob));
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            FileUtil.copy(in, out);
+
+            return new String(out.toByteArray(), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**The path of the blob with the given hash, relative to the root of a store.
+     */
+    public static String path(String hash) {
+        return hash.substring(0, 2) + "/" + hash;
+    }
+
+    static String hash(byte[] data) {
+        try {
+            StringBuilder result = new StringBuilder();
+
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(data)) {
+                result.append(String.format("%02x", b & 0xFF));
+            }
+
+            return result.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl.spi;
+
+import java.io.IOException;
+import org.netbeans.modules.parsing.spi.indexing.Indexable;
+
+/**Indexes the content of all files (of any type) in the indexed source roots.
+ * The files are read only once by the source indexer, which then passes the {@link FileContent}
+ * to all the {@code ContentIndexer}s registered in the default Lookup.
+ *
+ * @author lahvac
+ */
+public abstract class ContentIndexer {
+
+    /**Indexes the given file. The file has already been checked to be {@link IndexAccessor#isAcceptable(java.net.URL) acceptable}.
+     */
+    public abstract void index(Indexable indexable, FileContent content) throws IOException;
+
+    public abstract void delete(Indexable indexable) throws IOException;
+
+    /**Change when the indexed data change, so that the files are re-indexed.
+     */
+    public abstract int getIndexVersion();
+
+}
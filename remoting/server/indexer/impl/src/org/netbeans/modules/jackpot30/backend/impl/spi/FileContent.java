@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl.spi;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import org.netbeans.api.queries.FileEncodingQuery;
+import org.openide.filesystems.FileObject;
+
+/**Content of a file being indexed, read from the disk only once and shared by all the {@link ContentIndexer}s.
+ *
+ * @author lahvac
+ */
+public final class FileContent {
+
+    private final String mimeType;
+    private final String content;
+    private final String checksum;
+    private final long size;
+
+    private FileContent(String mimeType, String content, String checksum, long size) {
+        this.mimeType = mimeType;
+        this.content = content;
+        this.checksum = checksum;
+        this.size = size;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**The content of the file, decoded using the file's encoding.
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**SHA-1 of the {@link #getContent() content} encoded in UTF-8, as a hexadecimal string.
+     * Identifies the text independently of the file's encoding, and is also the key
+     * of the content in the {@link BlobStore}.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**The size of the file in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public static FileContent read(FileObject file) throws IOException {
+        byte[] data = file.asBytes();
+        Charset encoding = FileEncodingQuery.getEncoding(file);
+        String content = new String(data, encoding);
+        //most sources are UTF-8 already, no need to encode them again:
+        byte[] utf8 = "UTF-8".equals(encoding.name()) ? data : content.getBytes("UTF-8");
+
+        return new FileContent(file.getMIMEType(), content, BlobStore.hash(utf8), data.length);
+    }
+
+}
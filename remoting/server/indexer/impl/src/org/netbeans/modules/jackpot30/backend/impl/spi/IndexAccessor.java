@@ -18,9 +18,18 @@
  */
 package org.netbeans.modules.jackpot30.backend.impl.spi;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
 import org.openide.filesystems.FileObject;
 import org.openide.util.Exceptions;
 
@@ -32,16 +41,87 @@ public class IndexAccessor {
 
     private final FileObject root;
     private final IndexWriter w;
+    private final IndexStatistics statistics;
+    private final BlobStore blobs;
 
     public IndexAccessor(IndexWriter w, FileObject root) {
+        this(w, root, new IndexStatistics(), null);
+    }
+
+    public IndexAccessor(IndexWriter w, FileObject root, IndexStatistics statistics, BlobStore blobs) {
         this.w = w;
         this.root = root;
+        this.statistics = statistics;
+        this.blobs = blobs;
     }
 
     public IndexWriter getIndexWriter() {
         return w;
     }
 
+    public IndexStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**Storage for file contents shared by all documents of the index, or {@code null}
+     * if the contents should be stored directly in the documents.
+     */
+    public BlobStore getBlobStore() {
+        return blobs;
+    }
+
+    /**Adds the document to the index, and its contribution to the {@link #getStatistics() statistics}.
+     *
+     * @param doc the document to add
+     * @param pathField the field of {@code doc} that holds the {@link #getPath(java.net.URL) path} of its file
+     * @param restrictTo the terms of {@code doc} with which its documents will be {@link #deleteDocuments(org.apache.lucene.index.Term, org.apache.lucene.index.Term[]) deleted},
+     *                   so that only the contribution of the deleted documents is subtracted from the statistics
+     */
+    public void addDocument(Document doc, String pathField, Term... restrictTo) throws IOException {
+        w.addDocument(doc);
+        statistics.documentAdded(pathField, doc.get(pathField), restriction(restrictTo), doc);
+    }
+
+    /**Deletes the documents of the given file that also contain all the {@code restrictTo} terms,
+     * and their contribution to the {@link #getStatistics() statistics}. The documents should be
+     * {@link #addDocument(org.apache.lucene.document.Document, java.lang.String, org.apache.lucene.index.Term[]) added}
+     * with the same {@code restrictTo} terms.
+     */
+    public void deleteDocuments(Term path, Term... restrictTo) throws IOException {
+        if (restrictTo.length == 0) {
+            w.deleteDocuments(path);
+            statistics.documentsDeleted(path.field(), path.text());
+        } else {
+            BooleanQuery q = new BooleanQuery();
+
+            q.add(new BooleanClause(new TermQuery(path), Occur.MUST));
+
+            for (Term t : restrictTo) {
+                q.add(new BooleanClause(new TermQuery(t), Occur.MUST));
+            }
+
+            w.deleteDocuments(q);
+            statistics.documentsDeleted(path.field(), path.text(), restriction(restrictTo));
+        }
+    }
+
+    private static String restriction(Term... restrictTo) {
+        Set<String> terms = new TreeSet<String>();
+
+        for (Term t : restrictTo) {
+            terms.add(t.field() + "=" + t.text());
+        }
+
+        StringBuilder result = new StringBuilder();
+
+        for (String t : terms) {
+            if (result.length() > 0) result.append(",");
+            result.append(t);
+        }
+
+        return result.toString();
+    }
+
     public String getPath(URL file) {
         try {
             return root.toURI().relativize(file.toURI()).toString();
@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl.spi;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import org.apache.lucene.document.Document;
+
+/**Statistics of an index, collected from the documents while they are being written.
+ * The values are kept per file (identified by the path field and path of its documents)
+ * and restriction (the terms, in addition to the path, of the documents that are deleted together),
+ * so that statistics of re-indexed or deleted files can be subtracted, and statistics
+ * of separately built indexes can be merged.
+ *
+ * @author lahvac
+ */
+public final class IndexStatistics {
+
+    private static final int FORMAT = 2;
+
+    private final Map<String, Map<String, Map<String, Long>>> file2Statistics = new HashMap<String, Map<String, Map<String, Long>>>();
+
+    public void documentAdded(String pathField, String path, Document doc) throws IOException {
+        documentAdded(pathField, path, "", doc);
+    }
+
+    public synchronized void documentAdded(String pathField, String path, String restriction, Document doc) throws IOException {
+        String key = pathField + ":" + path;
+        Map<String, Map<String, Long>> restriction2Statistics = file2Statistics.get(key);
+        Map<String, Long> statistics = restriction2Statistics != null ? restriction2Statistics.get(restriction) : null;
+
+        if (statistics == null) {
+            statistics = new HashMap<String, Long>();
+        }
+
+        StatisticsGenerator.amendStatistics(doc, statistics);
+
+        if (!statistics.isEmpty()) {
+            if (restriction2Statistics == null) {
+                file2Statistics.put(key, restriction2Statistics = new HashMap<String, Map<String, Long>>());
+            }
+
+            restriction2Statistics.put(restriction, statistics);
+        }
+    }
+
+    /**Removes the statistics of all documents of the given file.
+     */
+    public synchronized void documentsDeleted(String pathField, String path) {
+        file2Statistics.remove(pathField + ":" + path);
+    }
+
+    /**Removes the statistics of the documents of the given file that were added with the given restriction.
+     */
+    public synchronized void documentsDeleted(String pathField, String path, String restriction) {
+        String key = pathField + ":" + path;
+        Map<String, Map<String, Long>> restriction2Statistics = file2Statistics.get(key);
+
+        if (restriction2Statistics == null) return ;
+
+        restriction2Statistics.remove(restriction);
+
+        if (restriction2Statistics.isEmpty()) {
+            file2Statistics.remove(key);
+        }
+    }
+
+    public synchronized void merge(IndexStatistics other) {
+        Map<String, Map<String, Map<String, Long>>> otherStatistics;
+
+        synchronized (other) {
+            otherStatistics = new HashMap<String, Map<String, Map<String, Long>>>();
+
+            for (Entry<String, Map<String, Map<String, Long>>> e : other.file2Statistics.entrySet()) {
+                otherStatistics.put(e.getKey(), new HashMap<String, Map<String, Long>>(e.getValue()));
+            }
+        }
+
+        for (Entry<String, Map<String, Map<String, Long>>> file : otherStatistics.entrySet()) {
+            Map<String, Map<String, Long>> restriction2Statistics = file2Statistics.get(file.getKey());
+
+            if (restriction2Statistics == null) {
+                file2Statistics.put(file.getKey(), restriction2Statistics = new HashMap<String, Map<String, Long>>());
+            }
+
+            for (Entry<String, Map<String, Long>> e : file.getValue().entrySet()) {
+                Map<String, Long> statistics = restriction2Statistics.get(e.getKey());
+
+                if (statistics == null) {
+                    restriction2Statistics.put(e.getKey(), statistics = new HashMap<String, Long>());
+                }
+
+                add(statistics, e.getValue());
+            }
+        }
+    }
+
+    public synchronized Map<String, Long> getTotals() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+
+        for (Map<String, Map<String, Long>> restriction2Statistics : file2Statistics.values()) {
+            for (Map<String, Long> statistics : restriction2Statistics.values()) {
+                add(result, statistics);
+            }
+        }
+
+        return result;
+    }
+
+    private static void add(Map<String, Long> target, Map<String, Long> statistics) {
+        for (Entry<String, Long> e : statistics.entrySet()) {
+            Long val = target.get(e.getKey());
+
+            if (val == null) val = 0L;
+
+            target.put(e.getKey(), val + e.getValue());
+        }
+    }
+
+    public synchronized void store(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+
+        data.writeInt(FORMAT);
+        data.writeInt(file2Statistics.size());
+
+        for (Entry<String, Map<String, Map<String, Long>>> file : file2Statistics.entrySet()) {
+            data.writeUTF(file.getKey());
+            data.writeInt(file.getValue().size());
+
+            for (Entry<String, Map<String, Long>> restriction : file.getValue().entrySet()) {
+                data.writeUTF(restriction.getKey());
+                data.writeInt(restriction.getValue().size());
+
+                for (Entry<String, Long> e : restriction.getValue().entrySet()) {
+                    data.writeUTF(e.getKey());
+                    data.writeLong(e.getValue());
+                }
+            }
+        }
+
+        data.flush();
+    }
+
+    public static IndexStatistics load(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int format = data.readInt();
+
+        if (format != FORMAT) {
+            throw new IOException("Unsupported statistics format: " + format);
+        }
+
+        IndexStatistics result = new IndexStatistics();
+        int files = data.readInt();
+
+        for (int f = 0; f < files; f++) {
+            String key = data.readUTF();
+            int restrictions = data.readInt();
+            Map<String, Map<String, Long>> restriction2Statistics = new HashMap<String, Map<String, Long>>();
+
+            for (int r = 0; r < restrictions; r++) {
+                String restriction = data.readUTF();
+                int entries = data.readInt();
+                Map<String, Long> statistics = new HashMap<String, Long>();
+
+                for (int e = 0; e < entries; e++) {
+                    statistics.put(data.readUTF(), data.readLong());
+                }
+
+                restriction2Statistics.put(restriction, statistics);
+            }
+
+            result.file2Statistics.put(key, restriction2Statistics);
+        }
+
+        return result;
+    }
+
+}
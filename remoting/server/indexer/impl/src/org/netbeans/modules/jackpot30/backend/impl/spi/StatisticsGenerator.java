@@ -19,61 +19,46 @@
 package org.netbeans.modules.jackpot30.backend.impl.spi;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.FieldSelector;
-import org.apache.lucene.document.FieldSelectorResult;
-import org.apache.lucene.index.IndexReader;
 import org.openide.util.Lookup;
 
-/**
+/**Contributes to the statistics of the index. Invoked for each document as it is written
+ * through {@link IndexAccessor#addDocument(org.apache.lucene.document.Document, java.lang.String, org.apache.lucene.index.Term[])}.
  *
  * @author lahvac
  */
 public abstract class StatisticsGenerator {
 
-    protected abstract void amendStatistics(IndexReader r, Document doc) throws IOException;
-
-    public static Map<String, Long> generateStatistics(IndexReader r) throws IOException {
-        statistics = new HashMap<String, Long>();
-
-        Collection<? extends StatisticsGenerator> generators = Lookup.getDefault().lookupAll(StatisticsGenerator.class);
+    protected abstract void amendStatistics(Document doc) throws IOException;
 
-        int maxDocs = r.maxDoc();
+    static void amendStatistics(Document doc, Map<String, Long> target) throws IOException {
+        Map<String, Long> original = statistics.get();
 
-        for (int d = 0; d < maxDocs; d++) {
-            Document doc = r.document(d, new FieldSelector() {
-                @Override public FieldSelectorResult accept(String string) {
-                    return FieldSelectorResult.LAZY_LOAD;
-                }
-            });
+        statistics.set(target);
 
-            for (StatisticsGenerator sg : generators) {
-                sg.amendStatistics(r, doc);
+        try {
+            for (StatisticsGenerator sg : Lookup.getDefault().lookupAll(StatisticsGenerator.class)) {
+                sg.amendStatistics(doc);
             }
+        } finally {
+            statistics.set(original);
         }
-        
-        Map<String, Long> result = statistics;
-
-        statistics = null;
-
-        return result;
     }
 
-    private static Map<String, Long> statistics;
+    private static final ThreadLocal<Map<String, Long>> statistics = new ThreadLocal<Map<String, Long>>();
 
     protected final void increment(String key) {
         add(key, 1);
     }
 
     protected void add(String key, long count) {
-        Long val = statistics.get(key);
+        Map<String, Long> target = statistics.get();
+        Long val = target.get(key);
 
         if (val == null) val = 0L;
 
-        statistics.put(key, val + count);
+        target.put(key, val + count);
     }
 
 }
@@ -0,0 +1,365 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.netbeans.modules.jackpot30.backend.impl.spi.BlobStore;
+import org.netbeans.modules.jackpot30.backend.impl.spi.FileContent;
+import org.netbeans.modules.jackpot30.backend.impl.spi.IndexAccessor;
+import org.netbeans.modules.jackpot30.backend.impl.spi.IndexStatistics;
+import org.netbeans.modules.jackpot30.backend.impl.spi.StatisticsGenerator;
+import org.netbeans.modules.java.source.indexing.JavaIndex;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.util.lookup.ServiceProvider;
+
+/**Builds category caches in the format written by the indexer, from files kept in memory,
+ * and reads them back.
+ *
+ * @author lahvac
+ */
+final class CategoryCaches {
+
+    static final String CATEGORY = "test";
+    static final String CHECKSUMS = "java/" + JavaIndex.VERSION + "/checksums.properties";
+
+    private final File workDir;
+    private final Map<String, Map<String, String>> roots = new LinkedHashMap<String, Map<String, String>>();
+    private final Set<String> dependencies = new HashSet<String>();
+    private final List<String> unreferenced = new ArrayList<String>();
+    private final FileObject sources;
+
+    CategoryCaches(File workDir) throws IOException {
+        this.workDir = workDir;
+        this.sources = FileUtil.createMemoryFileSystem().getRoot();
+    }
+
+    /**Adds a source root.
+     *
+     * @param root the path of the root, relative to the category root directory, ending with a slash
+     * @param pathsAndContents pairs of file paths (relative to the root) and file contents
+     */
+    CategoryCaches root(String root, String... pathsAndContents) {
+        Map<String, String> files = new LinkedHashMap<String, String>();
+
+        for (int i = 0; i < pathsAndContents.length; i += 2) {
+            files.put(pathsAndContents[i], pathsAndContents[i + 1]);
+        }
+
+        roots.put(root, files);
+        return this;
+    }
+
+    /**Adds a source root that is indexed only as a dependency of the other roots, i.e. it is not listed
+     * in the classpath of the category.
+     */
+    CategoryCaches dependency(String root, String... pathsAndContents) {
+        dependencies.add(root);
+        return root(root, pathsAndContents);
+    }
+
+    /**Adds a content to the blob store that is not referenced by any document.
+     */
+    CategoryCaches unreferenced(String content) {
+        unreferenced.add(content);
+        return this;
+    }
+
+    /**Indexes the roots into {@code <workDir>/<name>}, and packs the result into {@code <workDir>/<name>.zip}.
+     */
+    File build(String name) throws IOException {
+        File cacheFolder = new File(workDir, name);
+        BlobStore blobs = new BlobStore(new File(cacheFolder, OptionProcessorImpl.BLOBS));
+        IndexStatistics statistics = new IndexStatistics();
+        IndexWriter w = new IndexWriter(FSDirectory.open(new File(cacheFolder, "index")), new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        IndexAccessor accessor = new IndexAccessor(w, null, statistics, blobs);
+        Properties segments = new Properties();
+        Map<String, Properties> timestamps = new LinkedHashMap<String, Properties>();
+        Map<String, Properties> checksums = new LinkedHashMap<String, Properties>();
+        List<String> classpath = new ArrayList<String>();
+        int segmentCounter = 1;
+
+        try {
+            for (Entry<String, Map<String, String>> root : roots.entrySet()) {
+                String segment = "s" + segmentCounter++;
+                Properties rootTimestamps = new Properties();
+
+                segments.setProperty(segment, "rel:/" + root.getKey());
+                timestamps.put(segment, rootTimestamps);
+                checksums.put(segment, new Properties());
+
+                if (!dependencies.contains(root.getKey())) classpath.add(segment);
+
+                for (Entry<String, String> file : root.getValue().entrySet()) {
+                    FileContent content = FileContent.read(write(root.getKey() + file.getKey(), file.getValue()));
+                    Document doc = new Document();
+
+                    doc.add(new Field("relativePath", root.getKey() + file.getKey(), Store.YES, Index.NOT_ANALYZED));
+                    doc.add(new Field(BlobStore.KEY_CONTENT_HASH, blobs.store(content), Store.YES, Index.NOT_ANALYZED));
+                    accessor.addDocument(doc, "relativePath");
+                    rootTimestamps.setProperty(file.getKey(), "1");
+                    checksums.get(segment).setProperty("rel:/" + root.getKey() + file.getKey(), content.getChecksum());
+                }
+            }
+
+            for (String content : unreferenced) {
+                blobs.store(FileContent.read(write("unreferenced/" + content.hashCode(), content)));
+            }
+        } finally {
+            w.close();
+        }
+
+        File cache = new File(workDir, name + ".zip");
+        JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(cache)));
+
+        try {
+            OptionProcessorImpl.packIndex(out, CATEGORY, cacheFolder);
+
+            out.putNextEntry(new ZipEntry(CATEGORY + "/segments"));
+            segments.store(out, "");
+
+            out.putNextEntry(new ZipEntry(CATEGORY + "/info"));
+            OptionProcessorImpl.writeInfo(out, name, null, statistics.getTotals());
+
+            out.putNextEntry(new ZipEntry(CATEGORY + "/statistics"));
+            statistics.store(out);
+
+            out.putNextEntry(new ZipEntry(CATEGORY + "/classpath"));
+
+            for (String segment : classpath) {
+                out.write((segment + "=\n").getBytes("UTF-8"));
+            }
+
+            for (Entry<String, Properties> e : timestamps.entrySet()) {
+                out.putNextEntry(new ZipEntry(CATEGORY + "/" + e.getKey()));
+
+                JarOutputStream local = new JarOutputStream(out);
+
+                local.putNextEntry(new ZipEntry("timestamps.properties"));
+                e.getValue().store(local, "");
+                local.putNextEntry(new ZipEntry(CHECKSUMS));
+                checksums.get(e.getKey()).store(local, "");
+                local.finish();
+            }
+        } finally {
+            out.close();
+        }
+
+        return cache;
+    }
+
+    private FileObject write(String path, String content) throws IOException {
+        FileObject file = FileUtil.createData(sources, path);
+        OutputStream out = file.getOutputStream();
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        return file;
+    }
+
+    /**Unpacks the cache into {@code <workDir>/<name>}, as the incremental indexing does.
+     */
+    File restore(File cache, String name) throws IOException {
+        File cacheFolder = new File(workDir, name);
+
+        cacheFolder.mkdirs();
+        OptionProcessorImpl.restorePreviousIndex(cache, CATEGORY, cacheFolder, "file:/base/", "file:/base/");
+
+        return cacheFolder;
+    }
+
+    /**The contents of all the documents in the index of an unpacked cache, read from its blob store.
+     */
+    static Map<String, String> contents(File cacheFolder) throws IOException {
+        Map<String, String> result = new TreeMap<String, String>();
+        BlobStore blobs = new BlobStore(new File(cacheFolder, OptionProcessorImpl.BLOBS));
+        IndexReader r = IndexReader.open(FSDirectory.open(new File(cacheFolder, "index")), true);
+
+        try {
+            for (int i = 0; i < r.maxDoc(); i++) {
+                if (r.isDeleted(i)) continue;
+
+                Document doc = r.document(i);
+
+                result.put(doc.get("relativePath"), blobs.read(doc.get(BlobStore.KEY_CONTENT_HASH)));
+            }
+        } finally {
+            r.close();
+        }
+
+        return result;
+    }
+
+    /**The relative paths of the source roots of the cache, and of the roots listed in its classpath.
+     */
+    static Set<String> roots(File cache, boolean classpathOnly) throws IOException {
+        Set<String> result = new TreeSet<String>();
+        ZipFile zip = new ZipFile(cache);
+
+        try {
+            Properties segments = new Properties();
+            InputStream in = zip.getInputStream(zip.getEntry(CATEGORY + "/segments"));
+
+            try {
+                segments.load(in);
+            } finally {
+                in.close();
+            }
+
+            Set<String> selected = segments.stringPropertyNames();
+
+            if (classpathOnly) {
+                selected = new HashSet<String>();
+
+                BufferedReader r = new BufferedReader(new InputStreamReader(zip.getInputStream(zip.getEntry(CATEGORY + "/classpath")), "UTF-8"));
+
+                try {
+                    String line;
+
+                    while ((line = r.readLine()) != null) {
+                        if (line.indexOf('=') != (-1)) selected.add(line.substring(0, line.indexOf('=')));
+                    }
+                } finally {
+                    r.close();
+                }
+            }
+
+            for (String segment : selected) {
+                result.add(segments.getProperty(segment));
+            }
+        } finally {
+            zip.close();
+        }
+
+        return result;
+    }
+
+    /**Reads a properties file from the per-root cache of the given source root.
+     *
+     * @return the properties, or {@code null} if the cache has no such root
+     */
+    static Properties perRoot(File cache, String root, String entry) throws IOException {
+        ZipFile zip = new ZipFile(cache);
+
+        try {
+            Properties segments = new Properties();
+            InputStream in = zip.getInputStream(zip.getEntry(CATEGORY + "/segments"));
+
+            try {
+                segments.load(in);
+            } finally {
+                in.close();
+            }
+
+            for (String segment : segments.stringPropertyNames()) {
+                if (!("rel:/" + root).equals(segments.getProperty(segment))) continue;
+
+                ZipEntry segmentEntry = zip.getEntry(CATEGORY + "/" + segment);
+
+                if (segmentEntry == null) return null;
+
+                ZipInputStream segmentIn = new ZipInputStream(zip.getInputStream(segmentEntry));
+
+                try {
+                    ZipEntry e;
+
+                    while ((e = segmentIn.getNextEntry()) != null) {
+                        if (!entry.equals(e.getName())) continue;
+
+                        Properties result = new Properties();
+
+                        result.load(segmentIn);
+
+                        return result;
+                    }
+                } finally {
+                    segmentIn.close();
+                }
+            }
+
+            return null;
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**The names of the entries of the cache that start with the given prefix (relative to the category).
+     */
+    static Set<String> entries(File cache, String prefix) throws IOException {
+        Set<String> result = new TreeSet<String>();
+        ZipFile zip = new ZipFile(cache);
+
+        try {
+            for (Enumeration<? extends ZipEntry> en = zip.entries(); en.hasMoreElements(); ) {
+                String name = en.nextElement().getName();
+
+                if (name.startsWith(CATEGORY + "/" + prefix) && !name.endsWith("/")) {
+                    result.add(name.substring(CATEGORY.length() + 1));
+                }
+            }
+        } finally {
+            zip.close();
+        }
+
+        return result;
+    }
+
+    @ServiceProvider(service=StatisticsGenerator.class)
+    public static final class DocumentCounter extends StatisticsGenerator {
+        @Override protected void amendStatistics(Document doc) {
+            increment("documents");
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.netbeans.junit.NbTestCase;
+import org.netbeans.modules.jackpot30.backend.impl.spi.BlobStore;
+
+/**
+ *
+ * @author lahvac
+ */
+public class IndexCompactorTest extends NbTestCase {
+
+    public IndexCompactorTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        clearWorkDir();
+        super.setUp();
+    }
+
+    public void testCompactDeletedRoot() throws Exception {
+        File rootDir = new File(getWorkDir(), "root");
+        File cache = new CategoryCaches(getWorkDir())
+                .root("a/src/", "test/A.java", "class A {}",
+                                "test/A2.java", "class A2 {}")
+                .root("b/src/", "test/B.java", "class B {}",
+                                "test/C.java", "class A {}")
+                .build("cache");
+
+        //b/src was removed, and so was a/src/test/A2.java:
+        File a = new File(rootDir, "a/src/test/A.java");
+
+        a.getParentFile().mkdirs();
+        a.createNewFile();
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        new IndexCompactor(CategoryCaches.CATEGORY, rootDir).compact(cache, "cache", null, new PrintStream(report, true, "UTF-8"));
+
+        String reportText = report.toString("UTF-8");
+
+        assertTrue(reportText, reportText.contains("Removed 3 documents of 3 deleted files"));
+        assertTrue(reportText, reportText.contains("Removed 1 deleted source roots"));
+
+        File restored = new CategoryCaches(getWorkDir()).restore(cache, "restored");
+
+        assertEquals(Collections.singletonMap("a/src/test/A.java", "class A {}"), CategoryCaches.contents(restored));
+        assertEquals(Long.valueOf(1), OptionProcessorImpl.readStatistics(cache, CategoryCaches.CATEGORY).getTotals().get("documents"));
+
+        Set<String> expectedBlobs = new HashSet<String>();
+
+        for (String hash : OptionProcessorImpl.referencedBlobs(new File(restored, "index"))) {
+            expectedBlobs.add(OptionProcessorImpl.BLOBS + "/" + BlobStore.path(hash));
+        }
+
+        assertEquals(1, expectedBlobs.size());
+        assertEquals(expectedBlobs, CategoryCaches.entries(cache, OptionProcessorImpl.BLOBS + "/"));
+
+        //the segment, classpath and per-root cache of the deleted root are removed:
+        assertEquals(Collections.singleton("rel:/a/src/"), CategoryCaches.roots(cache, false));
+        assertEquals(Collections.singleton("rel:/a/src/"), CategoryCaches.roots(cache, true));
+        assertNull(CategoryCaches.perRoot(cache, "b/src/", "timestamps.properties"));
+
+        //deleted files are removed from the per-root cache of the remaining root:
+        assertEquals(Collections.singleton("test/A.java"), CategoryCaches.perRoot(cache, "a/src/", "timestamps.properties").stringPropertyNames());
+        assertEquals(Collections.singleton("rel:/a/src/test/A.java"), CategoryCaches.perRoot(cache, "a/src/", CategoryCaches.CHECKSUMS).stringPropertyNames());
+    }
+
+    public void testNothingToCompact() throws Exception {
+        File rootDir = new File(getWorkDir(), "root");
+        File cache = new CategoryCaches(getWorkDir())
+                .root("a/src/", "test/A.java", "class A {}")
+                .build("cache");
+        File a = new File(rootDir, "a/src/test/A.java");
+
+        a.getParentFile().mkdirs();
+        a.createNewFile();
+
+        long lastModified = cache.lastModified();
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+        new IndexCompactor(CategoryCaches.CATEGORY, rootDir).compact(cache, "cache", null, new PrintStream(report, true, "UTF-8"));
+
+        assertTrue(report.toString("UTF-8").contains("No stale documents found"));
+        assertEquals(lastModified, cache.lastModified());
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.netbeans.junit.NbTestCase;
+import org.netbeans.modules.jackpot30.backend.impl.spi.BlobStore;
+
+/**
+ *
+ * @author lahvac
+ */
+public class OptionProcessorImplTest extends NbTestCase {
+
+    public OptionProcessorImplTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        clearWorkDir();
+        super.setUp();
+    }
+
+    public void testPackAndRestoreContents() throws Exception {
+        CategoryCaches caches = new CategoryCaches(getWorkDir())
+                .root("prj/src/", "test/A.java", "class A {}",
+                                  "test/B.java", "class A {}",
+                                  "test/C.java", "class C {}")
+                .unreferenced("class D {}");
+        File cache = caches.build("cache");
+        Map<String, String> original = CategoryCaches.contents(new File(getWorkDir(), "cache"));
+
+        assertEquals("class A {}", original.get("prj/src/test/A.java"));
+        assertEquals("class A {}", original.get("prj/src/test/B.java"));
+        assertEquals("class C {}", original.get("prj/src/test/C.java"));
+
+        Set<String> referenced = OptionProcessorImpl.referencedBlobs(new File(new File(getWorkDir(), "cache"), "index"));
+        Set<String> expectedEntries = new HashSet<String>();
+
+        assertEquals(2, referenced.size());
+
+        for (String hash : referenced) {
+            expectedEntries.add(OptionProcessorImpl.BLOBS + "/" + BlobStore.path(hash));
+        }
+
+        //identical contents are packed once, unreferenced contents are not packed:
+        assertEquals(expectedEntries, CategoryCaches.entries(cache, OptionProcessorImpl.BLOBS + "/"));
+
+        File restored = caches.restore(cache, "restored");
+
+        assertEquals(original, CategoryCaches.contents(restored));
+        assertEquals(referenced, OptionProcessorImpl.referencedBlobs(new File(restored, "index")));
+    }
+
+}
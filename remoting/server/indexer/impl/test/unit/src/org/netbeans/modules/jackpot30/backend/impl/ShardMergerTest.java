@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.netbeans.junit.NbTestCase;
+import org.netbeans.modules.jackpot30.backend.impl.spi.BlobStore;
+
+/**
+ *
+ * @author lahvac
+ */
+public class ShardMergerTest extends NbTestCase {
+
+    public ShardMergerTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        clearWorkDir();
+        super.setUp();
+    }
+
+    public void testMergeContents() throws Exception {
+        File shard1 = new CategoryCaches(getWorkDir())
+                .root("a/src/", "test/A.java", "class A {}")
+                .unreferenced("class D {}")
+                .build("shard1");
+        File shard2 = new CategoryCaches(getWorkDir())
+                .root("b/src/", "test/B.java", "class A {}",
+                                "test/C.java", "class C {}")
+                .build("shard2");
+        File merged = new File(getWorkDir(), "merged.zip");
+
+        new ShardMerger(CategoryCaches.CATEGORY, Arrays.asList(shard1, shard2)).merge(merged, "merged", null);
+
+        File restored = new CategoryCaches(getWorkDir()).restore(merged, "restored");
+        Map<String, String> contents = CategoryCaches.contents(restored);
+
+        assertEquals(3, contents.size());
+        assertEquals("class A {}", contents.get("a/src/test/A.java"));
+        assertEquals("class A {}", contents.get("b/src/test/B.java"));
+        assertEquals("class C {}", contents.get("b/src/test/C.java"));
+
+        Set<String> expectedEntries = new HashSet<String>();
+
+        for (String hash : OptionProcessorImpl.referencedBlobs(new File(restored, "index"))) {
+            expectedEntries.add(OptionProcessorImpl.BLOBS + "/" + BlobStore.path(hash));
+        }
+
+        assertEquals(2, expectedEntries.size());
+        assertEquals(expectedEntries, CategoryCaches.entries(merged, OptionProcessorImpl.BLOBS + "/"));
+    }
+
+    public void testMergeEqualsSerialBuild() throws Exception {
+        File serial = new CategoryCaches(getWorkDir())
+                .root("a/src/", "test/A.java", "class A extends B {}")
+                .root("b/src/", "test/B.java", "class B extends L {}",
+                                "test/C.java", "class C {}")
+                .dependency("lib/src/", "lib/L.java", "class L {}")
+                .build("serial");
+        //a depends on b, b depends on lib:
+        File shard1 = new CategoryCaches(getWorkDir())
+                .root("a/src/", "test/A.java", "class A extends B {}")
+                .dependency("b/src/", "test/B.java", "class B extends L {}",
+                                      "test/C.java", "class C {}")
+                .build("shard1");
+        File shard2 = new CategoryCaches(getWorkDir())
+                .root("b/src/", "test/B.java", "class B extends L {}",
+                                "test/C.java", "class C {}")
+                .dependency("lib/src/", "lib/L.java", "class L {}")
+                .build("shard2");
+        File merged = new File(getWorkDir(), "merged.zip");
+
+        new ShardMerger(CategoryCaches.CATEGORY, Arrays.asList(shard1, shard2)).merge(merged, "merged", null);
+
+        CategoryCaches restore = new CategoryCaches(getWorkDir());
+
+        assertEquals(CategoryCaches.contents(restore.restore(serial, "restored-serial")),
+                     CategoryCaches.contents(restore.restore(merged, "restored-merged")));
+        assertEquals(CategoryCaches.roots(serial, false), CategoryCaches.roots(merged, false));
+        assertEquals(CategoryCaches.roots(serial, true), CategoryCaches.roots(merged, true));
+        assertEquals(OptionProcessorImpl.readStatistics(serial, CategoryCaches.CATEGORY).getTotals(),
+                     OptionProcessorImpl.readStatistics(merged, CategoryCaches.CATEGORY).getTotals());
+        assertEquals(Long.valueOf(4), OptionProcessorImpl.readStatistics(merged, CategoryCaches.CATEGORY).getTotals().get("documents"));
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.impl.spi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.netbeans.junit.NbTestCase;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ * @author lahvac
+ */
+public class BlobStoreTest extends NbTestCase {
+
+    public BlobStoreTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        clearWorkDir();
+        super.setUp();
+    }
+
+    public void testStoreAndRead() throws Exception {
+        FileObject sources = FileUtil.createMemoryFileSystem().getRoot();
+        FileContent a = FileContent.read(write(sources, "A.java", "class A {}"));
+        FileContent b = FileContent.read(write(sources, "B.java", "class A {}"));
+        FileContent c = FileContent.read(write(sources, "C.java", "class C {}"));
+        File root = new File(getWorkDir(), "blobs");
+        BlobStore store = new BlobStore(root);
+
+        String hashA = store.store(a);
+        String hashB = store.store(b);
+        String hashC = store.store(c);
+
+        //the blobs are keyed by the checksum of the file content:
+        assertEquals(a.getChecksum(), hashA);
+        assertEquals(hashA, hashB);
+        assertFalse(hashA.equals(hashC));
+        assertEquals(BlobStore.hash("class A {}".getBytes("UTF-8")), hashA);
+
+        assertEquals("class A {}", store.read(hashA));
+        assertEquals("class C {}", store.read(hashC));
+        assertNull(store.read("0000000000000000000000000000000000000000"));
+
+        assertEquals(2, count(root));
+    }
+
+    private static FileObject write(FileObject root, String path, String content) throws IOException {
+        FileObject file = FileUtil.createData(root, path);
+        OutputStream out = file.getOutputStream();
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        return file;
+    }
+
+    private static int count(File file) {
+        File[] children = file.listFiles();
+
+        if (children == null) return 1;
+
+        int result = 0;
+
+        for (File c : children) {
+            result += count(c);
+        }
+
+        return result;
+    }
+
+}
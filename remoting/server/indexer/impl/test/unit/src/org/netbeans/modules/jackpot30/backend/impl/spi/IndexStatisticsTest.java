@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.impl.spi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.netbeans.junit.NbTestCase;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ *
+ * @author lahvac
+ */
+public class IndexStatisticsTest extends NbTestCase {
+
+    public IndexStatisticsTest(String name) {
+        super(name);
+    }
+
+    public void testRestrictedDelete() throws Exception {
+        Directory store = new RAMDirectory();
+        IndexWriter w = new IndexWriter(store, new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        IndexAccessor accessor = new IndexAccessor(w, null);
+        Term marker = new Term("marker", "true");
+
+        //two kinds of documents for the same file, only the marked ones are deleted together:
+        accessor.addDocument(document("A.java", "usage", true), "file", marker);
+        accessor.addDocument(document("A.java", "usage", true), "file", marker);
+        accessor.addDocument(document("A.java", "other", false), "file");
+
+        assertEquals(totals("usage", 2L, "other", 1L), counts(accessor.getStatistics()));
+
+        accessor.deleteDocuments(new Term("file", "A.java"), marker);
+        accessor.addDocument(document("A.java", "usage", true), "file", marker);
+
+        assertEquals(totals("usage", 1L, "other", 1L), counts(accessor.getStatistics()));
+
+        w.close();
+
+        IndexReader r = IndexReader.open(store);
+
+        try {
+            assertEquals(2, r.numDocs());
+        } finally {
+            r.close();
+        }
+
+        //deleting all documents of the file:
+        accessor.getStatistics().documentsDeleted("file", "A.java");
+
+        assertEquals(totals(), counts(accessor.getStatistics()));
+    }
+
+    public void testMergeStoreLoad() throws Exception {
+        IndexStatistics first = new IndexStatistics();
+        IndexStatistics second = new IndexStatistics();
+
+        first.documentAdded("file", "A.java", "marker=true", document("A.java", "usage", true));
+        first.documentAdded("file", "B.java", "marker=true", document("B.java", "usage", true));
+        second.documentAdded("file", "B.java", "marker=true", document("B.java", "usage", true));
+        second.documentAdded("file", "B.java", "", document("B.java", "other", false));
+        second.documentAdded("relativePath", "C.txt", document("C.txt", "source", false));
+
+        IndexStatistics merged = new IndexStatistics();
+
+        merged.merge(first);
+        merged.merge(second);
+
+        assertEquals(totals("usage", 3L, "other", 1L, "source", 1L), counts(merged));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        merged.store(out);
+
+        IndexStatistics loaded = IndexStatistics.load(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(merged.getTotals(), loaded.getTotals());
+
+        //the per-file data survives, so that deleted files can be subtracted after loading:
+        loaded.documentsDeleted("file", "B.java", "marker=true");
+        assertEquals(totals("usage", 1L, "other", 1L, "source", 1L), counts(loaded));
+
+        loaded.documentsDeleted("file", "B.java");
+        loaded.documentsDeleted("relativePath", "C.txt");
+        assertEquals(totals("usage", 1L), counts(loaded));
+
+        //the merged statistics are independent of the originals:
+        assertEquals(totals("usage", 2L), counts(first));
+    }
+
+    private static Document document(String file, String kind, boolean marked) {
+        Document doc = new Document();
+
+        doc.add(new Field("file", file, Store.YES, Index.NOT_ANALYZED));
+        doc.add(new Field("kind", kind, Store.YES, Index.NOT_ANALYZED));
+
+        if (marked) {
+            doc.add(new Field("marker", "true", Store.NO, Index.NOT_ANALYZED));
+        }
+
+        return doc;
+    }
+
+    private static Map<String, Long> totals(Object... keysAndValues) {
+        Map<String, Long> result = new HashMap<String, Long>();
+
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            result.put("test-" + keysAndValues[i], (Long) keysAndValues[i + 1]);
+        }
+
+        return result;
+    }
+
+    private static Map<String, Long> counts(IndexStatistics statistics) {
+        Map<String, Long> result = new HashMap<String, Long>();
+
+        //only the values of KindCounter, other generators may be registered:
+        for (Map.Entry<String, Long> e : statistics.getTotals().entrySet()) {
+            if (e.getKey().startsWith("test-")) {
+                result.put(e.getKey(), e.getValue());
+            }
+        }
+
+        return result;
+    }
+
+    @ServiceProvider(service=StatisticsGenerator.class)
+    public static final class KindCounter extends StatisticsGenerator {
+        @Override protected void amendStatistics(Document doc) {
+            if (doc.get("kind") != null) {
+                increment("test-" + doc.get("kind"));
+            }
+        }
+    }
+
+}
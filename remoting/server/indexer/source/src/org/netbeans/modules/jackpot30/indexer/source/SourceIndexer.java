@@ -19,6 +19,8 @@
 package org.netbeans.modules.jackpot30.indexer.source;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.lucene.document.CompressionTools;
@@ -26,15 +28,19 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Index;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.Term;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
+import org.netbeans.modules.jackpot30.backend.impl.spi.BlobStore;
+import org.netbeans.modules.jackpot30.backend.impl.spi.ContentIndexer;
+import org.netbeans.modules.jackpot30.backend.impl.spi.FileContent;
 import org.netbeans.modules.jackpot30.backend.impl.spi.IndexAccessor;
-import org.netbeans.modules.jackpot30.backend.impl.spi.Utilities;
 import org.netbeans.modules.parsing.spi.indexing.Context;
 import org.netbeans.modules.parsing.spi.indexing.CustomIndexer;
 import org.netbeans.modules.parsing.spi.indexing.CustomIndexerFactory;
 import org.netbeans.modules.parsing.spi.indexing.Indexable;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.URLMapper;
+import org.openide.util.Lookup;
 
 /**
  *
@@ -43,6 +49,7 @@ import org.openide.filesystems.URLMapper;
 public class SourceIndexer extends CustomIndexer {
 
     private static final String KEY_CONTENT = "content";
+    private static final int VERSION = 1;
 
     @Override
     protected void index(Iterable<? extends Indexable> files, Context context) {
@@ -53,27 +60,62 @@ public class SourceIndexer extends CustomIndexer {
 
                 if (relPath == null) continue;
 
+                doDelete(relPath);
+
                 FileObject file = URLMapper.findFileObject(i.getURL());
 
                 if (file == null) {
-                    //TODO: log
+                    Logger.getLogger(SourceIndexer.class.getName()).log(Level.FINE, "Cannot find {0}, removing it from the index", i.getURL());
+                    deleteFromContentIndexers(i);
                     continue;
                 }
-                
+
+                FileContent content = FileContent.read(file);
                 Document doc = new Document();
 
                 doc.add(new Field("relativePath", relPath, Store.YES, Index.NOT_ANALYZED));
-                doc.add(new Field(KEY_CONTENT, CompressionTools.compressString(Utilities.readFully(file)), Store.YES));
-                doc.add(new Field("fileMimeType", file.getMIMEType(), Store.YES, Index.NO));
-                doc.add(new Field("sizeInBytes", Long.toString(file.getSize()), Store.YES, Index.NO));
 
-                IndexAccessor.getCurrent().getIndexWriter().addDocument(doc);
+                BlobStore blobs = IndexAccessor.getCurrent().getBlobStore();
+
+                if (blobs != null) {
+                    doc.add(new Field(BlobStore.KEY_CONTENT_HASH, blobs.store(content), Store.YES, Index.NOT_ANALYZED));
+                } else {
+                    doc.add(new Field(KEY_CONTENT, CompressionTools.compressString(content.getContent()), Store.YES));
+                }
+
+                doc.add(new Field("fileMimeType", content.getMimeType(), Store.YES, Index.NO));
+                doc.add(new Field("sizeInBytes", Long.toString(content.getSize()), Store.YES, Index.NO));
+
+                IndexAccessor.getCurrent().addDocument(doc, "relativePath");
+
+                //the other indexers get the content read above, so that each file is read only once:
+                for (ContentIndexer ci : Lookup.getDefault().lookupAll(ContentIndexer.class)) {
+                    try {
+                        ci.index(i, content);
+                    } catch (IOException ex) {
+                        Logger.getLogger(SourceIndexer.class.getName()).log(Level.SEVERE, null, ex);
+                    }
+                }
             }
         } catch (IOException ex) {
             Logger.getLogger(SourceIndexer.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
 
+    private static void doDelete(String relPath) throws IOException {
+        IndexAccessor.getCurrent().deleteDocuments(new Term("relativePath", relPath));
+    }
+
+    private static void deleteFromContentIndexers(Indexable i) {
+        for (ContentIndexer ci : Lookup.getDefault().lookupAll(ContentIndexer.class)) {
+            try {
+                ci.delete(i);
+            } catch (IOException ex) {
+                Logger.getLogger(SourceIndexer.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
     @MimeRegistration(mimeType="", service=CustomIndexerFactory.class)
     public static final class FactoryImpl extends CustomIndexerFactory {
 
@@ -89,19 +131,15 @@ public class SourceIndexer extends CustomIndexer {
 
         @Override
         public void filesDeleted(Iterable<? extends Indexable> deleted, Context context) {
-            assert !deleted.iterator().hasNext();
-            //TODO: ability to delete from the index:
-//            try {
-//                DocumentIndex idx = IndexManager.createDocumentIndex(FileUtil.toFile(context.getIndexFolder()));
-//
-//                for (Indexable i : deleted) {
-//                    idx.removeDocument(i.getRelativePath());
-//                }
-//
-//                idx.close();
-//            } catch (IOException ex) {
-//                Logger.getLogger(SourceIndexer.class.getName()).log(Level.SEVERE, null, ex);
-//            }
+            for (Indexable i : deleted) {
+                if (!IndexAccessor.getCurrent().isAcceptable(i.getURL())) continue;
+                try {
+                    doDelete(IndexAccessor.getCurrent().getPath(i.getURL()));
+                } catch (IOException ex) {
+                    Logger.getLogger(SourceIndexer.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                deleteFromContentIndexers(i);
+            }
         }
 
         @Override
@@ -115,7 +153,16 @@ public class SourceIndexer extends CustomIndexer {
 
         @Override
         public int getIndexVersion() {
-            return 1;
+            Map<String, Integer> versions = new TreeMap<String, Integer>();
+
+            versions.put(SourceIndexer.class.getName(), VERSION);
+
+            for (ContentIndexer ci : Lookup.getDefault().lookupAll(ContentIndexer.class)) {
+                versions.put(ci.getClass().getName(), ci.getIndexVersion());
+            }
+
+            //a sum of the versions may stay the same when the set of indexers or their versions change:
+            return versions.toString().hashCode() & Integer.MAX_VALUE;
         }
 
     }
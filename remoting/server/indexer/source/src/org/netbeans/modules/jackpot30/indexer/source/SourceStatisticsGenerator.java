@@ -21,7 +21,6 @@ package org.netbeans.modules.jackpot30.indexer.source;
 import java.io.IOException;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Fieldable;
-import org.apache.lucene.index.IndexReader;
 import org.netbeans.modules.jackpot30.backend.impl.spi.StatisticsGenerator;
 import org.openide.util.lookup.ServiceProvider;
 
@@ -33,7 +32,7 @@ import org.openide.util.lookup.ServiceProvider;
 public class SourceStatisticsGenerator extends StatisticsGenerator {
 
     @Override
-    protected void amendStatistics(IndexReader r, Document doc) throws IOException {
+    protected void amendStatistics(Document doc) throws IOException {
         if (doc.getFieldable("relativePath") != null) {
             increment("files/total");
             Fieldable mimeType = doc.getFieldable("fileMimeType");
@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.indexer.source;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.CompressionTools;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.netbeans.junit.NbTestCase;
+import org.netbeans.modules.jackpot30.backend.impl.spi.ContentIndexer;
+import org.netbeans.modules.jackpot30.backend.impl.spi.FileContent;
+import org.netbeans.modules.jackpot30.backend.impl.spi.IndexAccessor;
+import org.netbeans.modules.parsing.impl.indexing.FileObjectIndexable;
+import org.netbeans.modules.parsing.impl.indexing.SPIAccessor;
+import org.netbeans.modules.parsing.spi.indexing.Indexable;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.filesystems.URLMapper;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ *
+ * @author lahvac
+ */
+public class SourceIndexerTest extends NbTestCase {
+
+    public SourceIndexerTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        clearWorkDir();
+        ContentRecorder.indexed.clear();
+        ContentRecorder.deleted.clear();
+        super.setUp();
+    }
+
+    public void testResourceContentReadOnce() throws Exception {
+        FileObject root = FileUtil.toFileObject(getWorkDir());
+        FileObject resource = FileUtil.createData(root, "test/layer.xml");
+
+        copyToFile(resource, "<file name=\"org.netbeans.Original\"/>");
+
+        Directory store = new RAMDirectory();
+        IndexWriter iw = new IndexWriter(store, new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        IndexAccessor.current = new IndexAccessor(iw, root);
+
+        //ContentRecorder rewrites the file, the other indexers must still see the content read by the source indexer:
+        new SourceIndexer().index(Collections.singletonList(SPIAccessor.getInstance().create(new FileObjectIndexable(root, resource))), null);
+
+        iw.close();
+
+        assertEquals(Arrays.asList("test/layer.xml"), ContentRecorder.indexed);
+
+        IndexReader ir = IndexReader.open(store);
+        Set<String> signatures = new HashSet<String>();
+        String content = null;
+
+        try {
+            for (int i = 0; i < ir.maxDoc(); i++) {
+                if (ir.isDeleted(i)) continue;
+
+                Document doc = ir.document(i);
+
+                if ("test/layer.xml".equals(doc.get("relativePath"))) {
+                    assertNull(content);
+                    content = CompressionTools.decompressString(doc.getBinaryValue("content"));
+                }
+
+                if ("test/layer.xml".equals(doc.get("file"))) {
+                    signatures.addAll(Arrays.asList(doc.getValues("signatures")));
+                }
+            }
+        } finally {
+            ir.close();
+        }
+
+        assertEquals("<file name=\"org.netbeans.Original\"/>", content);
+        assertTrue(signatures.toString(), signatures.contains("OTHER:org.netbeans.Original"));
+        assertFalse(signatures.toString(), signatures.contains("OTHER:org.netbeans.Changed"));
+    }
+
+    public void testVanishedFileDeletedFromContentIndexers() throws Exception {
+        FileObject root = FileUtil.toFileObject(getWorkDir());
+        FileObject resource = FileUtil.createData(root, "test/layer.xml");
+        Indexable indexable = SPIAccessor.getInstance().create(new FileObjectIndexable(root, resource));
+
+        resource.delete();
+
+        Directory store = new RAMDirectory();
+        IndexWriter iw = new IndexWriter(store, new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        IndexAccessor.current = new IndexAccessor(iw, root);
+
+        new SourceIndexer().index(Collections.singletonList(indexable), null);
+
+        iw.close();
+
+        assertEquals(Collections.emptyList(), ContentRecorder.indexed);
+        assertEquals(Arrays.asList("test/layer.xml"), ContentRecorder.deleted);
+    }
+
+    private static void copyToFile(FileObject file, String content) throws IOException {
+        OutputStream out = file.getOutputStream();
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    @ServiceProvider(service=ContentIndexer.class, position=1)
+    public static final class ContentRecorder extends ContentIndexer {
+
+        private static final List<String> indexed = new ArrayList<String>();
+        private static final List<String> deleted = new ArrayList<String>();
+
+        @Override
+        public void index(Indexable indexable, FileContent content) throws IOException {
+            indexed.add(IndexAccessor.getCurrent().getPath(indexable.getURL()));
+            assertEquals("<file name=\"org.netbeans.Original\"/>", content.getContent());
+            copyToFile(URLMapper.findFileObject(indexable.getURL()), "<file name=\"org.netbeans.Changed\"/>");
+        }
+
+        @Override
+        public void delete(Indexable indexable) throws IOException {
+            deleted.add(IndexAccessor.getCurrent().getPath(indexable.getURL()));
+        }
+
+        @Override
+        public int getIndexVersion() {
+            return 1;
+        }
+
+    }
+}
@@ -62,10 +62,6 @@ import org.apache.lucene.document.Field.Index;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause;
-import org.apache.lucene.search.BooleanClause.Occur;
-import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.TermQuery;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
 import org.netbeans.api.java.source.ElementHandle;
 import org.netbeans.modules.jackpot30.backend.impl.spi.IndexAccessor;
@@ -207,7 +203,7 @@ public class IndexerImpl implements JavaIndexerPlugin {
                                     currentClassDocument.add(new Field("declarationPosition", Long.toString(trees.getSourcePositions().getStartPosition(getCurrentPath().getCompilationUnit(), node)), Store.YES, Index.NO));
                                 }
 
-                                IndexAccessor.getCurrent().getIndexWriter().addDocument(currentClassDocument);
+                                IndexAccessor.getCurrent().addDocument(currentClassDocument, "file", new Term(KEY_MARKER, "true"));
                             } catch (CorruptIndexException ex) {
                                 Exceptions.printStackTrace(ex);
                             } catch (IOException ex) {
@@ -276,7 +272,7 @@ public class IndexerImpl implements JavaIndexerPlugin {
                                 currentFeatureDocument.add(new Field("declarationPosition", Long.toString(trees.getSourcePositions().getStartPosition(getCurrentPath().getCompilationUnit(), getCurrentPath().getLeaf())), Store.YES, Index.NO));
                             }
 
-                            IndexAccessor.getCurrent().getIndexWriter().addDocument(currentFeatureDocument);
+                            IndexAccessor.getCurrent().addDocument(currentFeatureDocument, "file", new Term(KEY_MARKER, "true"));
                         } catch (CorruptIndexException ex) {
                             Exceptions.printStackTrace(ex);
                         } catch (IOException ex) {
@@ -291,7 +287,7 @@ public class IndexerImpl implements JavaIndexerPlugin {
                 usages.add(new Field("attributedSubSignatures", CompressionTools.compressString(attributedSubSignatures.toString())));
             }
             
-            IndexAccessor.getCurrent().getIndexWriter().addDocument(usages);
+            IndexAccessor.getCurrent().addDocument(usages, "file", new Term(KEY_MARKER, "true"));
         } catch (IOException ex) {
             Exceptions.printStackTrace(ex);
         }
@@ -481,12 +477,7 @@ public class IndexerImpl implements JavaIndexerPlugin {
     public void finish() {}
 
     private void doDelete(Indexable indexable) throws IOException {
-        BooleanQuery q = new BooleanQuery();
-
-        q.add(new BooleanClause(new TermQuery(new Term("file", IndexAccessor.getCurrent().getPath(indexable.getURL()))), Occur.MUST));
-        q.add(new BooleanClause(new TermQuery(new Term(KEY_MARKER, "true")), Occur.MUST));
-
-        IndexAccessor.getCurrent().getIndexWriter().deleteDocuments(q);
+        IndexAccessor.getCurrent().deleteDocuments(new Term("file", IndexAccessor.getCurrent().getPath(indexable.getURL())), new Term(KEY_MARKER, "true"));
     }
 
     @MimeRegistration(mimeType="text/x-java", service=Factory.class)
@@ -21,7 +21,6 @@ package org.netbeans.modules.jackpot30.indexer.usages;
 import java.io.IOException;
 import javax.lang.model.element.ElementKind;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexReader;
 import org.netbeans.modules.jackpot30.backend.impl.spi.StatisticsGenerator;
 import org.openide.util.lookup.ServiceProvider;
 
@@ -33,7 +32,7 @@ import org.openide.util.lookup.ServiceProvider;
 public class UsagesStatisticsGenerator extends StatisticsGenerator {
 
     @Override
-    protected void amendStatistics(IndexReader r, Document doc) throws IOException {
+    protected void amendStatistics(Document doc) throws IOException {
         if (doc.getFieldable("classFQN") != null) increment("java-classes");
         else if (doc.getFieldable("featureClassFQN") != null) {
             ElementKind kind = ElementKind.valueOf(doc.getFieldable("featureKind").stringValue());
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.util.ElementFilter;
@@ -192,6 +193,28 @@ public class IndexerImplTest extends NbTestCase {
         assertEquals(expectedDocumentsCount, ir.numDocs());
     }
 
+    public void testStatisticsRepeatedIndexing() throws IOException {
+        final FileObject root = FileUtil.toFileObject(getWorkDir());
+        FileObject testFile = FileUtil.createData(root, "Test.java");
+        copyToFile(testFile, "public class Test { private int f; }");
+
+        IndexWriter iw = new IndexWriter(new RAMDirectory(), new KeywordAnalyzer(), IndexWriter.MaxFieldLength.UNLIMITED);
+        IndexAccessor.current = new IndexAccessor(iw, root);
+
+        doIndex(root, testFile);
+
+        Map<String, Long> expected = IndexAccessor.current.getStatistics().getTotals();
+
+        assertEquals(Long.valueOf(1), expected.get("java-classes"));
+        assertEquals(Long.valueOf(1), expected.get("java-fields"));
+
+        doIndex(root, testFile);
+
+        iw.close();
+
+        assertEquals(expected, IndexAccessor.current.getStatistics().getTotals());
+    }
+
     public void testSubdirIndexing() throws IOException {
         final FileObject root = FileUtil.toFileObject(getWorkDir());
         FileObject aFile = FileUtil.createData(root, "a/A.java");
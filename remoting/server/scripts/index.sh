@@ -1,3 +1,5 @@
+#!/bin/bash
+
 # Licensed to the Apache Software Foundation (ASF) under one or more
 # contributor license agreements.  See the NOTICE file distributed with
 # this work for additional information regarding copyright ownership.
@@ -14,7 +16,7 @@
 # limitations under the License.
 
 
-DIR=`dirname $0`
+DIR=`dirname "$0"`
 USERDIR=`mktemp -d`;
 trap "rm -rf -- '$USERDIR'" EXIT
 
@@ -23,6 +25,74 @@ NAME="$1"; shift
 TARGET="$1"; shift
 ROOT_DIR="$1"; shift
 
-$DIR/indexer/bin/indexer -J-Djava.awt.headless=true --userdir $USERDIR --nosplash --nogui -J-Xmx2048m -J-Dnetbeans.indexing.recursiveListeners=false --info "$JPT30_INFO" --category-id "$ID" --category-name "$NAME" --cache-target "$TARGET" --category-root-dir "$ROOT_DIR" --category-projects "$@"
+EXTRA_OPTIONS=()
+if [ "$JPT30_INCREMENTAL" = "true" ] ; then
+    EXTRA_OPTIONS=(--incremental)
+fi
+
+#remove documents of files that no longer exist (e.g. from source roots that were removed), and report the reclaimed space:
+COMPACT_OPTIONS=()
+if [ "$JPT30_COMPACT" = "true" ] ; then
+    COMPACT_OPTIONS=(--compact)
+fi
+
+INDEXER=("$DIR/indexer/bin/indexer" -J-Djava.awt.headless=true --nosplash --nogui -J-Xmx2048m -J-Dnetbeans.indexing.recursiveListeners=false)
+
+if [ -z "$JPT30_SHARDS" ] || [ "$JPT30_SHARDS" -le 1 ] || [ "$#" -le 1 ] ; then
+    "${INDEXER[@]}" --userdir "$USERDIR" "${EXTRA_OPTIONS[@]}" "${COMPACT_OPTIONS[@]}" --info "$JPT30_INFO" --category-id "$ID" --category-name "$NAME" --cache-target "$TARGET" --category-root-dir "$ROOT_DIR" --category-projects "$@"
+    exit
+fi
+
+#index groups of projects in parallel (one indexer process per group), and merge the resulting caches.
+#Each group has its own cache, so --incremental works per group. A project is assigned to a group by a hash
+#of its path, so it stays in the same group (and cache) when other projects are added or removed:
+PROJECT_SHARDS=()
+for PROJECT in "$@" ; do
+    HASH=`printf '%s' "$PROJECT" | cksum | cut -d ' ' -f 1`
+    PROJECT_SHARDS+=($(( $HASH % $JPT30_SHARDS )))
+done
+
+SHARDS=""
+PIDS=()
+
+for (( SHARD = 0; SHARD < $JPT30_SHARDS; SHARD++ )) ; do
+    PROJECTS=()
+    INDEX=0
+    for PROJECT in "$@" ; do
+        if [ "${PROJECT_SHARDS[$INDEX]}" -eq "$SHARD" ] ; then
+            PROJECTS+=("$PROJECT")
+        fi
+        INDEX=$(( $INDEX + 1 ))
+    done
+    if [ "${#PROJECTS[@]}" -eq 0 ] ; then
+        continue
+    fi
+    SHARD_TARGET="$TARGET.shard$SHARD"
+    mkdir -p "$USERDIR/shard$SHARD"
+    "${INDEXER[@]}" --userdir "$USERDIR/shard$SHARD" "${EXTRA_OPTIONS[@]}" --category-id "$ID" --category-name "$NAME" --cache-target "$SHARD_TARGET" --category-root-dir "$ROOT_DIR" --category-projects "${PROJECTS[@]}" &
+    PIDS+=($!)
+    SHARDS="$SHARDS${SHARDS:+:}$SHARD_TARGET"
+done
+
+kill_tree() {
+    local CHILD
+    for CHILD in `pgrep -P "$1"` ; do
+        kill_tree "$CHILD"
+    done
+    kill "$1" 2>/dev/null
+}
+
+for PID in "${PIDS[@]}" ; do
+    if ! wait -n ; then
+        #do not leave the other shards running (the launcher starts the JVM as a child process):
+        for PID in "${PIDS[@]}" ; do
+            kill_tree "$PID"
+        done
+        wait
+        exit 1
+    fi
+done
+
+"${INDEXER[@]}" --userdir "$USERDIR/merge" "${COMPACT_OPTIONS[@]}" --info "$JPT30_INFO" --category-id "$ID" --category-name "$NAME" --cache-target "$TARGET" --category-root-dir "$ROOT_DIR" --merge-shards "$SHARDS"
 
 exit
@@ -0,0 +1,263 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.benchmarks;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Trees;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.netbeans.modules.parsing.impl.indexing.IndexableImpl;
+import org.netbeans.modules.parsing.impl.indexing.SPIAccessor;
+import org.netbeans.modules.parsing.spi.indexing.Indexable;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.util.Lookup;
+import org.openide.util.lookup.Lookups;
+
+/**A synthetic, deterministic Java corpus, generated into a temporary directory
+ * and attributed using javac.
+ *
+ * @author lahvac
+ */
+public final class Corpus {
+
+    static final String[] WORDS = {
+        "Order", "Customer", "Invoice", "Cache", "Service", "Parser",
+        "Index", "Query", "Session", "Buffer", "Stream", "Handler"
+    };
+    private static final String[] VARIABLE_NAMES = {
+        "value", "count", "item", "current", "result", "data", "entry", "index"
+    };
+    private static final int CLASSES_PER_PACKAGE = 16;
+
+    public final File root;
+    public final File sourceRoot;
+    public final List<CompilationUnitTree> units;
+    public final Trees trees;
+    public final Elements elements;
+    public final Types types;
+    public final Lookup services;
+
+    private Corpus(File root, File sourceRoot, List<CompilationUnitTree> units, JavacTask task) {
+        this.root = root;
+        this.sourceRoot = sourceRoot;
+        this.units = units;
+        this.trees = Trees.instance(task);
+        this.elements = task.getElements();
+        this.types = task.getTypes();
+        this.services = Lookups.fixed(trees, elements, types);
+    }
+
+    public static Corpus create(int classCount) throws IOException {
+        File root = FileUtil.normalizeFile(File.createTempFile("jackpot30-benchmark", ""));
+
+        root.delete();
+
+        File sourceRoot = new File(root, "src");
+        List<File> files = new ArrayList<File>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < classCount; i++) {
+            File target = new File(sourceRoot, packageName(i).replace('.', '/') + "/" + className(i) + ".java");
+
+            target.getParentFile().mkdirs();
+
+            Writer out = new OutputStreamWriter(new FileOutputStream(target), "UTF-8");
+
+            try {
+                out.write(generateClass(random, i));
+            } finally {
+                out.close();
+            }
+
+            files.add(target);
+        }
+
+        JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fm = tool.getStandardFileManager(null, null, null);
+        JavacTask task = (JavacTask) tool.getTask(null, fm, null, Arrays.asList("-proc:none"), null, fm.getJavaFileObjectsFromFiles(files));
+        List<CompilationUnitTree> units = new ArrayList<CompilationUnitTree>();
+
+        for (CompilationUnitTree cut : task.parse()) {
+            units.add(cut);
+        }
+
+        task.analyze();
+
+        return new Corpus(root, sourceRoot, Collections.unmodifiableList(units), task);
+    }
+
+    public static String packageName(int index) {
+        return "bench.p" + (index / CLASSES_PER_PACKAGE);
+    }
+
+    public static String className(int index) {
+        return WORDS[index % WORDS.length] + WORDS[(index / WORDS.length) % WORDS.length] + index;
+    }
+
+    public static String fqn(int index) {
+        return packageName(index) + "." + className(index);
+    }
+
+    private static String generateClass(Random random, int index) {
+        StringBuilder code = new StringBuilder();
+
+        code.append("package ").append(packageName(index)).append(";\n\n");
+        code.append("public class ").append(className(index));
+
+        if (index % 10 != 0) {
+            code.append(" extends ").append(fqn(random.nextInt(index)));
+        }
+
+        code.append(" {\n");
+        code.append("    private int counter;\n");
+        code.append("    private final java.util.List<String> names = new java.util.ArrayList<String>();\n\n");
+        code.append("    public int compute(int count) {\n");
+        code.append("        int result = 0;\n");
+        code.append("        for (int i = 0; i < count; i++) {\n");
+        code.append("            result += counter * i;\n");
+        code.append("            names.add(String.valueOf(result));\n");
+        code.append("        }\n");
+        code.append("        return result;\n");
+        code.append("    }\n\n");
+        code.append("    public String describe(String prefix) {\n");
+        code.append("        StringBuilder sb = new StringBuilder(prefix);\n");
+        code.append("        for (String name : names) {\n");
+        code.append("            if (!name.isEmpty()) {\n");
+        code.append("                sb.append(name).append(',');\n");
+        code.append("            }\n");
+        code.append("        }\n");
+        code.append("        return sb.toString();\n");
+        code.append("    }\n\n");
+
+        int helpers = 2 + random.nextInt(6);
+
+        for (int h = 0; h < helpers; h++) {
+            String var = VARIABLE_NAMES[random.nextInt(VARIABLE_NAMES.length)];
+            String other = VARIABLE_NAMES[random.nextInt(VARIABLE_NAMES.length)] + "2";
+
+            code.append("    public int helper").append(WORDS[random.nextInt(WORDS.length)]).append(h).append("(int ").append(var).append(") {\n");
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    code.append("        int ").append(other).append(" = ").append(var).append(" * 2;\n");
+                    code.append("        for (int i = 0; i < ").append(var).append("; i++) {\n");
+                    code.append("            ").append(other).append(" += compute(i);\n");
+                    code.append("        }\n");
+                    code.append("        return ").append(other).append(";\n");
+                    break;
+                case 1:
+                    code.append("        java.util.List<Integer> ").append(other).append(" = new java.util.ArrayList<Integer>();\n");
+                    code.append("        while (").append(var).append("-- > 0) {\n");
+                    code.append("            ").append(other).append(".add(").append(var).append(");\n");
+                    code.append("        }\n");
+                    code.append("        return ").append(other).append(".size() + describe(\"").append(var).append("\").length();\n");
+                    break;
+                default:
+                    if (index > 0) {
+                        code.append("        return new ").append(fqn(random.nextInt(index))).append("().compute(").append(var).append(") + ").append(var).append(";\n");
+                    } else {
+                        code.append("        return ").append(var).append(";\n");
+                    }
+                    break;
+            }
+
+            code.append("    }\n\n");
+        }
+
+        code.append("}\n");
+
+        return code.toString();
+    }
+
+    public URL getSourceRootURL() {
+        try {
+            return sourceRoot.toURI().toURL();
+        } catch (MalformedURLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public FileObject getRootFileObject() {
+        return FileUtil.toFileObject(root);
+    }
+
+    public FileObject getSourceRootFileObject() {
+        return FileUtil.toFileObject(sourceRoot);
+    }
+
+    public Indexable indexable(CompilationUnitTree cut) {
+        final URL url;
+
+        try {
+            url = cut.getSourceFile().toUri().toURL();
+        } catch (MalformedURLException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        final String relativePath = url.toExternalForm().substring(getSourceRootURL().toExternalForm().length());
+
+        return SPIAccessor.getInstance().create(new IndexableImpl() {
+            @Override public String getRelativePath() {
+                return relativePath;
+            }
+            @Override public URL getURL() {
+                return url;
+            }
+            @Override public String getMimeType() {
+                return "text/x-java";
+            }
+            @Override public boolean isTypeOf(String mimeType) {
+                return "text/x-java".equals(mimeType);
+            }
+        });
+    }
+
+    public void delete() {
+        delete(root);
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.benchmarks;
+
+import com.sun.source.tree.CompilationUnitTree;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
+import org.netbeans.modules.jackpot30.backend.impl.spi.IndexAccessor;
+import org.netbeans.modules.jackpot30.indexer.usages.IndexerImpl;
+import org.netbeans.modules.jackpot30.indexing.index.Indexer;
+import org.netbeans.modules.java.preprocessorbridge.spi.JavaIndexerPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**Throughput of the usages and language indexers, indexing the whole corpus
+ * (into an in-memory index) per invocation.
+ *
+ * @author lahvac
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexingBenchmark {
+
+    @Param("200")
+    public int classes;
+
+    private Corpus corpus;
+    private IndexWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = Corpus.create(classes);
+    }
+
+    @Setup(Level.Iteration)
+    public void openIndex() throws IOException {
+        writer = new IndexWriter(new RAMDirectory(), new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        IndexAccessor.current = new IndexAccessor(writer, corpus.getRootFileObject());
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeIndex() throws IOException {
+        IndexAccessor.current = null;
+        writer.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        corpus.delete();
+    }
+
+    @Benchmark
+    public void usagesIndexer() {
+        run(new IndexerImpl(corpus.getSourceRootURL()));
+    }
+
+    @Benchmark
+    public void languageIndexer() {
+        run(new Indexer.FactoryImpl().create(corpus.getSourceRootURL(), corpus.getSourceRootFileObject()));
+    }
+
+    private void run(JavaIndexerPlugin plugin) {
+        for (CompilationUnitTree cut : corpus.units) {
+            plugin.process(cut, corpus.indexable(cut), corpus.services);
+        }
+
+        plugin.finish();
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.benchmarks;
+
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.tools.Diagnostic;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import org.netbeans.lib.nbjavac.services.NBParserFactory;
+import org.netbeans.lib.nbjavac.services.NBTreeMaker;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.indexing.index.IndexQuery;
+import org.netbeans.modules.java.hints.declarative.DeclarativeHintsParser;
+import org.netbeans.modules.java.hints.jackpot.spi.PatternConvertor;
+import org.netbeans.modules.java.hints.providers.spi.HintDescription;
+import org.netbeans.modules.java.hints.providers.spi.HintDescription.AdditionalQueryConstraints;
+import org.netbeans.modules.java.hints.providers.spi.Trigger.PatternDescription;
+import org.netbeans.modules.java.hints.spiimpl.Utilities;
+import org.netbeans.modules.java.hints.spiimpl.pm.BulkSearch;
+import org.netbeans.modules.java.hints.spiimpl.pm.BulkSearch.BulkPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**Candidate search for a pattern ({@link IndexQuery#performLocalQuery}), which
+ * runs {@link BulkSearch#matches} on the encoded trees of all files that pass the Lucene query.
+ *
+ * @author lahvac
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LanguageQueryBenchmark {
+
+    static {
+        DeclarativeHintsParser.disableCustomCode = true;
+    }
+
+    @Param({"$list.add($value);;", "$sb.append($first).append($second);;", "new java.util.ArrayList<$T>();;"})
+    public String pattern;
+
+    @Param({"false", "true"})
+    public boolean withFrequencies;
+
+    private BulkPattern bulkPattern;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bulkPattern = preparePattern(PatternConvertor.create(pattern), new LinkedList<Diagnostic<? extends JavaFileObject>>());
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Integer>> performLocalQuery(ServerCategory category) throws Exception {
+        return IndexQuery.performLocalQuery(CategoryStorage.forId(ServerCategory.CATEGORY).getIndex(), bulkPattern, withFrequencies);
+    }
+
+    //XXX: copied from language.web.api's API:
+    private static BulkPattern preparePattern(final Iterable<? extends HintDescription> patterns, Collection<Diagnostic<? extends JavaFileObject>> errors) {
+        JavacTaskImpl javac = prepareJavacTaskImpl();
+        Collection<String> code = new LinkedList<String>();
+        Collection<Tree> trees = new LinkedList<Tree>();
+        Collection<AdditionalQueryConstraints> additionalConstraints = new LinkedList<AdditionalQueryConstraints>();
+
+        for (HintDescription pattern : patterns) {
+            String textPattern = ((PatternDescription) pattern.getTrigger()).getPattern();
+
+            code.add(textPattern);
+            trees.add(Utilities.parseAndAttribute(javac, textPattern, errors));
+            additionalConstraints.add(pattern.getAdditionalConstraints());
+        }
+
+        return BulkSearch.getDefault().create(code, trees, additionalConstraints, new AtomicBoolean());
+    }
+
+    private static JavacTaskImpl prepareJavacTaskImpl() {
+        final String bootPath = System.getProperty("sun.boot.class.path"); //NOI18N
+        final JavaCompiler tool = ToolProvider.getSystemJavaCompiler();
+
+        assert tool != null;
+
+        JavacTaskImpl ct = (JavacTaskImpl) tool.getTask(null, null, null, Arrays.asList("-bootclasspath",  bootPath, "-Xjcov"), null, Collections.<JavaFileObject>emptyList());
+
+        NBParserFactory.preRegister(ct.getContext());
+        NBTreeMaker.preRegister(ct.getContext());
+
+        return ct;
+    }
+}
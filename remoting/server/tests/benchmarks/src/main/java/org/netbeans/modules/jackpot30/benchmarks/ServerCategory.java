@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.benchmarks;
+
+import com.sun.source.tree.CompilationUnitTree;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Properties;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.RelStreamHandlerFactory;
+import org.netbeans.modules.jackpot30.backend.impl.spi.IndexAccessor;
+import org.netbeans.modules.jackpot30.indexer.usages.IndexerImpl;
+import org.netbeans.modules.jackpot30.indexing.index.Indexer;
+import org.netbeans.modules.java.preprocessorbridge.spi.JavaIndexerPlugin;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**A server-side category built from the synthetic {@link Corpus}, in the same
+ * layout as produced by the indexing backend and served by the web backend.
+ *
+ * @author lahvac
+ */
+@State(Scope.Benchmark)
+public class ServerCategory {
+
+    public static final String CATEGORY = "bench";
+
+    static {
+        //as in WebMain:
+        URL.setURLStreamHandlerFactory(new RelStreamHandlerFactory());
+    }
+
+    @Param("200")
+    public int classes;
+
+    public Corpus corpus;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = Corpus.create(classes);
+
+        File cacheRoot = new File(corpus.root, "cache");
+        File categoryRoot = new File(cacheRoot, CATEGORY);
+        IndexWriter w = new IndexWriter(FSDirectory.open(new File(categoryRoot, "index")), new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+
+        try {
+            index(corpus, w);
+        } finally {
+            w.optimize();
+            w.close();
+        }
+
+        Properties segments = new Properties();
+
+        segments.setProperty("s1", "rel:/src/");
+
+        OutputStream out = new FileOutputStream(new File(categoryRoot, "segments"));
+
+        try {
+            segments.store(out, "");
+        } finally {
+            out.close();
+        }
+
+        out = new FileOutputStream(new File(categoryRoot, "info"));
+
+        try {
+            out.write(("{\n\"displayName\": \"" + CATEGORY + "\"\n}\n").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        CategoryStorage.setCacheRoot(cacheRoot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        corpus.delete();
+    }
+
+    /**Runs the usages and language indexers over the whole corpus, as the indexing backend does.
+     */
+    static void index(Corpus corpus, IndexWriter w) {
+        IndexAccessor.current = new IndexAccessor(w, corpus.getRootFileObject());
+
+        try {
+            JavaIndexerPlugin usages = new IndexerImpl(corpus.getSourceRootURL());
+            JavaIndexerPlugin language = new Indexer.FactoryImpl().create(corpus.getSourceRootURL(), corpus.getSourceRootFileObject());
+
+            for (CompilationUnitTree cut : corpus.units) {
+                usages.process(cut, corpus.indexable(cut), corpus.services);
+                language.process(cut, corpus.indexable(cut), corpus.services);
+            }
+
+            usages.finish();
+            language.finish();
+        } finally {
+            IndexAccessor.current = null;
+        }
+    }
+}
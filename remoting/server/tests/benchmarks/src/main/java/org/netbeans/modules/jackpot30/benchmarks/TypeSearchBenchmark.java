@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.netbeans.modules.jackpot30.backend.type.api.TypeService;
+import org.netbeans.modules.parsing.lucene.support.Queries.QueryKind;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**Type and symbol search (the {@code Base.doFind} path of {@code /index/type/search}
+ * and {@code /index/symbol/search}), for each {@link QueryKind}.
+ *
+ * @author lahvac
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeSearchBenchmark {
+
+    @Param
+    public QueryKind kind;
+
+    @Benchmark
+    public Map<String, List<String>> findTypes(ServerCategory category) throws IOException, InterruptedException {
+        return TypeService.findTypes(ServerCategory.CATEGORY, typePrefix(category.classes), true, kind.name());
+    }
+
+    @Benchmark
+    public Map<String, List<Map<String, Object>>> findSymbols(ServerCategory category) throws IOException, InterruptedException {
+        return TypeService.findSymbols(ServerCategory.CATEGORY, symbolPrefix(), true, kind.name());
+    }
+
+    private String typePrefix(int classes) {
+        switch (kind) {
+            case EXACT: return Corpus.className(classes / 2);
+            case PREFIX: return Corpus.WORDS[0];
+            case CASE_INSENSITIVE_PREFIX: return Corpus.WORDS[0].toLowerCase();
+            case CAMEL_CASE: return "OC";
+            case REGEXP: return Corpus.WORDS[0] + ".*" + Corpus.WORDS[3] + ".*";
+            case CASE_INSENSITIVE_REGEXP: return (Corpus.WORDS[0] + ".*" + Corpus.WORDS[3] + ".*").toLowerCase();
+            default: return Corpus.WORDS[0];
+        }
+    }
+
+    private String symbolPrefix() {
+        switch (kind) {
+            case EXACT: return "compute";
+            case PREFIX: return "helper";
+            case CASE_INSENSITIVE_PREFIX: return "HELPER";
+            case CAMEL_CASE: return "hC";
+            case REGEXP: return "helper.*1";
+            case CASE_INSENSITIVE_REGEXP: return "HELPER.*1";
+            default: return "helper";
+        }
+    }
+}
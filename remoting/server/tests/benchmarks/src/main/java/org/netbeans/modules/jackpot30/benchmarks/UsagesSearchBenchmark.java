@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.benchmarks;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import org.netbeans.api.java.source.ElementHandle;
+import org.netbeans.modules.jackpot30.backend.usages.api.UsagesService;
+import org.netbeans.modules.jackpot30.indexer.usages.Common;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**Usages search (as in {@code /index/usages/search} and {@code /index/usages/searchBulk}) and subtype search
+ * (as in {@code /index/implements/search}).
+ *
+ * @author lahvac
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UsagesSearchBenchmark {
+
+    private String methodSignature;
+    private String typeSignature;
+
+    @Setup(Level.Trial)
+    public void setUp(ServerCategory category) {
+        //compute(int) of the first class is overridden by (nearly) all other classes:
+        TypeElement clazz = category.corpus.elements.getTypeElement(Corpus.fqn(0));
+
+        typeSignature = Common.serialize(ElementHandle.create(clazz));
+
+        for (ExecutableElement method : ElementFilter.methodsIn(clazz.getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals("compute")) {
+                methodSignature = Common.serialize(ElementHandle.create(method));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String> findUsages(ServerCategory category) throws IOException, InterruptedException {
+        return UsagesService.findUsages(ServerCategory.CATEGORY, methodSignature, false);
+    }
+
+    @Benchmark
+    public List<String> findTypeUsages(ServerCategory category) throws IOException, InterruptedException {
+        return UsagesService.findUsages(ServerCategory.CATEGORY, typeSignature, false);
+    }
+
+    @Benchmark
+    public Map<String, List<String>> findUsagesBulk(ServerCategory category) throws IOException, InterruptedException {
+        return UsagesService.findUsages(ServerCategory.CATEGORY, Arrays.asList(methodSignature, typeSignature), false);
+    }
+
+    @Benchmark
+    public Map<String, List<Map<String, Object>>> findSubtypes(ServerCategory category) throws IOException, InterruptedException {
+        return UsagesService.findSubtypes(ServerCategory.CATEGORY, Corpus.fqn(0));
+    }
+}
@@ -18,8 +18,13 @@
  */
 package org.netbeans.modules.jackpot30.backend.base;
 
+import com.sun.jersey.api.core.ExtendedUriInfo;
+import com.sun.jersey.api.uri.UriTemplate;
 import com.sun.jersey.spi.container.ContainerRequest;
 import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
@@ -34,26 +39,42 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.core.Context;
 
 /**
  *
  * @author lahvac
  */
-public class AccessStatistics implements ContainerRequestFilter {
+public class AccessStatistics implements ContainerRequestFilter, ContainerResponseFilter {
 
-    private static Map<String, Long> statistics = null;
-    private static long lastModifyStamp = 0;
+    private static final int STORE_PERIOD = Integer.getInteger("jackpot.statistics.storePeriod", 60);
+    private static final ConcurrentMap<String, AtomicLong> statistics = new ConcurrentHashMap<String, AtomicLong>();
+    private static final AtomicLong modifyStamp = new AtomicLong();
     private static long lastSaveStamp = -1;
-    private static ScheduledExecutorService store = Executors.newSingleThreadScheduledExecutor();
+    private static final ScheduledExecutorService store = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, AccessStatistics.class.getName());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private static volatile boolean loaded;
+
+    private static void ensureLoaded() {
+        if (loaded) return;
 
-    private static synchronized void incrementUsage(String key) {
-        if (statistics == null) {
-            statistics = new HashMap<String, Long>();
+        synchronized (AccessStatistics.class) {
+            if (loaded) return;
 
             File accessStatistics = CategoryStorage.getAccessStatisticsFile();
 
@@ -70,7 +91,7 @@ public class AccessStatistics implements ContainerRequestFilter {
                         try {
                             long count = Long.parseLong(p.getProperty(propertyKey));
 
-                            statistics.put(propertyKey, count);
+                            statistics.put(propertyKey, new AtomicLong(count));
                         } catch (NumberFormatException ex) {
                             //ignore...
                             Logger.getLogger(AccessStatistics.class.getName()).log(Level.SEVERE, null, ex);
@@ -88,32 +109,48 @@ public class AccessStatistics implements ContainerRequestFilter {
                     }
                 }
             }
+
+            store.scheduleWithFixedDelay(new Runnable() {
+                @Override public void run() {
+                    storeStatistics();
+                }
+            }, STORE_PERIOD, STORE_PERIOD, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override public void run() {
+                    storeStatistics();
+                }
+            });
+
+            loaded = true;
         }
+    }
 
-        Long l = statistics.get(key);
+    private static void incrementUsage(String key) {
+        ensureLoaded();
 
-        if (l == null) l = 0L;
+        AtomicLong count = statistics.get(key);
 
-        statistics.put(key, l + 1);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
 
-        lastModifyStamp++;
+            count = statistics.putIfAbsent(key, newCount);
 
-        store.schedule(new Runnable() {
-            @Override public void run() {
-                storeStatistics();
-            }
-        }, 1, TimeUnit.SECONDS);
+            if (count == null) count = newCount;
+        }
+
+        count.incrementAndGet();
+        modifyStamp.incrementAndGet();
     }
 
-    private static void storeStatistics() {
+    private static synchronized void storeStatistics() {
+        long currentStamp = modifyStamp.get();
+
+        if (lastSaveStamp == currentStamp) return;
+
         Properties p = new Properties();
 
-        synchronized (AccessStatistics.class) {
-            if (lastSaveStamp == lastModifyStamp) return;
-            lastSaveStamp = lastModifyStamp;
-            for (Entry<String, Long> e : statistics.entrySet()) {
-                p.setProperty(e.getKey(), Long.toString(e.getValue()));
-            }
+        for (Entry<String, AtomicLong> e : statistics.entrySet()) {
+            p.setProperty(e.getKey(), Long.toString(e.getValue().get()));
         }
 
         File accessStatistics = CategoryStorage.getAccessStatisticsFile();
@@ -135,14 +172,29 @@ public class AccessStatistics implements ContainerRequestFilter {
                 }
 
                 tempFile.renameTo(accessStatistics);
+                lastSaveStamp = currentStamp;
             }
         }
     }
 
-    public static synchronized Map<String, Long> getStatistics() {
-        return Collections.unmodifiableMap(new HashMap<String, Long>(statistics));
+    public static Map<String, Long> getStatistics() {
+        ensureLoaded();
+
+        Map<String, Long> result = new HashMap<String, Long>();
+
+        for (Entry<String, AtomicLong> e : statistics.entrySet()) {
+            result.put(e.getKey(), e.getValue().get());
+        }
+
+        return Collections.unmodifiableMap(result);
     }
 
+    //requests are processed synchronously, the response filter runs on the same thread as the request filter:
+    private static final ThreadLocal<RequestStart> currentRequest = new ThreadLocal<RequestStart>();
+
+    @Context
+    private ExtendedUriInfo uriInfo;
+
     @Override
     public ContainerRequest filter(ContainerRequest request) {
         StringBuilder statisticsKey = new StringBuilder();
@@ -157,8 +209,95 @@ public class AccessStatistics implements ContainerRequestFilter {
         }
 
         incrementUsage(statisticsKey.toString());
-        
+
+        //a previous request on this thread failed before its response was written:
+        requestCompleted();
+
+        String category = paths != null && !paths.isEmpty() ? paths.get(0) : null;
+
+        Metrics.requestStarted();
+        currentRequest.set(new RequestStart(category, System.nanoTime()));
+
         return request;
     }
 
+    @Override
+    public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        final RequestStart start = currentRequest.get();
+
+        if (start == null) return response;
+
+        start.endpoint = matchedTemplate();
+
+        final ContainerResponseWriter delegate = response.getContainerResponseWriter();
+
+        //the entity is written after the filters are run, so the request is finished only when the writer is:
+        response.setContainerResponseWriter(new ContainerResponseWriter() {
+            @Override
+            public OutputStream writeStatusAndHeaders(long contentLength, ContainerResponse response) throws IOException {
+                return delegate.writeStatusAndHeaders(contentLength, response);
+            }
+            @Override
+            public void finish() throws IOException {
+                try {
+                    delegate.finish();
+                } finally {
+                    start.finished();
+                }
+            }
+        });
+
+        return response;
+    }
+
+    /**Finishes the request currently processed by this thread, if it was not finished yet.
+     * Should be called when the processing of each request ends, as the response filters
+     * are not run for requests that fail with an unmapped exception.
+     */
+    public static void requestCompleted() {
+        RequestStart start = currentRequest.get();
+
+        currentRequest.remove();
+
+        if (start != null) {
+            start.finished();
+        }
+    }
+
+    private String matchedTemplate() {
+        List<UriTemplate> templates = uriInfo.getMatchedTemplates();
+
+        if (templates == null || templates.isEmpty()) return UNMATCHED;
+
+        StringBuilder result = new StringBuilder();
+
+        //the templates are ordered from the last matched one:
+        for (int i = templates.size() - 1; i >= 0; i--) {
+            result.append(templates.get(i).getTemplate());
+        }
+
+        return result.toString();
+    }
+
+    private static final String UNMATCHED = "unmatched";
+
+    private static final class RequestStart {
+        private final String category;
+        private final long startNanos;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile String endpoint = UNMATCHED;
+
+        public RequestStart(String category, long startNanos) {
+            this.category = category;
+            this.startNanos = startNanos;
+        }
+
+        public void finished() {
+            if (finished.compareAndSet(false, true)) {
+                Metrics.requestFinished(endpoint, category, System.nanoTime() - startNanos);
+            }
+        }
+
+    }
+
 }
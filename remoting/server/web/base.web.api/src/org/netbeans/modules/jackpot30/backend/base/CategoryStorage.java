@@ -19,14 +19,21 @@
 package org.netbeans.modules.jackpot30.backend.base;
 
 import com.sun.jersey.api.NotFoundException;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
+import java.math.BigInteger;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -36,10 +43,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.FSDirectory;
 import org.codeviation.pojson.Pojson;
 import org.netbeans.modules.parsing.lucene.support.Index;
 import org.netbeans.modules.parsing.lucene.support.IndexManager;
@@ -65,6 +78,7 @@ public class CategoryStorage {
 
     public static void internalReset() {
         setCacheRoot(cacheRoot);
+        collectBlobs();
     }
 
     private static File cacheRoot;
@@ -78,7 +92,7 @@ public class CategoryStorage {
         List<CategoryStorage> result = new ArrayList<CategoryStorage>();
 
         for (File cat : cacheRoot.listFiles()) {
-            if (!cat.isDirectory()) continue;
+            if (!cat.isDirectory() || cat.getName().startsWith(".")) continue;
             File info = new File(cat, "info");
             String displayName = cat.getName();
             if (info.canRead()) {
@@ -264,6 +278,251 @@ public class CategoryStorage {
         return result;
     }
 
+    private static final String DERIVED_DATA = "derived";
+
+    /**A folder for data computed by the server from the content of this category. The
+     * folder is part of the category, so it is dropped together with the category when
+     * a new index is uploaded.
+     */
+    public File getDerivedDataFolder(String kind) {
+        return new File(new File(new File(cacheRoot, id), DERIVED_DATA), kind);
+    }
+
+    private static final String BLOBS = "blobs";
+    private static final String KEY_CONTENT_HASH = "contentHash";
+    private static final Object BLOBS_LOCK = new Object();
+
+    private static synchronized File getSharedBlobsFolder() {
+        return new File(cacheRoot, ".blobs");
+    }
+
+    /**Reads the file content stored by the indexer under the given hash. The contents are stored by the indexer
+     * in the category, and moved by the server to a folder shared by all categories when the index is updated,
+     * so that identical contents are stored only once.
+     *
+     * @throws FileNotFoundException if there is no content with the given hash
+     */
+    public String readBlob(String hash) throws IOException {
+        InputStream in = new GZIPInputStream(openBlob(hash));
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            FileUtil.copy(in, out);
+
+            return new String(out.toByteArray(), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**Opens the content stored under the given hash, as written by the indexer (gzipped UTF-8).
+     *
+     * @throws FileNotFoundException if there is no content with the given hash
+     */
+    public InputStream openBlob(String hash) throws IOException {
+        for (File blob : blobCandidates(hash)) {
+            try {
+                return new FileInputStream(blob);
+            } catch (FileNotFoundException ex) {
+                //try the next location
+            }
+        }
+
+        throw new FileNotFoundException("No content " + hash + " in category " + id);
+    }
+
+    /**Finds the file that holds the content stored under the given hash.
+     *
+     * @return the file, or {@code null} if not found
+     */
+    public File findBlob(String hash) {
+        for (File blob : blobCandidates(hash)) {
+            if (blob.isFile()) return blob;
+        }
+
+        return null;
+    }
+
+    private File[] blobCandidates(String hash) {
+        if (!hash.matches("[0-9a-f]{40}")) return new File[0];
+
+        String path = hash.substring(0, 2) + "/" + hash;
+        File shared = new File(getSharedBlobsFolder(), path);
+
+        //the blob may be moved to the shared folder between the checks, so try the shared folder once more:
+        return new File[] {shared, new File(new File(new File(cacheRoot, id), BLOBS), path), shared};
+    }
+
+    /**The hashes of all file contents referenced by the index of this category.
+     */
+    public Set<String> getBlobReferences() throws IOException {
+        Set<String> result = new TreeSet<String>();
+
+        readBlobReferences(result);
+
+        return result;
+    }
+
+    /**Moves the file contents uploaded with the categories to the folder shared by all categories,
+     * and deletes the shared contents that are not referenced by the index of any category.
+     * If the references of any category cannot be read, no content is deleted.
+     */
+    static void collectBlobs() {
+        synchronized (BLOBS_LOCK) {
+            long start = System.currentTimeMillis();
+            File shared = getSharedBlobsFolder();
+            Set<String> referenced = new HashSet<String>();
+
+            for (CategoryStorage category : listCategories()) {
+                category.shareBlobs(shared, start);
+            }
+
+            for (CategoryStorage category : listCategories()) {
+                try {
+                    category.readBlobReferences(referenced);
+                } catch (IOException ex) {
+                    Logger.getLogger(CategoryStorage.class.getName()).log(Level.WARNING, "Cannot read blob references of " + category.getId() + ", not deleting unused blobs", ex);
+                    return ;
+                }
+            }
+
+            File[] prefixes = shared.listFiles();
+
+            for (File prefix : prefixes != null ? prefixes : new File[0]) {
+                File[] blobs = prefix.listFiles();
+
+                if (blobs == null) continue;
+
+                for (File blob : blobs) {
+                    //blobs shared during this collection have their time updated, and are never deleted:
+                    if (!referenced.contains(blob.getName()) && blob.lastModified() < start) {
+                        blob.delete();
+                    }
+                }
+
+                prefix.delete(); //only succeeds if empty
+            }
+        }
+    }
+
+    private void shareBlobs(File shared, long timestamp) {
+        File[] prefixes = new File(new File(cacheRoot, id), BLOBS).listFiles();
+
+        for (File prefix : prefixes != null ? prefixes : new File[0]) {
+            File[] blobs = prefix.listFiles();
+
+            if (blobs == null) continue;
+
+            File sharedPrefix = new File(shared, prefix.getName());
+
+            sharedPrefix.mkdirs();
+
+            for (File blob : blobs) {
+                File target = new File(sharedPrefix, blob.getName());
+
+                if (target.exists() || blob.renameTo(target)) {
+                    target.setLastModified(timestamp);
+                    blob.delete();
+                } else {
+                    Logger.getLogger(CategoryStorage.class.getName()).log(Level.INFO, "Cannot move {0} to {1}", new Object[] {blob, target});
+                }
+            }
+        }
+    }
+
+    private void readBlobReferences(Set<String> referenced) throws IOException {
+        if (!new File(new File(cacheRoot, id), BLOBS).exists() && !getIndexFile().exists()) return ;
+
+        IndexReader reader = IndexReader.open(FSDirectory.open(getIndexFile()));
+
+        try {
+            TermEnum terms = reader.terms(new Term(KEY_CONTENT_HASH, ""));
+
+            try {
+                do {
+                    Term term = terms.term();
+
+                    if (term == null || !KEY_CONTENT_HASH.equals(term.field())) break;
+
+                    referenced.add(term.text());
+                } while (terms.next());
+            } finally {
+                terms.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private AtomicReference<Version> version = new AtomicReference<Version>();
+
+    /**Identifies the current content of this category. The content only changes
+     * when a new index is uploaded, which replaces the files of the category.
+     */
+    public String getVersion() {
+        return version().id;
+    }
+
+    /**The time of the newest file of the index of this category.
+     */
+    public long getLastModified() {
+        return version().lastModified;
+    }
+
+    private Version version() {
+        Version result = version.get();
+
+        if (result != null) return result;
+
+        File root = new File(cacheRoot, id);
+        StringBuilder content = new StringBuilder();
+        long lastModified = 0;
+
+        for (File dir : new File[] {root, getIndexFile()}) {
+            File[] children = dir.listFiles();
+
+            if (children == null) continue;
+
+            Arrays.sort(children);
+
+            for (File c : children) {
+                //written by the server, not a change of the index:
+                if (DERIVED_DATA.equals(c.getName()) || BLOBS.equals(c.getName())) continue;
+
+                content.append(c.getName()).append(':').append(c.length()).append(':').append(c.lastModified()).append('\n');
+                lastModified = Math.max(lastModified, c.lastModified());
+            }
+        }
+
+        version.set(result = new Version(digest(content.toString()), lastModified));
+
+        return result;
+    }
+
+    public static String digest(String content) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+
+            return new BigInteger(1, md.digest(content.getBytes("UTF-8"))).toString(16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final class Version {
+        private final String id;
+        private final long lastModified;
+
+        public Version(String id, long lastModified) {
+            this.id = id;
+            this.lastModified = lastModified;
+        }
+
+    }
+
     private AtomicReference<String> info = new AtomicReference<String>();
 
     public String getInfo() {
@@ -285,6 +544,9 @@ public class CategoryStorage {
             infoData.put("indexSize", getSize());
         }
 
+        //lets clients invalidate what they cached for this category:
+        infoData.put("indexVersion", getVersion());
+
         info.set(result = Pojson.save(infoData));
 
         return result;
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.base;
+
+import com.sun.jersey.api.NotFoundException;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+/**Adds {@code ETag} and {@code Last-Modified} headers to GET responses, and answers
+ * conditional requests with 304 (Not Modified) without running the resource. The
+ * validators are derived from the versions of the categories given by the {@code path}
+ * parameters, or of all categories if there are none.
+ *
+ * Only the resources listed in {@link #VALIDATED_PATHS} are validated: their responses
+ * depend solely on the index and on the query parameters. Runtime data (statistics,
+ * metrics) and random samples must never be answered with 304.
+ *
+ * @author lahvac
+ */
+public class ConditionalRequests implements ContainerRequestFilter, ContainerResponseFilter {
+
+    static final Set<String> VALIDATED_PATHS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+        "index/list",
+        "index/info",
+        "index/source/cat",
+        "index/type/search",
+        "index/symbol/search",
+        "index/usages/search",
+        "index/implements/search",
+        "index/duplicates/findDuplicates",
+        "index/language/search",
+        "index/language/searchSpans",
+        "index/language/errors",
+        "index/languageui/search",
+        "index/languageui/show",
+        "index/languageui/snippet",
+        "index/ui/search",
+        "index/ui/show",
+        "index/ui/searchSymbol",
+        "index/ui/searchUsages",
+        "index/ui/usages",
+        "index/ui/implements",
+        "index/ui/localUsages",
+        "index/ui/declarationSpan",
+        "index/ui/highlightData",
+        "index/ui/target",
+        "index/downloadable/index",
+        "index/downloadable/netbeans"
+    )));
+
+    //the responses may depend on the server code, not only on the index:
+    private static final long SERVER_START = System.currentTimeMillis() / 1000 * 1000;
+    private static final String SERVER_ID = Long.toHexString(SERVER_START);
+
+    //requests are processed synchronously, the response filter runs on the same thread as the request filter:
+    private static final ThreadLocal<Validators> currentValidators = new ThreadLocal<Validators>();
+
+    @Override
+    public ContainerRequest filter(ContainerRequest request) {
+        currentValidators.remove();
+
+        if (!"GET".equals(request.getMethod())) return request;
+
+        if (!isValidated(request.getPath())) return request;
+
+        Validators validators;
+
+        try {
+            validators = validators(request.getQueryParameters().get("path"));
+        } catch (NotFoundException ex) {
+            //unknown category, the resource will report it:
+            return request;
+        }
+
+        ResponseBuilder notModified = request.evaluatePreconditions(new Date(validators.lastModified), validators.tag);
+
+        if (notModified != null) {
+            throw new WebApplicationException(notModified.tag(validators.tag).build());
+        }
+
+        currentValidators.set(validators);
+
+        return request;
+    }
+
+    @Override
+    public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        Validators validators = currentValidators.get();
+
+        currentValidators.remove();
+
+        if (validators == null || response.getStatus() != 200) return response;
+
+        MultivaluedMap<String, Object> headers = response.getHttpHeaders();
+
+        if (headers.containsKey(HttpHeaders.ETAG) || headers.containsKey(HttpHeaders.CACHE_CONTROL)) return response;
+
+        headers.putSingle(HttpHeaders.ETAG, validators.tag);
+        headers.putSingle(HttpHeaders.LAST_MODIFIED, new Date(validators.lastModified));
+        //the clients may cache the responses, but should revalidate them before use:
+        headers.putSingle(HttpHeaders.CACHE_CONTROL, "no-cache");
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        return response;
+    }
+
+    static boolean isValidated(String path) {
+        while (path.startsWith("/")) path = path.substring(1);
+        while (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+
+        return VALIDATED_PATHS.contains(path);
+    }
+
+    private static Validators validators(List<String> paths) {
+        List<CategoryStorage> categories = new ArrayList<CategoryStorage>();
+
+        if (paths != null && !paths.isEmpty()) {
+            for (String path : paths) {
+                categories.add(CategoryStorage.forId(path));
+            }
+        } else {
+            for (CategoryStorage category : CategoryStorage.listCategories()) {
+                categories.add(category);
+            }
+        }
+
+        if (categories.size() == 1) {
+            return new Validators(categories.get(0).getVersion(), categories.get(0).getLastModified());
+        }
+
+        StringBuilder versions = new StringBuilder();
+        long lastModified = 0;
+
+        for (CategoryStorage category : categories) {
+            versions.append(category.getId()).append(':').append(category.getVersion()).append('\n');
+            lastModified = Math.max(lastModified, category.getLastModified());
+        }
+
+        return new Validators(CategoryStorage.digest(versions.toString()), lastModified);
+    }
+
+    private static final class Validators {
+        private final EntityTag tag;
+        private final long lastModified;
+
+        public Validators(String version, long lastModified) {
+            //weak: the same content may be sent both compressed and uncompressed
+            this.tag = new EntityTag(SERVER_ID + "-" + version, true);
+            //HTTP dates have a precision of seconds:
+            this.lastModified = Math.max(SERVER_START, lastModified / 1000 * 1000);
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.base;
+
+import com.sun.jersey.api.container.filter.GZIPContentEncodingFilter;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+/**Compresses the responses for clients that accept gzip, except for the streamed
+ * plain text responses (like {@code /index/language/searchSpansBatch}), whose lines
+ * are flushed to the client as soon as they are computed. A {@code GZIPOutputStream}
+ * does not write anything on flush, so the client would not see any line
+ * until the whole response is finished.
+ *
+ * @author lahvac
+ */
+public class ContentEncoding implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private final GZIPContentEncodingFilter gzip = new GZIPContentEncodingFilter();
+
+    @Override
+    public ContainerRequest filter(ContainerRequest request) {
+        return gzip.filter(request);
+    }
+
+    @Override
+    public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        if (isStreamedText(response)) return response;
+
+        return gzip.filter(request, response);
+    }
+
+    private static boolean isStreamedText(ContainerResponse response) {
+        if (!(response.getEntity() instanceof StreamingOutput)) return false;
+
+        Object contentType = response.getHttpHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+
+        if (contentType == null) return true;
+
+        MediaType mediaType = contentType instanceof MediaType ? (MediaType) contentType : MediaType.valueOf(contentType.toString());
+
+        return MediaType.TEXT_PLAIN_TYPE.isCompatible(mediaType);
+    }
+
+}
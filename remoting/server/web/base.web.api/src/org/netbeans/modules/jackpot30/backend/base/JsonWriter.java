@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.base;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**Writes JSON directly to a {@link Writer}, so that large results do not need
+ * to be converted to a single {@link String} first.
+ *
+ * @author lahvac
+ */
+public class JsonWriter {
+
+    private final Writer out;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter value(Object value) throws IOException {
+        if (value == null) {
+            out.write("null");
+        } else if (value instanceof CharSequence || value instanceof Character) {
+            string(value.toString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.write(value.toString());
+        } else if (value instanceof Map) {
+            out.write('{');
+            boolean first = true;
+            for (Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                if (!first) out.write(',');
+                first = false;
+                string(String.valueOf(e.getKey()));
+                out.write(':');
+                value(e.getValue());
+            }
+            out.write('}');
+        } else if (value instanceof Iterable) {
+            out.write('[');
+            boolean first = true;
+            for (Object o : (Iterable<?>) value) {
+                if (!first) out.write(',');
+                first = false;
+                value(o);
+            }
+            out.write(']');
+        } else if (value instanceof Object[]) {
+            out.write('[');
+            boolean first = true;
+            for (Object o : (Object[]) value) {
+                if (!first) out.write(',');
+                first = false;
+                value(o);
+            }
+            out.write(']');
+        } else {
+            throw new IllegalArgumentException("Unsupported value: " + value.getClass());
+        }
+
+        return this;
+    }
+
+    private void string(String str) throws IOException {
+        out.write('"');
+
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                case '\b': out.write("\\b"); break;
+                case '\f': out.write("\\f"); break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                    break;
+            }
+        }
+
+        out.write('"');
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+}
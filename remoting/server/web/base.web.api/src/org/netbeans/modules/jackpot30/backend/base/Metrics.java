@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.base;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**Request latencies, Lucene query counts and other runtime statistics, in the Prometheus text format.
+ *
+ * @author lahvac
+ */
+public class Metrics {
+
+    //upper bounds of the latency histogram buckets, in milliseconds:
+    private static final long[] BUCKETS = new long[] {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    //requests in flight are not labeled, the endpoint is only known once the request is matched to a resource:
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final ConcurrentMap<Labels, Endpoint> endpoints = new ConcurrentHashMap<Labels, Endpoint>();
+    private static final ConcurrentMap<String, AtomicLong[]> luceneQueries = new ConcurrentHashMap<String, AtomicLong[]>();
+    private static final ConcurrentMap<String, Callable<? extends Map<String, ? extends Number>>> statistics = new ConcurrentHashMap<String, Callable<? extends Map<String, ? extends Number>>>();
+
+    public static void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    /**Records a finished request, which has been {@link #requestStarted() started} before.
+     *
+     * @param endpoint the template of the matched resource, rather than the actual path, so that the number of labels stays bounded
+     * @param category the category of the request, or {@code null}; unknown categories are all recorded as {@code other}
+     */
+    public static void requestFinished(String endpoint, String category, long durationNanos) {
+        inFlight.decrementAndGet();
+
+        Endpoint e = getEndpoint(endpoint, knownCategory(category));
+        int bucket = 0;
+
+        while (bucket < BUCKETS.length && durationNanos > BUCKETS[bucket] * 1000000) {
+            bucket++;
+        }
+
+        e.buckets.incrementAndGet(bucket);
+        e.durationNanos.addAndGet(durationNanos);
+    }
+
+    private static String knownCategory(String category) {
+        if (category == null) return null;
+
+        for (CategoryStorage s : CategoryStorage.listCategories()) {
+            if (s.getId().equals(category)) return category;
+        }
+
+        return "other";
+    }
+
+    /**Records a Lucene query performed over the index of the given category.
+     */
+    public static void luceneQuery(String category, int hits) {
+        AtomicLong[] counters = luceneQueries.get(category);
+
+        if (counters == null) {
+            AtomicLong[] newCounters = new AtomicLong[] {new AtomicLong(), new AtomicLong()};
+
+            counters = luceneQueries.putIfAbsent(category, newCounters);
+
+            if (counters == null) counters = newCounters;
+        }
+
+        counters[0].incrementAndGet();
+        counters[1].addAndGet(hits);
+    }
+
+    /**Registers additional statistics (e.g. of a cache), exported as gauges named {@code <name>_<key>}.
+     */
+    public static void registerStatistics(String name, Callable<? extends Map<String, ? extends Number>> provider) {
+        statistics.put(name, provider);
+    }
+
+    public static String prometheusText() {
+        StringBuilder out = new StringBuilder();
+        Map<Labels, Endpoint> sortedEndpoints = new TreeMap<Labels, Endpoint>(endpoints);
+
+        out.append("# HELP jackpot_http_request_duration_seconds Latency of HTTP requests.\n");
+        out.append("# TYPE jackpot_http_request_duration_seconds histogram\n");
+
+        for (Entry<Labels, Endpoint> e : sortedEndpoints.entrySet()) {
+            String labels = e.getKey().toString();
+            long cumulative = 0;
+
+            for (int i = 0; i <= BUCKETS.length; i++) {
+                cumulative += e.getValue().buckets.get(i);
+                String le = i < BUCKETS.length ? Double.toString(BUCKETS[i] / 1000.0) : "+Inf";
+                out.append("jackpot_http_request_duration_seconds_bucket{").append(labels).append(",le=\"").append(le).append("\"} ").append(cumulative).append("\n");
+            }
+
+            out.append("jackpot_http_request_duration_seconds_sum{").append(labels).append("} ").append(e.getValue().durationNanos.get() / 1e9).append("\n");
+            out.append("jackpot_http_request_duration_seconds_count{").append(labels).append("} ").append(cumulative).append("\n");
+        }
+
+        gauge(out, "jackpot_http_requests_in_flight", "HTTP requests currently being processed.", inFlight.get());
+
+        Map<String, AtomicLong[]> sortedQueries = new TreeMap<String, AtomicLong[]>(luceneQueries);
+
+        out.append("# HELP jackpot_lucene_queries_total Lucene queries performed.\n");
+        out.append("# TYPE jackpot_lucene_queries_total counter\n");
+
+        for (Entry<String, AtomicLong[]> e : sortedQueries.entrySet()) {
+            out.append("jackpot_lucene_queries_total{category=\"").append(escape(e.getKey())).append("\"} ").append(e.getValue()[0].get()).append("\n");
+        }
+
+        out.append("# HELP jackpot_lucene_hits_total Documents returned by Lucene queries.\n");
+        out.append("# TYPE jackpot_lucene_hits_total counter\n");
+
+        for (Entry<String, AtomicLong[]> e : sortedQueries.entrySet()) {
+            out.append("jackpot_lucene_hits_total{category=\"").append(escape(e.getKey())).append("\"} ").append(e.getValue()[1].get()).append("\n");
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        gauge(out, "jvm_memory_heap_used_bytes", "Used heap memory.", heap.getUsed());
+        gauge(out, "jvm_memory_heap_committed_bytes", "Committed heap memory.", heap.getCommitted());
+        gauge(out, "jvm_memory_heap_max_bytes", "Maximal heap memory.", runtime.maxMemory());
+        gauge(out, "jvm_threads_live", "Live threads.", ManagementFactory.getThreadMXBean().getThreadCount());
+
+        out.append("# HELP jvm_gc_collections_total Garbage collections.\n");
+        out.append("# TYPE jvm_gc_collections_total counter\n");
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.append("jvm_gc_collections_total{gc=\"").append(escape(gc.getName())).append("\"} ").append(gc.getCollectionCount()).append("\n");
+        }
+
+        out.append("# HELP jvm_gc_collection_seconds_total Time spent in garbage collections.\n");
+        out.append("# TYPE jvm_gc_collection_seconds_total counter\n");
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out.append("jvm_gc_collection_seconds_total{gc=\"").append(escape(gc.getName())).append("\"} ").append(gc.getCollectionTime() / 1000.0).append("\n");
+        }
+
+        for (Entry<String, Callable<? extends Map<String, ? extends Number>>> e : new TreeMap<String, Callable<? extends Map<String, ? extends Number>>>(statistics).entrySet()) {
+            try {
+                for (Entry<String, ? extends Number> value : new TreeMap<String, Number>(e.getValue().call()).entrySet()) {
+                    gauge(out, e.getKey() + "_" + value.getKey().replaceAll("[^a-zA-Z0-9_]", "_"), null, value.getValue());
+                }
+            } catch (Exception ex) {
+                Logger.getLogger(Metrics.class.getName()).log(Level.FINE, null, ex);
+            }
+        }
+
+        return out.toString();
+    }
+
+    private static Endpoint getEndpoint(String endpoint, String category) {
+        Labels key = new Labels(endpoint, category);
+        Endpoint e = endpoints.get(key);
+
+        if (e == null) {
+            Endpoint newEndpoint = new Endpoint();
+
+            e = endpoints.putIfAbsent(key, newEndpoint);
+
+            if (e == null) e = newEndpoint;
+        }
+
+        return e;
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, Number value) {
+        if (help != null) {
+            out.append("# HELP ").append(name).append(" ").append(help).append("\n");
+        }
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(" ").append(value).append("\n");
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Endpoint {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+        private final AtomicLong durationNanos = new AtomicLong();
+    }
+
+    private static final class Labels implements Comparable<Labels> {
+        private final String endpoint;
+        private final String category;
+
+        public Labels(String endpoint, String category) {
+            this.endpoint = endpoint;
+            this.category = category != null ? category : "";
+        }
+
+        @Override
+        public int hashCode() {
+            return 17 * endpoint.hashCode() + category.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Labels)) return false;
+            Labels other = (Labels) obj;
+            return endpoint.equals(other.endpoint) && category.equals(other.category);
+        }
+
+        @Override
+        public int compareTo(Labels o) {
+            int r = endpoint.compareTo(o.endpoint);
+
+            return r != 0 ? r : category.compareTo(o.category);
+        }
+
+        @Override
+        public String toString() {
+            return "endpoint=\"" + escape(endpoint) + "\",category=\"" + escape(category) + "\"";
+        }
+
+    }
+}
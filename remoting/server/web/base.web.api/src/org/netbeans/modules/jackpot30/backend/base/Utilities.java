@@ -30,7 +30,7 @@ import java.util.Map.Entry;
  */
 public class Utilities {
 
-    public static <T> Map<String, List<T>> sortBySourceRoot(List<Entry<String, T>> found, CategoryStorage category) {
+    public static <T> Map<String, List<T>> sortBySourceRoot(List<? extends Entry<String, T>> found, CategoryStorage category) {
         Map<String, List<T>> result = new LinkedHashMap<String, List<T>>();
 
         for (Entry<String, T> e : found) {
@@ -27,6 +27,7 @@ import javax.ws.rs.QueryParam;
 import org.codeviation.pojson.Pojson;
 import org.netbeans.modules.jackpot30.backend.base.AccessStatistics;
 import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.Metrics;
 
 /**
  *
@@ -78,4 +79,11 @@ public class API {
         return Pojson.save(AccessStatistics.getStatistics());
     }
 
+    @GET
+    @Path("/metrics")
+    @Produces("text/plain; version=0.0.4")
+    public String metrics() throws IOException {
+        return Metrics.prometheusText();
+    }
+
 }
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.base;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ *
+ * @author lahvac
+ */
+public class CategoryStorageTest extends TestCase {
+
+    public CategoryStorageTest(String name) {
+        super(name);
+    }
+
+    private File cacheRoot;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cacheRoot = File.createTempFile("categories", "");
+        cacheRoot.delete();
+        cacheRoot.mkdirs();
+        CategoryStorage.setCacheRoot(cacheRoot);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(cacheRoot);
+        super.tearDown();
+    }
+
+    public void testBlobsSharedAndCollected() throws Exception {
+        String a = hash("a"), b = hash("b"), stale = hash("stale");
+
+        category("c1", "a", "b");
+        category("c2", "b");
+        File staleBlob = blob(new File(cacheRoot, ".blobs"), "stale");
+        staleBlob.setLastModified(0);
+
+        CategoryStorage.internalReset();
+
+        assertTrue(sharedBlob(a).exists());
+        assertTrue(sharedBlob(b).exists());
+        assertFalse(staleBlob.exists());
+        assertFalse(new File(new File(new File(cacheRoot, "c1"), "blobs"), b.substring(0, 2) + "/" + b).exists());
+        assertFalse(new File(new File(new File(cacheRoot, "c2"), "blobs"), b.substring(0, 2) + "/" + b).exists());
+        assertEquals("a", CategoryStorage.forId("c1").readBlob(a));
+        assertEquals("b", CategoryStorage.forId("c2").readBlob(b));
+        assertMissing("c2", stale);
+
+        //simulate a collection in the past, and drop the only category referencing "a":
+        sharedBlob(a).setLastModified(0);
+        sharedBlob(b).setLastModified(0);
+        delete(new File(cacheRoot, "c1"));
+
+        CategoryStorage.internalReset();
+
+        assertFalse(sharedBlob(a).exists());
+        assertTrue(sharedBlob(b).exists());
+        assertEquals("b", CategoryStorage.forId("c2").readBlob(b));
+    }
+
+    public void testNothingCollectedIfReferencesUnreadable() throws Exception {
+        String a = hash("a");
+
+        category("c1", "a");
+        CategoryStorage.internalReset();
+        sharedBlob(a).setLastModified(0);
+
+        //a category uploaded with blobs, but no readable index:
+        File broken = new File(cacheRoot, "c2");
+        blob(new File(broken, "blobs"), "b");
+        new File(broken, "index").mkdirs();
+        delete(new File(cacheRoot, "c1"));
+
+        CategoryStorage.internalReset();
+
+        assertTrue(sharedBlob(a).exists());
+        assertEquals("b", CategoryStorage.forId("c2").readBlob(hash("b")));
+    }
+
+    public void testReadBlobBeforeShared() throws Exception {
+        category("c1", "a");
+
+        assertEquals("a", CategoryStorage.forId("c1").readBlob(hash("a")));
+        assertMissing("c1", hash("b"));
+        assertMissing("c1", "../../c1");
+    }
+
+    public void testBlobReferences() throws Exception {
+        category("c1", "b", "a");
+
+        assertEquals(new TreeSet<String>(Arrays.asList(hash("a"), hash("b"))), CategoryStorage.forId("c1").getBlobReferences());
+        assertEquals(new File(new File(new File(cacheRoot, "c1"), "blobs"), hash("a").substring(0, 2) + "/" + hash("a")), CategoryStorage.forId("c1").findBlob(hash("a")));
+
+        CategoryStorage.internalReset();
+
+        assertEquals(sharedBlob(hash("a")), CategoryStorage.forId("c1").findBlob(hash("a")));
+        assertNull(CategoryStorage.forId("c1").findBlob(hash("c")));
+    }
+
+    private static void assertMissing(String category, String hash) throws Exception {
+        try {
+            CategoryStorage.forId(category).readBlob(hash);
+            fail("content " + hash + " should not be found");
+        } catch (FileNotFoundException ex) {
+            //expected
+        }
+    }
+
+    private void category(String id, String... contents) throws Exception {
+        File category = new File(cacheRoot, id);
+        IndexWriter w = new IndexWriter(FSDirectory.open(new File(category, "index")), new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+
+        try {
+            for (String content : contents) {
+                Document doc = new Document();
+
+                doc.add(new Field("contentHash", hash(content), Store.YES, Index.NOT_ANALYZED));
+                w.addDocument(doc);
+                blob(new File(category, "blobs"), content);
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    private File blob(File blobs, String content) throws Exception {
+        String hash = hash(content);
+        File blob = new File(new File(blobs, hash.substring(0, 2)), hash);
+
+        blob.getParentFile().mkdirs();
+
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(blob));
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        return blob;
+    }
+
+    private File sharedBlob(String hash) {
+        return new File(new File(new File(cacheRoot, ".blobs"), hash.substring(0, 2)), hash);
+    }
+
+    private static String hash(String content) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.getBytes("UTF-8"));
+        String result = new BigInteger(1, digest).toString(16);
+
+        while (result.length() < 40) result = "0" + result;
+
+        return result;
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.base;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author lahvac
+ */
+public class ConditionalRequestsTest extends TestCase {
+
+    public ConditionalRequestsTest(String name) {
+        super(name);
+    }
+
+    public void testOnlyListedResourcesValidated() {
+        assertTrue(ConditionalRequests.isValidated("index/list"));
+        assertTrue(ConditionalRequests.isValidated("/index/source/cat"));
+        assertTrue(ConditionalRequests.isValidated("index/type/search/"));
+        assertFalse(ConditionalRequests.isValidated("index/resolve/cacheStatistics"));
+        assertFalse(ConditionalRequests.isValidated("index/source/randomfiles"));
+        assertFalse(ConditionalRequests.isValidated("index/metrics"));
+        assertFalse(ConditionalRequests.isValidated("index/accessStatistics"));
+        assertFalse(ConditionalRequests.isValidated("index/internal/indexUpdated"));
+        assertFalse(ConditionalRequests.isValidated("index/source/catalog"));
+    }
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.base;
+
+import com.sun.jersey.api.container.httpserver.HttpServerFactory;
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author lahvac
+ */
+public class ContentEncodingTest extends TestCase {
+
+    public ContentEncodingTest(String name) {
+        super(name);
+    }
+
+    private static CountDownLatch firstLineRead;
+    private HttpServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        firstLineRead = new CountDownLatch(1);
+
+        ResourceConfig config = new DefaultResourceConfig(TestResource.class);
+
+        config.getProperties().put(ResourceConfig.PROPERTY_CONTAINER_REQUEST_FILTERS, ContentEncoding.class.getName());
+        config.getProperties().put(ResourceConfig.PROPERTY_CONTAINER_RESPONSE_FILTERS, ContentEncoding.class.getName());
+        server = HttpServerFactory.create("http://localhost:0/", config);
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        firstLineRead.countDown();
+        server.stop(0);
+        super.tearDown();
+    }
+
+    public void testStreamedLinesNotBuffered() throws Exception {
+        HttpURLConnection c = open("stream");
+
+        assertNull(c.getContentEncoding());
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), "UTF-8"));
+
+        try {
+            //the resource does not finish the response until the first line is read:
+            assertEquals("first", in.readLine());
+            firstLineRead.countDown();
+            assertEquals("second", in.readLine());
+            assertNull(in.readLine());
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testCompressed() throws Exception {
+        HttpURLConnection c = open("json");
+
+        assertEquals("gzip", c.getContentEncoding());
+
+        InputStream in = new GZIPInputStream(c.getInputStream());
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        try {
+            int read;
+
+            while ((read = in.read()) != (-1)) {
+                data.write(read);
+            }
+        } finally {
+            in.close();
+        }
+
+        assertEquals("[\"test\"]", new String(data.toByteArray(), "UTF-8"));
+    }
+
+    private HttpURLConnection open(String resource) throws IOException {
+        URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/test/" + resource);
+        HttpURLConnection c = (HttpURLConnection) url.openConnection();
+
+        c.setRequestProperty("Accept-Encoding", "gzip");
+        c.setReadTimeout(10000);
+
+        return c;
+    }
+
+    @Path("/test")
+    public static class TestResource {
+
+        @GET
+        @Path("/stream")
+        @Produces("text/plain")
+        public StreamingOutput stream() {
+            return new StreamingOutput() {
+                @Override public void write(OutputStream output) throws IOException, WebApplicationException {
+                    output.write("first\n".getBytes("UTF-8"));
+                    output.flush();
+
+                    try {
+                        if (!firstLineRead.await(10, TimeUnit.SECONDS)) {
+                            throw new IOException("The first line was not delivered");
+                        }
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex.getMessage());
+                    }
+
+                    output.write("second\n".getBytes("UTF-8"));
+                }
+            };
+        }
+
+        @GET
+        @Path("/json")
+        @Produces("application/json")
+        public String json() {
+            return "[\"test\"]";
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.base;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author lahvac
+ */
+public class MetricsTest extends TestCase {
+
+    public MetricsTest(String name) {
+        super(name);
+    }
+
+    public void testBucketsNotTruncatedToMillis() throws Exception {
+        Metrics.requestStarted();
+        Metrics.requestFinished("/test/buckets", null, 1900000);
+        Metrics.requestStarted();
+        Metrics.requestFinished("/test/buckets", null, 1000000);
+
+        String text = Metrics.prometheusText();
+
+        assertTrue(text, text.contains("jackpot_http_request_duration_seconds_bucket{endpoint=\"/test/buckets\",category=\"\",le=\"0.001\"} 1\n"));
+        assertTrue(text, text.contains("jackpot_http_request_duration_seconds_bucket{endpoint=\"/test/buckets\",category=\"\",le=\"0.005\"} 2\n"));
+        assertTrue(text, text.contains("jackpot_http_request_duration_seconds_sum{endpoint=\"/test/buckets\",category=\"\"} 0.0029\n"));
+        assertTrue(text, text.contains("jackpot_http_request_duration_seconds_count{endpoint=\"/test/buckets\",category=\"\"} 2\n"));
+    }
+}
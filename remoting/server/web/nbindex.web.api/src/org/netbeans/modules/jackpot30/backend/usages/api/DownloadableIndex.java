@@ -19,9 +19,17 @@
 package org.netbeans.modules.jackpot30.backend.usages.api;
 
 import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
 import java.util.jar.JarOutputStream;
 import java.util.zip.ZipEntry;
 import javax.ws.rs.*;
@@ -72,13 +80,117 @@ public class DownloadableIndex {
     @Path("/index")
     @Produces("application/octet-stream")
     public Response index(@QueryParam("path") String segment) throws IOException, InterruptedException {
-        CategoryStorage category = CategoryStorage.forId(segment);
+        final CategoryStorage category = CategoryStorage.forId(segment);
+        final FileObject idxRoot = category.getCacheRoot();
+
+        if (idxRoot == null || !idxRoot.canRead()) return Response.status(Response.Status.NOT_FOUND).build();
+
+        final Map<String, FileObject> files = listFiles(idxRoot);
+        final Map<String, String> blobs = listBlobs(category);
+        long totalSize = 0;
+
+        for (FileObject c : files.values()) {
+            totalSize += c.getSize();
+        }
+
+        for (String hash : blobs.values()) {
+            totalSize += blobSize(category, hash);
+        }
+
+        return Response.ok().header("NB-Total-Unpacked-Size", String.valueOf(totalSize)).entity(new StreamingOutput() {
+            @Override public void write(OutputStream output) throws IOException, WebApplicationException {
+                JarOutputStream out = new JarOutputStream(output);
+
+                try {
+                    for (Entry<String, FileObject> e : files.entrySet()) {
+                        writeEntry(out, e.getKey(), e.getValue().getInputStream());
+                    }
+
+                    for (Entry<String, String> e : blobs.entrySet()) {
+                        writeEntry(out, e.getKey(), category.openBlob(e.getValue()));
+                    }
+                } finally {
+                    out.close();
+                }
+            }
+        } ).build();
+    }
+
+    /**The name of the delta archive entry that lists checksums of all files of the current index.
+     * Files present locally, but not listed in this entry, are no longer part of the index.
+     */
+    public static final String CHECKSUMS_ENTRY = ".checksums";
+
+    /**Returns an archive that contains only the files that are not part of the given set of checksums
+     * (in the {@link Properties} format, relative path to checksum). The first entry of the archive
+     * is {@link #CHECKSUMS_ENTRY}, listing all files of the current index.
+     */
+    @POST
+    @Path("/delta")
+    @Consumes("text/plain")
+    @Produces("application/octet-stream")
+    public Response delta(@QueryParam("path") String segment, String known) throws IOException, InterruptedException {
+        final CategoryStorage category = CategoryStorage.forId(segment);
         final FileObject idxRoot = category.getCacheRoot();
 
         if (idxRoot == null || !idxRoot.canRead()) return Response.status(Response.Status.NOT_FOUND).build();
 
+        Properties knownChecksums = new Properties();
+
+        if (known != null) {
+            knownChecksums.load(new StringReader(known));
+        }
+
+        Map<String, FileObject> files = listFiles(idxRoot);
+        final Properties checksums = checksums(category, files);
+        final Map<String, FileObject> changed = new TreeMap<String, FileObject>();
         long totalSize = 0;
 
+        for (Entry<String, FileObject> e : files.entrySet()) {
+            if (checksums.getProperty(e.getKey()).equals(knownChecksums.getProperty(e.getKey()))) continue;
+
+            changed.put(e.getKey(), e.getValue());
+            totalSize += e.getValue().getSize();
+        }
+
+        final Map<String, String> changedBlobs = new TreeMap<String, String>();
+
+        //the content of a blob never changes, its hash is its checksum:
+        for (Entry<String, String> e : listBlobs(category).entrySet()) {
+            checksums.setProperty(e.getKey(), e.getValue());
+
+            if (e.getValue().equals(knownChecksums.getProperty(e.getKey()))) continue;
+
+            changedBlobs.put(e.getKey(), e.getValue());
+            totalSize += blobSize(category, e.getValue());
+        }
+
+        return Response.ok().header("NB-Total-Unpacked-Size", String.valueOf(totalSize)).entity(new StreamingOutput() {
+            @Override public void write(OutputStream output) throws IOException, WebApplicationException {
+                JarOutputStream out = new JarOutputStream(output);
+
+                try {
+                    out.putNextEntry(new ZipEntry(CHECKSUMS_ENTRY));
+                    checksums.store(out, null);
+                    out.closeEntry();
+
+                    for (Entry<String, FileObject> e : changed.entrySet()) {
+                        writeEntry(out, e.getKey(), e.getValue().getInputStream());
+                    }
+
+                    for (Entry<String, String> e : changedBlobs.entrySet()) {
+                        writeEntry(out, e.getKey(), category.openBlob(e.getValue()));
+                    }
+                } finally {
+                    out.close();
+                }
+            }
+        } ).build();
+    }
+
+    private static Map<String, FileObject> listFiles(FileObject idxRoot) {
+        Map<String, FileObject> result = new TreeMap<String, FileObject>();
+
         for (String rel : PARTS_TO_COPY) {
             FileObject relFO = idxRoot.getFileObject(rel);
 
@@ -92,46 +204,149 @@ public class DownloadableIndex {
             for (FileObject c : children) {
                 if (c.isFolder()) continue;
 
-                totalSize += c.getSize();
+                result.put(FileUtil.getRelativePath(idxRoot, c), c);
             }
         }
 
-        return Response.ok().header("NB-Total-Unpacked-Size", String.valueOf(totalSize)).entity(new StreamingOutput() {
-            @Override public void write(OutputStream output) throws IOException, WebApplicationException {
-                JarOutputStream out = new JarOutputStream(output);
+        return result;
+    }
 
-                try {
-                    for (String rel : PARTS_TO_COPY) {
-                        FileObject relFO = idxRoot.getFileObject(rel);
+    /**The file contents referenced by the index, by the name of their archive entry. The contents
+     * may already be in the folder shared by all categories, but the entries use the layout of the
+     * category as uploaded by the indexer, so that the downloaded copy can be served the same way.
+     */
+    private static Map<String, String> listBlobs(CategoryStorage category) throws IOException {
+        Map<String, String> result = new TreeMap<String, String>();
 
-                        if (relFO == null) continue;
+        for (String hash : category.getBlobReferences()) {
+            result.put("blobs/" + hash.substring(0, 2) + "/" + hash, hash);
+        }
 
-                        Iterable<? extends FileObject> children;
+        return result;
+    }
 
-                        if (relFO.isFolder()) children = NbCollections.iterable(relFO.getChildren(true));
-                        else children = Collections.singletonList(relFO);
+    private static long blobSize(CategoryStorage category, String hash) throws FileNotFoundException {
+        File blob = category.findBlob(hash);
 
-                        for (FileObject c : children) {
-                            if (c.isFolder()) continue;
+        if (blob == null) {
+            throw new FileNotFoundException("Content " + hash + " referenced by the index of " + category.getId() + " not found");
+        }
 
-                            out.putNextEntry(new ZipEntry(FileUtil.getRelativePath(idxRoot, c)));
+        return blob.length();
+    }
 
-                            InputStream in = c.getInputStream();
+    private static void writeEntry(JarOutputStream out, String name, InputStream in) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
 
-                            try {
-                                FileUtil.copy(in, out);
-                            } finally {
-                                in.close();
-                            }
+        try {
+            FileUtil.copy(in, out);
+        } finally {
+            in.close();
+        }
 
-                            out.closeEntry();
-                        }
-                    }
-                } finally {
-                    out.close();
+        out.closeEntry();
+    }
+
+    /**Checksums of the index files, per category. The checksums of a category are dropped
+     * when its version changes, and only the most recently used categories are kept.
+     */
+    private static final int MAX_CATEGORIES = Integer.getInteger("jackpot.downloadable.maxCachedCategories", 16);
+    private static final Map<String, CategoryChecksums> CHECKSUM_CACHE = new LinkedHashMap<String, CategoryChecksums>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Entry<String, CategoryChecksums> eldest) {
+            return size() > MAX_CATEGORIES;
+        }
+    };
+
+    private static Properties checksums(CategoryStorage category, Map<String, FileObject> files) throws IOException {
+        Map<String, CachedChecksum> cache = categoryChecksums(category);
+        Properties result = new Properties();
+
+        for (Entry<String, FileObject> e : files.entrySet()) {
+            result.setProperty(e.getKey(), checksum(cache, e.getKey(), e.getValue()));
+        }
+
+        return result;
+    }
+
+    private static Map<String, CachedChecksum> categoryChecksums(CategoryStorage category) {
+        String version = category.getVersion();
+
+        synchronized (CHECKSUM_CACHE) {
+            CategoryChecksums cached = CHECKSUM_CACHE.get(category.getId());
+
+            if (cached == null || !cached.version.equals(version)) {
+                CHECKSUM_CACHE.put(category.getId(), cached = new CategoryChecksums(version));
+            }
+
+            return cached.checksums;
+        }
+    }
+
+    //Lucene never rewrites an existing segment file, so the checksum only needs to be recomputed when the file's size or timestamp changes:
+    private static String checksum(Map<String, CachedChecksum> cache, String key, FileObject file) throws IOException {
+        long size = file.getSize();
+        long lastModified = file.lastModified().getTime();
+
+        synchronized (cache) {
+            CachedChecksum cached = cache.get(key);
+
+            if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+                return cached.checksum;
+            }
+        }
+
+        String checksum;
+
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            InputStream in = file.getInputStream();
+
+            try {
+                byte[] buffer = new byte[8 * 1024];
+                int read;
+
+                while ((read = in.read(buffer)) != (-1)) {
+                    md5.update(buffer, 0, read);
                 }
+            } finally {
+                in.close();
             }
-        } ).build();
+
+            StringBuilder hex = new StringBuilder();
+
+            for (byte b : md5.digest()) {
+                hex.append(String.format("%02X", b));
+            }
+
+            checksum = size + "-" + hex;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+
+        synchronized (cache) {
+            cache.put(key, new CachedChecksum(size, lastModified, checksum));
+        }
+
+        return checksum;
+    }
+
+    private static final class CategoryChecksums {
+        private final String version;
+        private final Map<String, CachedChecksum> checksums = new HashMap<String, CachedChecksum>();
+        public CategoryChecksums(String version) {
+            this.version = version;
+        }
+    }
+
+    private static final class CachedChecksum {
+        private final long size;
+        private final long lastModified;
+        private final String checksum;
+        public CachedChecksum(long size, long lastModified, String checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
     }
 
 }
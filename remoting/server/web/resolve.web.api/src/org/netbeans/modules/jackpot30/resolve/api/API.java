@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.resolve.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import org.codeviation.pojson.Pojson;
+
+/**
+ *
+ * @author lahvac
+ */
+@Path("/index/resolve")
+public class API {
+
+    /**Attributes the files listed (one relative path per line) in the request in advance.
+     */
+    @POST
+    @Path("/warm")
+    @Consumes("text/plain")
+    @Produces("text/plain")
+    public String warm(@QueryParam("path") String segment, String relatives) throws IOException, InterruptedException {
+        List<String> toAttribute = new ArrayList<String>();
+
+        for (String relative : relatives.split("\n")) {
+            relative = relative.trim();
+
+            if (relative.isEmpty()) continue;
+
+            toAttribute.add(relative);
+        }
+
+        return "Attributed: " + ResolveService.warm(segment, toAttribute);
+    }
+
+    @GET
+    @Path("/cacheStatistics")
+    @Produces("text/plain")
+    public String cacheStatistics() throws IOException {
+        return Pojson.save(ResolveService.getCacheStatistics());
+    }
+
+}
@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.resolve.api;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.Metrics;
+import org.netbeans.modules.jackpot30.backend.base.SourceRoot;
+
+/**Bounded cache of {@link Javac} instances and of the attributed compilation units.
+ * Both the source roots and the compilation units are kept in LRU order. A source root
+ * keeps at most {@code jackpot.resolve.maxFilesPerRoot} attributed files, there are
+ * at most {@code jackpot.resolve.maxFiles} attributed files overall, and the least
+ * recently used files are dropped when the heap is nearly full.
+ *
+ * The attributed trees of a source root are owned by its javac task, which cannot
+ * re-enter a file it has already seen. Eviction is therefore done per {@link Javac}:
+ * all its files are dropped together with its task. The limits evict other roots
+ * before the one being attributed. When its own task has to be dropped, its most
+ * recently used files are attributed again in the new task, so a hot root stays warm.
+ *
+ * @author lahvac
+ */
+class AttributionCache {
+
+    private static final Logger LOG = Logger.getLogger(AttributionCache.class.getName());
+    private static final int MAX_ROOTS = Integer.getInteger("jackpot.resolve.maxRoots", 16);
+    static final int MAX_FILES_PER_ROOT = Integer.getInteger("jackpot.resolve.maxFilesPerRoot", 64);
+    private static final int MAX_FILES = Integer.getInteger("jackpot.resolve.maxFiles", 256);
+    static final int REATTRIBUTED_FILES = Integer.getInteger("jackpot.resolve.reattributedFiles", MAX_FILES_PER_ROOT / 2);
+    private static final double MIN_FREE_HEAP = 0.15;
+
+    private static final Map<SourceRoot, Javac> root2Javac = new LinkedHashMap<SourceRoot, Javac>(16, 0.75f, true);
+    private static final Map<Key, CompilationInfo> attributed = new LinkedHashMap<Key, CompilationInfo>(16, 0.75f, true);
+    private static final Map<Javac, Integer> attributedPerRoot = new HashMap<Javac, Integer>();
+    private static long hits;
+    private static long misses;
+    private static long evictedRoots;
+    private static long evictedPerRoot;
+    private static long evictedGlobal;
+    private static long evictedMemory;
+
+    static {
+        Metrics.registerStatistics("jackpot_attribution_cache", new Callable<Map<String, Long>>() {
+            @Override public Map<String, Long> call() {
+                return getStatistics();
+            }
+        });
+    }
+
+    static synchronized Javac javacFor(SourceRoot sourceRoot) {
+        Javac javac = root2Javac.get(sourceRoot);
+
+        if (javac == null) {
+            dropStaleRoots();
+
+            root2Javac.put(sourceRoot, javac = new Javac(sourceRoot));
+
+            Iterator<Entry<SourceRoot, Javac>> it = root2Javac.entrySet().iterator();
+
+            while (root2Javac.size() > MAX_ROOTS && it.hasNext()) {
+                Javac evicted = it.next().getValue();
+
+                it.remove();
+                evict(evicted);
+                evictedRoots++;
+            }
+        }
+
+        return javac;
+    }
+
+    static synchronized CompilationInfo get(Javac javac, String relativePath) {
+        CompilationInfo result = attributed.get(new Key(javac, relativePath));
+
+        if (result != null) hits++;
+        else misses++;
+
+        return result;
+    }
+
+    /**Caches the given attributed file.
+     *
+     * @return files of the given {@link Javac} that should be attributed again, as its task
+     *         was dropped, from the least to the most recently used
+     */
+    static synchronized List<String> put(Javac javac, String relativePath, CompilationInfo info) {
+        if (!javac.isCurrent(info.getJavacTask())) {
+            //the task was dropped while the file was being attributed:
+            return Collections.emptyList();
+        }
+
+        if (attributed.put(new Key(javac, relativePath), info) == null) {
+            Integer count = attributedPerRoot.get(javac);
+
+            attributedPerRoot.put(javac, count != null ? count + 1 : 1);
+        }
+
+        List<String> reattribute = Collections.emptyList();
+
+        if (attributedPerRoot.get(javac) > MAX_FILES_PER_ROOT) {
+            reattribute = mostRecentlyUsed(javac, REATTRIBUTED_FILES);
+            evict(javac);
+            evictedPerRoot++;
+        }
+
+        while (attributed.size() > MAX_FILES) {
+            Javac leastRecentlyUsed = leastRecentlyUsedExcept(javac);
+
+            if (leastRecentlyUsed == null) {
+                //only the current root is left:
+                reattribute = mostRecentlyUsed(javac, Math.min(REATTRIBUTED_FILES, MAX_FILES / 2));
+                evict(javac);
+                evictedGlobal++;
+                break;
+            }
+
+            evict(leastRecentlyUsed);
+            evictedGlobal++;
+        }
+
+        if (lowMemory()) {
+            //the free heap only grows after a GC, so evict at most one root per put,
+            //and never the one that was just attributed:
+            Javac leastRecentlyUsed = leastRecentlyUsedExcept(javac);
+
+            if (leastRecentlyUsed != null) {
+                evict(leastRecentlyUsed);
+                evictedMemory++;
+            }
+        }
+
+        return reattribute;
+    }
+
+    /**Drops all compilation units attributed by the given {@link Javac}.
+     */
+    static synchronized void invalidate(Javac javac) {
+        for (Iterator<Key> it = attributed.keySet().iterator(); it.hasNext(); ) {
+            if (it.next().javac == javac) {
+                it.remove();
+            }
+        }
+
+        attributedPerRoot.remove(javac);
+    }
+
+    static synchronized Map<String, Long> getStatistics() {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+
+        result.put("roots", (long) root2Javac.size());
+        result.put("attributedFiles", (long) attributed.size());
+        result.put("hits", hits);
+        result.put("misses", misses);
+        result.put("evictions/root", evictedRoots);
+        result.put("evictions/perRootLimit", evictedPerRoot);
+        result.put("evictions/globalLimit", evictedGlobal);
+        result.put("evictions/lowMemory", evictedMemory);
+
+        return result;
+    }
+
+    private static void evict(Javac javac) {
+        invalidate(javac);
+        javac.reset();
+    }
+
+    private static Javac leastRecentlyUsedExcept(Javac keep) {
+        for (Key key : attributed.keySet()) {
+            if (key.javac != keep) {
+                return key.javac;
+            }
+        }
+
+        return null;
+    }
+
+    private static List<String> mostRecentlyUsed(Javac javac, int count) {
+        LinkedList<String> result = new LinkedList<String>();
+
+        for (Key key : attributed.keySet()) {
+            if (key.javac != javac) continue;
+
+            result.add(key.relativePath);
+
+            if (result.size() > count) {
+                result.removeFirst();
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean lowMemory() {
+        Runtime r = Runtime.getRuntime();
+        long used = r.totalMemory() - r.freeMemory();
+
+        return r.maxMemory() - used < r.maxMemory() * MIN_FREE_HEAP;
+    }
+
+    private static void dropStaleRoots() {
+        //the categories are re-created after an index update, Javacs for the old ones are useless:
+        for (Iterator<Entry<SourceRoot, Javac>> it = root2Javac.entrySet().iterator(); it.hasNext(); ) {
+            Entry<SourceRoot, Javac> e = it.next();
+            boolean current = false;
+
+            for (CategoryStorage category : CategoryStorage.listCategories()) {
+                if (category == e.getKey().getCategory()) {
+                    current = true;
+                    break;
+                }
+            }
+
+            if (!current) {
+                LOG.log(Level.FINE, "Dropping stale source root: {0}", e.getKey().getRelativePath());
+                it.remove();
+                evict(e.getValue());
+            }
+        }
+    }
+
+    private static final class Key {
+        private final Javac javac;
+        private final String relativePath;
+
+        public Key(Javac javac, String relativePath) {
+            this.javac = javac;
+            this.relativePath = relativePath;
+        }
+
+        @Override
+        public int hashCode() {
+            return 17 * System.identityHashCode(javac) + relativePath.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return javac == other.javac && relativePath.equals(other.relativePath);
+        }
+
+    }
+}
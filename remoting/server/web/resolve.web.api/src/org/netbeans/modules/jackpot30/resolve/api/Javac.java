@@ -32,8 +32,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
-import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,8 +43,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.NestingKind;
 import javax.tools.FileObject;
@@ -63,51 +62,58 @@ import org.netbeans.modules.jackpot30.backend.base.SourceRoot;
  * @author lahvac
  */
 public class Javac {
-    private static final Map<SourceRoot, Reference<Javac>> category2Javac = new WeakHashMap<SourceRoot, Reference<Javac>>();
 
-    static synchronized Javac get(SourceRoot sourceRoot) {
-        Reference<Javac> javacSR = category2Javac.get(sourceRoot);
-        Javac javac = javacSR != null ? javacSR.get() : null;
-
-        if (javac == null) {
-            category2Javac.put(sourceRoot, new SoftReference<Javac>(javac = new Javac(sourceRoot)));
-        }
-
-        return javac;
+    static Javac get(SourceRoot sourceRoot) {
+        return AttributionCache.javacFor(sourceRoot);
     }
 
     private final SourceRoot sourceRoot;
     private final AtomicReference<JavacTaskImpl> javacTask = new AtomicReference<JavacTaskImpl>();
-    private final Map<String, CompilationInfo> path2CUT = new HashMap<String, CompilationInfo>();
 
-    private Javac(SourceRoot sourceRoot) {
+    Javac(SourceRoot sourceRoot) {
         this.sourceRoot = sourceRoot;
     }
 
-    public CompilationInfo parse(String relativePath) throws IOException, InterruptedException {
-        CompilationInfo result = path2CUT.get(relativePath);
+    public synchronized CompilationInfo parse(String relativePath) throws IOException, InterruptedException {
+        CompilationInfo result = AttributionCache.get(this, relativePath);
 
         if (result == null) {
             String content = org.netbeans.modules.jackpot30.source.api.API.readFileContent(sourceRoot.getCategory(), relativePath).replace("\r\n", "\n");
+            JavacTaskImpl task = (JavacTaskImpl) getTask();
             CompilationUnitTree cut;
 
             try {
-                cut = doParse(relativePath, content);
+                cut = doParse(task, relativePath, content);
             } catch (ThreadDeath td) {
                 throw td;
             } catch (Throwable ignore) {
-                javacTask.set(null);
-                cut = doParse(relativePath, content);
+                reset();
+                //the already attributed trees belong to the discarded javac:
+                AttributionCache.invalidate(this);
+                task = (JavacTaskImpl) getTask();
+                cut = doParse(task, relativePath, content);
             }
 
-            path2CUT.put(relativePath, result = new CompilationInfo(this, cut, content));
+            List<String> reattribute = AttributionCache.put(this, relativePath, result = new CompilationInfo(task, cut, content));
+
+            //the task was dropped to make room, keep the most recently used files warm in the new one:
+            for (String path : reattribute) {
+                try {
+                    CompilationInfo reattributed = parse(path);
+
+                    if (path.equals(relativePath)) {
+                        result = reattributed;
+                    }
+                } catch (IOException ex) {
+                    Logger.getLogger(Javac.class.getName()).log(Level.INFO, "Cannot attribute " + path, ex);
+                }
+            }
         }
 
         return result;
     }
 
-    private CompilationUnitTree doParse(String relativePath, String content) throws IOException {
-        JavacTaskImpl javac = (JavacTaskImpl) getTask();
+    private CompilationUnitTree doParse(JavacTaskImpl javac, String relativePath, String content) throws IOException {
         Iterable<? extends CompilationUnitTree> cuts = javac.parse(new FileObjectImpl(relativePath, content));
         CompilationUnitTree cut = cuts.iterator().next();
 
@@ -115,6 +121,18 @@ public class Javac {
         return cut;
     }
 
+    /**Drops the current javac task, the next parse will start with a fresh one.
+     * A file cannot be entered twice into the same task, so the task has to be dropped
+     * whenever any of its attributed files is evicted from the {@link AttributionCache}.
+     */
+    void reset() {
+        javacTask.set(null);
+    }
+
+    boolean isCurrent(JavacTask task) {
+        return javacTask.get() == task;
+    }
+
     public JavacTask getTask() {
         JavacTaskImpl jti = javacTask.get();
 
@@ -36,6 +36,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Name;
 import org.netbeans.api.java.lexer.JavaTokenId;
@@ -73,6 +75,32 @@ public class ResolveService {
         return javac.parse(relative);
     }
 
+    /**Attributes the given files in advance, so that subsequent requests for them
+     * are served from the attribution cache.
+     *
+     * @return number of files that were successfully attributed
+     */
+    public static int warm(String segment, Iterable<String> relatives) throws InterruptedException {
+        int result = 0;
+
+        for (String relative : relatives) {
+            try {
+                parse(segment, relative);
+                result++;
+            } catch (IOException ex) {
+                Logger.getLogger(ResolveService.class.getName()).log(Level.INFO, "Cannot attribute " + relative, ex);
+            } catch (RuntimeException ex) {
+                Logger.getLogger(ResolveService.class.getName()).log(Level.INFO, "Cannot attribute " + relative, ex);
+            }
+        }
+
+        return result;
+    }
+
+    public static Map<String, Long> getCacheStatistics() {
+        return AttributionCache.getStatistics();
+    }
+
     public static String resolveSource(String segment, String relative, String signature) throws IOException, InterruptedException {
         String fqn = topLevelClassFromSignature(signature);
         SourceRoot sourceRoot = sourceRoot(CategoryStorage.forId(segment), relative);
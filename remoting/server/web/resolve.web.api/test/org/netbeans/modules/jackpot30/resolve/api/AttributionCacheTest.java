@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.resolve.api;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.CompressionTools;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.SourceRoot;
+
+/**
+ *
+ * @author lahvac
+ */
+public class AttributionCacheTest extends TestCase {
+
+    public AttributionCacheTest(String name) {
+        super(name);
+    }
+
+    private File cacheRoot;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cacheRoot = File.createTempFile("attribution", "cache");
+        cacheRoot.delete();
+
+        File category = new File(cacheRoot, "test");
+
+        category.mkdirs();
+        write(new File(category, "segments"), "s0=rel:/src/\n");
+        write(new File(category, "classpath"), "");
+
+        IndexWriter w = new IndexWriter(FSDirectory.open(new File(category, "index")), new KeywordAnalyzer(), IndexWriter.MaxFieldLength.UNLIMITED);
+
+        try {
+            for (int i = 0; i <= AttributionCache.MAX_FILES_PER_ROOT; i++) {
+                Document doc = new Document();
+
+                doc.add(new Field("relativePath", "src/test/C" + i + ".java", Store.YES, Index.NOT_ANALYZED));
+                doc.add(new Field("content", CompressionTools.compressString("package test; public class C" + i + " { C0 next() { return null; } }"), Store.YES));
+                w.addDocument(doc);
+            }
+        } finally {
+            w.close();
+        }
+
+        CategoryStorage.setCacheRoot(cacheRoot);
+    }
+
+    public void testEvictedFileAttributesAgain() throws Exception {
+        SourceRoot sourceRoot = CategoryStorage.forId("test").getSourceRoots().iterator().next();
+        Javac javac = Javac.get(sourceRoot);
+        CompilationInfo first = javac.parse("src/test/C0.java");
+
+        assertResolved(first, "test.C0");
+        assertSame(first, javac.parse("src/test/C0.java"));
+
+        //overflow the per-root limit, which drops the task of the root:
+        CompilationInfo last = null;
+
+        for (int i = 1; i <= AttributionCache.MAX_FILES_PER_ROOT; i++) {
+            last = javac.parse("src/test/C" + i + ".java");
+        }
+
+        assertNull(AttributionCache.get(javac, "src/test/C0.java"));
+        assertNull(AttributionCache.get(javac, "src/test/C1.java"));
+
+        //the most recently used files are attributed again in the new task:
+        int firstKept = AttributionCache.MAX_FILES_PER_ROOT - AttributionCache.REATTRIBUTED_FILES + 1;
+
+        assertNull(AttributionCache.get(javac, "src/test/C" + (firstKept - 1) + ".java"));
+        assertNotNull(AttributionCache.get(javac, "src/test/C" + firstKept + ".java"));
+        assertSame(last, AttributionCache.get(javac, "src/test/C" + AttributionCache.MAX_FILES_PER_ROOT + ".java"));
+        assertTrue(javac.isCurrent(last.getJavacTask()));
+        assertResolved(last, "test.C" + AttributionCache.MAX_FILES_PER_ROOT);
+
+        CompilationInfo second = javac.parse("src/test/C0.java");
+
+        assertNotSame(first, second);
+        assertNotSame(first.getJavacTask(), second.getJavacTask());
+        assertResolved(second, "test.C0");
+        //the previously returned info stays usable:
+        assertResolved(first, "test.C0");
+    }
+
+    public void testWarm() throws Exception {
+        assertEquals("Attributed: 2", new API().warm("test", "src/test/C1.java\n\n src/test/C2.java\n"));
+
+        Javac javac = Javac.get(CategoryStorage.forId("test").getSourceRoots().iterator().next());
+
+        assertNotNull(AttributionCache.get(javac, "src/test/C1.java"));
+        assertNotNull(AttributionCache.get(javac, "src/test/C2.java"));
+    }
+
+    private static void assertResolved(CompilationInfo info, String className) {
+        ClassTree clazz = (ClassTree) info.getCompilationUnit().getTypeDecls().get(0);
+        TreePath classPath = new TreePath(new TreePath(info.getCompilationUnit()), clazz);
+        TypeElement type = (TypeElement) info.getTrees().getElement(classPath);
+
+        assertNotNull(type);
+        assertEquals(ElementKind.CLASS, type.getKind());
+        assertEquals(className, type.getQualifiedName().toString());
+
+        for (Tree member : clazz.getMembers()) {
+            if (!(member instanceof MethodTree) || !"next".contentEquals(((MethodTree) member).getName())) continue;
+
+            TypeMirror returnType = info.getTrees().getTypeMirror(new TreePath(new TreePath(classPath, member), ((MethodTree) member).getReturnType()));
+
+            assertEquals(TypeKind.DECLARED, returnType.getKind());
+            return ;
+        }
+
+        fail("Method next not found");
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -26,8 +26,6 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import java.util.zip.DataFormatException;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -38,6 +36,7 @@ import org.apache.lucene.document.CompressionTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.search.Query;
 import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.Metrics;
 import org.netbeans.modules.parsing.lucene.support.Convertor;
 import org.netbeans.modules.parsing.lucene.support.Index;
 import org.netbeans.modules.parsing.lucene.support.Queries;
@@ -51,6 +50,7 @@ import org.netbeans.modules.parsing.lucene.support.Queries.QueryKind;
 public class API {
 
     private static final String KEY_CONTENT = "content";
+    private static final String KEY_CONTENT_HASH = "contentHash";
     
     @GET
     @Path("/cat")
@@ -64,12 +64,14 @@ public class API {
     public static String readFileContent(CategoryStorage category, String relative) throws IOException, InterruptedException {
         Index idx = category.getIndex();
         Query query = Queries.createQuery("relativePath", "does-not-exist", relative, QueryKind.EXACT);
-        List<String> found = new ArrayList<String>();
+        List<StoredContent> found = new ArrayList<StoredContent>();
 
         //TODO: field selector:
         idx.query(found, new ConvertorImpl(), null, new AtomicBoolean(), query);
+        Metrics.luceneQuery(category.getId(), found.size());
 
-        return !found.isEmpty() ? found.get(0) : null;
+        //the blob is read only after the query, so that a missing blob fails the request:
+        return !found.isEmpty() ? found.get(0).read(category) : null;
     }
 
     @GET
@@ -88,6 +90,7 @@ public class API {
                 return p.get("relativePath");
             }
         }, null, new AtomicBoolean(), query);
+        Metrics.luceneQuery(category.getId(), found.size());
 
         Set<String> chosen = new LinkedHashSet<String>();
         StringBuilder result = new StringBuilder();
@@ -105,13 +108,36 @@ public class API {
         return result.toString();
     }
 
-    private static class ConvertorImpl implements Convertor<Document, String> {
-        @Override public String convert(Document p) {
+    private static class ConvertorImpl implements Convertor<Document, StoredContent> {
+        @Override public StoredContent convert(Document p) {
+            return new StoredContent(p.get("relativePath"), p.get(KEY_CONTENT_HASH), p.getBinaryValue(KEY_CONTENT));
+        }
+    }
+
+    private static final class StoredContent {
+        private final String relativePath;
+        private final String hash;
+        private final byte[] compressed;
+
+        public StoredContent(String relativePath, String hash, byte[] compressed) {
+            this.relativePath = relativePath;
+            this.hash = hash;
+            this.compressed = compressed;
+        }
+
+        public String read(CategoryStorage category) throws IOException {
+            if (hash != null) {
+                return category.readBlob(hash);
+            }
+
+            if (compressed == null) {
+                throw new IOException("No content stored for " + relativePath);
+            }
+
             try {
-                return CompressionTools.decompressString(p.getBinaryValue(KEY_CONTENT));
+                return CompressionTools.decompressString(compressed);
             } catch (DataFormatException ex) {
-                Logger.getLogger(API.class.getName()).log(Level.SEVERE, null, ex);
-                return "";
+                throw new IOException("Cannot decompress content of " + relativePath, ex);
             }
         }
     }
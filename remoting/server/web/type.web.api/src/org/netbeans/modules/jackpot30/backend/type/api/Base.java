@@ -20,16 +20,29 @@
 package org.netbeans.modules.jackpot30.backend.type.api;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.FieldSelectorResult;
 import org.apache.lucene.search.Query;
-import org.codeviation.pojson.Pojson;
 import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.JsonWriter;
+import org.netbeans.modules.jackpot30.backend.base.Metrics;
 import org.netbeans.modules.jackpot30.backend.base.Utilities;
 import org.netbeans.modules.jumpto.common.Utils;
 import org.netbeans.modules.parsing.lucene.support.Convertor;
@@ -43,14 +56,37 @@ import org.netbeans.modules.parsing.lucene.support.Queries.QueryKind;
  */
 public class Base {
 
-    protected <T> String doFind(String segment, String prefix, boolean casesensitive, String queryKindName, String fieldPrefix, Convertor<Document, Entry<String, T>> conv) throws IOException, InterruptedException {
+    public static final String TOTAL_HITS_HEADER = "NB-Total-Hits";
+    public static final String NEXT_CURSOR_HEADER = "NB-Next-Cursor";
+
+    protected <T> Response doFind(String segment, String prefix, boolean casesensitive, String queryKindName, String fieldPrefix, String cursor, int limit, ResultConvertor<T> conv) throws IOException, InterruptedException {
+        final Page<T> page = find(segment, prefix, casesensitive, queryKindName, fieldPrefix, cursor, limit, conv);
+
+        if (page == null) {
+            return Response.ok("").build();
+        }
+
+        ResponseBuilder response = Response.ok().header(TOTAL_HITS_HEADER, String.valueOf(page.total));
+
+        if (page.next != null) {
+            response = response.header(NEXT_CURSOR_HEADER, page.next);
+        }
+
+        return response.entity(new StreamingOutput() {
+            @Override public void write(OutputStream output) throws IOException, WebApplicationException {
+                new JsonWriter(new OutputStreamWriter(output, "UTF-8")).value(page.found).flush();
+            }
+        }).build();
+    }
+
+    static <T> Page<T> find(String segment, String prefix, boolean casesensitive, String queryKindName, String fieldPrefix, String cursor, int limit, ResultConvertor<T> conv) throws IOException, InterruptedException {
         //copied (and converted to NameKind) from jumpto's GoToTypeAction:
         boolean exact = prefix.endsWith(" "); // NOI18N
 
         prefix = prefix.trim();
 
         if ( prefix.length() == 0) {
-            return "";
+            return null;
         }
 
         QueryKind queryKind = null;
@@ -83,6 +119,7 @@ public class Base {
             }
         }
 
+        String after = cursor != null ? decodeCursor(cursor) : null;
         CategoryStorage category = CategoryStorage.forId(segment);
         Index index = category.getIndex();
 
@@ -94,12 +131,126 @@ public class Base {
             queries.add(Queries.createQuery(fieldPrefix + "SimpleName", fieldPrefix + "SimpleNameLower", prefix, QueryKind.CASE_INSENSITIVE_PREFIX));
         }
 
-        List<Entry<String, T>> found = new ArrayList<Entry<String, T>>();
+        List<Hit<T>> found = new ArrayList<Hit<T>>();
+
+        index.query(found, conv, conv.fieldSelector, new AtomicBoolean(), queries.toArray(new Query[queries.size()]));
+        Metrics.luceneQuery(category.getId(), found.size());
+
+        Collections.sort(found);
+
+        int start = after != null ? firstAfter(found, after) : 0;
+        int end = limit > 0 ? Math.min(found.size(), start + limit) : found.size();
+        String next = end < found.size() ? encodeCursor(found.get(end - 1).key) : null;
+
+        return new Page<T>(Utilities.sortBySourceRoot(found.subList(start, end), category), found.size(), next);
+    }
+
+    private static int firstAfter(List<? extends Hit<?>> sorted, String key) {
+        int low = 0;
+        int high = sorted.size();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (sorted.get(mid).key.compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    //the cursor is the (hex encoded) sort key of the last returned hit, so it stays valid even if the index is updated between the requests:
+    static String encodeCursor(String key) {
+        StringBuilder result = new StringBuilder();
+
+        try {
+            for (byte b : key.getBytes("UTF-8")) {
+                result.append(String.format("%02x", b & 0xFF));
+            }
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        return result.toString();
+    }
+
+    static String decodeCursor(String cursor) {
+        String result = null;
+
+        if (cursor.length() % 2 == 0) {
+            byte[] bytes = new byte[cursor.length() / 2];
+
+            for (int i = 0; i < bytes.length; i++) {
+                int high = Character.digit(cursor.charAt(2 * i), 16);
+                int low = Character.digit(cursor.charAt(2 * i + 1), 16);
+
+                if (high == (-1) || low == (-1)) {
+                    bytes = null;
+                    break;
+                }
+
+                bytes[i] = (byte) (high << 4 | low);
+            }
+
+            if (bytes != null) {
+                try {
+                    result = new String(bytes, "UTF-8");
+                } catch (UnsupportedEncodingException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }
+
+        //not produced by encodeCursor (e.g. not valid UTF-8):
+        if (result == null || !encodeCursor(result).equalsIgnoreCase(cursor)) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST).entity("Malformed cursor").type("text/plain").build());
+        }
+
+        return result;
+    }
+
+    static final class Page<T> {
+        final Map<String, List<T>> found;
+        final int total;
+        final String next;
+
+        Page(Map<String, List<T>> found, int total, String next) {
+            this.found = found;
+            this.total = total;
+            this.next = next;
+        }
+    }
+
+    static final class Hit<T> extends SimpleEntry<String, T> implements Comparable<Hit<?>> {
+        private final String key;
+
+        Hit(String file, T value, String key) {
+            super(file, value);
+            this.key = file + '\0' + key;
+        }
+
+        @Override public int compareTo(Hit<?> o) {
+            return key.compareTo(o.key);
+        }
+    }
 
-        //TODO: field selector:
-        index.query(found, conv, null, new AtomicBoolean(), queries.toArray(new Query[queries.size()]));
+    /**Converts the found documents, loading only the fields listed in the constructor.
+     */
+    static abstract class ResultConvertor<T> implements Convertor<Document, Hit<T>> {
+        private final FieldSelector fieldSelector;
 
-        return Pojson.save(Utilities.sortBySourceRoot(found, category));
+        protected ResultConvertor(String... fields) {
+            final Set<String> fieldsSet = new HashSet<String>(Arrays.asList(fields));
+
+            this.fieldSelector = new FieldSelector() {
+                @Override public FieldSelectorResult accept(String fieldName) {
+                    return fieldsSet.contains(fieldName) ? FieldSelectorResult.LOAD : FieldSelectorResult.NO_LOAD;
+                }
+            };
+        }
     }
 
 }
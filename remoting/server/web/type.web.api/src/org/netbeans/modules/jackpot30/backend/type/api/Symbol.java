@@ -20,17 +20,15 @@
 package org.netbeans.modules.jackpot30.backend.type.api;
 
 import java.io.IOException;
-import java.util.AbstractMap.SimpleEntry;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
 import org.apache.lucene.document.Document;
-import org.netbeans.modules.parsing.lucene.support.Convertor;
 
 /**
  *
@@ -42,12 +40,15 @@ public class Symbol extends Base {
     @GET
     @Path("/search")
     @Produces("application/json")
-    public String findSymbol(@QueryParam("path") String segment, @QueryParam("prefix") String prefix, @QueryParam("casesensitive") @DefaultValue("false") boolean casesensitive, @QueryParam("querykind") String queryKindName) throws IOException, InterruptedException {
-        return doFind(segment, prefix, casesensitive, queryKindName, "feature", new SymbolConvertorImpl());
+    public Response findSymbol(@QueryParam("path") String segment, @QueryParam("prefix") String prefix, @QueryParam("casesensitive") @DefaultValue("false") boolean casesensitive, @QueryParam("querykind") String queryKindName, @QueryParam("cursor") String cursor, @QueryParam("limit") @DefaultValue("-1") int limit) throws IOException, InterruptedException {
+        return doFind(segment, prefix, casesensitive, queryKindName, "feature", cursor, limit, new SymbolConvertorImpl());
     }
 
-    private static class SymbolConvertorImpl implements Convertor<Document, Entry<String, Map<String, Object>>> {
-        @Override public Entry<String, Map<String, Object>> convert(Document p) {
+    static class SymbolConvertorImpl extends ResultConvertor<Map<String, Object>> {
+        public SymbolConvertorImpl() {
+            super("file", "featureClassFQN", "featureSimpleName", "featureSignature", "featureVMSignature", "featureKind", "featureModifiers");
+        }
+        @Override public Hit<Map<String, Object>> convert(Document p) {
             Map<String, Object> result = new HashMap<String, Object>();
 
             result.put("file", p.get("file"));
@@ -62,7 +63,9 @@ public class Symbol extends Base {
             result.put("kind", p.get("featureKind"));
             result.put("modifiers", p.getValues("featureModifiers")); //XXX
             
-            return new SimpleEntry<String, Map<String, Object>>(p.get("file"), result);
+            String key = p.get("featureClassFQN") + '\0' + p.get("featureSimpleName") + '\0' + (featureVMSignature != null ? featureVMSignature : featureSignature);
+
+            return new Hit<Map<String, Object>>(p.get("file"), result, key);
         }
     }
 
@@ -20,15 +20,13 @@
 package org.netbeans.modules.jackpot30.backend.type.api;
 
 import java.io.IOException;
-import java.util.AbstractMap.SimpleEntry;
-import java.util.Map.Entry;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
 import org.apache.lucene.document.Document;
-import org.netbeans.modules.parsing.lucene.support.Convertor;
 
 /**
  *
@@ -40,13 +38,17 @@ public class Type extends Base {
     @GET
     @Path("/search")
     @Produces("application/json")
-    public String findType(@QueryParam("path") String segment, @QueryParam("prefix") String prefix, @QueryParam("casesensitive") @DefaultValue("false") boolean casesensitive, @QueryParam("querykind") String queryKindName) throws IOException, InterruptedException {
-        return doFind(segment, prefix, casesensitive, queryKindName, "class", new TypeConvertorImpl());
+    public Response findType(@QueryParam("path") String segment, @QueryParam("prefix") String prefix, @QueryParam("casesensitive") @DefaultValue("false") boolean casesensitive, @QueryParam("querykind") String queryKindName, @QueryParam("cursor") String cursor, @QueryParam("limit") @DefaultValue("-1") int limit) throws IOException, InterruptedException {
+        return doFind(segment, prefix, casesensitive, queryKindName, "class", cursor, limit, new TypeConvertorImpl());
     }
 
-    private static class TypeConvertorImpl implements Convertor<Document, Entry<String, String>> {
-        @Override public Entry<String, String> convert(Document p) {
-            return new SimpleEntry<String, String>(p.get("file"), p.get("classFQN"));
+    static class TypeConvertorImpl extends ResultConvertor<String> {
+        public TypeConvertorImpl() {
+            super("file", "classFQN");
+        }
+        @Override public Hit<String> convert(Document p) {
+            String fqn = p.get("classFQN");
+            return new Hit<String>(p.get("file"), fqn, fqn);
         }
     }
 
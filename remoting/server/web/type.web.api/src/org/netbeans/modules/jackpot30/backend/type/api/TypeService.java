@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.jackpot30.backend.type.api;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**In-JVM access to the type and symbol search, as exposed over
+ * {@code /index/type/search} and {@code /index/symbol/search}.
+ *
+ * @author lahvac
+ */
+public class TypeService {
+
+    /**Finds types whose simple name match the given prefix.
+     *
+     * @return map from source root relative path to the FQNs of the found types,
+     *         or {@code null} if the prefix is empty
+     */
+    public static Map<String, List<String>> findTypes(String segment, String prefix, boolean casesensitive, String queryKindName) throws IOException, InterruptedException {
+        return unpaged(Base.find(segment, prefix, casesensitive, queryKindName, "class", null, -1, new Type.TypeConvertorImpl()));
+    }
+
+    /**Finds symbols (fields, methods, ...) whose simple name match the given prefix.
+     *
+     * @return map from source root relative path to the descriptions of the found symbols,
+     *         or {@code null} if the prefix is empty
+     */
+    public static Map<String, List<Map<String, Object>>> findSymbols(String segment, String prefix, boolean casesensitive, String queryKindName) throws IOException, InterruptedException {
+        return unpaged(Base.find(segment, prefix, casesensitive, queryKindName, "feature", null, -1, new Symbol.SymbolConvertorImpl()));
+    }
+
+    private static <T> Map<String, List<T>> unpaged(Base.Page<T> page) {
+        return page != null ? page.found : null;
+    }
+
+}
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.type.api;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author lahvac
+ */
+public class BaseTest extends TestCase {
+
+    public BaseTest(String name) {
+        super(name);
+    }
+
+    public void testCursorRoundTrip() {
+        for (String key : new String[] {"", "test/Test.java:Test", "é中"}) {
+            String cursor = Base.encodeCursor(key);
+
+            assertEquals(key, Base.decodeCursor(cursor));
+            assertEquals(key, Base.decodeCursor(cursor.toUpperCase()));
+        }
+    }
+
+    public void testMalformedCursor() {
+        //odd length, not hexadecimal, a sign, not valid UTF-8:
+        for (String cursor : new String[] {"a", "zz", "+1", "ff", "c3"}) {
+            try {
+                Base.decodeCursor(cursor);
+                fail(cursor);
+            } catch (WebApplicationException ex) {
+                assertEquals(cursor, Response.Status.BAD_REQUEST.getStatusCode(), ex.getResponse().getStatus());
+            }
+        }
+    }
+
+}
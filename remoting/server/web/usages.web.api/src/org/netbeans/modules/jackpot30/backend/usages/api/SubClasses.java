@@ -20,25 +20,16 @@ package org.netbeans.modules.jackpot30.backend.usages.api;
 
 import java.io.IOException;
 import java.util.AbstractMap.SimpleEntry;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicBoolean;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.search.Query;
 import org.codeviation.pojson.Pojson;
-import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
-import org.netbeans.modules.jackpot30.backend.base.Utilities;
 import org.netbeans.modules.parsing.lucene.support.Convertor;
-import org.netbeans.modules.parsing.lucene.support.Index;
-import org.netbeans.modules.parsing.lucene.support.Queries;
-import org.netbeans.modules.parsing.lucene.support.Queries.QueryKind;
 
 /**
  *
@@ -47,24 +38,18 @@ import org.netbeans.modules.parsing.lucene.support.Queries.QueryKind;
 @Path("/index/implements")
 public class SubClasses {
 
-    private static final String KEY_SUPERTYPES = "classSupertypes";
-    
     @GET
     @Path("/search")
     @Produces("text/plain")
     public String search(@QueryParam("path") String segment, @QueryParam("type") String type, @QueryParam("method") String method) throws IOException, InterruptedException {
-        CategoryStorage category = CategoryStorage.forId(segment);
-        Index idx = category.getIndex();
-        Query query = Queries.createQuery(type != null ? KEY_SUPERTYPES : "featureOverrides", "does-not-exist", type != null ? type : method, QueryKind.EXACT);
-        List<Entry<String, Map<String, Object>>> found = new ArrayList<Entry<String, Map<String, Object>>>();
-
-        //TODO: field selector:
-        idx.query(found, type != null ? new SubTypeConvertorImpl() : new OverridersConvertorImpl(), null, new AtomicBoolean(), query);
-
-        return Pojson.save(Utilities.sortBySourceRoot(found, category));
+        if (type != null) {
+            return Pojson.save(UsagesService.findSubtypes(segment, type));
+        } else {
+            return Pojson.save(UsagesService.findOverriders(segment, method));
+        }
     }
 
-    private static class SubTypeConvertorImpl implements Convertor<Document, Entry<String, Map<String, Object>>> {
+    static class SubTypeConvertorImpl implements Convertor<Document, Entry<String, Map<String, Object>>> {
         @Override public Entry<String, Map<String, Object>> convert(Document p) {
             Map<String, Object> result = new HashMap<String, Object>();
 
@@ -75,7 +60,7 @@ public class SubClasses {
         }
     }
 
-    private static class OverridersConvertorImpl implements Convertor<Document, Entry<String, Map<String, Object>>> {
+    static class OverridersConvertorImpl implements Convertor<Document, Entry<String, Map<String, Object>>> {
         @Override public Entry<String, Map<String, Object>> convert(Document p) {
             Map<String, Object> result = new HashMap<String, Object>();
 
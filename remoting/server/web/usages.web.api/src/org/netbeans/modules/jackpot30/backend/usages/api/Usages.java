@@ -21,19 +21,16 @@ package org.netbeans.modules.jackpot30.backend.usages.api;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.search.Query;
-import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.codeviation.pojson.Pojson;
 import org.netbeans.modules.parsing.lucene.support.Convertor;
-import org.netbeans.modules.parsing.lucene.support.Index;
-import org.netbeans.modules.parsing.lucene.support.Queries;
-import org.netbeans.modules.parsing.lucene.support.Queries.QueryKind;
 
 /**
  *
@@ -42,71 +39,39 @@ import org.netbeans.modules.parsing.lucene.support.Queries.QueryKind;
 @Path("/index/usages")
 public class Usages {
 
-    private static final String KEY_SIGNATURES = "signatures";
-    
     @GET
     @Path("/search")
     @Produces("text/plain")
     public String search(@QueryParam("path") String segment, @QueryParam("signatures") String signatures, @QueryParam("searchResources") @DefaultValue("true") boolean searchResources) throws IOException, InterruptedException {
         StringBuilder result = new StringBuilder();
-        CategoryStorage category = CategoryStorage.forId(segment);
-        Index idx = category.getIndex();
-        String origSignature = signatures;
 
-        if ((signatures.startsWith("FIELD:") || signatures.startsWith("ENUM_CONSTANT:")) && signatures.split(":").length == 4) {
-            //handle old clients sending field type inside as part of the field handle:
-            signatures = signatures.substring(0, signatures.lastIndexOf(':'));
-        }
-
-        List<String> found = new ArrayList<String>();
-        Query query = Queries.createQuery(KEY_SIGNATURES, "does-not-exist", signatures, QueryKind.EXACT);
-
-        //TODO: field selector:
-        idx.query(found, new ConvertorImpl(), null, new AtomicBoolean(), query);
-
-        if (found.isEmpty()) {
-            //transient: try old index structure with field handles containing the field type
-            query = Queries.createQuery(KEY_SIGNATURES, "does-not-exist", origSignature, QueryKind.EXACT);
-
-            //TODO: field selector:
-            idx.query(found, new ConvertorImpl(), null, new AtomicBoolean(), query);
+        for (String foundFile : UsagesService.findUsages(segment, signatures, searchResources)) {
+            result.append(foundFile);
+            result.append("\n");
         }
 
-        if (searchResources) {
-            //look for usages from resources:
-            String[] parts = signatures.split(":");
+        return result.toString();
+    }
 
-            if (parts.length >= 2 ) {
-                String otherSignature;
+    @POST
+    @Path("/searchBulk")
+    @Consumes("text/plain")
+    @Produces("application/json")
+    public String searchBulk(@QueryParam("path") String segment, @QueryParam("searchResources") @DefaultValue("true") boolean searchResources, String signatures) throws IOException, InterruptedException {
+        List<String> toSearch = new ArrayList<String>();
 
-                switch (parts[0]) {
-                    case "FIELD": case "ENUM_CONSTANT":
-                    case "METHOD":
-                        if (parts.length >= 3) {
-                            otherSignature = "OTHER:" + parts[1] + ":" + parts[2];
-                            break;
-                        }
-                    default:
-                        otherSignature = "OTHER:" + parts[1];
-                        break;
-                }
+        for (String signature : signatures.split("\n")) {
+            signature = signature.trim();
 
-                query = Queries.createQuery(KEY_SIGNATURES, "does-not-exist", otherSignature, QueryKind.EXACT);
+            if (signature.isEmpty()) continue;
 
-                //TODO: field selector:
-                idx.query(found, new ConvertorImpl(), null, new AtomicBoolean(), query);
-            }
+            toSearch.add(signature);
         }
 
-        for (String foundFile : found) {
-            result.append(foundFile);
-            result.append("\n");
-        }
-
-        return result.toString();
+        return Pojson.save(UsagesService.findUsages(segment, toSearch, searchResources));
     }
 
-    private static class ConvertorImpl implements Convertor<Document, String> {
+    static class ConvertorImpl implements Convertor<Document, String> {
         @Override public String convert(Document p) {
             return p.get("file");
         }
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.usages.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.FieldSelectorResult;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.Metrics;
+import org.netbeans.modules.jackpot30.backend.base.Utilities;
+import org.netbeans.modules.parsing.lucene.support.Convertor;
+import org.netbeans.modules.parsing.lucene.support.Index;
+import org.netbeans.modules.parsing.lucene.support.Queries;
+import org.netbeans.modules.parsing.lucene.support.Queries.QueryKind;
+
+/**In-JVM access to the usages and subtypes/overriders search, as exposed over
+ * {@code /index/usages/search}, {@code /index/usages/searchBulk} and {@code /index/implements/search}.
+ *
+ * @author lahvac
+ */
+public class UsagesService {
+
+    private static final String KEY_SIGNATURES = "signatures";
+    private static final String KEY_SUPERTYPES = "classSupertypes";
+
+    /**Finds files that use the element with the given signature.
+     *
+     * @return relative paths of the files using the given element
+     */
+    public static List<String> findUsages(String segment, String signatures, boolean searchResources) throws IOException, InterruptedException {
+        CategoryStorage category = CategoryStorage.forId(segment);
+        Index idx = category.getIndex();
+        List<String> found = new ArrayList<String>();
+
+        idx.query(found, new Usages.ConvertorImpl(), FILE_SELECTOR, new AtomicBoolean(), signaturesQuery(signatureVariants(signatures, searchResources)));
+        Metrics.luceneQuery(segment, found.size());
+
+        return found;
+    }
+
+    /**Finds files that use any of the elements with the given signatures, in one call.
+     * Each signature variant is looked up by its own term query, so that only the file
+     * of the hits is loaded, as in {@link #findUsages(String, String, boolean)}.
+     *
+     * @return map from the signatures to the relative paths of the files using the given element
+     */
+    public static Map<String, List<String>> findUsages(String segment, Collection<String> signatures, boolean searchResources) throws IOException, InterruptedException {
+        CategoryStorage category = CategoryStorage.forId(segment);
+        Index idx = category.getIndex();
+        Map<String, List<String>> variant2Files = new HashMap<String, List<String>>();
+        Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+
+        for (String signature : signatures) {
+            if (result.containsKey(signature)) continue;
+
+            Set<String> files = new LinkedHashSet<String>();
+
+            for (String variant : signatureVariants(signature, searchResources)) {
+                List<String> forVariant = variant2Files.get(variant);
+
+                if (forVariant == null) {
+                    forVariant = new ArrayList<String>();
+                    idx.query(forVariant, new Usages.ConvertorImpl(), FILE_SELECTOR, new AtomicBoolean(), signaturesQuery(Collections.singletonList(variant)));
+                    Metrics.luceneQuery(segment, forVariant.size());
+                    variant2Files.put(variant, forVariant);
+                }
+
+                files.addAll(forVariant);
+            }
+
+            result.put(signature, new ArrayList<String>(files));
+        }
+
+        return result;
+    }
+
+    private static Set<String> signatureVariants(String signatures, boolean searchResources) {
+        Set<String> result = new LinkedHashSet<String>();
+
+        //handle old indices with field handles containing the field type:
+        result.add(signatures);
+
+        if ((signatures.startsWith("FIELD:") || signatures.startsWith("ENUM_CONSTANT:")) && signatures.split(":").length == 4) {
+            //handle old clients sending field type inside as part of the field handle:
+            signatures = signatures.substring(0, signatures.lastIndexOf(':'));
+            result.add(signatures);
+        }
+
+        if (searchResources) {
+            //look for usages from resources:
+            String[] parts = signatures.split(":");
+
+            if (parts.length >= 2 ) {
+                String otherSignature;
+
+                switch (parts[0]) {
+                    case "FIELD": case "ENUM_CONSTANT":
+                    case "METHOD":
+                        if (parts.length >= 3) {
+                            otherSignature = "OTHER:" + parts[1] + ":" + parts[2];
+                            break;
+                        }
+                    default:
+                        otherSignature = "OTHER:" + parts[1];
+                        break;
+                }
+
+                result.add(otherSignature);
+            }
+        }
+
+        return result;
+    }
+
+    private static Query signaturesQuery(Collection<String> variants) {
+        BooleanQuery result = new BooleanQuery();
+
+        for (String variant : variants) {
+            result.add(Queries.createQuery(KEY_SIGNATURES, "does-not-exist", variant, QueryKind.EXACT), Occur.SHOULD);
+        }
+
+        return result;
+    }
+
+    private static final FieldSelector FILE_SELECTOR = new FieldSelector() {
+        @Override public FieldSelectorResult accept(String fieldName) {
+            return "file".equals(fieldName) ? FieldSelectorResult.LOAD : FieldSelectorResult.NO_LOAD;
+        }
+    };
+
+    /**Finds direct subtypes of the given type.
+     *
+     * @param type FQN of the supertype
+     * @return map from source root relative path to descriptions of the subtypes
+     */
+    public static Map<String, List<Map<String, Object>>> findSubtypes(String segment, String type) throws IOException, InterruptedException {
+        return findImplementors(segment, KEY_SUPERTYPES, type, new SubClasses.SubTypeConvertorImpl());
+    }
+
+    /**Finds methods overriding the given method.
+     *
+     * @param method signature of the overridden method
+     * @return map from source root relative path to descriptions of the overriders
+     */
+    public static Map<String, List<Map<String, Object>>> findOverriders(String segment, String method) throws IOException, InterruptedException {
+        return findImplementors(segment, "featureOverrides", method, new SubClasses.OverridersConvertorImpl());
+    }
+
+    private static Map<String, List<Map<String, Object>>> findImplementors(String segment, String field, String value, Convertor<Document, Entry<String, Map<String, Object>>> convertor) throws IOException, InterruptedException {
+        CategoryStorage category = CategoryStorage.forId(segment);
+        Index idx = category.getIndex();
+        Query query = Queries.createQuery(field, "does-not-exist", value, QueryKind.EXACT);
+        List<Entry<String, Map<String, Object>>> found = new ArrayList<Entry<String, Map<String, Object>>>();
+
+        //TODO: field selector:
+        idx.query(found, convertor, null, new AtomicBoolean(), query);
+        Metrics.luceneQuery(segment, found.size());
+
+        return Utilities.sortBySourceRoot(found, category);
+    }
+}
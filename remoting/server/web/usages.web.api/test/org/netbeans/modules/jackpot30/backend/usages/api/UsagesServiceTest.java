@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.usages.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.codeviation.pojson.Pojson;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+
+/**
+ *
+ * @author lahvac
+ */
+public class UsagesServiceTest extends TestCase {
+
+    private static final String METHOD = "METHOD:test.C:m:()V";
+    private static final String FIELD = "FIELD:test.C:f";
+    private static final String CLASS = "CLASS:test.C";
+
+    public UsagesServiceTest(String name) {
+        super(name);
+    }
+
+    private File cacheRoot;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cacheRoot = File.createTempFile("usages", "cache");
+        cacheRoot.delete();
+
+        IndexWriter w = new IndexWriter(FSDirectory.open(new File(new File(cacheRoot, "test"), "index")), new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+
+        try {
+            w.addDocument(document("src/test/Method.java", METHOD, CLASS));
+            w.addDocument(document("src/test/Field.java", FIELD));
+            //an old index, with the field type in the field handle:
+            w.addDocument(document("src/test/OldField.java", FIELD + ":I"));
+            w.addDocument(document("src/test/resource.xml", "OTHER:test.C:m", "OTHER:test.C"));
+            w.addDocument(document("src/test/Unrelated.java", "CLASS:test.D"));
+        } finally {
+            w.close();
+        }
+
+        CategoryStorage.setCacheRoot(cacheRoot);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(cacheRoot);
+        super.tearDown();
+    }
+
+    public void testSignatureVariants() throws Exception {
+        assertEquals(Arrays.asList("src/test/Method.java"), sorted(UsagesService.findUsages("test", METHOD, false)));
+        assertEquals(Arrays.asList("src/test/Method.java", "src/test/resource.xml"), sorted(UsagesService.findUsages("test", METHOD, true)));
+        assertEquals(Arrays.asList("src/test/Field.java"), sorted(UsagesService.findUsages("test", FIELD, false)));
+        //an old client, sending the field type:
+        assertEquals(Arrays.asList("src/test/Field.java", "src/test/OldField.java"), sorted(UsagesService.findUsages("test", FIELD + ":I", false)));
+        assertEquals(Arrays.asList("src/test/Method.java", "src/test/resource.xml"), sorted(UsagesService.findUsages("test", CLASS, true)));
+        assertEquals(Collections.emptyList(), UsagesService.findUsages("test", "CLASS:test.Unknown", true));
+    }
+
+    public void testBulk() throws Exception {
+        Map<String, List<String>> found = UsagesService.findUsages("test", Arrays.asList(METHOD, FIELD + ":I", CLASS, "CLASS:test.Unknown", METHOD), true);
+
+        assertEquals(Arrays.asList(METHOD, FIELD + ":I", CLASS, "CLASS:test.Unknown"), new ArrayList<String>(found.keySet()));
+        assertEquals(Arrays.asList("src/test/Method.java", "src/test/resource.xml"), sorted(found.get(METHOD)));
+        assertEquals(Arrays.asList("src/test/Field.java", "src/test/OldField.java"), sorted(found.get(FIELD + ":I")));
+        assertEquals(Arrays.asList("src/test/Method.java", "src/test/resource.xml"), sorted(found.get(CLASS)));
+        assertEquals(Collections.emptyList(), found.get("CLASS:test.Unknown"));
+
+        //the same results as the single signature search:
+        for (String signature : found.keySet()) {
+            assertEquals(sorted(UsagesService.findUsages("test", signature, true)), sorted(found.get(signature)));
+        }
+    }
+
+    public void testBulkResponse() throws Exception {
+        String response = new Usages().searchBulk("test", false, METHOD + "\n\n " + FIELD + " \n");
+        Map<String, List<String>> found = Pojson.load(LinkedHashMap.class, response);
+
+        assertEquals(Arrays.asList(METHOD, FIELD), new ArrayList<String>(found.keySet()));
+        assertEquals(Arrays.asList("src/test/Method.java"), found.get(METHOD));
+        assertEquals(Arrays.asList("src/test/Field.java"), found.get(FIELD));
+    }
+
+    private static List<String> sorted(Collection<String> files) {
+        List<String> result = new ArrayList<String>(files);
+
+        Collections.sort(result);
+
+        return result;
+    }
+
+    private static Document document(String file, String... signatures) {
+        Document doc = new Document();
+
+        doc.add(new Field("file", file, Store.YES, Index.NOT_ANALYZED));
+
+        for (String signature : signatures) {
+            doc.add(new Field("signatures", signature, Store.YES, Index.NOT_ANALYZED));
+        }
+
+        return doc;
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+
+        file.delete();
+    }
+}
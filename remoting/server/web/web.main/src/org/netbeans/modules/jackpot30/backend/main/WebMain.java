@@ -33,8 +33,13 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import org.netbeans.modules.jackpot30.backend.base.AccessStatistics;
 import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.base.ConditionalRequests;
+import org.netbeans.modules.jackpot30.backend.base.ContentEncoding;
 import org.netbeans.modules.jackpot30.backend.base.RelStreamHandlerFactory;
 import org.openide.util.Exceptions;
 
@@ -82,9 +87,19 @@ public class WebMain {
         // Jersey web resources
         ServletAdapter jerseyAdapter = new ServletAdapter();
         jerseyAdapter.addInitParameter("com.sun.jersey.config.property.packages", "org.netbeans.modules.jackpot30");
-        jerseyAdapter.addInitParameter("com.sun.jersey.spi.container.ContainerRequestFilters", AccessStatistics.class.getName());
+        String filters = AccessStatistics.class.getName() + "," + ConditionalRequests.class.getName() + "," + ContentEncoding.class.getName();
+        jerseyAdapter.addInitParameter("com.sun.jersey.spi.container.ContainerRequestFilters", filters);
+        jerseyAdapter.addInitParameter("com.sun.jersey.spi.container.ContainerResponseFilters", filters);
 //        jerseyAdapter.setContextPath("/");
-        jerseyAdapter.setServletInstance(new ServletContainer());
+        jerseyAdapter.setServletInstance(new ServletContainer() {
+            @Override public void service(ServletRequest req, ServletResponse res) throws ServletException, IOException {
+                try {
+                    super.service(req, res);
+                } finally {
+                    AccessStatistics.requestCompleted();
+                }
+            }
+        });
 
         // register all above defined adapters
         gws.addGrizzlyAdapter(new GrizzlyAdapter(){
@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.usages.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.JarInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.source.api.API;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ * @author lahvac
+ */
+public class DownloadableIndexTest extends TestCase {
+
+    private static final String CONTENT_A = "package test; public class A {}";
+    private static final String CONTENT_B = "package test; public class B {}";
+
+    public DownloadableIndexTest(String name) {
+        super(name);
+    }
+
+    private File serverRoot;
+    private File clientRoot;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        serverRoot = File.createTempFile("downloadable", "server");
+        serverRoot.delete();
+        clientRoot = File.createTempFile("downloadable", "client");
+        clientRoot.delete();
+
+        File category = new File(serverRoot, "test");
+        IndexWriter w = new IndexWriter(FSDirectory.open(new File(category, "index")), new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+
+        try {
+            w.addDocument(document(category, "src/test/A.java", CONTENT_A));
+            w.addDocument(document(category, "src/test/B.java", CONTENT_B));
+        } finally {
+            w.close();
+        }
+
+        CategoryStorage.setCacheRoot(serverRoot);
+        //moves the blobs to the folder shared by all categories:
+        CategoryStorage.internalReset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(serverRoot);
+        delete(clientRoot);
+        super.tearDown();
+    }
+
+    public void testDownloadAndServe() throws Exception {
+        assertFalse(new File(new File(serverRoot, "test"), "blobs").exists());
+
+        unpack(new DownloadableIndex().index("test"), new File(clientRoot, "test"));
+
+        CategoryStorage.setCacheRoot(clientRoot);
+
+        assertEquals(CONTENT_A, new API().cat("test", "src/test/A.java"));
+        assertEquals(CONTENT_B, new API().cat("test", "src/test/B.java"));
+
+        //the local server moves the downloaded blobs when told the index was updated:
+        CategoryStorage.internalReset();
+
+        assertEquals(CONTENT_A, new API().cat("test", "src/test/A.java"));
+    }
+
+    public void testDeltaContainsBlobs() throws Exception {
+        Properties checksums = new Properties();
+        List<String> entries = unpack(new DownloadableIndex().delta("test", null), new File(clientRoot, "test"), checksums);
+        String blobA = "blobs/" + hash(CONTENT_A).substring(0, 2) + "/" + hash(CONTENT_A);
+
+        assertTrue(entries.toString(), entries.contains(blobA));
+        assertEquals(hash(CONTENT_A), checksums.getProperty(blobA));
+
+        StringWriter known = new StringWriter();
+
+        checksums.store(known, null);
+
+        assertEquals(Arrays.asList(DownloadableIndex.CHECKSUMS_ENTRY), unpack(new DownloadableIndex().delta("test", known.toString()), new File(clientRoot, "test2"), new Properties()));
+
+        CategoryStorage.setCacheRoot(clientRoot);
+
+        assertEquals(CONTENT_B, new API().cat("test", "src/test/B.java"));
+    }
+
+    public void testMissingBlobFails() throws Exception {
+        String hash = hash(CONTENT_A);
+
+        assertTrue(new File(new File(new File(serverRoot, ".blobs"), hash.substring(0, 2)), hash).delete());
+
+        try {
+            new API().cat("test", "src/test/A.java");
+            fail("the content should not be found");
+        } catch (FileNotFoundException ex) {
+            //expected
+        }
+
+        try {
+            new DownloadableIndex().index("test");
+            fail("the index should not be downloadable");
+        } catch (FileNotFoundException ex) {
+            //expected
+        }
+    }
+
+    private static List<String> unpack(Response response, File target) throws Exception {
+        return unpack(response, target, null);
+    }
+
+    private static List<String> unpack(Response response, File target, Properties checksums) throws Exception {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        ((StreamingOutput) response.getEntity()).write(data);
+
+        JarInputStream in = new JarInputStream(new ByteArrayInputStream(data.toByteArray()));
+        List<String> entries = new ArrayList<String>();
+
+        try {
+            ZipEntry ze;
+
+            while ((ze = in.getNextEntry()) != null) {
+                entries.add(ze.getName());
+
+                if (checksums != null && DownloadableIndex.CHECKSUMS_ENTRY.equals(ze.getName())) {
+                    checksums.load(in);
+                    continue;
+                }
+
+                File file = new File(target, ze.getName());
+
+                file.getParentFile().mkdirs();
+
+                OutputStream out = new FileOutputStream(file);
+
+                try {
+                    FileUtil.copy(in, out);
+                } finally {
+                    out.close();
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        return entries;
+    }
+
+    private static Document document(File category, String relativePath, String content) throws Exception {
+        Document doc = new Document();
+        String hash = hash(content);
+
+        doc.add(new Field("relativePath", relativePath, Store.YES, Index.NOT_ANALYZED));
+        doc.add(new Field("contentHash", hash, Store.YES, Index.NOT_ANALYZED));
+
+        File blob = new File(new File(new File(category, "blobs"), hash.substring(0, 2)), hash);
+
+        blob.getParentFile().mkdirs();
+
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(blob));
+
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        return doc;
+    }
+
+    private static String hash(String content) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.getBytes("UTF-8"));
+        String result = new BigInteger(1, digest).toString(16);
+
+        while (result.length() < 40) result = "0" + result;
+
+        return result;
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+
+        file.delete();
+    }
+}
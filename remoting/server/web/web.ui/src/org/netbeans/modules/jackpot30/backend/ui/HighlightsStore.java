@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.jackpot30.backend.ui;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
+import org.netbeans.modules.jackpot30.backend.ui.UI.HighlightData;
+
+/**Stores the computed highlighting of source files, so that it is computed only
+ * once for each version of the index. For each file, the distinct categories
+ * are stored once, followed by the length and category index of each token.
+ *
+ * @author lahvac
+ */
+class HighlightsStore {
+
+    private static final Logger LOG = Logger.getLogger(HighlightsStore.class.getName());
+
+    //increase when the highlighting changes, to ignore the data stored by previous versions:
+    private static final int FORMAT = 1;
+
+    static HighlightData load(String segment, String relative) {
+        File file = storeFile(segment, relative);
+
+        if (!file.canRead()) return null;
+
+        try {
+            DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+
+            try {
+                if (in.readInt() != FORMAT) return null;
+                if (!relative.equals(in.readUTF())) return null;
+
+                int categoriesCount = in.readInt();
+                List<String> distinctCategories = new ArrayList<String>(categoriesCount);
+
+                for (int i = 0; i < categoriesCount; i++) {
+                    distinctCategories.add(in.readUTF());
+                }
+
+                int tokensCount = in.readInt();
+                List<String> categories = new ArrayList<String>(tokensCount);
+                List<Long> spans = new ArrayList<Long>(tokensCount);
+
+                for (int i = 0; i < tokensCount; i++) {
+                    spans.add(readVLong(in));
+                    categories.add(distinctCategories.get((int) readVLong(in)));
+                }
+
+                return new HighlightData(categories, spans);
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+            return null;
+        } catch (IndexOutOfBoundsException ex) {
+            LOG.log(Level.FINE, null, ex);
+            return null;
+        }
+    }
+
+    static void store(String segment, String relative, HighlightData highlights) {
+        File file = storeFile(segment, relative);
+        File temp = new File(file.getParentFile(), file.getName() + "." + Thread.currentThread().getId() + ".new");
+
+        file.getParentFile().mkdirs();
+
+        try {
+            DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temp))));
+
+            try {
+                Map<String, Integer> categoryIndices = new HashMap<String, Integer>();
+                List<String> distinctCategories = new ArrayList<String>();
+
+                for (String category : highlights.categories) {
+                    if (!categoryIndices.containsKey(category)) {
+                        categoryIndices.put(category, distinctCategories.size());
+                        distinctCategories.add(category);
+                    }
+                }
+
+                out.writeInt(FORMAT);
+                out.writeUTF(relative);
+                out.writeInt(distinctCategories.size());
+
+                for (String category : distinctCategories) {
+                    out.writeUTF(category);
+                }
+
+                out.writeInt(highlights.spans.size());
+
+                for (int i = 0; i < highlights.spans.size(); i++) {
+                    writeVLong(out, highlights.spans.get(i));
+                    writeVLong(out, categoryIndices.get(highlights.categories.get(i)));
+                }
+            } finally {
+                out.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                //stored concurrently by another request:
+                temp.delete();
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.INFO, null, ex);
+            temp.delete();
+        }
+    }
+
+    private static File storeFile(String segment, String relative) {
+        return new File(CategoryStorage.forId(segment).getDerivedDataFolder("highlights"), CategoryStorage.digest(relative));
+    }
+
+    private static void writeVLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.writeByte((int) value);
+    }
+
+    private static long readVLong(DataInputStream in) throws IOException {
+        long result = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return result;
+    }
+
+}
@@ -35,7 +35,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -65,15 +64,17 @@ import org.netbeans.api.lexer.TokenHierarchy;
 import org.netbeans.api.lexer.TokenSequence;
 import org.netbeans.api.xml.lexer.XMLTokenId;
 import org.netbeans.modules.jackpot30.backend.base.CategoryStorage;
-import org.netbeans.modules.jackpot30.backend.base.WebUtilities;
 import static org.netbeans.modules.jackpot30.backend.base.WebUtilities.escapeForQuery;
+import org.netbeans.modules.jackpot30.backend.type.api.TypeService;
 import org.netbeans.modules.jackpot30.backend.ui.highlighting.ColoringAttributes;
 import org.netbeans.modules.jackpot30.backend.ui.highlighting.ColoringAttributes.Coloring;
 import org.netbeans.modules.jackpot30.backend.ui.highlighting.SemanticHighlighter;
 import org.netbeans.modules.jackpot30.backend.ui.highlighting.TokenList;
+import org.netbeans.modules.jackpot30.backend.usages.api.UsagesService;
 import org.netbeans.modules.jackpot30.resolve.api.CompilationInfo;
 import org.netbeans.modules.jackpot30.resolve.api.JavaUtils;
 import org.netbeans.modules.jackpot30.resolve.api.ResolveService;
+import org.netbeans.modules.jackpot30.source.api.API;
 
 /**
  *
@@ -82,9 +83,6 @@ import org.netbeans.modules.jackpot30.resolve.api.ResolveService;
 @Path("/index/ui")
 public class UI {
 
-    private static final String URL_BASE_OVERRIDE = null;
-//    private static final String URL_BASE_OVERRIDE = "http://lahoda.info/";
-
     @GET
     @Path("/search")
     public Response searchType(@Context UriInfo uriInfo, @QueryParam("path") List<String> paths, @QueryParam("prefix") String prefix) throws URISyntaxException, IOException {
@@ -95,23 +93,20 @@ public class UI {
     @GET
     @Path("/searchSymbol")
     @Produces("application/javascript")
-    public String searchSymbol(@Context UriInfo uriInfo, @QueryParam("path") List<String> paths, @QueryParam("prefix") String prefix) throws URISyntaxException, IOException {
-        String urlBase = URL_BASE_OVERRIDE != null ? URL_BASE_OVERRIDE : uriInfo.getBaseUri().toString();
+    public String searchSymbol(@Context UriInfo uriInfo, @QueryParam("path") List<String> paths, @QueryParam("prefix") String prefix) throws URISyntaxException, IOException, InterruptedException {
         Map<String, Map<?, ?>> segment2Result = new HashMap<String, Map<?, ?>>();
 
         if (paths == null) {
-            Map<String,Map<String, String>> pathsList = list(urlBase);
-            paths = new ArrayList<String>(pathsList.keySet());
+            paths = listCategoryIds();
         }
 
         for (String path : paths) {
-            URI u = new URI(urlBase + "index/symbol/search?path=" + escapeForQuery(path) + "&prefix=" + escapeForQuery(prefix));
-            @SuppressWarnings("unchecked") //XXX: should not trust something got from the network!
-            Map<String, List<Map<String, Object>>> symbols = Pojson.load(LinkedHashMap.class, u);
+            Map<String, List<Map<String, Object>>> symbols = TypeService.findSymbols(path, prefix, false, null);
+            Map<String, List<String>> types = TypeService.findTypes(path, prefix, false, null);
 
-            URI typeSearch = new URI(urlBase + "index/type/search?path=" + escapeForQuery(path) + "&prefix=" + escapeForQuery(prefix));
-            @SuppressWarnings("unchecked") //XXX: should not trust something got from the network!
-            Map<String, List<String>> types = Pojson.load(LinkedHashMap.class, typeSearch);
+            if (symbols == null || types == null) {
+                continue;
+            }
 
             for (Entry<String, List<String>> e : types.entrySet()) {
                 List<Map<String, Object>> thisSourceRootResults = new ArrayList<Map<String, Object>>(e.getValue().size());
@@ -172,12 +167,15 @@ public class UI {
         HighlightData highlights;
         
         if (relative.endsWith(".java")) {
-            CompilationInfo info = ResolveService.parse(segment, relative);
-            highlights = colorTokens(info);
+            highlights = HighlightsStore.load(segment, relative);
+
+            if (highlights == null) {
+                CompilationInfo info = ResolveService.parse(segment, relative);
+                highlights = colorTokens(info);
+                HighlightsStore.store(segment, relative, highlights);
+            }
         } else {
-            String urlBase = URL_BASE_OVERRIDE != null ? URL_BASE_OVERRIDE : uriInfo.getBaseUri().toString();
-            URI u = new URI(urlBase + "index/source/cat?path=" + escapeForQuery(segment) + "&relative=" + escapeForQuery(relative));
-            String content = WebUtilities.requestStringResponse(u).replace("\r\n", "\n");
+            String content = readFileContent(segment, relative);
             if (relative.endsWith(".xml")) {
                 highlights = colorTokens(TokenHierarchy.create(content, XMLTokenId.language()).tokenSequence(XMLTokenId.language()), Collections.<Token, Coloring>emptyMap());
             } else {
@@ -237,7 +235,7 @@ public class UI {
         return new HighlightData(cats, spans);
     }
 
-    private static final class HighlightData {
+    static final class HighlightData {
         List<String> categories;
         List<Long> spans;
         public HighlightData(List<String> cats, List<Long> spans) {
@@ -264,22 +262,17 @@ public class UI {
     @GET
     @Path("/searchUsages")
     @Produces("application/javascript")
-    public String searchUsages(@Context UriInfo uriInfo, @QueryParam("path") List<String> paths, @QueryParam("signature") final String signature) throws URISyntaxException, IOException {
-        String urlBase = URL_BASE_OVERRIDE != null ? URL_BASE_OVERRIDE : uriInfo.getBaseUri().toString();
+    public String searchUsages(@Context UriInfo uriInfo, @QueryParam("path") List<String> paths, @QueryParam("signature") final String signature) throws URISyntaxException, IOException, InterruptedException {
         Map<String, Map<?, ?>> segment2Result = new HashMap<String, Map<?, ?>>();
 
         if (paths == null) {
-            Map<String,Map<String, String>> pathsList = list(urlBase);
-            paths = new ArrayList<String>(pathsList.keySet());
+            paths = listCategoryIds();
         }
 
         for (String path : paths) {
             Map<String, Map<String, Object>> usageFile2Flags = new HashMap<String, Map<String, Object>>();
             
-            URI usagesURI = new URI(urlBase + "index/usages/search?path=" + escapeForQuery(path) + "&signatures=" + escapeForQuery(signature));
-            List<String> files = new ArrayList<String>(WebUtilities.requestStringArrayResponse(usagesURI));
-
-            for (String file : files) {
+            for (String file : UsagesService.findUsages(path, signature, true)) {
                 Map<String, Object> flags = usageFile2Flags.get(file);
 
                 if (flags == null) {
@@ -291,11 +284,10 @@ public class UI {
 
             if (signature.startsWith("CLASS:") || signature.startsWith("INTERFACE:") || signature.startsWith("ENUM:") || signature.startsWith("ANNOTATION_TYPE:")) {
                 final String type = strip(signature, "CLASS:", "INTERFACE:", "ENUM:", "ANNOTATION_TYPE:");
-                URI u = new URI(urlBase + "index/implements/search?path=" + escapeForQuery(path) + "&type=" + escapeForQuery(type));
-                Map<String, List<Map<String, String>>> data = Pojson.load(HashMap.class, u);
-                for (Entry<String, List<Map<String, String>>> relpath2ImplementorsE : data.entrySet()) {
-                    for (Map<String, String> implementorData : relpath2ImplementorsE.getValue()) {
-                        String file = implementorData.get("file");
+                Map<String, List<Map<String, Object>>> data = UsagesService.findSubtypes(path, type);
+                for (Entry<String, List<Map<String, Object>>> relpath2ImplementorsE : data.entrySet()) {
+                    for (Map<String, Object> implementorData : relpath2ImplementorsE.getValue()) {
+                        String file = (String) implementorData.get("file");
                         Map<String, Object> flags = usageFile2Flags.get(file);
 
                         if (flags == null) {
@@ -308,15 +300,14 @@ public class UI {
                             flags.put("subtypes", implementors = new ArrayList<String>());
                         }
 
-                        implementors.add(implementorData.get("class"));
+                        implementors.add((String) implementorData.get("class"));
                     }
                 }
             } else if (signature.startsWith("METHOD:")) {
-                URI u = new URI(urlBase + "index/implements/search?path=" + escapeForQuery(path) + "&method=" + escapeForQuery(signature));
-                Map<String, List<Map<String, String>>> data = Pojson.load(HashMap.class, u);
-                for (Entry<String, List<Map<String, String>>> relpath2ImplementorsE : data.entrySet()) {
-                    for (Map<String, String> implementorData : relpath2ImplementorsE.getValue()) {
-                        String file = implementorData.get("file");
+                Map<String, List<Map<String, Object>>> data = UsagesService.findOverriders(path, signature);
+                for (Entry<String, List<Map<String, Object>>> relpath2ImplementorsE : data.entrySet()) {
+                    for (Map<String, Object> implementorData : relpath2ImplementorsE.getValue()) {
+                        String file = (String) implementorData.get("file");
                         Map<String, Object> flags = usageFile2Flags.get(file);
 
                         if (flags == null) {
@@ -329,7 +320,7 @@ public class UI {
                             flags.put("overridersParents", overridersParents = new ArrayList<String>());
                         }
 
-                        overridersParents.add(implementorData.get("enclosingFQN"));
+                        overridersParents.add((String) implementorData.get("enclosingFQN"));
                     }
                 }
             }
@@ -387,9 +378,7 @@ public class UI {
                         break;
                 }
 
-                String urlBase = URL_BASE_OVERRIDE != null ? URL_BASE_OVERRIDE : uriInfo.getBaseUri().toString();
-                URI u = new URI(urlBase + "index/source/cat?path=" + escapeForQuery(segment) + "&relative=" + escapeForQuery(relative));
-                String content = WebUtilities.requestStringResponse(u).replace("\r\n", "\n");
+                String content = readFileContent(segment, relative);
                 java.util.regex.Matcher matcher = Pattern.compile(otherSignature).matcher(content);
 
                 while (matcher.find()) {
@@ -421,20 +410,21 @@ public class UI {
         return elementDisplayName.toString();
     }
 
-    private static Map<String, Map<String, String>> list(String urlBase) throws URISyntaxException {
-        Map<String, Map<String, String>> result = new LinkedHashMap<String, Map<String, String>>();
+    private static List<String> listCategoryIds() {
+        List<String> result = new ArrayList<String>();
 
-        for (String enc : WebUtilities.requestStringArrayResponse(new URI(urlBase + "index/list"))) {
-            Map<String, String> rootDesc = new HashMap<String, String>();
-            String[] col = enc.split(":", 2);
-
-            rootDesc.put("segment", col[0]);
-            rootDesc.put("displayName", col[1]);
-            result.put(col[0], rootDesc);
+        for (CategoryStorage category : CategoryStorage.listCategories()) {
+            result.add(category.getId());
         }
 
         return result;
     }
+
+    private static String readFileContent(String segment, String relative) throws IOException, InterruptedException {
+        String content = API.readFileContent(CategoryStorage.forId(segment), relative);
+
+        return content != null ? content.replace("\r\n", "\n") : "";
+    }
     
     //Copied from Icons, NetBeans proper
     private static final String GIF_EXTENSION = ".gif";